@@ -0,0 +1,221 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import hudson.Util;
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Content addressed store for configuration files. Every distinct content is
+ * saved once beneath its SHA-256 digest, history directories only hold a
+ * reference to it. Blobs nobody refers to anymore are swept by the
+ * {@link JobConfigHistoryPurger}.
+ */
+class BlobStore {
+
+    /** Our logger. */
+    private static final Logger LOG = Logger.getLogger(BlobStore.class.getName());
+
+    /** Digest algorithm. */
+    static final String ALGORITHM = "SHA-256";
+
+    /** Where blobs are stored. */
+    private final File blobsDir;
+
+    /**
+     * @param blobsDir where blobs are stored.
+     */
+    BlobStore(final File blobsDir) {
+        this.blobsDir = blobsDir;
+    }
+
+    /**
+     * Stores content unless a blob with the same digest already exists.
+     *
+     * @param content to store.
+     * @return hex encoded digest of the content.
+     * @throws IOException if the blob could not be written.
+     */
+    String put(final byte[] content) throws IOException {
+        return put(content, false);
+    }
+
+    /**
+     * Stores content unless a blob with the same digest already exists,
+     * either plain or compressed.
+     *
+     * @param content to store.
+     * @param compress whether a new blob is written GZIP compressed.
+     * @return hex encoded digest of the content.
+     * @throws IOException if the blob could not be written.
+     */
+    String put(final byte[] content, final boolean compress) throws IOException {
+        final String digest = digest(content);
+        final File existing = get(digest);
+        if (existing.exists()) {
+            // a blob referenced again is young, so a running sweep keeps it, see sweep(File, long).
+            if (!existing.setLastModified(System.currentTimeMillis())) {
+                LOG.log(Level.FINE, "unable to touch {0}", existing);
+            }
+        } else {
+            final File blob = compress ? getCompressed(digest) : getPlain(digest);
+            final File parent = blob.getParentFile();
+            if (!(parent.mkdirs() || parent.isDirectory())) {
+                throw new IOException("Could not create " + parent);
+            }
+            // write to a temporary file first, so readers never see partial blobs.
+            final File tmp = File.createTempFile(digest, ".tmp", parent);
+            if (compress) {
+                FileHistoryDao.writeCompressed(content, tmp);
+            } else {
+                FileUtils.writeByteArrayToFile(tmp, content);
+            }
+            if (!tmp.renameTo(blob)) {
+                if (!tmp.delete()) {
+                    LOG.log(Level.WARNING, "unable to delete {0}", tmp);
+                }
+                if (!blob.exists()) {
+                    throw new IOException("Could not create " + blob);
+                }
+            }
+        }
+        return digest;
+    }
+
+    /**
+     * Returns the location of a blob, which exists if it was stored before.
+     * A compressed blob is preferred over a plain one.
+     *
+     * @param digest hex encoded digest.
+     * @return blob file.
+     */
+    File get(final String digest) {
+        final File compressed = getCompressed(digest);
+        return compressed.exists() ? compressed : getPlain(digest);
+    }
+
+    /**
+     * @param digest hex encoded digest.
+     * @return location of the plain blob.
+     */
+    private File getPlain(final String digest) {
+        return new File(new File(blobsDir, digest.substring(0, 2)), digest);
+    }
+
+    /**
+     * @param digest hex encoded digest.
+     * @return location of the compressed blob.
+     */
+    private File getCompressed(final String digest) {
+        return new File(new File(blobsDir, digest.substring(0, 2)), digest + JobConfigHistoryConsts.COMPRESSED_SUFFIX);
+    }
+
+    /**
+     * Deletes the blobs no revision below the history root refers to anymore.
+     * Blobs modified during the grace period are kept, as their references
+     * may still be written, see {@link #put(byte[], boolean)}.
+     *
+     * @param historyRootDir the history root.
+     * @param gracePeriod milliseconds before the start of the sweep in which blobs are kept.
+     * @return number of deleted blobs, 0 if a reference could not be read.
+     */
+    int sweep(final File historyRootDir, final long gracePeriod) {
+        final long keepAfter = System.currentTimeMillis() - gracePeriod;
+        final Set<String> referenced = new HashSet<String>();
+        try {
+            collectReferences(historyRootDir, referenced);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "unable to read all blob references, keeping all blobs", e);
+            return 0;
+        }
+        final File[] prefixDirs = blobsDir.listFiles();
+        if (prefixDirs == null) {
+            return 0;
+        }
+        int deleted = 0;
+        for (File prefixDir : prefixDirs) {
+            final File[] blobs = prefixDir.listFiles();
+            if (blobs == null) {
+                continue;
+            }
+            for (File blob : blobs) {
+                final String name = blob.getName();
+                final String digest = name.endsWith(JobConfigHistoryConsts.COMPRESSED_SUFFIX)
+                        ? name.substring(0, name.length() - JobConfigHistoryConsts.COMPRESSED_SUFFIX.length()) : name;
+                if (referenced.contains(digest) || blob.lastModified() >= keepAfter) {
+                    continue;
+                }
+                if (blob.delete()) {
+                    deleted++;
+                } else {
+                    LOG.log(Level.WARNING, "unable to delete unreferenced blob {0}", blob);
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * @param dir directory to walk.
+     * @param referenced digests referred to below the directory.
+     * @throws IOException if a reference could not be read.
+     */
+    private void collectReferences(final File dir, final Set<String> referenced) throws IOException {
+        final File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                if (!file.equals(blobsDir)) {
+                    collectReferences(file, referenced);
+                }
+            } else if (BlobReferenceFileFilter.INSTANCE.accept(file)) {
+                referenced.add(FileUtils.readFileToString(file, "US-ASCII").trim());
+            }
+        }
+    }
+
+    /**
+     * Computes the hex encoded digest of content.
+     *
+     * @param content to hash.
+     * @return hex encoded digest.
+     */
+    static String digest(final byte[] content) {
+        try {
+            return Util.toHexString(MessageDigest.getInstance(ALGORITHM).digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(ALGORITHM + " is not supported", e);
+        }
+    }
+}
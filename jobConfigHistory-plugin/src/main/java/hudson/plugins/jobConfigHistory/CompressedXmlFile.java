@@ -0,0 +1,137 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import hudson.XmlFile;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.zip.GZIPInputStream;
+import jenkins.model.Jenkins;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * A read only {@link XmlFile} stored GZIP compressed, which is decompressed
+ * on the fly whenever it is read.
+ */
+class CompressedXmlFile extends XmlFile {
+
+    /**
+     * @param file the compressed file.
+     */
+    CompressedXmlFile(final File file) {
+        super(file);
+    }
+
+    /**
+     * Opens a reader on the decompressed content using the encoding of the XML declaration.
+     *
+     * @return the reader.
+     * @throws IOException if the file could not be opened.
+     */
+    private Reader openReader() throws IOException {
+        final InputStream in = new BufferedInputStream(new GZIPInputStream(new FileInputStream(getFile())));
+        try {
+            in.mark(InMemoryXmlFile.HEAD_LENGTH);
+            final byte[] head = new byte[InMemoryXmlFile.HEAD_LENGTH];
+            final int length = IOUtils.read(in, head);
+            in.reset();
+            return new InputStreamReader(in, InMemoryXmlFile.sniffEncoding(head, length));
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the decompressed content.
+     * @throws IOException if reading fails.
+     */
+    @Override
+    public String asString() throws IOException {
+        final StringWriter w = new StringWriter();
+        writeRawTo(w);
+        return w.toString();
+    }
+
+    /**
+     * @param w where to write the decompressed content.
+     * @throws IOException if reading or writing fails.
+     */
+    @Override
+    public void writeRawTo(final Writer w) throws IOException {
+        final Reader r = openReader();
+        try {
+            IOUtils.copy(r, w);
+        } finally {
+            r.close();
+        }
+    }
+
+    /**
+     * @return the unmarshalled content.
+     * @throws IOException if reading fails.
+     */
+    @Override
+    public Object read() throws IOException {
+        final Reader r = openReader();
+        try {
+            return Jenkins.XSTREAM2.fromXML(r);
+        } finally {
+            r.close();
+        }
+    }
+
+    /**
+     * @param o object to unmarshal into.
+     * @return the unmarshalled object.
+     * @throws IOException if reading fails.
+     */
+    @Override
+    public Object unmarshal(final Object o) throws IOException {
+        final Reader r = openReader();
+        try {
+            return Jenkins.XSTREAM2.fromXML(r, o);
+        } finally {
+            r.close();
+        }
+    }
+
+    /**
+     * Not supported, the content is read only.
+     *
+     * @param o ignored.
+     * @throws IOException always.
+     */
+    @Override
+    public void write(final Object o) throws IOException {
+        throw new IOException(getFile() + " is read only");
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import hudson.XmlFile;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A plain stored configuration, which {@link HistoryCompressor} may replace
+ * by a compressed copy at any time. Reads fall back to the compressed copy
+ * when the plain file is gone.
+ */
+class CompressibleXmlFile extends XmlFile {
+
+    /**
+     * @param file the plain file.
+     */
+    CompressibleXmlFile(final File file) {
+        super(file);
+    }
+
+    /**
+     * @param e thrown when opening the plain file.
+     * @return the compressed copy.
+     * @throws FileNotFoundException e, if there is no compressed copy either.
+     */
+    private XmlFile compressed(final FileNotFoundException e) throws FileNotFoundException {
+        final File compressedFile = new File(getFile().getPath() + JobConfigHistoryConsts.COMPRESSED_SUFFIX);
+        if (!compressedFile.exists()) {
+            throw e;
+        }
+        return new CompressedXmlFile(compressedFile);
+    }
+
+    /**
+     * @return the content.
+     * @throws IOException if reading fails.
+     */
+    @Override
+    public String asString() throws IOException {
+        try {
+            return super.asString();
+        } catch (FileNotFoundException e) {
+            return compressed(e).asString();
+        }
+    }
+
+    /**
+     * @param w where to write the content.
+     * @throws IOException if reading or writing fails.
+     */
+    @Override
+    public void writeRawTo(final Writer w) throws IOException {
+        try {
+            super.writeRawTo(w);
+        } catch (FileNotFoundException e) {
+            compressed(e).writeRawTo(w);
+        }
+    }
+
+    /**
+     * @return the unmarshalled content.
+     * @throws IOException if reading fails.
+     */
+    @Override
+    public Object read() throws IOException {
+        try {
+            return super.read();
+        } catch (FileNotFoundException e) {
+            return compressed(e).read();
+        }
+    }
+
+    /**
+     * @param o object to unmarshal into.
+     * @return the unmarshalled object.
+     * @throws IOException if reading fails.
+     */
+    @Override
+    public Object unmarshal(final Object o) throws IOException {
+        try {
+            return super.unmarshal(o);
+        } catch (FileNotFoundException e) {
+            return compressed(e).unmarshal(o);
+        }
+    }
+}
@@ -32,9 +32,9 @@ import hudson.model.Slave;
 import hudson.plugins.jobConfigHistory.SideBySideView.Line;
 import hudson.security.AccessControlled;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -152,8 +152,10 @@ public class ComputerConfigHistoryAction extends JobConfigHistoryBaseAction {
                 getHistoryDao().getRevisions(slave).values());
         for (final HistoryDescr historyDescr : values) {
             final String timestamp = historyDescr.getTimestamp();
-            final XmlFile oldRevision = getHistoryDao().getOldRevision(slave, timestamp);
-            if (oldRevision.getFile() != null) {
+            final boolean hasConfig = historyDescr instanceof IndexedHistoryDescr
+                    ? ((IndexedHistoryDescr) historyDescr).hasConfig()
+                    : getHistoryDao().getOldRevision(slave, timestamp).getFile() != null;
+            if (hasConfig) {
                 configs.add(ConfigInfo.create(
                         slave.getNodeName(),
                         true,
@@ -310,17 +312,22 @@ public class ComputerConfigHistoryAction extends JobConfigHistoryBaseAction {
         checkConfigurePermission();
         final String timestamp1 = getRequestParameter("timestamp1");
         final String timestamp2 = getRequestParameter("timestamp2");
+        final HistoryDao historyDao = getHistoryDao();
+        final File historyDir = historyDao instanceof FileHistoryDao
+                ? ((FileHistoryDao) historyDao).getHistoryDirForNode(slave) : null;
+        final List<Line> cached = getCachedDiffLines(historyDir, timestamp1, timestamp2);
+        if (cached != null) {
+            return cached;
+        }
+        final long stamp = DiffCache.INSTANCE.stamp();
 
         final XmlFile configXml1 = getOldConfigXml(timestamp1);
         final String[] configXml1Lines = configXml1.asString().split("\\n");
         final XmlFile configXml2 = getOldConfigXml(timestamp2);
         final String[] configXml2Lines = configXml2.asString().split("\\n");
 
-        final String diffAsString = getDiffAsString(configXml1.getFile(), configXml2.getFile(),
-                configXml1Lines, configXml2Lines);
-
-        final List<String> diffLines = Arrays.asList(diffAsString.split("\n"));
-        return getDiffLines(diffLines);
+        return cacheDiffLines(historyDir, timestamp1, timestamp2,
+                getDiffLines(configXml1Lines, configXml2Lines), stamp);
     }
 
     /**
@@ -352,7 +359,7 @@ public class ComputerConfigHistoryAction extends JobConfigHistoryBaseAction {
         final String timestamp = req.getParameter("timestamp");
 
         final XmlFile xmlFile = getHistoryDao().getOldRevision(slave, timestamp);
-        final Slave newSlave = (Slave) Jenkins.XSTREAM2.fromXML(xmlFile.getFile());
+        final Slave newSlave = (Slave) Jenkins.XSTREAM2.fromXML(xmlFile.asString());
         final List<Node> nodes = new ArrayList<Node>();
         nodes.addAll(hudson.getNodes());
         nodes.remove(slave);
@@ -35,7 +35,7 @@ import org.kohsuke.stapler.export.ExportedBean;
  * @author Stefan Brausch
  */
 @ExportedBean(defaultVisibility = 999)
-public class ConfigInfo implements ParsedDate {
+public class ConfigInfo implements ParsedMillis {
 
     /** The display name of the user. */
     private final String user;
@@ -60,6 +60,9 @@ public class ConfigInfo implements ParsedDate {
      */
     private boolean isJob;
 
+    /** Parsed date of the change, 0 until first parsed. */
+    private volatile long dateMillis;
+
     /**
      * Returns a new ConfigInfo object for a system configuration file.
      * @param name
@@ -189,6 +192,19 @@ public class ConfigInfo implements ParsedDate {
      */
     @Override
     public Date parsedDate() {
-        return PluginUtils.parsedDate(getDate());
+        return new Date(parsedMillis());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long parsedMillis() {
+        long millis = dateMillis;
+        if (millis == 0) {
+            millis = PluginUtils.parsedMillis(getDate());
+            dateMillis = millis;
+        }
+        return millis;
     }
 }
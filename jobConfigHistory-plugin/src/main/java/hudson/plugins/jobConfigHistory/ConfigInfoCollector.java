@@ -25,10 +25,17 @@ package hudson.plugins.jobConfigHistory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
-import org.apache.commons.lang.ArrayUtils;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Collects all configs of a special type. For Jobs these follow the pattern:
@@ -37,10 +44,21 @@ import org.apache.commons.lang.ArrayUtils;
  *
  * Extracted from {@link JobConfigHistoryRootAction} for easier testability.
  *
+ * Items in nested folders are found by a {@link HistoryItemWalker}. Given an
+ * executor, the item directories are scanned in parallel. The results are
+ * merged in the order of the walk, so the outcome is the same as scanning
+ * them one after another.
+ *
  * @author Mirko Friedenhagen
  */
 final class ConfigInfoCollector {
 
+    /** Our logger. */
+    private static final Logger LOG = Logger.getLogger(ConfigInfoCollector.class.getName());
+
+    /** Maximum number of items scanned in parallel ahead of the results already added. */
+    private static final int PARALLEL_WINDOW = 256;
+
     /**
      * outparameter.
      */
@@ -56,6 +74,11 @@ final class ConfigInfoCollector {
      */
     private final OverviewHistoryDao overViewhistoryDao;
 
+    /**
+     * Scans the item directories in parallel, null to scan them on the calling thread.
+     */
+    private final ExecutorService executor;
+
 
     /**
      * Collects configs of the given type.
@@ -64,8 +87,20 @@ final class ConfigInfoCollector {
      * @param overviewHistoryDao the value of historyDao
      */
     public ConfigInfoCollector(String type, OverviewHistoryDao overviewHistoryDao) {
+        this(type, overviewHistoryDao, null);
+    }
+
+    /**
+     * Collects configs of the given type, scanning the item directories in parallel.
+     *
+     * @param type may be one of deleted, created or jobs?
+     * @param overviewHistoryDao the value of historyDao
+     * @param executor scans the item directories, null to scan them on the calling thread.
+     */
+    ConfigInfoCollector(String type, OverviewHistoryDao overviewHistoryDao, ExecutorService executor) {
         this.type = type;
         this.overViewhistoryDao = overviewHistoryDao;
+        this.executor = executor;
     }
 
     /**
@@ -81,17 +116,34 @@ final class ConfigInfoCollector {
      *             If one of the entries cannot be read.
      */
     void getConfigsForType(File itemDir, String folderName) throws IOException {
+        configs.addAll(collectItem(itemDir, folderName));
+    }
+
+    /**
+     * Like {@link #getConfigsForType(File, String)}, but returns the entries of one item directory instead of
+     * adding them, so it may run on any thread.
+     *
+     * @param itemDir
+     *            The job directory as File
+     * @param folderName
+     *            the folderName.
+     * @return entries of the item.
+     * @throws IOException
+     *             If one of the entries cannot be read.
+     */
+    private List<ConfigInfo> collectItem(File itemDir, String folderName) throws IOException {
+        final List<ConfigInfo> configs = new ArrayList<ConfigInfo>();
         final String itemName = folderName.isEmpty() ? itemDir.getName() : folderName + "/jobs/" + itemDir.getName();
         final List<HistoryDescr> historyEntries = new ArrayList<HistoryDescr>(
                 overViewhistoryDao.getJobHistory(itemName).values());
         if (historyEntries.isEmpty()) {
-            return;
+            return configs;
         }
         final boolean isADeletedJob = DeletedFileFilter.accepts(itemName);
         final boolean isNotADeletedJob = !isADeletedJob;
         if ("created".equals(type)) {
             if (isADeletedJob) {
-                return;
+                return configs;
             }
             HistoryDescr histDescr = historyEntries.get(0);
             if ("Created".equals(histDescr.getOperation())) {
@@ -120,10 +172,11 @@ final class ConfigInfoCollector {
         } else {
             configs.addAll(HistoryDescrToConfigInfo.convert(itemName, true, historyEntries, isNotADeletedJob));
         }
+        return configs;
     }
 
     /**
-     * Collects configs.
+     * Collects configs of the items in the folder and in all folders nested in it.
      *
      * @param folderName
      *            folderName, usually just the empty string.
@@ -131,18 +184,97 @@ final class ConfigInfoCollector {
      * @throws IOException if an entry could not be read.
      */
     public List<ConfigInfo> collect(final String folderName) throws IOException {
-        final File[] itemDirs;
-        if ("deleted".equals(type)) {
-            itemDirs = overViewhistoryDao.getDeletedJobs(folderName);
+        final long start = System.nanoTime();
+        final HistoryItemWalker items = new HistoryItemWalker(overViewhistoryDao, folderName);
+        final int scanned;
+        if (executor == null) {
+            scanned = collectSequential(items);
         } else {
-            itemDirs = (File[]) ArrayUtils.addAll(
-                    overViewhistoryDao.getDeletedJobs(folderName),
-                    overViewhistoryDao.getJobs(folderName));
-        }
-        Arrays.sort(itemDirs, FileNameComparator.INSTANCE);
-        for (final File itemDir : itemDirs) {
-            getConfigsForType(itemDir, folderName);
+            scanned = collectParallel(items);
         }
+        LOG.log(Level.FINE, "collected {0} {1} entries of {2} items in {3} ms",
+                new Object[] {configs.size(), type, scanned, (System.nanoTime() - start) / 1000000});
         return configs;
     }
+
+    /**
+     * Scans the items on the calling thread.
+     *
+     * @param items
+     *            the items to scan.
+     * @return number of scanned items.
+     * @throws IOException if an entry could not be read.
+     */
+    private int collectSequential(final HistoryItemWalker items) throws IOException {
+        int scanned = 0;
+        while (items.hasNext()) {
+            final HistoryItemWalker.Item item = items.next();
+            if (isWanted(item)) {
+                getConfigsForType(item.getDir(), item.getFolderName());
+                scanned++;
+            }
+        }
+        return scanned;
+    }
+
+    /**
+     * Scans the items on the executor and adds the results in the order of the walk. At most
+     * {@link #PARALLEL_WINDOW} items are scanned ahead of the oldest one not yet added.
+     *
+     * @param items
+     *            the items to scan.
+     * @return number of scanned items.
+     * @throws IOException if an entry could not be read or the scan was interrupted.
+     */
+    private int collectParallel(final HistoryItemWalker items) throws IOException {
+        final Deque<Future<List<ConfigInfo>>> results = new ArrayDeque<Future<List<ConfigInfo>>>();
+        int scanned = 0;
+        try {
+            while (items.hasNext()) {
+                final HistoryItemWalker.Item item = items.next();
+                if (!isWanted(item)) {
+                    continue;
+                }
+                if (results.size() == PARALLEL_WINDOW) {
+                    configs.addAll(results.poll().get());
+                }
+                results.add(executor.submit(new Callable<List<ConfigInfo>>() {
+                    @Override
+                    public List<ConfigInfo> call() throws IOException {
+                        return collectItem(item.getDir(), item.getFolderName());
+                    }
+                }));
+                scanned++;
+            }
+            while (!results.isEmpty()) {
+                configs.addAll(results.poll().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while collecting " + type + " entries");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("unable to collect " + type + " entries", cause);
+        } finally {
+            for (Future<List<ConfigInfo>> result : results) {
+                result.cancel(true);
+            }
+        }
+        return scanned;
+    }
+
+    /**
+     * @param item
+     *            found by the walker.
+     * @return true if the item may hold entries of the collected type.
+     */
+    private boolean isWanted(final HistoryItemWalker.Item item) {
+        return !"deleted".equals(type) || DeletedFileFilter.accepts(item.getDir());
+    }
 }
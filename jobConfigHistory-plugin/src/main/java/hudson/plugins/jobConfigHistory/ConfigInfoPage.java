@@ -0,0 +1,96 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * One page of history entries, newest first, together with the cursor of
+ * the next page.
+ */
+public final class ConfigInfoPage {
+
+    /** Orders entries newest first by {@link HistoryCursor#key(ConfigInfo)}. */
+    static final Comparator<ConfigInfo> DESCENDING = new Comparator<ConfigInfo>() {
+        @Override
+        public int compare(ConfigInfo o1, ConfigInfo o2) {
+            return HistoryCursor.key(o2).compareTo(HistoryCursor.key(o1));
+        }
+    };
+
+    /** Entries of the page. */
+    private final List<ConfigInfo> configs;
+
+    /** Cursor of the next page, null on the last page. */
+    private final String nextCursor;
+
+    /**
+     * @param configs entries of the page.
+     * @param nextCursor cursor of the next page, null on the last page.
+     */
+    ConfigInfoPage(final List<ConfigInfo> configs, final String nextCursor) {
+        this.configs = configs;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Cuts a page out of all entries, for storage which cannot read a page by itself.
+     *
+     * @param all all entries, will be sorted.
+     * @param cursor sort key of the last entry of the previous page or null.
+     * @param maxEntries maximum number of entries of the page.
+     * @return the page.
+     */
+    static ConfigInfoPage of(final List<ConfigInfo> all, final String cursor, final int maxEntries) {
+        Collections.sort(all, DESCENDING);
+        final List<ConfigInfo> configs = new ArrayList<ConfigInfo>();
+        for (ConfigInfo config : all) {
+            if (cursor != null && HistoryCursor.key(config).compareTo(cursor) >= 0) {
+                continue;
+            }
+            if (configs.size() == maxEntries) {
+                return new ConfigInfoPage(configs, HistoryCursor.encode(HistoryCursor.key(configs.get(maxEntries - 1))));
+            }
+            configs.add(config);
+        }
+        return new ConfigInfoPage(configs, null);
+    }
+
+    /**
+     * @return entries of the page, newest first.
+     */
+    public List<ConfigInfo> getConfigs() {
+        return configs;
+    }
+
+    /**
+     * @return cursor of the next page, null on the last page.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
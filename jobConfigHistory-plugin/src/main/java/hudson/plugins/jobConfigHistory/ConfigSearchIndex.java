@@ -0,0 +1,1151 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import hudson.XmlFile;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.LineIterator;
+
+/**
+ * Inverted index from the contents of all stored configurations to their
+ * revisions, see {@link JobConfigHistoryConsts#SEARCH_INDEX_FILE}. Every
+ * configuration is indexed by three kinds of terms:
+ *
+ * <ul>
+ * <li>lower case words of text and attribute values, e.g. {@code linux},</li>
+ * <li>element paths, with their text or an attribute value, e.g.
+ * {@code /project/assignedNode}, {@code /project/assignedNode=linux} or
+ * {@code /project/scm/@plugin=git@2.2.0},</li>
+ * <li>element or attribute names with their value, e.g.
+ * {@code credentialsId=4711} or {@code @plugin=git@2.2.0}.</li>
+ * </ul>
+ *
+ * Consecutive revisions of an item mostly share their terms, so a revision is
+ * logged with the terms added and removed since the previous line of its item
+ * and every posting covers a run of revisions holding the term. The log holds
+ * one tab separated line per indexed revision and one per moved item history,
+ * escaped like the {@link HistoryEventLog}:
+ *
+ * <pre>
+ * D ITEM TIMESTAMP +TERM... -TERM...
+ * R ITEM TIMESTAMP TERM...
+ * M OLDITEM NEWITEM
+ * </pre>
+ *
+ * A revision is logged with all its terms while the log was not read yet or
+ * is being rebuilt. The log is built by the first search in the background,
+ * afterwards every stored configuration is appended. Purged revisions are
+ * skipped when searching, a rebuild drops them from the log.
+ */
+final class ConfigSearchIndex {
+
+    /** Our logger. */
+    private static final Logger LOG = Logger.getLogger(ConfigSearchIndex.class.getName());
+
+    /** Search indexes by history root. */
+    private static final ConcurrentMap<File, ConfigSearchIndex> INDEXES
+            = new ConcurrentHashMap<File, ConfigSearchIndex>();
+
+    /** Type of a revision logged with all its terms. */
+    private static final String REVISION = "R";
+
+    /** Type of a revision logged with the terms changed since the previous line of its item. */
+    private static final String DELTA = "D";
+
+    /** Type of a moved item history. */
+    private static final String MOVE = "M";
+
+    /** Marks a term added by a {@link #DELTA}. */
+    private static final char ADDED = '+';
+
+    /** Marks a term removed by a {@link #DELTA}. */
+    private static final char REMOVED = '-';
+
+    /** Encoding of the log. */
+    private static final String ENCODING = "UTF-8";
+
+    /** Separates the words of a value. */
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}_.\\-]+");
+
+    /** Punctuation trimmed from words. */
+    private static final Pattern WORD_PUNCTUATION = Pattern.compile("^[.\\-]+|[.\\-]+$");
+
+    /** Shortest indexed word. */
+    private static final int MIN_WORD_LENGTH = 2;
+
+    /** Longest indexed word. */
+    private static final int MAX_WORD_LENGTH = 64;
+
+    /** Longest value indexed together with its path or name, longer values are indexed by their words only. */
+    private static final int MAX_VALUE_LENGTH = 256;
+
+    /** Creates the parsers, never resolving DTDs or external entities. */
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    }
+
+    /**
+     * The indexed revisions of an item. An item merged into another one stays
+     * reachable from its postings, its revisions belong to the other item.
+     */
+    private static final class Item {
+
+        /** Path of the item relative to the history root, replaced when its history is moved. */
+        private String name;
+
+        /** Indexed revisions by timestamp. */
+        private final TreeMap<String, Revision> revisions = new TreeMap<String, Revision>();
+
+        /** Indexed revisions in the order of the log, postings refer to their positions. */
+        private final List<Revision> sequence = new ArrayList<Revision>();
+
+        /** Postings of the terms held by the last revision in {@link #sequence}, by term. */
+        private final Map<String, Posting> open = new HashMap<String, Posting>();
+
+        /**
+         * @param name path of the item relative to the history root.
+         */
+        Item(final String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * An indexed revision.
+     */
+    private static final class Revision {
+
+        /** Item of the revision, replaced when its history is moved, null if merged into a duplicate. */
+        private Item item;
+
+        /** Revision id. */
+        private final String timestamp;
+
+        /**
+         * @param item item of the revision.
+         * @param timestamp revision id.
+         */
+        Revision(final Item item, final String timestamp) {
+            this.item = item;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * A run of revisions of an item holding a term.
+     */
+    private static final class Posting {
+
+        /** Item whose {@link Item#sequence} holds the revisions. */
+        private final Item item;
+
+        /** Position of the first revision holding the term. */
+        private final int from;
+
+        /** Position of the first revision not holding the term anymore, {@link Integer#MAX_VALUE} if none. */
+        private int until = Integer.MAX_VALUE;
+
+        /**
+         * @param item item whose sequence holds the revisions.
+         * @param from position of the first revision holding the term.
+         */
+        Posting(final Item item, final int from) {
+            this.item = item;
+            this.from = from;
+        }
+    }
+
+    /**
+     * Postings of all terms as replayed from the log.
+     */
+    private static final class Index {
+
+        /** Items by path relative to the history root, sorted so the items of a folder are adjacent. */
+        private final NavigableMap<String, Item> items = new TreeMap<String, Item>();
+
+        /** Runs of revisions by term. */
+        private final Map<String, List<Posting>> postings = new HashMap<String, List<Posting>>();
+
+        /**
+         * @param item path of the item relative to the history root.
+         * @param timestamp revision id.
+         * @return true if the revision is indexed already.
+         */
+        boolean contains(final String item, final String timestamp) {
+            final Item known = items.get(item);
+            return known != null && known.revisions.containsKey(timestamp);
+        }
+
+        /**
+         * @param item path of the item relative to the history root.
+         * @param timestamp revision id.
+         * @param terms terms of the stored configuration.
+         * @return the line indexing the revision by the terms changed since the previous line of the item.
+         */
+        String[] toDelta(final String item, final String timestamp, final Set<String> terms) {
+            final List<String> event = new ArrayList<String>();
+            event.add(DELTA);
+            event.add(item);
+            event.add(timestamp);
+            final Item known = items.get(item);
+            if (known != null) {
+                for (String term : known.open.keySet()) {
+                    if (!terms.contains(term)) {
+                        event.add(REMOVED + term);
+                    }
+                }
+            }
+            for (String term : terms) {
+                if (known == null || !known.open.containsKey(term)) {
+                    event.add(ADDED + term);
+                }
+            }
+            return event.toArray(new String[event.size()]);
+        }
+
+        /**
+         * Applies a line of the log, revisions indexed before are skipped.
+         *
+         * @param event type and fields.
+         */
+        void apply(final String[] event) {
+            final String type = event[0];
+            if ((REVISION.equals(type) || DELTA.equals(type)) && event.length >= 3) {
+                Item item = items.get(event[1]);
+                if (item == null) {
+                    item = new Item(event[1]);
+                    items.put(event[1], item);
+                } else if (item.revisions.containsKey(event[2])) {
+                    return;
+                }
+                final Revision revision = new Revision(item, event[2]);
+                final int position = item.sequence.size();
+                item.revisions.put(revision.timestamp, revision);
+                item.sequence.add(revision);
+                if (REVISION.equals(type)) {
+                    final Set<String> terms = new HashSet<String>(Arrays.asList(event).subList(3, event.length));
+                    final Iterator<Map.Entry<String, Posting>> open = item.open.entrySet().iterator();
+                    while (open.hasNext()) {
+                        final Map.Entry<String, Posting> entry = open.next();
+                        if (!terms.remove(entry.getKey())) {
+                            entry.getValue().until = position;
+                            open.remove();
+                        }
+                    }
+                    for (String term : terms) {
+                        open(item, term, position);
+                    }
+                } else {
+                    for (int i = 3; i < event.length; i++) {
+                        final String term = event[i].substring(1);
+                        if (event[i].charAt(0) == ADDED) {
+                            if (!item.open.containsKey(term)) {
+                                open(item, term, position);
+                            }
+                        } else if (event[i].charAt(0) == REMOVED) {
+                            final Posting posting = item.open.remove(term);
+                            if (posting != null) {
+                                posting.until = position;
+                            }
+                        } else {
+                            throw new IllegalArgumentException("unknown change of term " + event[i]);
+                        }
+                    }
+                }
+            } else if (MOVE.equals(type) && event.length == 3) {
+                for (String oldItem : HistoryEventLog.getItemsBelow(items, event[1])) {
+                    move(items.remove(oldItem), event[2] + oldItem.substring(event[1].length()));
+                }
+            } else {
+                throw new IllegalArgumentException("unknown event type " + type);
+            }
+        }
+
+        /**
+         * @param item item holding the term from now on.
+         * @param term the term.
+         * @param position position of the first revision holding the term.
+         */
+        private void open(final Item item, final String term, final int position) {
+            final Posting posting = new Posting(item, position);
+            item.open.put(term, posting);
+            List<Posting> runs = postings.get(term);
+            if (runs == null) {
+                runs = new ArrayList<Posting>(1);
+                postings.put(term, runs);
+            }
+            runs.add(posting);
+        }
+
+        /**
+         * Moves the revisions of an item to, or merges them into, another item.
+         *
+         * @param moved the item.
+         * @param newItem path of the other item relative to the history root.
+         */
+        private void move(final Item moved, final String newItem) {
+            final Item target = items.get(newItem);
+            if (target == null) {
+                moved.name = newItem;
+                items.put(newItem, moved);
+                return;
+            }
+            for (Revision revision : moved.revisions.values()) {
+                if (target.revisions.containsKey(revision.timestamp)) {
+                    revision.item = null;
+                } else {
+                    revision.item = target;
+                    target.revisions.put(revision.timestamp, revision);
+                }
+            }
+            // further lines of the item continue the target.
+            moved.open.clear();
+        }
+    }
+
+    /**
+     * Matching revisions of one item.
+     */
+    static final class Hit {
+
+        /** Path of the item relative to the history root. */
+        private final String item;
+
+        /** Matching revisions, oldest first. */
+        private final List<HistoryDescr> revisions = new ArrayList<HistoryDescr>();
+
+        /** First revision after the last match not matching anymore, null if the newest revision matches. */
+        private HistoryDescr removed;
+
+        /**
+         * @param item path of the item relative to the history root.
+         */
+        Hit(final String item) {
+            this.item = item;
+        }
+
+        /**
+         * @return path of the item relative to the history root, e.g. {@code jobs/Test1}.
+         */
+        String getItem() {
+            return item;
+        }
+
+        /**
+         * @return matching revisions, oldest first.
+         */
+        List<HistoryDescr> getRevisions() {
+            return revisions;
+        }
+
+        /**
+         * @return first revision after the last match not matching anymore, null if the newest revision matches.
+         */
+        HistoryDescr getRemoved() {
+            return removed;
+        }
+    }
+
+    /** The history root. */
+    private final File historyRootDir;
+
+    /** The log file. */
+    private final File logFile;
+
+    /** Reads stored configurations in every storage mode. */
+    private final FileHistoryDao reader;
+
+    /** Postings of all terms, null until the log was read or rebuilt. Guarded by this. */
+    private Index index;
+
+    /** Lines arriving while rebuilding, null if no rebuild is running. Guarded by this. */
+    private List<String[]> pending;
+
+    /**
+     * @param historyRootDir the history root.
+     * @param reader reads stored configurations in every storage mode.
+     */
+    ConfigSearchIndex(final File historyRootDir, final FileHistoryDao reader) {
+        this.historyRootDir = historyRootDir;
+        this.logFile = new File(historyRootDir, JobConfigHistoryConsts.SEARCH_INDEX_FILE);
+        this.reader = reader;
+    }
+
+    /**
+     * Returns the search index of a history root.
+     *
+     * @param historyRootDir the history root.
+     * @param reader reads stored configurations when the index is created.
+     * @return the search index shared by all users of the root.
+     */
+    static ConfigSearchIndex get(final File historyRootDir, final FileHistoryDao reader) {
+        final ConfigSearchIndex searchIndex = INDEXES.get(historyRootDir);
+        if (searchIndex != null) {
+            return searchIndex;
+        }
+        final ConfigSearchIndex created = new ConfigSearchIndex(historyRootDir, reader);
+        final ConfigSearchIndex existing = INDEXES.putIfAbsent(historyRootDir, created);
+        return existing == null ? created : existing;
+    }
+
+    /**
+     * Indexes a stored configuration, unless the index was never built.
+     *
+     * @param revisionDir the revision directory.
+     * @param content the configuration.
+     */
+    void revisionStored(final File revisionDir, final byte[] content) {
+        final String item = getItem(revisionDir.getParentFile());
+        if (item != null && isCreated()) {
+            indexRevision(item, revisionDir.getName(), extractTerms(content));
+        }
+    }
+
+    /**
+     * Records that the history of an item, including the items nested in it,
+     * was moved to, or merged into, another item.
+     *
+     * @param oldItemDir the former history directory.
+     * @param newItemDir the new history directory.
+     */
+    void moved(final File oldItemDir, final File newItemDir) {
+        final String oldItem = getItem(oldItemDir);
+        final String newItem = getItem(newItemDir);
+        if (oldItem != null && newItem != null && isCreated()) {
+            append(new String[] {MOVE, oldItem, newItem});
+        }
+    }
+
+    /**
+     * Indexes the revisions of one item not indexed yet, e.g. after a backup
+     * was restored behind the back of the plugin, unless the index was never
+     * built. Purged revisions are skipped when searching anyway.
+     *
+     * @param itemDir history directory of the item.
+     * @return number of revisions indexed.
+     */
+    int resync(final File itemDir) {
+        final String item = getItem(itemDir);
+        if (item == null || !isCreated() || !isReady()) {
+            return 0;
+        }
+        final File[] revisionDirs = itemDir.listFiles(HistoryFileFilter.INSTANCE);
+        if (revisionDirs == null) {
+            return 0;
+        }
+        Arrays.sort(revisionDirs);
+        final Set<String> indexed = new HashSet<String>();
+        synchronized (this) {
+            final Item known = index.items.get(item);
+            if (known != null) {
+                indexed.addAll(known.revisions.keySet());
+            }
+        }
+        int events = 0;
+        for (File revisionDir : revisionDirs) {
+            if (indexed.contains(revisionDir.getName())) {
+                continue;
+            }
+            final Set<String> terms = readTerms(revisionDir);
+            if (terms != null) {
+                indexRevision(item, revisionDir.getName(), terms);
+                events++;
+            }
+        }
+        return events;
+    }
+
+    /**
+     * @return true if the log exists or is being built.
+     */
+    private synchronized boolean isCreated() {
+        return index != null || pending != null || logFile.exists();
+    }
+
+    /**
+     * Reads the log on first use, starting a rebuild when it does not exist.
+     *
+     * @return true if the postings of all terms are known.
+     */
+    synchronized boolean isReady() {
+        if (index == null && pending == null) {
+            if (logFile.exists()) {
+                load();
+            } else {
+                startRebuild();
+            }
+        }
+        return index != null;
+    }
+
+    /**
+     * @return whether the log is being rebuilt.
+     */
+    synchronized boolean isRebuilding() {
+        return pending != null;
+    }
+
+    /**
+     * Rebuilds the log from disk in a background thread.
+     *
+     * @return false if a rebuild is already running.
+     */
+    synchronized boolean startRebuild() {
+        if (pending != null) {
+            return false;
+        }
+        pending = new ArrayList<String[]>();
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                rebuildStarted();
+            }
+        }, "JobConfigHistory search index rebuild");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * Rebuilds the log from disk in the calling thread.
+     */
+    void rebuild() {
+        synchronized (this) {
+            if (pending != null) {
+                throw new IllegalStateException("rebuild of " + logFile + " is already running");
+            }
+            pending = new ArrayList<String[]>();
+        }
+        rebuildStarted();
+    }
+
+    /**
+     * Walks the history root and writes the log to a temporary file without
+     * holding the lock, one configuration at a time. The lines arriving
+     * meanwhile are appended before the temporary file replaces the log.
+     */
+    private void rebuildStarted() {
+        final long start = System.currentTimeMillis();
+        final Index rebuilt = new Index();
+        final File tmp = new File(historyRootDir, JobConfigHistoryConsts.SEARCH_INDEX_FILE + ".tmp");
+        int revisions = 0;
+        boolean written = false;
+        try {
+            final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), ENCODING));
+            try {
+                revisions = walk(historyRootDir, "", rebuilt, out);
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "unable to rebuild " + logFile, e);
+            } finally {
+                out.close();
+            }
+            written = true;
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "unable to write rebuilt search index", e);
+        }
+        synchronized (this) {
+            final StringBuilder lines = new StringBuilder();
+            for (String[] event : pending) {
+                rebuilt.apply(event);
+                appendLine(lines, event);
+            }
+            pending = null;
+            index = rebuilt;
+            if (written) {
+                try {
+                    appendTo(tmp, lines.toString());
+                    PluginUtils.replaceFile(tmp, logFile);
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "unable to write rebuilt search index", e);
+                }
+            }
+        }
+        LOG.log(Level.INFO, "rebuilt {0} with {1} revisions in {2} ms",
+                new Object[] {logFile, revisions, System.currentTimeMillis() - start});
+    }
+
+    /**
+     * Indexes the stored configurations below a directory, the revisions of
+     * an item in chronological order, so each line holds few changed terms.
+     *
+     * @param dir directory to walk.
+     * @param item its path relative to the history root, empty for the root.
+     * @param rebuilt the index being rebuilt.
+     * @param out where to write the lines.
+     * @return number of revisions indexed.
+     * @throws IOException if writing fails.
+     */
+    private int walk(final File dir, final String item, final Index rebuilt, final Writer out) throws IOException {
+        final File[] files = dir.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        Arrays.sort(files);
+        int revisions = 0;
+        final StringBuilder line = new StringBuilder();
+        for (File file : files) {
+            if (!file.isDirectory() || item.isEmpty() && JobConfigHistoryConsts.BLOBS_DIR.equals(file.getName())) {
+                continue;
+            }
+            if (!item.isEmpty() && HistoryFileFilter.accepts(file)) {
+                final Set<String> terms = readTerms(file);
+                if (terms == null || rebuilt.contains(item, file.getName())) {
+                    continue;
+                }
+                final String[] event = rebuilt.toDelta(item, file.getName(), terms);
+                rebuilt.apply(event);
+                line.setLength(0);
+                appendLine(line, event);
+                out.write(line.toString());
+                revisions++;
+            } else {
+                revisions += walk(file, item.isEmpty() ? file.getName() : item + "/" + file.getName(), rebuilt, out);
+            }
+        }
+        return revisions;
+    }
+
+    /**
+     * @param revisionDir the revision directory.
+     * @return terms of the stored configuration, null if it holds none or could not be read.
+     */
+    private Set<String> readTerms(final File revisionDir) {
+        final XmlFile config = reader.getStoredConfig(revisionDir);
+        if (config.getFile() == null) {
+            return null;
+        }
+        try {
+            return extractTerms(config.asString());
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "unable to read the configuration stored in " + revisionDir, e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the log line by line.
+     */
+    private void load() {
+        final Index loaded = new Index();
+        try {
+            HistoryEventLog.terminateLastLine(logFile);
+            final LineIterator lines = FileUtils.lineIterator(logFile, ENCODING);
+            try {
+                while (lines.hasNext()) {
+                    final String line = lines.nextLine();
+                    final String[] fields = line.split("\t", -1);
+                    try {
+                        for (int i = 0; i < fields.length; i++) {
+                            fields[i] = HistoryEventLog.unescape(fields[i]);
+                        }
+                        loaded.apply(fields);
+                    } catch (RuntimeException e) {
+                        LOG.log(Level.WARNING, "skipping malformed line in {0}: {1}", new Object[] {logFile, line});
+                    }
+                }
+            } finally {
+                LineIterator.closeQuietly(lines);
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "unable to read " + logFile + ", rebuilding it", e);
+            startRebuild();
+            return;
+        }
+        index = loaded;
+    }
+
+    /**
+     * Indexes a revision with the terms changed since the previous line of
+     * its item, or with all its terms while the log is not read or being
+     * rebuilt. Revisions indexed before are skipped.
+     *
+     * @param item path of the item relative to the history root.
+     * @param timestamp revision id.
+     * @param terms terms of the stored configuration.
+     */
+    private synchronized void indexRevision(final String item, final String timestamp, final Set<String> terms) {
+        if (index != null && index.contains(item, timestamp)) {
+            return;
+        }
+        append(index == null || pending != null
+                ? toEvent(item, timestamp, terms) : index.toDelta(item, timestamp, terms));
+    }
+
+    /**
+     * Applies and appends a line, keeps it in memory while rebuilding. The log is not read for appending.
+     *
+     * @param event type and fields.
+     */
+    private synchronized void append(final String[] event) {
+        if (pending != null) {
+            pending.add(event);
+            if (index != null) {
+                index.apply(event);
+            }
+            return;
+        }
+        if (index != null) {
+            index.apply(event);
+        }
+        final StringBuilder line = new StringBuilder();
+        appendLine(line, event);
+        try {
+            appendTo(logFile, line.toString());
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "unable to append to " + logFile + ", rebuilding it", e);
+            startRebuild();
+        }
+    }
+
+    /**
+     * @param file file to append to.
+     * @param lines formatted lines.
+     * @throws IOException if writing fails.
+     */
+    private static void appendTo(final File file, final String lines) throws IOException {
+        final FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.write(lines.getBytes(ENCODING));
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Formats a line.
+     *
+     * @param line to append to.
+     * @param event type and fields.
+     */
+    private static void appendLine(final StringBuilder line, final String[] event) {
+        for (int i = 0; i < event.length; i++) {
+            if (i > 0) {
+                line.append('\t');
+            }
+            line.append(HistoryEventLog.escape(event[i]));
+        }
+        line.append('\n');
+    }
+
+    /**
+     * @param item path of the item relative to the history root.
+     * @param timestamp revision id.
+     * @param terms terms of the stored configuration.
+     * @return the line indexing the revision.
+     */
+    private static String[] toEvent(final String item, final String timestamp, final Set<String> terms) {
+        final String[] event = new String[terms.size() + 3];
+        event[0] = REVISION;
+        event[1] = item;
+        event[2] = timestamp;
+        int i = 3;
+        for (String term : terms) {
+            event[i++] = term;
+        }
+        return event;
+    }
+
+    /**
+     * @param itemDir history directory of an item.
+     * @return its path relative to the history root or null if it lies outside.
+     */
+    private String getItem(final File itemDir) {
+        final String root = historyRootDir.getAbsolutePath() + File.separator;
+        final String path = itemDir.getAbsolutePath();
+        if (!path.startsWith(root)) {
+            return null;
+        }
+        return path.substring(root.length()).replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Searches the revisions holding all terms of the query.
+     *
+     * @param query terms separated by white space, words are matched case insensitive.
+     * @param from earliest revision id or a prefix of it, e.g. {@code 2012-11}, null for no limit.
+     * @param to latest revision id or a prefix of it, null for no limit.
+     * @param user id or name of the user who saved the revision, null for all users.
+     * @param system whether system configurations may be returned.
+     * @param jobs whether jobs may be returned.
+     * @param maxItems maximum number of items returned.
+     * @return matching items sorted by path, empty while the index is not built.
+     */
+    List<Hit> search(final String query, final String from, final String to, final String user,
+            final boolean system, final boolean jobs, final int maxItems) {
+        final Map<String, List<Revision>> matches = new TreeMap<String, List<Revision>>();
+        final Map<String, List<Revision>> later = new HashMap<String, List<Revision>>();
+        synchronized (this) {
+            if (!isReady()) {
+                return Collections.emptyList();
+            }
+            for (Revision revision : match(normalizeQuery(query))) {
+                final boolean isJob = revision.item.name.startsWith(JobConfigHistoryConsts.JOBS_HISTORY_DIR + "/");
+                if (isJob ? !jobs : !system) {
+                    continue;
+                }
+                List<Revision> revisions = matches.get(revision.item.name);
+                if (revisions == null) {
+                    revisions = new ArrayList<Revision>();
+                    matches.put(revision.item.name, revisions);
+                }
+                revisions.add(revision);
+            }
+            for (Map.Entry<String, List<Revision>> entry : matches.entrySet()) {
+                final List<Revision> revisions = entry.getValue();
+                Collections.sort(revisions, new Comparator<Revision>() {
+                    @Override
+                    public int compare(Revision r1, Revision r2) {
+                        return r1.timestamp.compareTo(r2.timestamp);
+                    }
+                });
+                final Revision last = revisions.get(revisions.size() - 1);
+                later.put(entry.getKey(),
+                        new ArrayList<Revision>(last.item.revisions.tailMap(last.timestamp, false).values()));
+            }
+        }
+        final HistoryEventLog eventLog = HistoryEventLog.get(historyRootDir);
+        final List<Hit> hits = new ArrayList<Hit>();
+        for (Map.Entry<String, List<Revision>> entry : matches.entrySet()) {
+            if (hits.size() == maxItems) {
+                break;
+            }
+            final Hit hit = new Hit(entry.getKey());
+            for (Revision revision : entry.getValue()) {
+                final HistoryDescr descr = describe(eventLog, hit.item, revision.timestamp);
+                if (descr != null && isInRange(revision.timestamp, from, to) && isUser(descr, user)) {
+                    hit.revisions.add(descr);
+                }
+            }
+            if (hit.revisions.isEmpty()) {
+                continue;
+            }
+            for (Revision revision : later.get(entry.getKey())) {
+                hit.removed = describe(eventLog, hit.item, revision.timestamp);
+                if (hit.removed != null) {
+                    break;
+                }
+            }
+            hits.add(hit);
+        }
+        return hits;
+    }
+
+    /**
+     * @param terms normalized terms.
+     * @return revisions holding all terms, empty for no terms.
+     */
+    private List<Revision> match(final List<String> terms) {
+        Map<Item, List<int[]>> runs = null;
+        for (String term : terms) {
+            final List<Posting> postings = index.postings.get(term);
+            if (postings == null) {
+                return Collections.emptyList();
+            }
+            final Map<Item, List<int[]>> termRuns = new IdentityHashMap<Item, List<int[]>>();
+            for (Posting posting : postings) {
+                if (runs != null && !runs.containsKey(posting.item)) {
+                    continue;
+                }
+                List<int[]> itemRuns = termRuns.get(posting.item);
+                if (itemRuns == null) {
+                    itemRuns = new ArrayList<int[]>();
+                    termRuns.put(posting.item, itemRuns);
+                }
+                itemRuns.add(new int[] {posting.from, posting.until});
+            }
+            runs = runs == null ? termRuns : intersect(runs, termRuns);
+            if (runs.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+        final List<Revision> result = new ArrayList<Revision>();
+        if (runs == null) {
+            return result;
+        }
+        for (Map.Entry<Item, List<int[]>> entry : runs.entrySet()) {
+            final List<Revision> sequence = entry.getKey().sequence;
+            for (int[] run : entry.getValue()) {
+                for (Revision revision : sequence.subList(run[0], Math.min(run[1], sequence.size()))) {
+                    if (revision.item != null) {
+                        result.add(revision);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param runs1 runs of revisions by item, ascending and disjoint per item.
+     * @param runs2 other runs of revisions by item, ascending and disjoint per item.
+     * @return runs of the revisions in both.
+     */
+    private static Map<Item, List<int[]>> intersect(final Map<Item, List<int[]>> runs1,
+            final Map<Item, List<int[]>> runs2) {
+        final Map<Item, List<int[]>> result = new IdentityHashMap<Item, List<int[]>>();
+        for (Map.Entry<Item, List<int[]>> entry : runs2.entrySet()) {
+            final List<int[]> list1 = runs1.get(entry.getKey());
+            final List<int[]> list2 = entry.getValue();
+            final List<int[]> both = new ArrayList<int[]>();
+            int i = 0;
+            int j = 0;
+            while (i < list1.size() && j < list2.size()) {
+                final int[] run1 = list1.get(i);
+                final int[] run2 = list2.get(j);
+                final int from = Math.max(run1[0], run2[0]);
+                final int until = Math.min(run1[1], run2[1]);
+                if (from < until) {
+                    both.add(new int[] {from, until});
+                }
+                if (run1[1] < run2[1]) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+            if (!both.isEmpty()) {
+                result.put(entry.getKey(), both);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Describes a revision, skipping purged ones.
+     *
+     * @param eventLog knows the revisions once it is read.
+     * @param item path of the item relative to the history root.
+     * @param timestamp revision id.
+     * @return the description, null if the revision does not exist anymore.
+     */
+    private HistoryDescr describe(final HistoryEventLog eventLog, final String item, final String timestamp) {
+        if (eventLog.isReady()) {
+            return eventLog.getRevision(item, timestamp);
+        }
+        final File historyFile = new File(new File(historyRootDir, item + "/" + timestamp),
+                JobConfigHistoryConsts.HISTORY_FILE);
+        if (!historyFile.exists()) {
+            return null;
+        }
+        try {
+            return (HistoryDescr) new XmlFile(historyFile).read();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "unable to read " + historyFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * @param timestamp revision id.
+     * @param from earliest revision id or a prefix of it, null for no limit.
+     * @param to latest revision id or a prefix of it, null for no limit.
+     * @return true if the revision lies in the range.
+     */
+    private static boolean isInRange(final String timestamp, final String from, final String to) {
+        return (from == null || timestamp.compareTo(from) >= 0)
+                && (to == null || timestamp.compareTo(to) <= 0 || timestamp.startsWith(to));
+    }
+
+    /**
+     * @param descr description of a revision.
+     * @param user id or name of a user, null for all users.
+     * @return true if the user saved the revision.
+     */
+    private static boolean isUser(final HistoryDescr descr, final String user) {
+        return user == null || user.equalsIgnoreCase(descr.getUserID()) || user.equalsIgnoreCase(descr.getUser());
+    }
+
+    /**
+     * @param query terms separated by white space.
+     * @return the terms as indexed, words in lower case.
+     */
+    static List<String> normalizeQuery(final String query) {
+        final List<String> terms = new ArrayList<String>();
+        if (query == null) {
+            return terms;
+        }
+        for (String term : query.trim().split("\\s+")) {
+            if (term.isEmpty()) {
+                continue;
+            }
+            if (term.startsWith("/") || term.startsWith("@") || term.indexOf('=') >= 0) {
+                terms.add(term);
+            } else {
+                final Set<String> words = new LinkedHashSet<String>();
+                addWords(term, words);
+                terms.addAll(words);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Extracts the terms of a stored configuration, only words if it is no well-formed XML.
+     *
+     * @param content the configuration.
+     * @return its terms.
+     */
+    static Set<String> extractTerms(final byte[] content) {
+        final Set<String> terms = new LinkedHashSet<String>();
+        try {
+            final XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(content));
+            try {
+                collectTerms(reader, terms);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            LOG.log(Level.FINE, "indexing only the words of a malformed configuration", e);
+            addWords(new String(content, Charset.forName(ENCODING)), terms);
+        }
+        return terms;
+    }
+
+    /**
+     * Like {@link #extractTerms(byte[])}.
+     *
+     * @param content the configuration.
+     * @return its terms.
+     */
+    static Set<String> extractTerms(final String content) {
+        final Set<String> terms = new LinkedHashSet<String>();
+        try {
+            final XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(content));
+            try {
+                collectTerms(reader, terms);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            LOG.log(Level.FINE, "indexing only the words of a malformed configuration", e);
+            addWords(content, terms);
+        }
+        return terms;
+    }
+
+    /**
+     * @param reader parses the configuration.
+     * @param terms collected terms.
+     * @throws XMLStreamException if the configuration is no well-formed XML.
+     */
+    private static void collectTerms(final XMLStreamReader reader, final Set<String> terms)
+            throws XMLStreamException {
+        final StringBuilder path = new StringBuilder();
+        final Deque<Integer> parentLengths = new ArrayDeque<Integer>();
+        final StringBuilder text = new StringBuilder();
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    text.setLength(0);
+                    parentLengths.push(path.length());
+                    path.append('/').append(reader.getLocalName());
+                    terms.add(path.toString());
+                    for (int i = 0; i < reader.getAttributeCount(); i++) {
+                        addValue(path + "/@" + reader.getAttributeLocalName(i),
+                                "@" + reader.getAttributeLocalName(i), reader.getAttributeValue(i), terms);
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                    text.append(reader.getText());
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    addValue(path.toString(), reader.getLocalName(), text.toString().trim(), terms);
+                    text.setLength(0);
+                    path.setLength(parentLengths.pop());
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @param path path of the element or attribute.
+     * @param name name of the element or attribute.
+     * @param value its value.
+     * @param terms collected terms.
+     */
+    private static void addValue(final String path, final String name, final String value, final Set<String> terms) {
+        if (value.isEmpty()) {
+            return;
+        }
+        if (value.length() <= MAX_VALUE_LENGTH) {
+            terms.add(path + "=" + value);
+            terms.add(name + "=" + value);
+        }
+        addWords(value, terms);
+    }
+
+    /**
+     * @param value text to split.
+     * @param terms collected terms.
+     */
+    private static void addWords(final String value, final Set<String> terms) {
+        for (String word : WORD_SEPARATOR.split(value)) {
+            final String trimmed = WORD_PUNCTUATION.matcher(word).replaceAll("");
+            if (trimmed.length() >= MIN_WORD_LENGTH && trimmed.length() <= MAX_WORD_LENGTH) {
+                terms.add(trimmed.toLowerCase(Locale.ENGLISH));
+            }
+        }
+    }
+}
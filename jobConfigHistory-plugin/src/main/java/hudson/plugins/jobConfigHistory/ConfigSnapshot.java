@@ -0,0 +1,186 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import hudson.XmlFile;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.ParseException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * The configuration of all items as of a point in time: for every item the
+ * newest revision at or before it, see
+ * {@link HistoryEventLog#getSnapshot(String, boolean, boolean)}.
+ */
+final class ConfigSnapshot {
+
+    /** Our logger. */
+    private static final Logger LOG = Logger.getLogger(ConfigSnapshot.class.getName());
+
+    /** Smallest value of every field of a revision id without milliseconds, completes shorter points in time. */
+    private static final String MINIMUM = "0000-01-01_00-00-00";
+
+    /** Appended to a point in time without milliseconds, so all revisions of that second are included. */
+    private static final String END_OF_SECOND = "_999";
+
+    /** Encoding of configurations without a stored file. */
+    private static final String ENCODING = "UTF-8";
+
+    /** The history root. */
+    private final File historyRootDir;
+
+    /** Revisions by item. */
+    private final SortedMap<String, HistoryDescr> revisions;
+
+    /**
+     * @param historyRootDir the history root.
+     * @param revisions revisions by item path relative to the history root.
+     */
+    ConfigSnapshot(final File historyRootDir, final SortedMap<String, HistoryDescr> revisions) {
+        this.historyRootDir = historyRootDir;
+        this.revisions = revisions;
+    }
+
+    /**
+     * Takes the snapshot from the event log.
+     *
+     * @param eventLog knows the revisions of all items.
+     * @param historyRootDir the history root.
+     * @param at the point in time, see {@link #toBound(String)}.
+     * @param system whether system configurations may be included.
+     * @param jobs whether jobs may be included.
+     * @return the snapshot, empty while the log is not read.
+     * @throws ParseException if at is no point in time.
+     */
+    static ConfigSnapshot take(final HistoryEventLog eventLog, final File historyRootDir, final String at,
+            final boolean system, final boolean jobs) throws ParseException {
+        return new ConfigSnapshot(historyRootDir, eventLog.getSnapshot(toBound(at), system, jobs));
+    }
+
+    /**
+     * Converts a point in time into an exclusive upper bound of revision ids.
+     * Missing trailing fields are taken as their minimum, e.g.
+     * {@code 2026-09-01_14} as {@code 2026-09-01_14-00-00}, and a point in
+     * time without milliseconds includes all revisions of that second.
+     *
+     * @param at revision id or a prefix of it.
+     * @return the bound.
+     * @throws ParseException if at is no point in time.
+     */
+    static String toBound(final String at) throws ParseException {
+        if (at == null || at.isEmpty()) {
+            throw new ParseException("no point in time given", 0);
+        }
+        final String id;
+        if (at.length() <= MINIMUM.length()) {
+            id = at + MINIMUM.substring(at.length()) + END_OF_SECOND;
+        } else {
+            id = at;
+        }
+        if (id.length() != JobConfigHistoryConsts.REVISION_ID_FORMATTER.length()) {
+            throw new ParseException("not a point in time: " + at, 0);
+        }
+        RevisionIdCodec.parseMillis(id);
+        return id + '\0';
+    }
+
+    /**
+     * @return revisions by item path relative to the history root.
+     */
+    SortedMap<String, HistoryDescr> getRevisions() {
+        return revisions;
+    }
+
+    /**
+     * Streams the configurations of the snapshot as ZIP archive, one entry per
+     * item named like its history directory, e.g. {@code jobs/Test1/config.xml}.
+     * Deleted items keep the name they had.
+     *
+     * @param reader reads stored configurations in every storage mode.
+     * @param out receives the archive, it is finished but not closed.
+     * @return number of entries.
+     * @throws IOException if writing fails.
+     */
+    int writeZip(final FileHistoryDao reader, final OutputStream out) throws IOException {
+        final long start = System.currentTimeMillis();
+        final ZipOutputStream zip = new ZipOutputStream(out);
+        final Set<String> names = new HashSet<String>();
+        int entries = 0;
+        for (Map.Entry<String, HistoryDescr> revision : revisions.entrySet()) {
+            final File revisionDir = new File(historyRootDir,
+                    revision.getKey() + "/" + revision.getValue().getTimestamp());
+            final XmlFile config = reader.getStoredConfig(revisionDir);
+            final String configFileName = RevisionIndexFile.findConfigFileName(revisionDir);
+            if (config.getFile() == null || configFileName == null) {
+                continue;
+            }
+            final String name = toItemName(revision.getKey()) + "/" + configFileName;
+            if (!names.add(name)) {
+                LOG.log(Level.FINE, "skipping {0}, {1} is already included", new Object[] {revisionDir, name});
+                continue;
+            }
+            final ZipEntry entry = new ZipEntry(name);
+            entry.setTime(revision.getValue().parsedMillis());
+            zip.putNextEntry(entry);
+            zip.write(readContent(reader, revisionDir, config));
+            zip.closeEntry();
+            entries++;
+        }
+        zip.finish();
+        LOG.log(Level.FINE, "wrote snapshot of {0} items in {1} ms",
+                new Object[] {entries, System.currentTimeMillis() - start});
+        return entries;
+    }
+
+    /**
+     * @param reader reads stored configurations in every storage mode.
+     * @param revisionDir the revision directory.
+     * @param config its configuration.
+     * @return the stored content, rebuilt if stored as reverse delta.
+     * @throws IOException if reading fails.
+     */
+    private static byte[] readContent(final FileHistoryDao reader, final File revisionDir, final XmlFile config)
+            throws IOException {
+        final File stored = reader.getStoredConfigFile(revisionDir);
+        return stored != null ? FileHistoryDao.readStoredContent(stored) : config.asString().getBytes(ENCODING);
+    }
+
+    /**
+     * @param item path of an item relative to the history root.
+     * @return the path without the marker of a deleted item.
+     */
+    static String toItemName(final String item) {
+        final int marker = item.lastIndexOf(JobConfigHistoryConsts.DELETED_MARKER);
+        return marker < 0 || item.indexOf('/', marker) >= 0 ? item : item.substring(0, marker);
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import hudson.plugins.jobConfigHistory.SideBySideView.Line;
+import java.io.File;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the most recently viewed side-by-side diffs in memory. Revisions
+ * never change once written, so a diff stays valid until one of its
+ * revisions is purged or the history of its item moves, which is passed on
+ * by {@link RevisionIndexCache}. The cache is bounded by the estimated size
+ * of the cached lines.
+ */
+final class DiffCache {
+
+    /** Singleton. */
+    static final DiffCache INSTANCE = new DiffCache(JobConfigHistoryConsts.DIFF_CACHE_SIZE);
+
+    /** Estimated bytes of a line without its texts. */
+    private static final int LINE_OVERHEAD = 160;
+
+    /**
+     * Cached lines of one diff.
+     */
+    private static final class Entry {
+
+        /** History directory of the item. */
+        private final File itemHistoryDir;
+
+        /** The unmodifiable lines. */
+        private final List<Line> lines;
+
+        /** Estimated size in bytes. */
+        private final long size;
+
+        /**
+         * @param itemHistoryDir history directory of the item.
+         * @param lines the unmodifiable lines.
+         * @param size estimated size in bytes.
+         */
+        Entry(final File itemHistoryDir, final List<Line> lines, final long size) {
+            this.itemHistoryDir = itemHistoryDir;
+            this.lines = lines;
+            this.size = size;
+        }
+    }
+
+    /** Maximum estimated size of all entries in bytes. */
+    private final long capacity;
+
+    /** Diffs by key, least recently used first. Guarded by this. */
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    /** Estimated size of all entries in bytes. Guarded by this. */
+    private long size;
+
+    /** Counts invalidations, so diffs of purged revisions are not cached. Guarded by this. */
+    private long modifications;
+
+    /** Number of diffs served from the cache. */
+    private final AtomicLong hitCount = new AtomicLong();
+
+    /** Number of diffs not found in the cache. */
+    private final AtomicLong missCount = new AtomicLong();
+
+    /** Number of diffs dropped to stay within the capacity. */
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * @param capacity maximum estimated size of all entries in bytes.
+     */
+    DiffCache(final long capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the cached lines of a diff and counts the hit or miss.
+     *
+     * @param itemHistoryDir history directory of the item.
+     * @param timestamp1 first revision.
+     * @param timestamp2 second revision.
+     * @return unmodifiable lines or null if not cached.
+     */
+    synchronized List<Line> get(final File itemHistoryDir, final String timestamp1, final String timestamp2) {
+        final Entry entry = entries.get(key(itemHistoryDir, timestamp1, timestamp2));
+        if (entry == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return entry.lines;
+    }
+
+    /**
+     * Returns a stamp to pass to {@link #put(File, String, String, List, long)},
+     * taken before reading the revisions.
+     *
+     * @return the current stamp.
+     */
+    synchronized long stamp() {
+        return modifications;
+    }
+
+    /**
+     * Caches the lines of a diff unless one of the item's revisions was
+     * purged since reading started, evicting the least recently used diffs
+     * to stay within the capacity.
+     *
+     * @param itemHistoryDir history directory of the item.
+     * @param timestamp1 first revision.
+     * @param timestamp2 second revision.
+     * @param lines the computed lines.
+     * @param stamp result of {@link #stamp()} before reading.
+     * @return the unmodifiable lines.
+     */
+    synchronized List<Line> put(final File itemHistoryDir, final String timestamp1, final String timestamp2,
+            final List<Line> lines, final long stamp) {
+        final List<Line> cached = Collections.unmodifiableList(lines);
+        final long entrySize = estimateSize(lines);
+        if (stamp != modifications || entrySize > capacity) {
+            return cached;
+        }
+        final Entry previous = entries.put(key(itemHistoryDir, timestamp1, timestamp2),
+                new Entry(itemHistoryDir, cached, entrySize));
+        if (previous != null) {
+            size -= previous.size;
+        }
+        size += entrySize;
+        final Iterator<Entry> eldest = entries.values().iterator();
+        while (size > capacity && eldest.hasNext()) {
+            size -= eldest.next().size;
+            eldest.remove();
+            evictionCount.incrementAndGet();
+        }
+        return cached;
+    }
+
+    /**
+     * Forgets all diffs of an item and of the items nested in it, e.g. because
+     * one of its revisions was purged or its history was moved.
+     *
+     * @param itemHistoryDir history directory of the item.
+     */
+    synchronized void remove(final File itemHistoryDir) {
+        modifications++;
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            final Entry entry = iterator.next();
+            if (PluginUtils.isBelow(entry.itemHistoryDir, itemHistoryDir)) {
+                size -= entry.size;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return number of cached diffs.
+     */
+    synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * @return estimated size of all cached diffs in bytes.
+     */
+    synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * @return number of diffs served from the cache.
+     */
+    long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return number of diffs not found in the cache.
+     */
+    long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return number of diffs dropped to stay within the capacity.
+     */
+    long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * @param itemHistoryDir history directory of the item.
+     * @param timestamp1 first revision.
+     * @param timestamp2 second revision.
+     * @return the key of the diff.
+     */
+    private static String key(final File itemHistoryDir, final String timestamp1, final String timestamp2) {
+        return itemHistoryDir.getPath() + '\0' + timestamp1 + '\0' + timestamp2;
+    }
+
+    /**
+     * Estimates the memory held by diff lines, two bytes per character plus a fixed overhead per line.
+     *
+     * @param lines to measure.
+     * @return estimated size in bytes.
+     */
+    static long estimateSize(final List<Line> lines) {
+        long estimate = 0;
+        for (Line line : lines) {
+            estimate += LINE_OVERHEAD + 2L * (length(line.getLeft().getText()) + length(line.getRight().getText()));
+        }
+        return estimate;
+    }
+
+    /**
+     * @param text of a line or null.
+     * @return its length, 0 for null.
+     */
+    private static int length(final String text) {
+        return text == null ? 0 : text.length();
+    }
+}
@@ -27,6 +27,7 @@ import hudson.Extension;
 import hudson.FilePath;
 import hudson.Util;
 import hudson.XmlFile;
+import hudson.init.InitMilestone;
 import hudson.maven.MavenModule;
 import hudson.model.AbstractItem;
 import hudson.model.Item;
@@ -39,7 +40,8 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -47,14 +49,19 @@ import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.List;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
 import java.util.logging.Level;
 import static java.util.logging.Level.FINEST;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import jenkins.model.Jenkins;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 
 /**
  * Defines some helper functions needed by {@link JobConfigHistoryJobListener} and
@@ -69,8 +76,65 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
     /** Our logger. */
     private static final Logger LOG = Logger.getLogger(FileHistoryDao.class.getName());
 
-    /** milliseconds between attempts to save a new entry. */
-    private static final int CLASH_SLEEP_TIME = 500;
+    /**
+     * How new revisions are stored and who saves them. Instances are immutable, every setting returns a copy.
+     */
+    static final class Options {
+
+        /** Plain revisions saved by the user passed to the constructor. */
+        static final Options DEFAULT = new Options(false, false, false);
+
+        /** Should new revisions only hold a reference into the blob store? */
+        private final boolean deduplicateRevisions;
+
+        /** Should new revisions be stored GZIP compressed? */
+        private final boolean compressRevisions;
+
+        /** Should the acting user be resolved for every operation, see {@link FileHistoryDao#getCurrentUser()}? */
+        private final boolean userPerOperation;
+
+        /**
+         * @param deduplicateRevisions should new revisions only hold a reference into the blob store?
+         * @param compressRevisions should new revisions be stored GZIP compressed?
+         * @param userPerOperation should the acting user be resolved for every operation?
+         */
+        private Options(final boolean deduplicateRevisions, final boolean compressRevisions,
+                final boolean userPerOperation) {
+            this.deduplicateRevisions = deduplicateRevisions;
+            this.compressRevisions = compressRevisions;
+            this.userPerOperation = userPerOperation;
+        }
+
+        /**
+         * @param deduplicate should new revisions only hold a reference into the blob store?
+         * @return a copy with the setting changed.
+         */
+        Options withDeduplicateRevisions(final boolean deduplicate) {
+            return new Options(deduplicate, compressRevisions, userPerOperation);
+        }
+
+        /**
+         * @param compress should new revisions be stored GZIP compressed?
+         * @return a copy with the setting changed.
+         */
+        Options withCompressRevisions(final boolean compress) {
+            return new Options(deduplicateRevisions, compress, userPerOperation);
+        }
+
+        /**
+         * @param perOperation should the acting user be resolved for every operation?
+         * @return a copy with the setting changed.
+         */
+        Options withUserPerOperation(final boolean perOperation) {
+            return new Options(deduplicateRevisions, compressRevisions, perOperation);
+        }
+    }
+
+    /**
+     * Serializes writes to the history of one item, keyed by its history directory. Shared by all
+     * instances, as each holds its own settings only.
+     */
+    private static final StripedLock HISTORY_LOCKS = new StripedLock(JobConfigHistoryConsts.HISTORY_LOCK_STRIPES);
 
     /** Base location for all files. */
     private final File historyRootDir;
@@ -81,12 +145,30 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
     /** Currently logged in user. */
     private final User currentUser;
 
+    /** Whether the acting user is resolved for every operation instead of using {@link #currentUser}. */
+    private final boolean userPerOperation;
+
     /** Maximum numbers which should exist. */
     private final int maxHistoryEntries;
 
     /** Should we save duplicate entries? */
     private final boolean saveDuplicates;
 
+    /** Should new revisions be stored in the {@link BlobStore}? */
+    private final boolean deduplicateRevisions;
+
+    /** Should new revisions be stored GZIP compressed? */
+    private final boolean compressRevisions;
+
+    /** Shared storage of deduplicated revisions, null without history root. */
+    private final BlobStore blobStore;
+
+    /** Log of all history events, null without history root. */
+    private final HistoryEventLog eventLog;
+
+    /** Inverted index of all stored configurations, null without history root. */
+    private final ConfigSearchIndex searchIndex;
+
     public FileHistoryDao() {
         this(null, null, null, 0, false);
     }
@@ -100,11 +182,32 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
      * @param saveDuplicates should we save duplicate entries?
      */
     FileHistoryDao(final File historyRootDir, final File jenkinsHome, final User currentUser, final int maxHistoryEntries, final boolean saveDuplicates) {
+        this(historyRootDir, jenkinsHome, currentUser, maxHistoryEntries, saveDuplicates, Options.DEFAULT);
+    }
+
+    /**
+     * Sets the parameters for the filehistorydao class
+     * @param historyRootDir where to store history
+     * @param jenkinsHome JENKKINS_HOME
+     * @param currentUser of operation, ignored if {@link Options#withUserPerOperation(boolean)} is set
+     * @param maxHistoryEntries max number of history entries
+     * @param saveDuplicates should we save duplicate entries?
+     * @param options how new revisions are stored and who saves them.
+     */
+    FileHistoryDao(final File historyRootDir, final File jenkinsHome, final User currentUser, final int maxHistoryEntries,
+            final boolean saveDuplicates, final Options options) {
         this.historyRootDir = historyRootDir;
         this.jenkinsHome = jenkinsHome;
         this.currentUser = currentUser;
+        this.userPerOperation = options.userPerOperation;
         this.maxHistoryEntries = maxHistoryEntries;
         this.saveDuplicates = saveDuplicates;
+        this.deduplicateRevisions = options.deduplicateRevisions;
+        this.compressRevisions = options.compressRevisions;
+        this.blobStore = historyRootDir == null
+                ? null : new BlobStore(new File(historyRootDir, JobConfigHistoryConsts.BLOBS_DIR));
+        this.eventLog = historyRootDir == null ? null : HistoryEventLog.get(historyRootDir);
+        this.searchIndex = historyRootDir == null ? null : ConfigSearchIndex.get(historyRootDir, this);
     }
 
     /**
@@ -138,11 +241,12 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
      *             if writing the history fails.
      */
     void createHistoryXmlFile(final Calendar timestamp, final File timestampedDir, final String operation) throws IOException {
+        final User actingUser = getCurrentUser();
         final String user;
         final String userId;
-        if (currentUser != null) {
-            user = currentUser.getFullName();
-            userId = currentUser.getId();
+        if (actingUser != null) {
+            user = actingUser.getFullName();
+            userId = actingUser.getId();
         } else {
             user = "Anonym";
             userId = Messages.ConfigHistoryListenerHelper_anonymous();
@@ -152,6 +256,77 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
         final HistoryDescr myDescr = new HistoryDescr(user, userId, operation, getIdFormatter().format(
                 timestamp.getTime()));
         historyDescription.write(myDescr);
+        RevisionIndexCache.INSTANCE.add(timestampedDir, myDescr);
+        RevisionIndexFile.added(timestampedDir, myDescr);
+        if (eventLog != null) {
+            eventLog.revisionAdded(timestampedDir, myDescr);
+        }
+    }
+
+    /**
+     * Returns the inverted index of all stored configurations, see {@link ConfigSearchIndex}.
+     *
+     * @return the search index or null without history root.
+     */
+    ConfigSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * Returns the log of all history events, see {@link HistoryEventLog}.
+     *
+     * @return the event log or null without history root.
+     */
+    HistoryEventLog getEventLog() {
+        return eventLog;
+    }
+
+    /**
+     * @return whether the event log is read, so {@link #getLatestRevision(XmlFile, long)} can answer.
+     */
+    boolean isEventLogReady() {
+        return eventLog != null && eventLog.isReady();
+    }
+
+    /**
+     * Returns the newest revision of a configuration taken before a point in
+     * time from the event log, without file I/O once the log is read.
+     *
+     * @param xmlFile the configuration.
+     * @param before milliseconds since the epoch, exclusive, {@link Long#MAX_VALUE} for the newest revision.
+     * @return the revision, null if there is none or the event log is not read.
+     */
+    HistoryDescr getLatestRevision(final XmlFile xmlFile, final long before) {
+        return eventLog == null ? null : eventLog.getLatestBefore(getHistoryDir(xmlFile.getFile()), before);
+    }
+
+    /**
+     * Records in the event log and the search index that the history of an item was moved.
+     *
+     * @param oldItemDir the former history directory.
+     * @param newItemDir the new history directory.
+     */
+    private void recordMove(final File oldItemDir, final File newItemDir) {
+        if (eventLog != null) {
+            eventLog.moved(oldItemDir, newItemDir);
+        }
+        if (searchIndex != null) {
+            searchIndex.moved(oldItemDir, newItemDir);
+        }
+    }
+
+    /**
+     * Returns the user acting in the current operation. A DAO shared by all operations asks Jenkins, stays
+     * anonymous while Jenkins is still initializing though.
+     *
+     * @return the user or null for anonymous operations.
+     */
+    User getCurrentUser() {
+        if (!userPerOperation) {
+            return currentUser;
+        }
+        final Jenkins jenkins = Jenkins.getInstance();
+        return jenkins != null && jenkins.getInitLevel() == InitMilestone.COMPLETED ? User.current() : null;
     }
 
     /**
@@ -194,6 +369,129 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
         }
     }
 
+    /**
+     * Saves the content of a configuration file into {@literal timestampedDir}, either as plain or compressed
+     * file or as reference into the blob store.
+     *
+     * @param fileName
+     *            name of the configuration file.
+     * @param content
+     *            of the configuration file.
+     * @param timestampedDir
+     *            the directory where to save the content.
+     * @throws IOException
+     *             if writing the content fails.
+     */
+    void storeConfigContent(final String fileName, final byte[] content, final File timestampedDir) throws IOException {
+        if (deduplicateRevisions) {
+            final String digest = blobStore.put(content, compressRevisions);
+            FileUtils.writeStringToFile(
+                    new File(timestampedDir, fileName + JobConfigHistoryConsts.BLOB_REFERENCE_SUFFIX), digest, "US-ASCII");
+        } else if (compressRevisions) {
+            writeCompressed(content, new File(timestampedDir, fileName + JobConfigHistoryConsts.COMPRESSED_SUFFIX));
+        } else {
+            FileUtils.writeByteArrayToFile(new File(timestampedDir, fileName), content);
+        }
+        recordStoredConfig(fileName, timestampedDir);
+        if (searchIndex != null) {
+            searchIndex.revisionStored(timestampedDir, content);
+        }
+    }
+
+    /**
+     * Records the name of the stored configuration file in the {@link RevisionIndexFile} and the
+     * {@link RevisionIndexCache}, so listings know the revision holds a configuration.
+     *
+     * @param fileName
+     *            name of the configuration file.
+     * @param timestampedDir
+     *            the directory holding the configuration.
+     */
+    private void recordStoredConfig(final String fileName, final File timestampedDir) {
+        RevisionIndexFile.configStored(timestampedDir, fileName);
+        final SortedMap<String, HistoryDescr> cached = RevisionIndexCache.INSTANCE.get(timestampedDir.getParentFile());
+        final HistoryDescr historyDescr = cached == null ? null : cached.get(timestampedDir.getName());
+        if (historyDescr != null) {
+            RevisionIndexCache.INSTANCE.add(timestampedDir, new IndexedHistoryDescr(historyDescr, fileName));
+        }
+    }
+
+    /**
+     * Saves the digest of the stored configuration next to it and remembers it as the newest of its item.
+     *
+     * @param digest
+     *            hex encoded digest of the configuration.
+     * @param timestampedDir
+     *            the directory holding the configuration.
+     * @throws IOException
+     *             if writing the digest fails.
+     */
+    void storeDigest(final String digest, final File timestampedDir) throws IOException {
+        FileUtils.writeStringToFile(new File(timestampedDir, JobConfigHistoryConsts.DIGEST_FILE), digest, "US-ASCII");
+        LatestDigestCache.INSTANCE.put(timestampedDir, digest);
+        RevisionIndexFile.digestStored(timestampedDir, digest);
+    }
+
+    /**
+     * Returns the lock serializing writes to the history of one item.
+     *
+     * @param itemHistoryDir
+     *            history directory of the item.
+     * @return the lock.
+     */
+    static Lock getHistoryLock(final File itemHistoryDir) {
+        return HISTORY_LOCKS.get(itemHistoryDir);
+    }
+
+    /**
+     * Writes GZIP compressed content.
+     *
+     * @param content
+     *            to compress.
+     * @param target
+     *            the compressed file.
+     * @throws IOException
+     *             if writing fails.
+     */
+    static void writeCompressed(final byte[] content, final File target) throws IOException {
+        final OutputStream out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(target)));
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads the content of a stored configuration file, decompressing it if necessary. A plain file compressed
+     * meanwhile by the {@link HistoryCompressor} is read from its compressed copy.
+     *
+     * @param storedFile
+     *            plain or compressed configuration file.
+     * @return the raw content.
+     * @throws IOException
+     *             if reading fails.
+     */
+    static byte[] readStoredContent(final File storedFile) throws IOException {
+        if (!storedFile.getName().endsWith(JobConfigHistoryConsts.COMPRESSED_SUFFIX)) {
+            try {
+                return FileUtils.readFileToByteArray(storedFile);
+            } catch (FileNotFoundException e) {
+                final File compressed = new File(storedFile.getPath() + JobConfigHistoryConsts.COMPRESSED_SUFFIX);
+                if (!compressed.exists()) {
+                    throw e;
+                }
+                return readStoredContent(compressed);
+            }
+        }
+        final InputStream in = new GZIPInputStream(new FileInputStream(storedFile));
+        try {
+            return IOUtils.toByteArray(in);
+        } finally {
+            in.close();
+        }
+    }
+
     /**
      * Returns a simple formatter used for creating timestamped directories. We create this every time as
      * {@link SimpleDateFormat} is <b>not</b> threadsafe.
@@ -201,40 +499,39 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
      * @return the idFormatter
      */
     static SimpleDateFormat getIdFormatter() {
-        return new SimpleDateFormat(JobConfigHistoryConsts.ID_FORMATTER);
+        return new SimpleDateFormat(JobConfigHistoryConsts.REVISION_ID_FORMATTER);
     }
 
     /**
-     * Creates the new history dir, loops until "enough" time has passed if two events are too near.
+     * Creates the new history dir. If two events are too near, the next free id is taken, see
+     * {@link RevisionIdCodec#reserve(File, long)}.
      *
      * @param itemHistoryDir the basedir for history items.
      * @param timestampHolder of the event.
      * @return new directory.
      */
-    @SuppressWarnings("SleepWhileInLoop")
     static File createNewHistoryDir(final File itemHistoryDir, final AtomicReference<Calendar> timestampHolder) {
-        Calendar timestamp;
-        File f;
-        while (true) {
-            timestamp = new GregorianCalendar();
-            f = new File(itemHistoryDir, getIdFormatter().format(timestamp.getTime()));
-            if (f.isDirectory()) {
-                LOG.log(Level.FINE, "clash on {0}, will wait a moment", f);
-                try {
-                    Thread.sleep(CLASH_SLEEP_TIME);
-                } catch (InterruptedException x) {
-                    throw new RuntimeException(x);
-                }
-            } else {
-                timestampHolder.set(timestamp);
-                break;
-            }
-        }
         // mkdirs sometimes fails although the directory exists afterwards,
         // so check for existence as well and just be happy if it does.
-        if (!(f.mkdirs() || f.exists())) {
-            throw new RuntimeException("Could not create rootDir " + f);
+        if (!(itemHistoryDir.mkdirs() || itemHistoryDir.exists())) {
+            throw new RuntimeException("Could not create " + itemHistoryDir);
         }
+        long millis = RevisionIdCodec.reserve(itemHistoryDir, System.currentTimeMillis());
+        File f = new File(itemHistoryDir, RevisionIdCodec.format(millis));
+        // mkdir is atomic, the id may have been taken before a restart with the clock set back.
+        while (!f.mkdir()) {
+            if (!f.isDirectory()) {
+                throw new RuntimeException("Could not create rootDir " + f);
+            }
+            LOG.log(Level.FINE, "clash on {0}, taking the next id", f);
+            millis = RevisionIdCodec.reserve(itemHistoryDir, millis + 1);
+            f = new File(itemHistoryDir, RevisionIdCodec.format(millis));
+        }
+        final Calendar timestamp = new GregorianCalendar();
+        timestamp.setTimeInMillis(millis);
+        timestampHolder.set(timestamp);
+        // the new directory is the newest revision now, its digest is stored with the configuration.
+        LatestDigestCache.INSTANCE.remove(itemHistoryDir);
         return f;
     }
 
@@ -246,7 +543,13 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
     @Override
     public void createNewItem(final Item item) {
         final AbstractItem aItem = (AbstractItem) item;
-        createNewHistoryEntryAndCopyConfig(aItem.getConfigFile(), Messages.ConfigHistoryListenerHelper_CREATED());
+        final Lock lock = HISTORY_LOCKS.get(getHistoryDir(aItem.getConfigFile().getFile()));
+        lock.lock();
+        try {
+            createNewHistoryEntryAndCopyConfig(aItem.getConfigFile(), Messages.ConfigHistoryListenerHelper_CREATED());
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -256,12 +559,42 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
      * @param operation operation
      */
     private void createNewHistoryEntryAndCopyConfig(final XmlFile configFile, final String operation) {
+        final byte[] content = readContent(configFile);
+        createNewHistoryEntryAndCopyConfig(configFile, content, BlobStore.digest(content), operation);
+    }
+
+    /**
+     * Creates a new history entry and stores the already read config.xml in a timestamped dir.
+     *
+     * @param configFile to copy.
+     * @param content of configFile.
+     * @param digest of content.
+     * @param operation operation
+     */
+    private void createNewHistoryEntryAndCopyConfig(final XmlFile configFile, final byte[] content,
+            final String digest, final String operation) {
         final File timestampedDir = createNewHistoryEntry(configFile, operation);
         try {
-            copyConfigFile(configFile.getFile(), timestampedDir);
+            storeConfigContent(configFile.getFile().getName(), content, timestampedDir);
+            storeDigest(digest, timestampedDir);
         } catch (IOException ex) {
             throw new RuntimeException("Unable to copy " + configFile, ex);
         }
+        HistoryChangeTracker.INSTANCE.record(timestampedDir);
+    }
+
+    /**
+     * Reads the current content of a configuration file.
+     *
+     * @param configFile to read.
+     * @return the raw content.
+     */
+    private static byte[] readContent(final XmlFile configFile) {
+        try {
+            return FileUtils.readFileToByteArray(configFile.getFile());
+        } catch (IOException ex) {
+            throw new RuntimeException("Unable to read " + configFile, ex);
+        }
     }
 
     /**
@@ -272,8 +605,16 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
      */
     @Override
     public void saveItem(final XmlFile file) {
-        if (checkDuplicate(file)) {
-            createNewHistoryEntryAndCopyConfig(file, Messages.ConfigHistoryListenerHelper_CHANGED());
+        final Lock lock = HISTORY_LOCKS.get(getHistoryDir(file.getFile()));
+        lock.lock();
+        try {
+            final byte[] content = readContent(file);
+            final String digest = BlobStore.digest(content);
+            if (checkDuplicate(file, digest)) {
+                createNewHistoryEntryAndCopyConfig(file, content, digest, Messages.ConfigHistoryListenerHelper_CHANGED());
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -285,15 +626,26 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
     @Override
     public void deleteItem(final Item item) {
         final AbstractItem aItem = (AbstractItem) item;
-        createNewHistoryEntry(aItem.getConfigFile(), Messages.ConfigHistoryListenerHelper_DELETED());
         final File configFile = aItem.getConfigFile().getFile();
         final File currentHistoryDir = getHistoryDir(configFile);
-        final SimpleDateFormat buildDateFormat = new SimpleDateFormat("yyyyMMdd_HHmmss_SSS");
-        final String timestamp = buildDateFormat.format(new Date());
-        final String deletedHistoryName = item.getName() + JobConfigHistoryConsts.DELETED_MARKER + timestamp;
-        final File deletedHistoryDir = new File(currentHistoryDir.getParentFile(), deletedHistoryName);
-        if (!currentHistoryDir.renameTo(deletedHistoryDir)) {
-            LOG.log(Level.WARNING, "unable to rename deleted history dir to: {0}", deletedHistoryDir);
+        final Lock lock = HISTORY_LOCKS.get(currentHistoryDir);
+        lock.lock();
+        try {
+            createNewHistoryEntry(aItem.getConfigFile(), Messages.ConfigHistoryListenerHelper_DELETED());
+            final SimpleDateFormat buildDateFormat = new SimpleDateFormat("yyyyMMdd_HHmmss_SSS");
+            final String timestamp = buildDateFormat.format(new Date());
+            final String deletedHistoryName = item.getName() + JobConfigHistoryConsts.DELETED_MARKER + timestamp;
+            final File deletedHistoryDir = new File(currentHistoryDir.getParentFile(), deletedHistoryName);
+            RevisionIdCodec.forget(currentHistoryDir);
+            RevisionIndexCache.INSTANCE.remove(currentHistoryDir);
+            if (currentHistoryDir.renameTo(deletedHistoryDir)) {
+                HistoryChangeTracker.INSTANCE.record(deletedHistoryDir);
+                recordMove(currentHistoryDir, deletedHistoryDir);
+            } else {
+                LOG.log(Level.WARNING, "unable to rename deleted history dir to: {0}", deletedHistoryDir);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -307,30 +659,41 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
     @Override
     public void renameItem(final Item item, final String oldName, final String newName) {
         final AbstractItem aItem = (AbstractItem) item;
-        final String onRenameDesc = " old name: " + oldName + ", new name: " + newName;
-        if (historyRootDir != null) {
-            final File configFile = aItem.getConfigFile().getFile();
-            final File currentHistoryDir = getHistoryDir(configFile);
-            final File historyParentDir = currentHistoryDir.getParentFile();
-            final File oldHistoryDir = new File(historyParentDir, oldName);
-            if (oldHistoryDir.exists()) {
-                final FilePath fp = new FilePath(oldHistoryDir);
-                // catch all exceptions so Hudson can continue with other rename tasks.
-                try {
-                    fp.copyRecursiveTo(new FilePath(currentHistoryDir));
-                    fp.deleteRecursive();
-                    LOG.log(FINEST, "completed move of old history files on rename.{0}", onRenameDesc);
-                } catch (IOException e) {
-                    final String ioExceptionStr = "unable to move old history on rename." + onRenameDesc;
-                    LOG.log(Level.SEVERE, ioExceptionStr, e);
-                } catch (InterruptedException e) {
-                    final String irExceptionStr = "interrupted while moving old history on rename." + onRenameDesc;
-                    LOG.log(Level.WARNING, irExceptionStr, e);
+        final File configFile = aItem.getConfigFile().getFile();
+        final File currentHistoryDir = getHistoryDir(configFile);
+        final File historyParentDir = currentHistoryDir.getParentFile();
+        final File oldHistoryDir = new File(historyParentDir, oldName);
+        final Lock[] locks = HISTORY_LOCKS.get(currentHistoryDir, oldHistoryDir);
+        StripedLock.lockAll(locks);
+        try {
+            final String onRenameDesc = " old name: " + oldName + ", new name: " + newName;
+            if (historyRootDir != null) {
+                if (oldHistoryDir.exists()) {
+                    RevisionIdCodec.forget(oldHistoryDir);
+                    RevisionIndexCache.INSTANCE.remove(oldHistoryDir);
+                    RevisionIndexCache.INSTANCE.remove(currentHistoryDir);
+                    final FilePath fp = new FilePath(oldHistoryDir);
+                    // catch all exceptions so Hudson can continue with other rename tasks.
+                    try {
+                        fp.copyRecursiveTo(new FilePath(currentHistoryDir));
+                        fp.deleteRecursive();
+                        recordMove(oldHistoryDir, currentHistoryDir);
+                        HistoryChangeTracker.INSTANCE.record(currentHistoryDir);
+                        LOG.log(FINEST, "completed move of old history files on rename.{0}", onRenameDesc);
+                    } catch (IOException e) {
+                        final String ioExceptionStr = "unable to move old history on rename." + onRenameDesc;
+                        LOG.log(Level.SEVERE, ioExceptionStr, e);
+                    } catch (InterruptedException e) {
+                        final String irExceptionStr = "interrupted while moving old history on rename." + onRenameDesc;
+                        LOG.log(Level.WARNING, irExceptionStr, e);
+                    }
                 }
-            }
 
+            }
+            createNewHistoryEntryAndCopyConfig(aItem.getConfigFile(), Messages.ConfigHistoryListenerHelper_RENAMED());
+        } finally {
+            StripedLock.unlockAll(locks);
         }
-        createNewHistoryEntryAndCopyConfig(aItem.getConfigFile(), Messages.ConfigHistoryListenerHelper_RENAMED());
     }
 
     /**
@@ -349,24 +712,155 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
     }
 
     /**
-     * Returns a sorted map of all revisions for this configFile.
+     * Returns a sorted map of all revisions for this configFile, see {@link RevisionIndexCache}.
      * @param historiesDir to search.
      * @param configFile for exception
-     * @return sorted map
+     * @return unmodifiable sorted map
      */
     private SortedMap<String, HistoryDescr> getRevisions(final File historiesDir, final File configFile) {
-        final File[] historyDirsOfItem = historiesDir.listFiles(HistoryFileFilter.INSTANCE);
+        final SortedMap<String, HistoryDescr> cached = RevisionIndexCache.INSTANCE.get(historiesDir);
+        if (cached != null) {
+            return cached;
+        }
+        final long stamp = RevisionIndexCache.INSTANCE.stamp();
+        if (!historiesDir.isDirectory()) {
+            return Collections.unmodifiableSortedMap(new TreeMap<String, HistoryDescr>());
+        }
+        return RevisionIndexCache.INSTANCE.put(historiesDir, readRevisions(historiesDir), stamp);
+    }
+
+    /**
+     * Reads all revisions of an item from its {@link RevisionIndexFile}, which is rebuilt if it is missing or
+     * stale. If the sidecar could not be written, the revisions load their
+     * {@link JobConfigHistoryConsts#HISTORY_FILE} lazily.
+     *
+     * @param historiesDir history directory of the item.
+     * @return revisions by timestamp.
+     */
+    private TreeMap<String, HistoryDescr> readRevisions(final File historiesDir) {
+        SortedMap<String, RevisionIndexFile.Entry> entries = RevisionIndexFile.read(historiesDir);
+        if (entries == null) {
+            entries = rebuildRevisionIndex(historiesDir);
+        }
+        if (entries != null) {
+            return RevisionIndexFile.toRevisions(entries);
+        }
         final TreeMap<String, HistoryDescr> map = new TreeMap<String, HistoryDescr>();
-        if (historyDirsOfItem == null) {
-            return map;
-        } else {
+        final File[] historyDirsOfItem = historiesDir.listFiles(HistoryFileFilter.INSTANCE);
+        if (historyDirsOfItem != null) {
             for (File historyDir : historyDirsOfItem) {
-                final XmlFile historyXml = getHistoryXmlFile(historyDir);
-                final LazyHistoryDescr historyDescription = new LazyHistoryDescr(historyXml);
-                map.put(historyDir.getName(), historyDescription);
+                map.put(historyDir.getName(), new LazyHistoryDescr(getHistoryXmlFile(historyDir), historyDir.getName()));
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Returns the revisions of an item if they are cached or its {@link RevisionIndexFile} is current. Unlike
+     * {@link #getRevisions(File, File)} this never writes the sidecar, so purging does not create one.
+     *
+     * @param historiesDir history directory of the item.
+     * @return unmodifiable sorted map or null if neither is available.
+     */
+    private SortedMap<String, HistoryDescr> getIndexedRevisions(final File historiesDir) {
+        final SortedMap<String, HistoryDescr> cached = RevisionIndexCache.INSTANCE.get(historiesDir);
+        if (cached != null) {
+            return cached;
+        }
+        final long stamp = RevisionIndexCache.INSTANCE.stamp();
+        final SortedMap<String, RevisionIndexFile.Entry> entries = RevisionIndexFile.read(historiesDir);
+        if (entries == null) {
+            return null;
+        }
+        return RevisionIndexCache.INSTANCE.put(historiesDir, RevisionIndexFile.toRevisions(entries), stamp);
+    }
+
+    /**
+     * Returns one revision of an item if it is known from {@link #getIndexedRevisions(File)}.
+     *
+     * @param historiesDir history directory of the item.
+     * @param identifier timestamp of the revision.
+     * @return the revision or null if it is unknown.
+     */
+    private HistoryDescr getIndexedRevision(final File historiesDir, final String identifier) {
+        final SortedMap<String, HistoryDescr> revisions = getIndexedRevisions(historiesDir);
+        return revisions == null ? null : revisions.get(identifier);
+    }
+
+    /**
+     * Rebuilds the {@link RevisionIndexFile} of an item unless a write to its history made it current meanwhile.
+     *
+     * @param historiesDir history directory of the item.
+     * @return entries of the sidecar or null if it could not be written.
+     */
+    private SortedMap<String, RevisionIndexFile.Entry> rebuildRevisionIndex(final File historiesDir) {
+        final Lock lock = HISTORY_LOCKS.get(historiesDir);
+        lock.lock();
+        try {
+            final SortedMap<String, RevisionIndexFile.Entry> current = RevisionIndexFile.read(historiesDir);
+            return current != null ? current : RevisionIndexFile.rebuild(historiesDir);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "unable to rebuild the revision index of " + historiesDir, e);
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Brings the event log, the search index, the {@link RevisionIndexFile} and the caches of an item in line
+     * with its history directory after it was changed behind the back of the plugin, see
+     * {@link HistoryRootWatcher}. A missing directory forgets the item.
+     *
+     * @param itemHistoryDir history directory of the item.
+     * @return true if the indexes of the item had to be updated.
+     */
+    boolean resyncItem(final File itemHistoryDir) {
+        final Lock lock = HISTORY_LOCKS.get(itemHistoryDir);
+        lock.lock();
+        try {
+            boolean changed = eventLog != null && eventLog.resync(itemHistoryDir) > 0;
+            if (searchIndex != null && searchIndex.resync(itemHistoryDir) > 0) {
+                changed = true;
+            }
+            final File indexFile = new File(itemHistoryDir, JobConfigHistoryConsts.REVISION_INDEX_FILE);
+            final SortedMap<String, RevisionIndexFile.Entry> entries = RevisionIndexFile.read(itemHistoryDir);
+            if (indexFile.exists()
+                    && (entries == null || !isCurrent(RevisionIndexFile.toRevisions(entries), itemHistoryDir))) {
+                changed = true;
+                if (!indexFile.delete()) {
+                    LOG.log(Level.WARNING, "unable to delete stale {0}", indexFile);
+                }
+            }
+            final SortedMap<String, HistoryDescr> cached = RevisionIndexCache.INSTANCE.get(itemHistoryDir);
+            if (changed || cached != null && !isCurrent(cached, itemHistoryDir)) {
+                RevisionIndexCache.INSTANCE.remove(itemHistoryDir);
+                LatestDigestCache.INSTANCE.remove(itemHistoryDir);
+                changed = true;
+            }
+            return changed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param revisions known revisions of an item.
+     * @param itemHistoryDir history directory of the item.
+     * @return true if every revision directory is known and every known revision exists.
+     */
+    private static boolean isCurrent(final SortedMap<String, HistoryDescr> revisions, final File itemHistoryDir) {
+        final File[] revisionDirs = itemHistoryDir.listFiles(HistoryFileFilter.INSTANCE);
+        int count = 0;
+        if (revisionDirs != null) {
+            for (File revisionDir : revisionDirs) {
+                if (!revisions.containsKey(revisionDir.getName())) {
+                    return false;
+                }
+                count++;
             }
-            return map;
         }
+        return count == revisions.size();
     }
 
     /**
@@ -382,9 +876,9 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
         if (item instanceof MavenModule) {
             final String path = historyDir + ((MavenModule) item).getParent().getFullName().replace("/", "/jobs/") + "/modules/"
                     + ((MavenModule) item).getModuleName().toFileSystemName() + "/" + identifier;
-            return new XmlFile(getConfigFile(new File(path)));
+            return getStoredConfig(new File(path));
         } else {
-            return new XmlFile(getConfigFile(historyDir));
+            return getStoredConfig(historyDir);
         }
     }
 
@@ -402,7 +896,7 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
 
     private XmlFile getOldRevision(final File configFile, final String identifier) {
         final File historyDir = new File(getHistoryDir(configFile), identifier);
-        return new XmlFile(getConfigFile(historyDir));
+        return getStoredConfig(historyDir);
     }
 
     /**
@@ -414,15 +908,16 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
     @Override
     public XmlFile getOldRevision(final String configFileName, final String identifier) {
         final File historyDir = new File(new File(historyRootDir, configFileName), identifier);
-        final File configFile = getConfigFile(historyDir);
-        if (configFile == null) {
+        final XmlFile configFile = getStoredConfig(historyDir);
+        if (configFile.getFile() == null) {
             throw new IllegalArgumentException("Could not find " + historyDir);
         }
-        return new XmlFile(configFile);
+        return configFile;
     }
 
     /**
-     * Returns whether the revision exists.
+     * Returns whether the revision exists. The answer is remembered in
+     * {@link RevisionExistsCache} until the revision is purged.
      *
      * @param xmlFile file
      * @param identifier timestamp or hash
@@ -430,9 +925,32 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
      */
     @Override
     public boolean hasOldRevision(final XmlFile xmlFile, final String identifier) {
-        final File configFile = xmlFile.getFile();
+        final File historyDir = getHistoryDir(xmlFile.getFile());
+        final Boolean cached = RevisionExistsCache.INSTANCE.get(historyDir, identifier);
+        if (cached != null) {
+            return cached;
+        }
+        final long stamp = RevisionExistsCache.INSTANCE.stamp();
+        final boolean exists = checkOldRevision(xmlFile.getFile(), historyDir, identifier);
+        RevisionExistsCache.INSTANCE.put(historyDir, identifier, exists, stamp);
+        return exists;
+    }
+
+    /**
+     * Checks whether the revision exists, see {@link #hasOldRevision(XmlFile, String)}.
+     *
+     * @param configFile the configuration.
+     * @param historyDir its history directory.
+     * @param identifier timestamp of the revision.
+     * @return true if old revision exists and isn't null, false otherwise.
+     */
+    private boolean checkOldRevision(final File configFile, final File historyDir, final String identifier) {
+        final HistoryDescr indexed = getIndexedRevision(historyDir, identifier);
+        if (indexed instanceof IndexedHistoryDescr) {
+            return ((IndexedHistoryDescr) indexed).hasConfig();
+        }
         final XmlFile oldRevision = getOldRevision(configFile, identifier);
-        return oldRevision.getFile() != null && oldRevision.getFile().exists();
+        return oldRevision.getFile() != null && oldRevision.exists();
     }
 
     /**
@@ -520,20 +1038,31 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
      */
     @Override
     public void purgeOldEntries(final File itemHistoryRoot, final int maxEntries) {
-        if (maxEntries > 0) {
-            LOG.log(Level.FINE, "checking for history files to purge ({0} max allowed)", maxEntries);
-            final int entriesToLeave = maxEntries - 1;
-            final File[] historyDirs = itemHistoryRoot.listFiles(HistoryFileFilter.INSTANCE);
-            if (historyDirs != null && historyDirs.length >= entriesToLeave) {
-                Arrays.sort(historyDirs, Collections.reverseOrder());
-                for (int i = entriesToLeave; i < historyDirs.length; i++) {
-                    if (isCreatedEntry(historyDirs[i])) {
-                        continue;
+        final Lock lock = HISTORY_LOCKS.get(itemHistoryRoot);
+        lock.lock();
+        try {
+            if (maxEntries > 0) {
+                LOG.log(Level.FINE, "checking for history files to purge ({0} max allowed)", maxEntries);
+                final int entriesToLeave = maxEntries - 1;
+                final File[] historyDirs = itemHistoryRoot.listFiles(HistoryFileFilter.INSTANCE);
+                if (historyDirs != null && historyDirs.length >= entriesToLeave) {
+                    Arrays.sort(historyDirs, Collections.reverseOrder());
+                    for (int i = entriesToLeave; i < historyDirs.length; i++) {
+                        if (isCreatedEntry(historyDirs[i])) {
+                            continue;
+                        }
+                        LOG.log(Level.FINE, "purging old directory from history logs: {0}", historyDirs[i]);
+                        deleteDirectory(historyDirs[i]);
+                        RevisionIndexCache.INSTANCE.removeRevision(historyDirs[i]);
+                        RevisionIndexFile.purged(historyDirs[i]);
+                        if (eventLog != null) {
+                            eventLog.revisionPurged(historyDirs[i]);
+                        }
                     }
-                    LOG.log(Level.FINE, "purging old directory from history logs: {0}", historyDirs[i]);
-                    deleteDirectory(historyDirs[i]);
                 }
             }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -546,6 +1075,10 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
      */
     @Override
     public boolean isCreatedEntry(final File historyDir) {
+        final HistoryDescr indexed = getIndexedRevision(historyDir.getParentFile(), historyDir.getName());
+        if (indexed != null) {
+            return "Created".equals(indexed.getOperation());
+        }
         final XmlFile historyXml = getHistoryXmlFile(historyDir);
         try {
             final HistoryDescr histDescr = (HistoryDescr) historyXml.read();
@@ -606,6 +1139,126 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
         return configFile;
     }
 
+    /**
+     * Returns the configuration stored in the specified history directory.
+     *
+     * @param historyDir
+     *            The history directory to look under.
+     * @return The configuration, {@link XmlFile#getFile()} is null if no configuration is found.
+     */
+    XmlFile getStoredConfig(final File historyDir) {
+        final File configFile = getStoredConfigFile(historyDir);
+        if (configFile != null && configFile.getName().endsWith(JobConfigHistoryConsts.COMPRESSED_SUFFIX)) {
+            return new CompressedXmlFile(configFile);
+        }
+        if (configFile != null && historyDir.equals(configFile.getParentFile())) {
+            return new CompressibleXmlFile(configFile);
+        }
+        if (configFile != null || !HistoryFileFilter.accepts(historyDir)) {
+            return new XmlFile(configFile);
+        }
+        final File[] deltas = historyDir.listFiles(ReverseDeltaFileFilter.INSTANCE);
+        if (deltas == null || deltas.length == 0) {
+            return new XmlFile(null);
+        }
+        final String deltaName = deltas[0].getName();
+        final String fileName = deltaName.substring(
+                0, deltaName.length() - JobConfigHistoryConsts.REVERSE_DELTA_SUFFIX.length());
+        try {
+            return new InMemoryXmlFile(new File(historyDir, fileName), rebuildRevision(historyDir, fileName));
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "unable to rebuild revision " + historyDir, e);
+            return new XmlFile(null);
+        }
+    }
+
+    /**
+     * Rebuilds a revision stored as reverse delta, see {@link ReverseDeltaHistoryDao}, by applying all
+     * deltas up to the next newer revision stored in full.
+     *
+     * @param historyDir
+     *            revision directory holding a delta.
+     * @param fileName
+     *            name of the configuration file.
+     * @return the raw content of the revision.
+     * @throws IOException
+     *             if the chain of deltas is broken or unreadable.
+     */
+    byte[] rebuildRevision(final File historyDir, final String fileName) throws IOException {
+        final long start = System.nanoTime();
+        final File[] dirs = historyDir.getParentFile().listFiles(HistoryFileFilter.INSTANCE);
+        if (dirs == null) {
+            throw new IOException("Could not list " + historyDir.getParentFile());
+        }
+        Arrays.sort(dirs);
+        final List<File> chain = new ArrayList<File>();
+        File base = null;
+        for (File dir : dirs) {
+            if (dir.getName().compareTo(historyDir.getName()) < 0) {
+                continue;
+            }
+            final File deltaFile = new File(dir, fileName + JobConfigHistoryConsts.REVERSE_DELTA_SUFFIX);
+            if (deltaFile.exists()) {
+                chain.add(deltaFile);
+            } else {
+                base = getStoredConfigFile(dir);
+                if (base != null) {
+                    break;
+                }
+            }
+        }
+        if (base == null) {
+            throw new IOException("No full revision after " + historyDir);
+        }
+        List<String> lines = ReverseDelta.split(readStoredContent(base));
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            lines = ReverseDelta.applyDelta(lines, FileUtils.readFileToString(chain.get(i), ReverseDelta.CHARSET));
+        }
+        final long nanos = System.nanoTime() - start;
+        ReverseDelta.recordReconstruction(chain.size(), nanos);
+        LOG.log(Level.FINE, "rebuilt {0} from {1} deltas in {2} ms",
+                new Object[] {historyDir, chain.size(), nanos / 1000000});
+        return ReverseDelta.join(lines).getBytes(ReverseDelta.CHARSET);
+    }
+
+    /**
+     * Like {@link #getConfigFile(File)}, but also finds a compressed copy and resolves a reference into the
+     * blob store when the history directory holds no plain copy. Compressed files end with
+     * {@link JobConfigHistoryConsts#COMPRESSED_SUFFIX}, see {@link #readStoredContent(File)}.
+     *
+     * @param historyDir
+     *            The history directory to look under.
+     * @return The configuration file or null if no file is found.
+     */
+    File getStoredConfigFile(final File historyDir) {
+        final File configFile = getConfigFile(historyDir);
+        if (configFile != null || !HistoryFileFilter.accepts(historyDir)) {
+            return configFile;
+        }
+        final File[] compressed = historyDir.listFiles(CompressedFileFilter.INSTANCE);
+        if (compressed != null && compressed.length > 0) {
+            return compressed[0];
+        }
+        if (blobStore == null) {
+            return null;
+        }
+        final File[] references = historyDir.listFiles(BlobReferenceFileFilter.INSTANCE);
+        if (references == null || references.length == 0) {
+            return null;
+        }
+        try {
+            final String digest = FileUtils.readFileToString(references[0], "US-ASCII").trim();
+            if (digest.length() < 2) {
+                LOG.log(Level.WARNING, "invalid blob reference {0}", references[0]);
+                return null;
+            }
+            return blobStore.get(digest);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "unable to read blob reference " + references[0], e);
+            return null;
+        }
+    }
+
     /**
      * Determines if the {@link XmlFile} contains a duplicate of
      * the last saved information, if there is previous history.
@@ -615,21 +1268,69 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
      * @return true if previous history is accessible, and the file duplicates the previously saved information.
      */
     boolean hasDuplicateHistory(final XmlFile xmlFile) {
-        boolean isDuplicated = false;
-        final ArrayList<String> timeStamps = new ArrayList<String>(getRevisions(xmlFile).keySet());
-        if (!timeStamps.isEmpty()) {
-            Collections.sort(timeStamps, Collections.reverseOrder());
-            final XmlFile lastRevision = getOldRevision(xmlFile, timeStamps.get(0));
-            try {
-                if (xmlFile.asString().equals(lastRevision.asString())) {
-                    isDuplicated = true;
-                }
-            } catch (IOException e) {
-                LOG.log(Level.WARNING, "unable to check for duplicate previous history file: {0}\n{1}",
-                        new Object[]{lastRevision, e});
+        return BlobStore.digest(readContent(xmlFile)).equals(getLatestDigest(getHistoryDir(xmlFile.getFile())));
+    }
+
+    /**
+     * Returns the digest of the configuration stored in the newest revision of an item. Usually answered
+     * from {@link LatestDigestCache} or the {@link RevisionIndexFile}, otherwise read from
+     * {@link JobConfigHistoryConsts#DIGEST_FILE} or computed from the configuration for revisions stored
+     * before digests were saved.
+     *
+     * @param itemHistoryDir
+     *            history directory of the item.
+     * @return hex encoded digest or null if the newest revision holds no configuration.
+     */
+    String getLatestDigest(final File itemHistoryDir) {
+        final String cached = LatestDigestCache.INSTANCE.get(itemHistoryDir);
+        if (cached != null) {
+            return cached;
+        }
+        final SortedMap<String, RevisionIndexFile.Entry> entries = RevisionIndexFile.read(itemHistoryDir);
+        final String newestRevision = entries == null ? null : RevisionIndexFile.newestRevision(entries);
+        if (newestRevision != null && entries.get(newestRevision).getDigest() != null) {
+            final String digest = entries.get(newestRevision).getDigest();
+            LatestDigestCache.INSTANCE.put(new File(itemHistoryDir, newestRevision), digest);
+            return digest;
+        }
+        final File[] historyDirs = itemHistoryDir.listFiles(HistoryFileFilter.INSTANCE);
+        if (historyDirs == null || historyDirs.length == 0) {
+            return null;
+        }
+        Arrays.sort(historyDirs);
+        final File newest = historyDirs[historyDirs.length - 1];
+        final String digest = readDigest(newest);
+        if (digest != null) {
+            LatestDigestCache.INSTANCE.put(newest, digest);
+        }
+        return digest;
+    }
+
+    /**
+     * Returns the digest of the configuration stored in a revision.
+     *
+     * @param historyDir
+     *            the revision directory.
+     * @return hex encoded digest or null if the revision holds no readable configuration.
+     */
+    private String readDigest(final File historyDir) {
+        final File digestFile = new File(historyDir, JobConfigHistoryConsts.DIGEST_FILE);
+        try {
+            if (digestFile.exists()) {
+                return FileUtils.readFileToString(digestFile, "US-ASCII").trim();
+            }
+            final XmlFile stored = getStoredConfig(historyDir);
+            if (stored instanceof InMemoryXmlFile) {
+                return BlobStore.digest(((InMemoryXmlFile) stored).getContent());
+            }
+            if (stored.getFile() == null || !stored.exists()) {
+                return null;
             }
+            return BlobStore.digest(readStoredContent(stored.getFile()));
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "unable to read digest of " + historyDir, e);
+            return null;
         }
-        return isDuplicated;
     }
 
     /**
@@ -638,7 +1339,17 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
      * @return True if it should be saved
      */
     boolean checkDuplicate(final XmlFile xmlFile) {
-        if (!saveDuplicates && hasDuplicateHistory(xmlFile)) {
+        return checkDuplicate(xmlFile, BlobStore.digest(readContent(xmlFile)));
+    }
+
+    /**
+     * Like {@link #checkDuplicate(XmlFile)}, with the digest of the current content already computed.
+     * @param xmlFile The config file
+     * @param digest of the current content
+     * @return True if it should be saved
+     */
+    private boolean checkDuplicate(final XmlFile xmlFile, final String digest) {
+        if (!saveDuplicates && digest.equals(getLatestDigest(getHistoryDir(xmlFile.getFile())))) {
             LOG.log(Level.FINE, "found duplicate history, skipping save of {0}", xmlFile);
             return false;
         } else {
@@ -747,9 +1458,13 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
     public void copyHistoryAndDelete(final String oldName, final String newName) {
         final File oldFile = new File(getJobHistoryRootDir(), oldName);
         final File newFile = new File(getJobHistoryRootDir(), newName);
+        RevisionIdCodec.forget(oldFile);
+        RevisionIndexCache.INSTANCE.remove(oldFile);
+        RevisionIndexCache.INSTANCE.remove(newFile);
         try {
             FileUtils.copyDirectory(oldFile, newFile);
             FileUtils.deleteDirectory(oldFile);
+            recordMove(oldFile, newFile);
         } catch (IOException ex) {
             throw new IllegalArgumentException("Unable to move from " + oldFile + " to " + newFile, ex);
         }
@@ -762,8 +1477,25 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
      */
     @Override
     public void createNewNode(final Node node) {
-        final String content = Jenkins.XSTREAM2.toXML(node);
-        createNewHistoryEntryAndSaveConfig(node, content, Messages.ConfigHistoryListenerHelper_CREATED());
+        final Lock lock = HISTORY_LOCKS.get(getHistoryDirForNode(node));
+        lock.lock();
+        try {
+            final byte[] content = toXml(node);
+            createNewHistoryEntryAndSaveConfig(node, content, BlobStore.digest(content),
+                    Messages.ConfigHistoryListenerHelper_CREATED());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Serializes the configuration of a node.
+     *
+     * @param node node.
+     * @return the configuration, in the platform encoding.
+     */
+    private static byte[] toXml(final Node node) {
+        return Jenkins.XSTREAM2.toXML(node).getBytes();
     }
 
     /**
@@ -771,23 +1503,18 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
      *
      * @param node node.
      * @param content content.
+     * @param digest of content.
      * @param operation operation.
      */
-    private void createNewHistoryEntryAndSaveConfig(final Node node, final String content, final String operation) {
+    private void createNewHistoryEntryAndSaveConfig(final Node node, final byte[] content, final String digest,
+            final String operation) {
         final File timestampedDir = createNewHistoryEntry(node, operation);
-        final File nodeConfigHistoryFile = new File(timestampedDir, "config.xml");
-        PrintStream stream = null;
         try {
-            stream = new PrintStream(nodeConfigHistoryFile);
-            stream.print(content);
+            storeConfigContent("config.xml", content, timestampedDir);
+            storeDigest(digest, timestampedDir);
         } catch (IOException ex) {
-            throw new RuntimeException("Unable to write " + nodeConfigHistoryFile, ex);
-        } finally {
-            if (stream != null) {
-                stream.close();
-            }
+            throw new RuntimeException("Unable to write " + new File(timestampedDir, "config.xml"), ex);
         }
-        
     }
 
     /**
@@ -796,15 +1523,25 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
      */
     @Override
     public void deleteNode(final Node node) {
-        createNewHistoryEntry(node, Messages.ConfigHistoryListenerHelper_DELETED());
-       // final File configFile = aItem.getConfigFile().getFile();
         final File currentHistoryDir = getHistoryDirForNode(node);
-        final SimpleDateFormat buildDateFormat = new SimpleDateFormat("yyyyMMdd_HHmmss_SSS");
-        final String timestamp = buildDateFormat.format(new Date());
-        final String deletedHistoryName = node.getNodeName() + JobConfigHistoryConsts.DELETED_MARKER + timestamp;
-        final File deletedHistoryDir = new File(currentHistoryDir.getParentFile(), deletedHistoryName);
-        if (!currentHistoryDir.renameTo(deletedHistoryDir)) {
-            LOG.log(Level.WARNING, "unable to rename deleted history dir to: {0}", deletedHistoryDir);
+        final Lock lock = HISTORY_LOCKS.get(currentHistoryDir);
+        lock.lock();
+        try {
+            createNewHistoryEntry(node, Messages.ConfigHistoryListenerHelper_DELETED());
+           // final File configFile = aItem.getConfigFile().getFile();
+            final SimpleDateFormat buildDateFormat = new SimpleDateFormat("yyyyMMdd_HHmmss_SSS");
+            final String timestamp = buildDateFormat.format(new Date());
+            final String deletedHistoryName = node.getNodeName() + JobConfigHistoryConsts.DELETED_MARKER + timestamp;
+            final File deletedHistoryDir = new File(currentHistoryDir.getParentFile(), deletedHistoryName);
+            RevisionIdCodec.forget(currentHistoryDir);
+            RevisionIndexCache.INSTANCE.remove(currentHistoryDir);
+            if (currentHistoryDir.renameTo(deletedHistoryDir)) {
+                recordMove(currentHistoryDir, deletedHistoryDir);
+            } else {
+                LOG.log(Level.WARNING, "unable to rename deleted history dir to: {0}", deletedHistoryDir);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -816,31 +1553,42 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
      */
     @Override
     public void renameNode(final Node node, final String oldName, final String newName) {
-        final String onRenameDesc = " old name: " + oldName + ", new name: " + newName;
-        if (historyRootDir != null) {
-            //final File configFile = aItem.getConfigFile().getSlaveFile();
-            final File currentHistoryDir = getHistoryDirForNode(node);
-            final File historyParentDir = currentHistoryDir.getParentFile();
-            final File oldHistoryDir = new File(historyParentDir, oldName);
-            if (oldHistoryDir.exists()) {
-                final FilePath fp = new FilePath(oldHistoryDir);
-                // catch all exceptions so Hudson can continue with other rename tasks.
-                try {
-                    fp.copyRecursiveTo(new FilePath(currentHistoryDir));
-                    fp.deleteRecursive();
-                    LOG.log(Level.FINEST, "completed move of old history files on rename.{0}", onRenameDesc);
-                } catch (IOException e) {
-                    final String ioExceptionStr = "unable to move old history on rename." + onRenameDesc;
-                    LOG.log(Level.SEVERE, ioExceptionStr, e);
-                } catch (InterruptedException e) {
-                    final String irExceptionStr = "interrupted while moving old history on rename." + onRenameDesc;
-                    LOG.log(Level.WARNING, irExceptionStr, e);
+        final File currentHistoryDir = getHistoryDirForNode(node);
+        final File historyParentDir = currentHistoryDir.getParentFile();
+        final File oldHistoryDir = new File(historyParentDir, oldName);
+        final Lock[] locks = HISTORY_LOCKS.get(currentHistoryDir, oldHistoryDir);
+        StripedLock.lockAll(locks);
+        try {
+            final String onRenameDesc = " old name: " + oldName + ", new name: " + newName;
+            if (historyRootDir != null) {
+                //final File configFile = aItem.getConfigFile().getSlaveFile();
+                if (oldHistoryDir.exists()) {
+                    RevisionIdCodec.forget(oldHistoryDir);
+                    RevisionIndexCache.INSTANCE.remove(oldHistoryDir);
+                    RevisionIndexCache.INSTANCE.remove(currentHistoryDir);
+                    final FilePath fp = new FilePath(oldHistoryDir);
+                    // catch all exceptions so Hudson can continue with other rename tasks.
+                    try {
+                        fp.copyRecursiveTo(new FilePath(currentHistoryDir));
+                        fp.deleteRecursive();
+                        recordMove(oldHistoryDir, currentHistoryDir);
+                        LOG.log(Level.FINEST, "completed move of old history files on rename.{0}", onRenameDesc);
+                    } catch (IOException e) {
+                        final String ioExceptionStr = "unable to move old history on rename." + onRenameDesc;
+                        LOG.log(Level.SEVERE, ioExceptionStr, e);
+                    } catch (InterruptedException e) {
+                        final String irExceptionStr = "interrupted while moving old history on rename." + onRenameDesc;
+                        LOG.log(Level.WARNING, irExceptionStr, e);
+                    }
                 }
-            }
 
+            }
+            final byte[] content = toXml(node);
+            createNewHistoryEntryAndSaveConfig(node, content, BlobStore.digest(content),
+                    Messages.ConfigHistoryListenerHelper_RENAMED());
+        } finally {
+            StripedLock.unlockAll(locks);
         }
-        final String content = Jenkins.XSTREAM2.toXML(node);
-        createNewHistoryEntryAndSaveConfig(node, content, Messages.ConfigHistoryListenerHelper_RENAMED());
     }
     
     /**
@@ -851,23 +1599,15 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
     @Override
     public SortedMap<String, HistoryDescr> getRevisions(final Node node) {
         final File historiesDir = getHistoryDirForNode(node);
-        final File[] historyDirsOfItem = historiesDir.listFiles(HistoryFileFilter.INSTANCE);
-        final TreeMap<String, HistoryDescr> map = new TreeMap<String, HistoryDescr>();
-        if (historyDirsOfItem == null) {
-            return map;
-        } else {
-            for (File historyDir : historyDirsOfItem) {
-                final XmlFile historyXml = getHistoryXmlFile(historyDir);
-                final HistoryDescr historyDescription;
-                try {
-                    historyDescription = (HistoryDescr) historyXml.read();
-                } catch (IOException ex) {
-                    throw new RuntimeException("Unable to read history for " + node.getDisplayName(), ex);
-                }
-                map.put(historyDir.getName(), historyDescription);
-            }
-            return map;
+        final SortedMap<String, HistoryDescr> cached = RevisionIndexCache.INSTANCE.get(historiesDir);
+        if (cached != null) {
+            return cached;
+        }
+        final long stamp = RevisionIndexCache.INSTANCE.stamp();
+        if (!historiesDir.isDirectory()) {
+            return Collections.unmodifiableSortedMap(new TreeMap<String, HistoryDescr>());
         }
+        return RevisionIndexCache.INSTANCE.put(historiesDir, readRevisions(historiesDir), stamp);
     }
     
     /**
@@ -920,7 +1660,7 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
      * @return The base directory where to store the history,
      *         or null if the file is not a valid Hudson configuration file.
      */
-    private File getHistoryDirForNode(final Node node) {
+    File getHistoryDirForNode(final Node node) {
         final String name = node.getNodeName();
         final File configHistoryDir = getNodeHistoryRootDir();
         final File configHistoryNodeDir = new File(configHistoryDir, name);
@@ -939,32 +1679,18 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
      */
     @Override
     public boolean hasDuplicateHistory(final Node node) {
-        final String content = Jenkins.XSTREAM2.toXML(node);
-        boolean isDuplicated = false;
-        final ArrayList<String> timeStamps = new ArrayList<String>(getRevisions(node).keySet());
-        if (!timeStamps.isEmpty()) {
-            Collections.sort(timeStamps, Collections.reverseOrder());
-            final XmlFile lastRevision = getOldRevision(node, timeStamps.get(0));
-            try {
-                if (content.equals(lastRevision.asString())) {
-                    isDuplicated = true;
-                }
-            } catch (IOException e) {
-                LOG.log(Level.WARNING, "unable to check for duplicate previous history file: {0}\n{1}",
-                        new Object[]{lastRevision, e});
-            }
-        }
-        return isDuplicated;
+        return BlobStore.digest(toXml(node)).equals(getLatestDigest(getHistoryDirForNode(node)));
     }
     
     /**
      * Check if it is a duplicate.
      * 
      * @param node node
+     * @param digest of the current configuration
      * @return true if it is a duplicate
      */
-    private boolean checkDuplicate(final Node node) {
-        if (!saveDuplicates && hasDuplicateHistory(node)) {
+    private boolean checkDuplicate(final Node node, final String digest) {
+        if (!saveDuplicates && digest.equals(getLatestDigest(getHistoryDirForNode(node)))) {
             LOG.log(Level.FINE, "found duplicate history, skipping save of {0}", node.getDisplayName());
             return false;
         } else {
@@ -981,9 +1707,13 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
     private void copyNodeHistoryAndDelete(final String oldName, final String newName) {
         final File oldFile = new File(getNodeHistoryRootDir(), oldName);
         final File newFile = new File(getNodeHistoryRootDir(), newName);
+        RevisionIdCodec.forget(oldFile);
+        RevisionIndexCache.INSTANCE.remove(oldFile);
+        RevisionIndexCache.INSTANCE.remove(newFile);
         try {
             FileUtils.copyDirectory(oldFile, newFile);
             FileUtils.deleteDirectory(oldFile);
+            recordMove(oldFile, newFile);
         } catch (IOException ex) {
             throw new IllegalArgumentException("Unable to move from " + oldFile + " to " + newFile, ex);
         }
@@ -996,9 +1726,16 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
      */
     @Override
     public void saveNode(final Node node) {
-        final String content = Jenkins.XSTREAM2.toXML(node);
-        if (checkDuplicate(node)) {
-            createNewHistoryEntryAndSaveConfig(node, content, Messages.ConfigHistoryListenerHelper_CHANGED());
+        final Lock lock = HISTORY_LOCKS.get(getHistoryDirForNode(node));
+        lock.lock();
+        try {
+            final byte[] content = toXml(node);
+            final String digest = BlobStore.digest(content);
+            if (checkDuplicate(node, digest)) {
+                createNewHistoryEntryAndSaveConfig(node, content, digest, Messages.ConfigHistoryListenerHelper_CHANGED());
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -1012,7 +1749,7 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
     @Override
     public XmlFile getOldRevision(final Node node, final String identifier) {
         final File historyDir = new File(getHistoryDirForNode(node), identifier);
-        return new XmlFile(getConfigFile(historyDir));
+        return getStoredConfig(historyDir);
     }
 
     /**
@@ -1024,7 +1761,11 @@ public class FileHistoryDao extends JobConfigHistoryStrategy
      */
     @Override
     public boolean hasOldRevision(final Node node, final String identifier) {
+        final HistoryDescr indexed = getIndexedRevision(getHistoryDirForNode(node), identifier);
+        if (indexed instanceof IndexedHistoryDescr) {
+            return ((IndexedHistoryDescr) indexed).hasConfig();
+        }
         final XmlFile oldRevision = getOldRevision(node, identifier);
-        return oldRevision.getFile() != null && oldRevision.getFile().exists();
+        return oldRevision.getFile() != null && oldRevision.exists();
     }
 }
@@ -23,12 +23,16 @@
  */
 package hudson.plugins.jobConfigHistory;
 
+import difflib.ChangeDelta;
 import difflib.Chunk;
+import difflib.DeleteDelta;
 import difflib.Delta;
 import difflib.DiffRow;
 import difflib.DiffRowGenerator;
 import difflib.DiffUtils;
+import difflib.InsertDelta;
 import difflib.Patch;
+import java.util.Arrays;
 import java.util.List;
 import org.apache.commons.lang.StringUtils;
 
@@ -41,9 +45,22 @@ import org.apache.commons.lang.StringUtils;
 class GetDiffLines {
 
     /**
-     * Lines.
+     * Number of unchanged lines shown around every change, like in a unified diff.
+     */
+    static final int CONTEXT_SIZE = 3;
+
+    /**
+     * Lines of a unified diff, null when diffing two files directly.
      */
     private final List<String> diffLines;
+    /**
+     * Lines of the first file, null when parsing a unified diff.
+     */
+    private final List<String> original;
+    /**
+     * Lines of the second file, null when parsing a unified diff.
+     */
+    private final List<String> revised;
     /**
      * View.
      */
@@ -59,10 +76,33 @@ class GetDiffLines {
      * @param diffLines to construct the {@link SideBySideView} for.
      */
     public GetDiffLines(List<String> diffLines) {
+        this(diffLines, null, null);
+    }
+
+    /**
+     * Constructor, diffs two files without the round trip through a unified diff.
+     *
+     * @param file1Lines the lines of the first file.
+     * @param file2Lines the lines of the second file.
+     */
+    public GetDiffLines(String[] file1Lines, String[] file2Lines) {
+        this(null, Arrays.asList(file1Lines), Arrays.asList(file2Lines));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param diffLines unified diff or null.
+     * @param original lines of the first file or null.
+     * @param revised lines of the second file or null.
+     */
+    private GetDiffLines(List<String> diffLines, List<String> original, List<String> revised) {
         final DiffRowGenerator.Builder builder = new DiffRowGenerator.Builder();
         builder.columnWidth(Integer.MAX_VALUE);
         dfg = builder.build();
         this.diffLines = diffLines;
+        this.original = original;
+        this.revised = revised;
         view = new SideBySideView();
     }
 
@@ -72,15 +112,88 @@ class GetDiffLines {
      * @return list of {@link SideBySideView} lines.
      */
     public List<SideBySideView.Line> get() {
-        final Patch diff = DiffUtils.parseUnifiedDiff(diffLines);
         int previousLeftPos = 0;
-        for (final Delta delta : diff.getDeltas()) {
-            previousLeftPos = deltaLoop(delta, previousLeftPos);
+        if (diffLines != null) {
+            final Patch diff = DiffUtils.parseUnifiedDiff(diffLines);
+            for (final Delta delta : diff.getDeltas()) {
+                previousLeftPos = deltaLoop(delta, previousLeftPos);
+            }
+        } else {
+            final List<Delta> deltas = DiffUtils.diff(original, revised).getDeltas();
+            int first = 0;
+            while (first < deltas.size()) {
+                int last = first;
+                while (last + 1 < deltas.size()
+                        && end(deltas.get(last).getOriginal()) + 2 * CONTEXT_SIZE
+                        >= deltas.get(last + 1).getOriginal().getPosition()) {
+                    last++;
+                }
+                previousLeftPos = hunkLoop(deltas.subList(first, last + 1), previousLeftPos);
+                first = last + 1;
+            }
         }
         view.clearDuplicateLines();
         return view.getLines();
     }
 
+    /**
+     * Extends view with the lines of one hunk, i.e. changes close enough to
+     * share their context, cut the same way as a unified diff would. The rows
+     * are generated from the deltas already computed, the hunk is not diffed again.
+     *
+     * @param deltas changes of the hunk.
+     * @param previousLeftPos indentation.
+     * @return new previousLeftPos
+     */
+    private int hunkLoop(final List<Delta> deltas, int previousLeftPos) {
+        final Delta firstDelta = deltas.get(0);
+        final Delta lastDelta = deltas.get(deltas.size() - 1);
+        final int originalFrom = Math.max(0, firstDelta.getOriginal().getPosition() - CONTEXT_SIZE);
+        final int revisedFrom = firstDelta.getRevised().getPosition()
+                - (firstDelta.getOriginal().getPosition() - originalFrom);
+        final int originalTo = Math.min(original.size(), end(lastDelta.getOriginal()) + CONTEXT_SIZE);
+        final int revisedTo = end(lastDelta.getRevised()) + originalTo - end(lastDelta.getOriginal());
+        final Patch hunkPatch = new Patch();
+        for (final Delta delta : deltas) {
+            hunkPatch.addDelta(shift(delta, originalFrom, revisedFrom));
+        }
+        final Delta hunk = new ChangeDelta(
+                new Chunk(originalFrom, original.subList(originalFrom, originalTo)),
+                new Chunk(revisedFrom, revised.subList(revisedFrom, revisedTo)));
+        return new DeltaLoop(view, dfg, hunk, hunkPatch).loop(previousLeftPos);
+    }
+
+    /**
+     * @param chunk to inspect.
+     * @return 0-origin position after its last line.
+     */
+    private static int end(final Chunk chunk) {
+        return chunk.getPosition() + chunk.size();
+    }
+
+    /**
+     * Moves a delta into the coordinates of its hunk.
+     *
+     * @param delta to move.
+     * @param originalFrom first line of the hunk in the first file.
+     * @param revisedFrom first line of the hunk in the second file.
+     * @return delta of the same type relative to the hunk.
+     */
+    private static Delta shift(final Delta delta, final int originalFrom, final int revisedFrom) {
+        final Chunk originalChunk = new Chunk(delta.getOriginal().getPosition() - originalFrom,
+                delta.getOriginal().getLines());
+        final Chunk revisedChunk = new Chunk(delta.getRevised().getPosition() - revisedFrom,
+                delta.getRevised().getLines());
+        switch (delta.getType()) {
+            case INSERT:
+                return new InsertDelta(originalChunk, revisedChunk);
+            case DELETE:
+                return new DeleteDelta(originalChunk, revisedChunk);
+            default:
+                return new ChangeDelta(originalChunk, revisedChunk);
+        }
+    }
+
     /**
      * DeltaLoop.
      */
@@ -98,6 +211,10 @@ class GetDiffLines {
          * delta.
          */
         private final Delta delta;
+        /**
+         * Changes within the delta, null to diff its lines.
+         */
+        private final Patch patch;
         /**
          * Current leftPos.
          */
@@ -114,9 +231,21 @@ class GetDiffLines {
          * @param delta delta
          */
         public DeltaLoop(SideBySideView view, DiffRowGenerator dfg, Delta delta) {
+            this(view, dfg, delta, null);
+        }
+
+        /**
+         *
+         * @param view to extend.
+         * @param dfg dfg
+         * @param delta delta
+         * @param patch changes within the delta relative to its position, null to diff its lines.
+         */
+        DeltaLoop(SideBySideView view, DiffRowGenerator dfg, Delta delta, Patch patch) {
             this.view = view;
             this.dfg = dfg;
             this.delta = delta;
+            this.patch = patch;
         }
 
         /**
@@ -128,8 +257,11 @@ class GetDiffLines {
         int loop(int previousLeftPos) {
             final Chunk original = delta.getOriginal();
             final Chunk revised = delta.getRevised();
-            final List<DiffRow> diffRows = dfg.generateDiffRows(
-                    (List<String>) original.getLines(), (List<String>) revised.getLines());
+            final List<String> originalLines = (List<String>) original.getLines();
+            final List<String> revisedLines = (List<String>) revised.getLines();
+            final List<DiffRow> diffRows = patch == null
+                    ? dfg.generateDiffRows(originalLines, revisedLines)
+                    : dfg.generateDiffRows(originalLines, revisedLines, patch);
             // Chunk#getPosition() returns 0-origin line numbers, but we need 1-origin line numbers
             leftPos = original.getPosition() + 1;
             rightPos = revised.getPosition() + 1;
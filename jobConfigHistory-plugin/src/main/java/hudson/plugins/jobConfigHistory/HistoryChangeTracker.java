@@ -0,0 +1,119 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Remembers the history directories written since the last replication to the
+ * SCM repository, so only these have to be copied and added to the working
+ * copy instead of the complete history.
+ */
+final class HistoryChangeTracker {
+
+    /** Singleton. */
+    static final HistoryChangeTracker INSTANCE = new HistoryChangeTracker(
+            JobConfigHistoryConsts.REPLICATION_QUEUE_CAPACITY);
+
+    /** Changed directories in the order of their creation. Guarded by this. */
+    private final Set<File> changed = new LinkedHashSet<File>();
+
+    /** Maximum number of remembered directories. */
+    private final int capacity;
+
+    /** Only record while replication is running. Guarded by this. */
+    private boolean enabled;
+
+    /** Set when a directory could not be remembered. Guarded by this. */
+    private boolean overflowed;
+
+    /**
+     * @param capacity maximum number of remembered directories.
+     */
+    HistoryChangeTracker(final int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Starts or stops recording, stopping forgets everything recorded.
+     *
+     * @param enabled whether to record changes.
+     */
+    synchronized void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            changed.clear();
+            overflowed = false;
+        }
+    }
+
+    /**
+     * Remembers a new or changed history directory.
+     *
+     * @param historyDir directory holding a revision or the history of a
+     *        complete item.
+     */
+    synchronized void record(final File historyDir) {
+        if (!enabled || changed.contains(historyDir)) {
+            return;
+        }
+        if (changed.size() >= capacity) {
+            overflowed = true;
+        } else {
+            changed.add(historyDir);
+        }
+    }
+
+    /**
+     * Returns and forgets all recorded directories.
+     *
+     * @return the recorded directories or null if some changes were not
+     *         recorded, so the complete history has to be replicated.
+     */
+    synchronized Set<File> drain() {
+        final Set<File> result = overflowed ? null : new LinkedHashSet<File>(changed);
+        changed.clear();
+        overflowed = false;
+        return result;
+    }
+
+    /**
+     * Records the result of {@link #drain()} again, e.g. after a failed
+     * replication.
+     *
+     * @param historyDirs the drained directories, null means everything.
+     */
+    synchronized void restore(final Collection<File> historyDirs) {
+        if (historyDirs == null) {
+            overflowed = true;
+            return;
+        }
+        for (File historyDir : historyDirs) {
+            record(historyDir);
+        }
+    }
+}
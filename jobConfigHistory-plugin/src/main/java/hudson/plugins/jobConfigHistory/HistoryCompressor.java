@@ -0,0 +1,241 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Converts already stored plain revisions and blobs into their GZIP
+ * compressed form in a background thread. Every file is compressed into a
+ * temporary file first and renamed, the plain file is deleted afterwards, so
+ * readers always find one complete copy.
+ *
+ * {@link JobConfigHistoryConsts#HISTORY_FILE} stays uncompressed, it marks a
+ * revision directory and is read for every listing. Revisions are converted
+ * while holding the lock of their item, so they are not purged or moved
+ * meanwhile.
+ */
+class HistoryCompressor {
+
+    /** Our logger. */
+    private static final Logger LOG = Logger.getLogger(HistoryCompressor.class.getName());
+
+    /** Number of files looked at by the current or last run. */
+    private final AtomicLong scannedCount = new AtomicLong();
+
+    /** Number of files compressed by the current or last run. */
+    private final AtomicLong convertedCount = new AtomicLong();
+
+    /** Size of the converted files before compression. */
+    private final AtomicLong bytesBefore = new AtomicLong();
+
+    /** Size of the converted files after compression. */
+    private final AtomicLong bytesAfter = new AtomicLong();
+
+    /** Whether a conversion is running. */
+    private volatile boolean running;
+
+    /**
+     * Starts converting the given history root in a background thread.
+     *
+     * @param historyRootDir the history root.
+     * @return false if a conversion is already running.
+     */
+    synchronized boolean start(final File historyRootDir) {
+        if (running) {
+            return false;
+        }
+        running = true;
+        scannedCount.set(0);
+        convertedCount.set(0);
+        bytesBefore.set(0);
+        bytesAfter.set(0);
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    compressAll(historyRootDir);
+                } finally {
+                    running = false;
+                }
+            }
+        }, "JobConfigHistory compression");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * Converts all plain revisions and blobs below the history root.
+     *
+     * @param historyRootDir the history root.
+     */
+    void compressAll(final File historyRootDir) {
+        final long start = System.currentTimeMillis();
+        final File[] dirs = historyRootDir.listFiles();
+        if (dirs == null) {
+            return;
+        }
+        for (File dir : dirs) {
+            if (dir.isDirectory()) {
+                walk(dir, JobConfigHistoryConsts.BLOBS_DIR.equals(dir.getName()));
+            }
+        }
+        LOG.log(Level.INFO, "compressed {0} of {1} files from {2} to {3} bytes in {4} ms",
+                new Object[] {convertedCount.get(), scannedCount.get(), bytesBefore.get(), bytesAfter.get(),
+                    System.currentTimeMillis() - start});
+    }
+
+    /**
+     * Converts the plain files below a directory.
+     *
+     * @param dir the directory.
+     * @param blobs whether dir lies in the blob store.
+     */
+    private void walk(final File dir, final boolean blobs) {
+        final File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                walk(file, blobs);
+            } else if (isCompressible(file, blobs)) {
+                scannedCount.incrementAndGet();
+                try {
+                    if (blobs) {
+                        compress(file);
+                    } else {
+                        compressRevision(file);
+                    }
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "unable to compress " + file, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param file a file below the history root.
+     * @param blobs whether the file lies in the blob store.
+     * @return true if the file is a plain configuration or blob.
+     */
+    static boolean isCompressible(final File file, final boolean blobs) {
+        final String name = file.getName();
+        if (blobs) {
+            return name.indexOf('.') < 0;
+        }
+        return name.endsWith(".xml") && !JobConfigHistoryConsts.HISTORY_FILE.equals(name);
+    }
+
+    /**
+     * Replaces a plain revision by its compressed form, holding the lock the
+     * DAO takes for writing the history of the item.
+     *
+     * @param file the plain revision.
+     * @throws IOException if the compressed file could not be written.
+     */
+    void compressRevision(final File file) throws IOException {
+        final Lock lock = FileHistoryDao.getHistoryLock(file.getParentFile().getParentFile());
+        lock.lock();
+        try {
+            // the revision may have been purged or moved while we were waiting.
+            if (file.exists()) {
+                compress(file);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces a plain file by its compressed form.
+     *
+     * @param file the plain file.
+     * @throws IOException if the compressed file could not be written.
+     */
+    void compress(final File file) throws IOException {
+        final File parent = file.getParentFile();
+        final File target = new File(parent, file.getName() + JobConfigHistoryConsts.COMPRESSED_SUFFIX);
+        final long before = file.length();
+        if (!target.exists()) {
+            final File tmp = File.createTempFile(file.getName(), ".tmp", parent);
+            FileHistoryDao.writeCompressed(FileUtils.readFileToByteArray(file), tmp);
+            if (!tmp.renameTo(target)) {
+                if (!tmp.delete()) {
+                    LOG.log(Level.WARNING, "unable to delete {0}", tmp);
+                }
+                throw new IOException("Could not create " + target);
+            }
+        }
+        if (!file.delete()) {
+            LOG.log(Level.WARNING, "unable to delete {0}", file);
+            return;
+        }
+        convertedCount.incrementAndGet();
+        bytesBefore.addAndGet(before);
+        bytesAfter.addAndGet(target.length());
+    }
+
+    /**
+     * @return true while a conversion is running.
+     */
+    boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return number of plain files found by the current or last run.
+     */
+    long getScannedCount() {
+        return scannedCount.get();
+    }
+
+    /**
+     * @return number of files compressed by the current or last run.
+     */
+    long getConvertedCount() {
+        return convertedCount.get();
+    }
+
+    /**
+     * @return size of the converted files before compression.
+     */
+    long getBytesBefore() {
+        return bytesBefore.get();
+    }
+
+    /**
+     * @return size of the converted files after compression.
+     */
+    long getBytesAfter() {
+        return bytesAfter.get();
+    }
+}
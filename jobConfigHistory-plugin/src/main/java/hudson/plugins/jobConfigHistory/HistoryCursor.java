@@ -0,0 +1,94 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import hudson.Util;
+import java.nio.charset.Charset;
+
+/**
+ * Opaque position within a history listing, ordered newest first by
+ * timestamp and then by item. The item is the path of the history directory
+ * relative to the history root, e.g. {@code jobs/Test1} or {@code config}.
+ *
+ * Keys join timestamp and item by a tab, so comparing keys as strings orders
+ * revision ids with and without milliseconds correctly.
+ */
+final class HistoryCursor {
+
+    /** Encoding of cursors. */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Do not instantiate.
+     */
+    private HistoryCursor() {
+        // Static helper class
+    }
+
+    /**
+     * @param timestamp revision id.
+     * @param item path of the history directory relative to the history root.
+     * @return sort key of the entry.
+     */
+    static String key(final String timestamp, final String item) {
+        return timestamp + '\t' + item;
+    }
+
+    /**
+     * Returns the sort key of an entry of the overview, deleted jobs are
+     * told from system configurations by {@link JobConfigHistoryConsts#DELETED_MARKER}.
+     *
+     * @param config entry of the overview.
+     * @return sort key of the entry.
+     */
+    static String key(final ConfigInfo config) {
+        final boolean job = config.getIsJob() || config.getJob().contains(JobConfigHistoryConsts.DELETED_MARKER);
+        return key(config.getDate(), job ? JobConfigHistoryConsts.JOBS_HISTORY_DIR + "/" + config.getJob()
+                : config.getJob());
+    }
+
+    /**
+     * @param key sort key of the last entry of a page.
+     * @return cursor to pass to the next request.
+     */
+    static String encode(final String key) {
+        return Util.toHexString(key.getBytes(UTF8));
+    }
+
+    /**
+     * @param cursor as passed by the client, may be null.
+     * @return sort key of the last entry of the previous page or null to start with the newest entry.
+     */
+    static String decode(final String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            final String key = new String(Util.fromHexString(cursor), UTF8);
+            return key.indexOf('\t') < 0 ? null : key;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -30,7 +30,7 @@ import java.util.Date;
  *
  * @author Stefan Brausch
  */
-public class HistoryDescr implements ParsedDate {
+public class HistoryDescr implements ParsedMillis {
 
     static final HistoryDescr EMPTY_HISTORY_DESCR = new HistoryDescr(null, null, null, null);
 
@@ -43,9 +43,12 @@ public class HistoryDescr implements ParsedDate {
     /** Name of the operation. */
     private final String operation;
 
-    /** Timestamp of the operation, see {@link JobConfigHistoryConsts#ID_FORMATTER}. */
+    /** Timestamp of the operation, see {@link JobConfigHistoryConsts#REVISION_ID_FORMATTER}. */
     private final String timestamp;
 
+    /** Parsed timestamp, 0 until first parsed. Transient, so it is not written to the XML. */
+    private transient volatile long timestampMillis;
+
     /**
      * @param user
      *            display name of the user doing the operation
@@ -107,6 +110,19 @@ public class HistoryDescr implements ParsedDate {
      */
     @Override
     public Date parsedDate() {
-        return PluginUtils.parsedDate(getTimestamp());
+        return new Date(parsedMillis());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long parsedMillis() {
+        long millis = timestampMillis;
+        if (millis == 0) {
+            millis = PluginUtils.parsedMillis(getTimestamp());
+            timestampMillis = millis;
+        }
+        return millis;
     }
 }
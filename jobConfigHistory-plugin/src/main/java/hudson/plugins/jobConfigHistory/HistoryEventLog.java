@@ -0,0 +1,989 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import hudson.XmlFile;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Append-only, sequence numbered log of all revisions added, purged and moved
+ * below a history root, see {@link JobConfigHistoryConsts#EVENT_LOG_FILE}.
+ * Replaying the log yields the revisions of every item, so the overview of
+ * all configurations needs neither a directory walk nor reading every
+ * {@link JobConfigHistoryConsts#HISTORY_FILE}.
+ *
+ * Items are identified by the path of their history directory relative to
+ * the history root, e.g. {@code jobs/Test1} or {@code config}. Each line holds
+ * tab separated fields, tabs, line breaks and backslashes within fields are
+ * escaped:
+ *
+ * <pre>
+ * SEQUENCE R ITEM TIMESTAMP OPERATION USERID USER
+ * SEQUENCE P ITEM TIMESTAMP
+ * SEQUENCE M OLDITEM NEWITEM
+ * </pre>
+ *
+ * A missing log is rebuilt from disk in the background, while it is
+ * rebuilding new events are kept in memory and appended afterwards. Once
+ * more lines describe purged or moved revisions than existing ones, the log
+ * is compacted the same way, holding one line per existing revision
+ * afterwards.
+ */
+final class HistoryEventLog implements OverviewHistoryDao {
+
+    /** Our logger. */
+    private static final Logger LOG = Logger.getLogger(HistoryEventLog.class.getName());
+
+    /** Event logs by history root. */
+    private static final ConcurrentMap<File, HistoryEventLog> LOGS = new ConcurrentHashMap<File, HistoryEventLog>();
+
+    /** Type of an added revision. */
+    private static final String REVISION = "R";
+
+    /** Type of a purged revision. */
+    private static final String PURGE = "P";
+
+    /** Type of a moved item history. */
+    private static final String MOVE = "M";
+
+    /** Encoding of the log. */
+    private static final String ENCODING = "UTF-8";
+
+    /** The history root. */
+    private final File historyRootDir;
+
+    /** The log file. */
+    private final File logFile;
+
+    /**
+     * Revisions of all items as replayed from the log.
+     */
+    private static final class Index {
+
+        /** Revisions by item, sorted so the items of a folder are adjacent. */
+        private final NavigableMap<String, SortedMap<String, HistoryDescr>> items
+                = new TreeMap<String, SortedMap<String, HistoryDescr>>();
+
+        /** Revisions of all items by {@link HistoryCursor#key(String, String)}. */
+        private final TreeMap<String, HistoryDescr> timeline = new TreeMap<String, HistoryDescr>();
+
+        /** Number of lines of the log replayed. */
+        private long lines;
+
+        /**
+         * Applies an event.
+         *
+         * @param event type and fields.
+         */
+        void apply(final String[] event) {
+            lines++;
+            final String type = event[0];
+            if (event.length != (REVISION.equals(type) ? 6 : 3)) {
+                throw new IllegalArgumentException("wrong number of fields for event type " + type);
+            }
+            if (REVISION.equals(type)) {
+                add(event[1], event[2], new HistoryDescr(event[5], event[4], event[3], event[2]));
+            } else if (PURGE.equals(type)) {
+                final SortedMap<String, HistoryDescr> revisions = items.get(event[1]);
+                if (revisions != null) {
+                    revisions.remove(event[2]);
+                    timeline.remove(HistoryCursor.key(event[2], event[1]));
+                    if (revisions.isEmpty()) {
+                        items.remove(event[1]);
+                    }
+                }
+            } else if (MOVE.equals(type)) {
+                for (String oldItem : getItemsBelow(items, event[1])) {
+                    final String newItem = event[2] + oldItem.substring(event[1].length());
+                    final SortedMap<String, HistoryDescr> moved = items.remove(oldItem);
+                    for (Map.Entry<String, HistoryDescr> revision : moved.entrySet()) {
+                        timeline.remove(HistoryCursor.key(revision.getKey(), oldItem));
+                        add(newItem, revision.getKey(), revision.getValue());
+                    }
+                }
+            } else {
+                throw new IllegalArgumentException("unknown event type " + type);
+            }
+        }
+
+        /**
+         * @param item path of the item relative to the history root.
+         * @param timestamp revision id.
+         * @param historyDescr description of the revision.
+         */
+        private void add(final String item, final String timestamp, final HistoryDescr historyDescr) {
+            SortedMap<String, HistoryDescr> revisions = items.get(item);
+            if (revisions == null) {
+                revisions = new TreeMap<String, HistoryDescr>();
+                items.put(item, revisions);
+            }
+            revisions.put(timestamp, historyDescr);
+            timeline.put(HistoryCursor.key(timestamp, item), historyDescr);
+        }
+    }
+
+    /**
+     * Returns an item and the items nested in it, e.g. the jobs of a folder.
+     *
+     * @param items all items by path relative to the history root.
+     * @param item path of the item relative to the history root.
+     * @return paths of the item, if known, and of all items below it.
+     */
+    static List<String> getItemsBelow(final NavigableMap<String, ?> items, final String item) {
+        final List<String> below = new ArrayList<String>();
+        if (items.containsKey(item)) {
+            below.add(item);
+        }
+        // '0' follows '/', so the range holds exactly the paths starting with item + "/".
+        below.addAll(items.subMap(item + "/", true, item + "0", false).keySet());
+        return below;
+    }
+
+    /** Revisions of all items, null until the log was read or rebuilt. Guarded by this. */
+    private Index index;
+
+    /** Events arriving while rebuilding, null otherwise. Guarded by this. */
+    private List<String[]> pending;
+
+    /** Sequence number of the next event. Guarded by this. */
+    private long nextSequence = 1;
+
+    /**
+     * @param historyRootDir the history root.
+     */
+    HistoryEventLog(final File historyRootDir) {
+        this.historyRootDir = historyRootDir;
+        this.logFile = new File(historyRootDir, JobConfigHistoryConsts.EVENT_LOG_FILE);
+    }
+
+    /**
+     * Returns the event log of a history root.
+     *
+     * @param historyRootDir the history root.
+     * @return the event log shared by all users of the root.
+     */
+    static HistoryEventLog get(final File historyRootDir) {
+        final HistoryEventLog log = LOGS.get(historyRootDir);
+        if (log != null) {
+            return log;
+        }
+        final HistoryEventLog created = new HistoryEventLog(historyRootDir);
+        final HistoryEventLog existing = LOGS.putIfAbsent(historyRootDir, created);
+        return existing == null ? created : existing;
+    }
+
+    /**
+     * Records a new revision.
+     *
+     * @param revisionDir the revision directory.
+     * @param historyDescr its description.
+     */
+    void revisionAdded(final File revisionDir, final HistoryDescr historyDescr) {
+        final String item = getItem(revisionDir.getParentFile());
+        if (item != null) {
+            append(toEvent(item, revisionDir.getName(), historyDescr));
+        }
+    }
+
+    /**
+     * Records a purged revision.
+     *
+     * @param revisionDir the deleted revision directory.
+     */
+    void revisionPurged(final File revisionDir) {
+        final String item = getItem(revisionDir.getParentFile());
+        if (item != null) {
+            append(new String[] {PURGE, item, revisionDir.getName()});
+        }
+    }
+
+    /**
+     * Records that the history of an item, including the items nested in it,
+     * was moved to, or merged into, another item.
+     *
+     * @param oldItemDir the former history directory.
+     * @param newItemDir the new history directory.
+     */
+    void moved(final File oldItemDir, final File newItemDir) {
+        final String oldItem = getItem(oldItemDir);
+        final String newItem = getItem(newItemDir);
+        if (oldItem != null && newItem != null) {
+            append(new String[] {MOVE, oldItem, newItem});
+        }
+    }
+
+    /**
+     * Brings the revisions of one item in line with its history directory,
+     * e.g. after a backup was restored behind the back of the plugin. A
+     * missing directory purges all revisions of the item.
+     *
+     * @param itemDir history directory of the item.
+     * @return number of events appended, 0 while the log is not read.
+     */
+    int resync(final File itemDir) {
+        final String item = getItem(itemDir);
+        if (item == null || !isReady()) {
+            return 0;
+        }
+        final SortedMap<String, HistoryDescr> known = getHistory(item);
+        final File[] revisionDirs = itemDir.listFiles(HistoryFileFilter.INSTANCE);
+        final Set<String> found = new HashSet<String>();
+        int events = 0;
+        if (revisionDirs != null) {
+            for (File revisionDir : revisionDirs) {
+                found.add(revisionDir.getName());
+                if (known.containsKey(revisionDir.getName())) {
+                    continue;
+                }
+                final XmlFile historyXml = new XmlFile(new File(revisionDir, JobConfigHistoryConsts.HISTORY_FILE));
+                try {
+                    revisionAdded(revisionDir, (HistoryDescr) historyXml.read());
+                    events++;
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "unable to read " + historyXml.getFile(), e);
+                }
+            }
+        }
+        for (String timestamp : known.keySet()) {
+            if (!found.contains(timestamp)) {
+                revisionPurged(new File(itemDir, timestamp));
+                events++;
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Reads the log on first use, starting a rebuild when it does not exist.
+     *
+     * @return true if the revisions of all items are known.
+     */
+    synchronized boolean isReady() {
+        if (index == null && pending == null) {
+            if (logFile.exists()) {
+                load();
+            } else {
+                startRebuild();
+            }
+        }
+        return index != null;
+    }
+
+    /**
+     * @return whether the log is being rebuilt or compacted.
+     */
+    synchronized boolean isRebuilding() {
+        return pending != null;
+    }
+
+    /**
+     * @return sequence number of the newest event, 0 if none was logged.
+     */
+    synchronized long getSequence() {
+        return nextSequence - 1;
+    }
+
+    /**
+     * Rebuilds the log from disk in a background thread.
+     *
+     * @return false if a rebuild is already running.
+     */
+    synchronized boolean startRebuild() {
+        if (pending != null) {
+            return false;
+        }
+        pending = new ArrayList<String[]>();
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                rebuildStarted();
+            }
+        }, "JobConfigHistory event log rebuild");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * Rebuilds the log from disk in the calling thread.
+     */
+    void rebuild() {
+        synchronized (this) {
+            if (pending != null) {
+                throw new IllegalStateException("rebuild of " + logFile + " is already running");
+            }
+            pending = new ArrayList<String[]>();
+        }
+        rebuildStarted();
+    }
+
+    /**
+     * Walks the history root and replaces the log, events arriving meanwhile
+     * are appended to the result.
+     */
+    private void rebuildStarted() {
+        final long start = System.currentTimeMillis();
+        final List<String[]> events = new ArrayList<String[]>();
+        try {
+            walk(historyRootDir, "", events);
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "unable to rebuild " + logFile, e);
+        }
+        final Index rebuilt = new Index();
+        for (String[] event : events) {
+            rebuilt.apply(event);
+        }
+        replaceLog(events, 1, rebuilt);
+        LOG.log(Level.INFO, "rebuilt {0} with {1} events in {2} ms",
+                new Object[] {logFile, events.size(), System.currentTimeMillis() - start});
+    }
+
+    /**
+     * Compacts the log in the calling thread.
+     */
+    void compact() {
+        final List<String[]> events;
+        final long firstSequence;
+        synchronized (this) {
+            if (!isReady() || pending != null) {
+                throw new IllegalStateException(logFile + " is being rebuilt or compacted");
+            }
+            events = getRevisionEvents();
+            firstSequence = Math.max(1, nextSequence - events.size());
+            pending = new ArrayList<String[]>();
+        }
+        compactStarted(events, firstSequence);
+    }
+
+    /**
+     * Compacts the log in a background thread once most of its lines describe purged or moved revisions, see
+     * {@link JobConfigHistoryConsts#EVENT_LOG_COMPACTION_THRESHOLD}. Called while holding the lock.
+     */
+    private void compactIfNeeded() {
+        if (index == null || pending != null) {
+            return;
+        }
+        final int revisions = index.timeline.size();
+        if (index.lines - revisions <= Math.max(JobConfigHistoryConsts.EVENT_LOG_COMPACTION_THRESHOLD, revisions)) {
+            return;
+        }
+        final List<String[]> events = getRevisionEvents();
+        final long firstSequence = Math.max(1, nextSequence - events.size());
+        pending = new ArrayList<String[]>();
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                compactStarted(events, firstSequence);
+            }
+        }, "JobConfigHistory event log compaction");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Replaces the log by one line per existing revision. The sequence numbers
+     * end where the log ended, so {@link #getSequence()} stays the same.
+     *
+     * @param events one event per existing revision.
+     * @param firstSequence sequence number of the first event.
+     */
+    private void compactStarted(final List<String[]> events, final long firstSequence) {
+        final long start = System.currentTimeMillis();
+        replaceLog(events, firstSequence, null);
+        LOG.log(Level.INFO, "compacted {0} to {1} events in {2} ms",
+                new Object[] {logFile, events.size(), System.currentTimeMillis() - start});
+    }
+
+    /**
+     * @return one event per revision of the index.
+     */
+    private List<String[]> getRevisionEvents() {
+        final List<String[]> events = new ArrayList<String[]>(index.timeline.size());
+        for (Map.Entry<String, SortedMap<String, HistoryDescr>> item : index.items.entrySet()) {
+            for (Map.Entry<String, HistoryDescr> revision : item.getValue().entrySet()) {
+                events.add(toEvent(item.getKey(), revision.getKey(), revision.getValue()));
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Writes events to a temporary file without holding the lock, then
+     * appends the events which arrived meanwhile and renames it over the log.
+     *
+     * @param events events to write.
+     * @param firstSequence sequence number of the first event.
+     * @param replayed the replayed events, becomes the index after applying the events which arrived
+     *            meanwhile; null to keep the index, which they were applied to already.
+     */
+    private void replaceLog(final List<String[]> events, final long firstSequence, final Index replayed) {
+        final File tmp = new File(historyRootDir, JobConfigHistoryConsts.EVENT_LOG_FILE + ".tmp");
+        boolean written = false;
+        try {
+            final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), ENCODING));
+            try {
+                final StringBuilder line = new StringBuilder();
+                long sequence = firstSequence;
+                for (String[] event : events) {
+                    line.setLength(0);
+                    appendLine(line, sequence++, event);
+                    out.write(line.toString());
+                }
+            } finally {
+                out.close();
+            }
+            written = true;
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "unable to write " + tmp, e);
+        }
+        synchronized (this) {
+            long sequence = firstSequence + events.size();
+            final StringBuilder lines = new StringBuilder();
+            for (String[] event : pending) {
+                if (replayed != null) {
+                    replayed.apply(event);
+                }
+                appendLine(lines, sequence++, event);
+            }
+            if (replayed != null) {
+                index = replayed;
+            } else if (written) {
+                index.lines = events.size() + pending.size();
+            }
+            pending = null;
+            nextSequence = sequence;
+            try {
+                if (written) {
+                    appendTo(tmp, lines.toString());
+                    PluginUtils.replaceFile(tmp, logFile);
+                } else if (replayed == null) {
+                    // the log is still complete without the compacted events.
+                    appendTo(logFile, lines.toString());
+                }
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "unable to replace " + logFile, e);
+            }
+        }
+    }
+
+    /**
+     * @param file file to append to.
+     * @param lines formatted events.
+     * @throws IOException if writing fails.
+     */
+    private static void appendTo(final File file, final String lines) throws IOException {
+        final FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.write(lines.getBytes(ENCODING));
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Collects the revisions below a directory.
+     *
+     * @param dir directory to walk.
+     * @param item its path relative to the history root, empty for the root.
+     * @param events collected events.
+     */
+    private void walk(final File dir, final String item, final List<String[]> events) {
+        final File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.isDirectory() || item.isEmpty() && JobConfigHistoryConsts.BLOBS_DIR.equals(file.getName())) {
+                continue;
+            }
+            if (!item.isEmpty() && HistoryFileFilter.accepts(file)) {
+                final XmlFile historyXml = new XmlFile(new File(file, JobConfigHistoryConsts.HISTORY_FILE));
+                try {
+                    events.add(toEvent(item, file.getName(), (HistoryDescr) historyXml.read()));
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "unable to read " + historyXml.getFile(), e);
+                }
+            } else {
+                walk(file, item.isEmpty() ? file.getName() : item + "/" + file.getName(), events);
+            }
+        }
+    }
+
+    /**
+     * Reads the log.
+     */
+    private void load() {
+        final Index loaded = new Index();
+        long sequence = 0;
+        try {
+            terminateLastLine(logFile);
+            for (Object line : FileUtils.readLines(logFile, ENCODING)) {
+                final String[] fields = ((String) line).split("\t", -1);
+                try {
+                    final long lineSequence = Long.parseLong(fields[0]);
+                    final String[] event = new String[fields.length - 1];
+                    for (int i = 0; i < event.length; i++) {
+                        event[i] = unescape(fields[i + 1]);
+                    }
+                    loaded.apply(event);
+                    sequence = lineSequence;
+                } catch (RuntimeException e) {
+                    LOG.log(Level.WARNING, "skipping malformed line in {0}: {1}", new Object[] {logFile, line});
+                }
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "unable to read " + logFile + ", rebuilding it", e);
+            startRebuild();
+            return;
+        }
+        index = loaded;
+        nextSequence = sequence + 1;
+        compactIfNeeded();
+    }
+
+    /**
+     * Terminates a line left incomplete by a crash, so the next event starts on a line of its own.
+     *
+     * @param logFile the log.
+     * @throws IOException if the log could not be accessed.
+     */
+    static void terminateLastLine(final File logFile) throws IOException {
+        final RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+        try {
+            final long length = file.length();
+            if (length > 0) {
+                file.seek(length - 1);
+                if (file.read() != '\n') {
+                    file.write('\n');
+                }
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Applies and appends an event, keeps it in memory while rebuilding.
+     *
+     * @param event type and fields.
+     */
+    private synchronized void append(final String[] event) {
+        if (!isReady()) {
+            pending.add(event);
+            return;
+        }
+        if (pending != null) {
+            pending.add(event);
+            index.apply(event);
+            return;
+        }
+        index.apply(event);
+        final StringBuilder line = new StringBuilder();
+        appendLine(line, nextSequence++, event);
+        try {
+            appendTo(logFile, line.toString());
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "unable to append to " + logFile + ", rebuilding it", e);
+            startRebuild();
+            return;
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * @param item path of the item relative to the history root.
+     * @param timestamp revision id.
+     * @param historyDescr description of the revision.
+     * @return the event adding the revision.
+     */
+    private static String[] toEvent(final String item, final String timestamp, final HistoryDescr historyDescr) {
+        return new String[] {REVISION, item, timestamp, historyDescr.getOperation(), historyDescr.getUserID(),
+            historyDescr.getUser()};
+    }
+
+    /**
+     * Formats an event as line.
+     *
+     * @param line to append to.
+     * @param sequence sequence number of the event.
+     * @param event type and fields.
+     */
+    private static void appendLine(final StringBuilder line, final long sequence, final String[] event) {
+        line.append(sequence);
+        for (String field : event) {
+            line.append('\t').append(escape(field));
+        }
+        line.append('\n');
+    }
+
+    /**
+     * @param field value, may be null.
+     * @return value without tabs and line breaks, null becomes empty.
+     */
+    static String escape(final String field) {
+        if (field == null) {
+            return "";
+        }
+        final StringBuilder escaped = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            final char c = field.charAt(i);
+            switch (c) {
+                case '\\':
+                    escaped.append("\\\\");
+                    break;
+                case '\t':
+                    escaped.append("\\t");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\r':
+                    escaped.append("\\r");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * @param field escaped value.
+     * @return original value.
+     */
+    static String unescape(final String field) {
+        if (field.indexOf('\\') < 0) {
+            return field;
+        }
+        final StringBuilder unescaped = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            final char c = field.charAt(i);
+            if (c == '\\' && i + 1 < field.length()) {
+                final char next = field.charAt(++i);
+                unescaped.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+
+    /**
+     * @param itemDir history directory of an item.
+     * @return its path relative to the history root or null if it lies outside.
+     */
+    private String getItem(final File itemDir) {
+        final String root = historyRootDir.getAbsolutePath() + File.separator;
+        final String path = itemDir.getAbsolutePath();
+        if (!path.startsWith(root)) {
+            return null;
+        }
+        return path.substring(root.length()).replace(File.separatorChar, '/');
+    }
+
+    /**
+     * @param folderName name of the folder, empty for the top level.
+     * @param deleted whether to return deleted or existing jobs.
+     * @return history directories of the jobs in the folder.
+     */
+    private synchronized File[] getJobs(final String folderName, final boolean deleted) {
+        final String prefix = JobConfigHistoryConsts.JOBS_HISTORY_DIR + "/"
+                + (folderName.isEmpty() ? "" : folderName + "/jobs/");
+        final List<File> jobs = new ArrayList<File>();
+        if (isReady()) {
+            for (String item : index.items.tailMap(prefix, true).keySet()) {
+                if (!item.startsWith(prefix)) {
+                    break;
+                }
+                if (item.indexOf('/', prefix.length()) < 0 && DeletedFileFilter.accepts(item) == deleted) {
+                    jobs.add(new File(historyRootDir, item));
+                }
+            }
+        }
+        return jobs.toArray(new File[jobs.size()]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public File[] getDeletedJobs(final String folderName) {
+        return getJobs(folderName, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public File[] getJobs(final String folderName) {
+        return getJobs(folderName, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized File[] getSystemConfigs() {
+        final List<File> configs = new ArrayList<File>();
+        if (isReady()) {
+            for (String item : index.items.keySet()) {
+                if (item.indexOf('/') < 0 && !item.endsWith("jobs")) {
+                    configs.add(new File(historyRootDir, item));
+                }
+            }
+        }
+        return configs.toArray(new File[configs.size()]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SortedMap<String, HistoryDescr> getJobHistory(final String jobName) {
+        return getHistory(JobConfigHistoryConsts.JOBS_HISTORY_DIR + "/" + jobName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SortedMap<String, HistoryDescr> getSystemHistory(final String name) {
+        return getHistory(name);
+    }
+
+    /**
+     * Returns one page of the overview of all configurations, newest first.
+     * Only the entries of the page and the next matching entry are looked at.
+     *
+     * @param type one of system, jobs, created, deleted or all, others are treated like jobs.
+     * @param system whether system configurations may be shown.
+     * @param jobs whether jobs may be shown.
+     * @param cursor sort key of the last entry of the previous page or null.
+     * @param maxEntries maximum number of entries of the page.
+     * @return the page, empty while the log is not read.
+     */
+    synchronized ConfigInfoPage getPage(final String type, final boolean system, final boolean jobs,
+            final String cursor, final int maxEntries) {
+        final List<ConfigInfo> configs = new ArrayList<ConfigInfo>();
+        if (!isReady()) {
+            return new ConfigInfoPage(configs, null);
+        }
+        final NavigableMap<String, HistoryDescr> older = cursor == null
+                ? index.timeline.descendingMap() : index.timeline.headMap(cursor, false).descendingMap();
+        String lastKey = null;
+        for (Map.Entry<String, HistoryDescr> entry : older.entrySet()) {
+            final ConfigInfo config = toConfigInfo(type, system, jobs, entry.getKey(), entry.getValue());
+            if (config == null) {
+                continue;
+            }
+            if (configs.size() == maxEntries) {
+                return new ConfigInfoPage(configs, HistoryCursor.encode(lastKey));
+            }
+            configs.add(config);
+            lastKey = entry.getKey();
+        }
+        return new ConfigInfoPage(configs, null);
+    }
+
+    /**
+     * Converts a revision to an entry of the overview, following {@link ConfigInfoCollector}.
+     *
+     * @param type one of system, jobs, created, deleted or all, others are treated like jobs.
+     * @param system whether system configurations may be shown.
+     * @param jobs whether jobs may be shown.
+     * @param key sort key of the revision.
+     * @param descr description of the revision.
+     * @return the entry or null if the revision is not shown.
+     */
+    private ConfigInfo toConfigInfo(final String type, final boolean system, final boolean jobs, final String key,
+            final HistoryDescr descr) {
+        final String item = key.substring(key.indexOf('\t') + 1);
+        if (item.indexOf('/') < 0) {
+            final boolean shown = system && !item.endsWith("jobs") && ("system".equals(type) || "all".equals(type));
+            return shown ? ConfigInfo.create(item, true, descr, false) : null;
+        }
+        final String prefix = JobConfigHistoryConsts.JOBS_HISTORY_DIR + "/";
+        if (!jobs || "system".equals(type) || !item.startsWith(prefix) || !isJobName(item.substring(prefix.length()))) {
+            return null;
+        }
+        final String name = item.substring(prefix.length());
+        final boolean deleted = DeletedFileFilter.accepts(name.substring(name.lastIndexOf('/') + 1));
+        final SortedMap<String, HistoryDescr> revisions = index.items.get(item);
+        if ("deleted".equals(type)) {
+            final boolean shown = deleted && "Deleted".equals(descr.getOperation())
+                    && descr.getTimestamp().equals(revisions.lastKey());
+            return shown ? ConfigInfo.create(name, false, descr, false) : null;
+        }
+        if ("created".equals(type)) {
+            return !deleted && isCreatedEntry(revisions, descr) ? ConfigInfo.create(name, true, descr, true) : null;
+        }
+        return ConfigInfo.create(name, true, descr, !deleted);
+    }
+
+    /**
+     * Checks whether a path below the jobs directory names a job the way
+     * {@link HistoryItemWalker} does, e.g. <tt>outer/jobs/inner/jobs/JOBNAME</tt>,
+     * and not e.g. a module of a Maven job.
+     *
+     * @param name path relative to the jobs directory.
+     * @return true if every second segment is the jobs directory of a folder.
+     */
+    static boolean isJobName(final String name) {
+        final String[] segments = name.split("/", -1);
+        if (segments.length % 2 == 0) {
+            return false;
+        }
+        for (int i = 0; i < segments.length; i++) {
+            if (segments[i].isEmpty()
+                    || i % 2 == 1 && !JobConfigHistoryConsts.JOBS_HISTORY_DIR.equals(segments[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The creation is the first or, as the configuration is saved before the
+     * item listener is called, the second revision of a job.
+     *
+     * @param revisions all revisions of the job.
+     * @param descr a revision.
+     * @return true if descr is the creation of the job.
+     */
+    private static boolean isCreatedEntry(final SortedMap<String, HistoryDescr> revisions, final HistoryDescr descr) {
+        int position = 0;
+        for (HistoryDescr revision : revisions.values()) {
+            if ("Created".equals(revision.getOperation())) {
+                return revision == descr;
+            }
+            if (++position == 2) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the newest revision of every item older than a bound, found by
+     * a binary search in the time sorted revisions of each item. Items whose
+     * newest revision is their deletion are skipped.
+     *
+     * @param bound exclusive upper bound of the revision ids, see {@link ConfigSnapshot#toBound(String)}.
+     * @param system whether system configurations may be returned.
+     * @param jobs whether jobs may be returned.
+     * @return revisions by item, empty while the log is not read.
+     */
+    synchronized SortedMap<String, HistoryDescr> getSnapshot(final String bound, final boolean system,
+            final boolean jobs) {
+        final SortedMap<String, HistoryDescr> snapshot = new TreeMap<String, HistoryDescr>();
+        if (!isReady()) {
+            return snapshot;
+        }
+        for (Map.Entry<String, SortedMap<String, HistoryDescr>> entry : index.items.entrySet()) {
+            final boolean isJob = entry.getKey().startsWith(JobConfigHistoryConsts.JOBS_HISTORY_DIR + "/");
+            if (isJob ? !jobs : !system) {
+                continue;
+            }
+            final SortedMap<String, HistoryDescr> older = entry.getValue().headMap(bound);
+            if (!older.isEmpty()) {
+                final HistoryDescr newest = older.get(older.lastKey());
+                if (!"Deleted".equals(newest.getOperation())) {
+                    snapshot.put(entry.getKey(), newest);
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the newest revision of an item taken before a point in time.
+     * The revisions are binary searched by id, legacy ids without
+     * milliseconds just below the bound are skipped by their parsed time.
+     *
+     * @param itemDir history directory of the item.
+     * @param before milliseconds since the epoch, exclusive, {@link Long#MAX_VALUE} for the newest revision.
+     * @return the revision, null if there is none or the log is not read.
+     */
+    synchronized HistoryDescr getLatestBefore(final File itemDir, final long before) {
+        final String item = getItem(itemDir);
+        final SortedMap<String, HistoryDescr> revisions = item != null && isReady() ? index.items.get(item) : null;
+        if (revisions == null) {
+            return null;
+        }
+        SortedMap<String, HistoryDescr> older = before == Long.MAX_VALUE
+                ? revisions : revisions.headMap(RevisionIdCodec.format(before));
+        while (!older.isEmpty()) {
+            final String timestamp = older.lastKey();
+            final HistoryDescr revision = older.get(timestamp);
+            if (revision.parsedMillis() < before) {
+                return revision;
+            }
+            older = older.headMap(timestamp);
+        }
+        return null;
+    }
+
+    /**
+     * @param item path of the item relative to the history root.
+     * @param timestamp revision id.
+     * @return description of the revision, null if it is unknown or the log is not read.
+     */
+    synchronized HistoryDescr getRevision(final String item, final String timestamp) {
+        if (index == null) {
+            return null;
+        }
+        final SortedMap<String, HistoryDescr> revisions = index.items.get(item);
+        return revisions == null ? null : revisions.get(timestamp);
+    }
+
+    /**
+     * @param item path of the item relative to the history root.
+     * @return unmodifiable copy of its revisions.
+     */
+    private synchronized SortedMap<String, HistoryDescr> getHistory(final String item) {
+        final SortedMap<String, HistoryDescr> revisions = isReady() ? index.items.get(item) : null;
+        return Collections.unmodifiableSortedMap(revisions == null
+                ? new TreeMap<String, HistoryDescr>() : new TreeMap<String, HistoryDescr>(revisions));
+    }
+}
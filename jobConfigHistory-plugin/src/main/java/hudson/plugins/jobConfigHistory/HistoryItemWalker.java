@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import org.apache.commons.lang.ArrayUtils;
+
+/**
+ * Walks the job histories of a folder and of all folders nested in it,
+ * depth first and sorted by name on every level. Items are listed one folder
+ * at a time while iterating, so only the listings of the folders on the
+ * current path are held in memory.
+ *
+ * The history of a job in a folder lives in
+ * <tt>config-history/jobs/FOLDERNAME/jobs/JOBNAME</tt>, for nested folders
+ * <tt>FOLDERNAME</tt> itself is e.g. <tt>outer/jobs/inner</tt>.
+ */
+final class HistoryItemWalker implements Iterator<HistoryItemWalker.Item> {
+
+    /**
+     * A job history found by the walker.
+     */
+    static final class Item {
+
+        /** History directory of the item. */
+        private final File dir;
+
+        /** Folder holding the item, empty for the top level. */
+        private final String folderName;
+
+        /**
+         * @param dir history directory of the item.
+         * @param folderName folder holding the item, empty for the top level.
+         */
+        Item(final File dir, final String folderName) {
+            this.dir = dir;
+            this.folderName = folderName;
+        }
+
+        /**
+         * @return history directory of the item.
+         */
+        File getDir() {
+            return dir;
+        }
+
+        /**
+         * @return folder holding the item, empty for the top level.
+         */
+        String getFolderName() {
+            return folderName;
+        }
+
+        /**
+         * @return full name of the item, e.g. <tt>outer/jobs/inner/jobs/JOBNAME</tt>.
+         */
+        String getName() {
+            return folderName.isEmpty() ? dir.getName() : folderName + "/jobs/" + dir.getName();
+        }
+    }
+
+    /**
+     * The sorted items of one folder and the position of the next one.
+     */
+    private static final class Listing {
+
+        /** Folder of the items. */
+        private final String folderName;
+
+        /** Sorted item directories. */
+        private final File[] dirs;
+
+        /** Index of the next item. */
+        private int position;
+
+        /**
+         * @param folderName folder of the items.
+         * @param dirs sorted item directories.
+         */
+        Listing(final String folderName, final File[] dirs) {
+            this.folderName = folderName;
+            this.dirs = dirs;
+        }
+    }
+
+    /** Lists the items of a folder. */
+    private final OverviewHistoryDao overviewHistoryDao;
+
+    /** Listings of the folders on the current path, innermost first. */
+    private final Deque<Listing> path = new ArrayDeque<Listing>();
+
+    /** Item to return next, null if not yet looked up. */
+    private Item next;
+
+    /**
+     * @param overviewHistoryDao lists the items of a folder.
+     * @param folderName folder to start with, empty for the top level.
+     */
+    HistoryItemWalker(final OverviewHistoryDao overviewHistoryDao, final String folderName) {
+        this.overviewHistoryDao = overviewHistoryDao;
+        enter(folderName);
+    }
+
+    /**
+     * Lists the items of a folder, deleted or not.
+     *
+     * @param folderName the folder.
+     */
+    private void enter(final String folderName) {
+        final File[] dirs = (File[]) ArrayUtils.addAll(
+                overviewHistoryDao.getDeletedJobs(folderName),
+                overviewHistoryDao.getJobs(folderName));
+        if (dirs.length > 0) {
+            Arrays.sort(dirs, FileNameComparator.INSTANCE);
+            path.push(new Listing(folderName, dirs));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() {
+        while (next == null && !path.isEmpty()) {
+            final Listing listing = path.peek();
+            if (listing.position == listing.dirs.length) {
+                path.pop();
+            } else {
+                next = new Item(listing.dirs[listing.position++], listing.folderName);
+                enter(next.getName());
+            }
+        }
+        return next != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Item next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Item item = next;
+        next = null;
+        return item;
+    }
+
+    /**
+     * Not supported.
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+}
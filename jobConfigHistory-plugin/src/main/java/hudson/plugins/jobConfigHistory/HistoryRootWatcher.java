@@ -0,0 +1,316 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import hudson.Extension;
+import hudson.model.Hudson;
+import hudson.model.PeriodicWork;
+import java.io.File;
+import java.io.FileFilter;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Picks up revisions added, deleted or renamed below the history root by
+ * backup and restore tools or scripts, if enabled by
+ * {@link JobConfigHistory#getWatchHistoryRoot()}.
+ *
+ * Every poll compares the modification time of all item history directories,
+ * and of the directories holding them, with the previous poll. Only items
+ * whose directory changed are read again by
+ * {@link FileHistoryDao#resyncItem(File)}, so neither the event log nor the
+ * revision index of the other items is rebuilt. Revision directories are not
+ * watched themselves, an item holding a revision directory without
+ * {@link JobConfigHistoryConsts#HISTORY_FILE} is looked at again until the
+ * copy is complete.
+ */
+@Extension
+public class HistoryRootWatcher extends PeriodicWork {
+
+    /** Our logger. */
+    private static final Logger LOG = Logger.getLogger(HistoryRootWatcher.class.getName());
+
+    /** Modification time of a directory not seen before. */
+    private static final long UNSEEN = -1L;
+
+    /** Accepts the directories to watch, which are all but revision directories. */
+    private static final FileFilter WATCHED_DIRS = new FileFilter() {
+        @Override
+        public boolean accept(File file) {
+            return file.isDirectory() && !isRevisionId(file.getName());
+        }
+    };
+
+    /** Accepts revision directories still lacking their {@link JobConfigHistoryConsts#HISTORY_FILE}. */
+    private static final FileFilter INCOMPLETE_REVISIONS = new FileFilter() {
+        @Override
+        public boolean accept(File file) {
+            return file.isDirectory() && isRevisionId(file.getName()) && !HistoryFileFilter.accepts(file);
+        }
+    };
+
+    /**
+     * A watched directory, the history of an item and/or the parent of item histories.
+     */
+    private static final class WatchedDir {
+
+        /** Modification time seen by the last poll, 0 to look again, {@link #UNSEEN} if new. */
+        private long lastModified = UNSEEN;
+
+        /** Watched subdirectories by name. */
+        private final Map<String, WatchedDir> children = new HashMap<String, WatchedDir>();
+    }
+
+    /** Our plugin. */
+    private final JobConfigHistory plugin;
+
+    /** The watched history root, null before the first poll. */
+    private File watchedRoot;
+
+    /** The watched directories below {@link #watchedRoot}. */
+    private WatchedDir tree;
+
+    /**
+     * Standard constructor using instance.
+     */
+    public HistoryRootWatcher() {
+        this(Hudson.getInstance().getPlugin(JobConfigHistory.class));
+    }
+
+    /**
+     * For tests with injected plugin.
+     *
+     * @param plugin injected plugin
+     */
+    HistoryRootWatcher(JobConfigHistory plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return JobConfigHistoryConsts.HISTORY_WATCH_INTERVAL;
+    }
+
+    @Override
+    protected void doRun() throws Exception {
+        final JobConfigHistoryStrategy historyDao = plugin.getWatchHistoryRoot() ? PluginUtils.getHistoryDao(plugin) : null;
+        if (historyDao instanceof FileHistoryDao) {
+            poll((FileHistoryDao) historyDao, plugin.getConfiguredHistoryRootDir());
+        } else {
+            forget();
+        }
+    }
+
+    /**
+     * Drops the watched directories, the next poll starts over.
+     */
+    synchronized void forget() {
+        watchedRoot = null;
+        tree = null;
+    }
+
+    /**
+     * Resyncs the items changed since the last poll. The first poll of a
+     * history root only takes note of its directories.
+     *
+     * @param historyDao resyncs the changed items.
+     * @param historyRootDir the history root.
+     * @return number of items whose indexes had to be updated.
+     */
+    synchronized int poll(final FileHistoryDao historyDao, final File historyRootDir) {
+        final long start = System.currentTimeMillis();
+        if (tree == null || !historyRootDir.equals(watchedRoot)) {
+            watchedRoot = historyRootDir;
+            tree = new WatchedDir();
+            snapshot(historyRootDir, tree, true);
+            LOG.log(Level.FINE, "watching {0}, took {1} ms",
+                    new Object[] {historyRootDir, System.currentTimeMillis() - start});
+            return 0;
+        }
+        final int resynced = scan(historyDao, historyRootDir, tree, true);
+        if (resynced > 0) {
+            LOG.log(Level.INFO, "picked up outside changes of {0} items below {1} in {2} ms",
+                    new Object[] {resynced, historyRootDir, System.currentTimeMillis() - start});
+        }
+        return resynced;
+    }
+
+    /**
+     * Takes note of a directory and the watched directories below it.
+     *
+     * @param dir the directory.
+     * @param watched its entry.
+     * @param root whether dir is the history root.
+     */
+    private void snapshot(final File dir, final WatchedDir watched, final boolean root) {
+        watched.lastModified = settled(dir.lastModified());
+        for (File child : listWatched(dir, root)) {
+            final WatchedDir childWatched = new WatchedDir();
+            watched.children.put(child.getName(), childWatched);
+            snapshot(child, childWatched, false);
+        }
+    }
+
+    /**
+     * Resyncs a directory if it changed and looks at the directories below it.
+     *
+     * @param historyDao resyncs the changed items.
+     * @param dir the directory.
+     * @param watched its entry.
+     * @param root whether dir is the history root.
+     * @return number of items whose indexes had to be updated.
+     */
+    private int scan(final FileHistoryDao historyDao, final File dir, final WatchedDir watched, final boolean root) {
+        int resynced = 0;
+        final long modified = dir.lastModified();
+        if (modified != watched.lastModified) {
+            watched.lastModified = settled(modified);
+            if (!root) {
+                if (historyDao.resyncItem(dir)) {
+                    resynced++;
+                }
+                if (hasIncompleteRevisions(dir)) {
+                    watched.lastModified = 0;
+                }
+            }
+            resynced += updateChildren(historyDao, dir, watched, root);
+        }
+        for (Map.Entry<String, WatchedDir> child : watched.children.entrySet()) {
+            resynced += scan(historyDao, new File(dir, child.getKey()), child.getValue(), false);
+        }
+        return resynced;
+    }
+
+    /**
+     * Adds new subdirectories, which are resynced by the caller, and resyncs vanished ones.
+     *
+     * @param historyDao resyncs the vanished items.
+     * @param dir the directory.
+     * @param watched its entry.
+     * @param root whether dir is the history root.
+     * @return number of vanished items whose indexes had to be updated.
+     */
+    private int updateChildren(final FileHistoryDao historyDao, final File dir, final WatchedDir watched,
+            final boolean root) {
+        final Set<String> names = new HashSet<String>();
+        for (File child : listWatched(dir, root)) {
+            names.add(child.getName());
+            if (!watched.children.containsKey(child.getName())) {
+                watched.children.put(child.getName(), new WatchedDir());
+            }
+        }
+        int resynced = 0;
+        final Iterator<Map.Entry<String, WatchedDir>> children = watched.children.entrySet().iterator();
+        while (children.hasNext()) {
+            final Map.Entry<String, WatchedDir> child = children.next();
+            if (!names.contains(child.getKey())) {
+                resynced += vanished(historyDao, new File(dir, child.getKey()), child.getValue());
+                children.remove();
+            }
+        }
+        return resynced;
+    }
+
+    /**
+     * Resyncs a vanished directory and all watched directories below it, which forgets their revisions.
+     *
+     * @param historyDao resyncs the vanished items.
+     * @param dir the vanished directory.
+     * @param watched its entry.
+     * @return number of items whose indexes had to be updated.
+     */
+    private int vanished(final FileHistoryDao historyDao, final File dir, final WatchedDir watched) {
+        int resynced = historyDao.resyncItem(dir) ? 1 : 0;
+        for (Map.Entry<String, WatchedDir> child : watched.children.entrySet()) {
+            resynced += vanished(historyDao, new File(dir, child.getKey()), child.getValue());
+        }
+        return resynced;
+    }
+
+    /**
+     * @param dir a directory.
+     * @param root whether dir is the history root.
+     * @return the directories to watch below dir, the blob store is skipped.
+     */
+    private static File[] listWatched(final File dir, final boolean root) {
+        final File[] dirs = dir.listFiles(WATCHED_DIRS);
+        if (dirs == null) {
+            return new File[0];
+        }
+        if (!root) {
+            return dirs;
+        }
+        int count = 0;
+        for (File child : dirs) {
+            if (!JobConfigHistoryConsts.BLOBS_DIR.equals(child.getName())) {
+                dirs[count++] = child;
+            }
+        }
+        final File[] watched = new File[count];
+        System.arraycopy(dirs, 0, watched, 0, count);
+        return watched;
+    }
+
+    /**
+     * A revision directory being copied may get its {@link JobConfigHistoryConsts#HISTORY_FILE} after the poll,
+     * which does not modify the item history directory, so the item is looked at again on the next poll.
+     *
+     * @param dir history directory of an item.
+     * @return true if a revision directory lacks its {@link JobConfigHistoryConsts#HISTORY_FILE}.
+     */
+    private static boolean hasIncompleteRevisions(final File dir) {
+        final File[] incomplete = dir.listFiles(INCOMPLETE_REVISIONS);
+        return incomplete != null && incomplete.length > 0;
+    }
+
+    /**
+     * @param name of a directory.
+     * @return true if name is a revision id, see {@link RevisionIdCodec}.
+     */
+    private static boolean isRevisionId(final String name) {
+        try {
+            RevisionIdCodec.parseMillis(name);
+            return true;
+        } catch (ParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Directories modified within {@link JobConfigHistoryConsts#HISTORY_WATCH_SETTLE_TIME} may be modified again
+     * within the granularity of their modification time, so they are looked at again on the next poll.
+     *
+     * @param modified modification time of a directory.
+     * @return the modification time to remember.
+     */
+    private static long settled(final long modified) {
+        return System.currentTimeMillis() - modified < JobConfigHistoryConsts.HISTORY_WATCH_SETTLE_TIME ? 0 : modified;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import hudson.XmlFile;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import jenkins.model.Jenkins;
+
+/**
+ * A read only {@link XmlFile} whose content is kept in memory, e.g. a
+ * revision rebuilt from deltas. {@link #getFile()} denotes the location the
+ * content belongs to, which need not exist.
+ */
+class InMemoryXmlFile extends XmlFile {
+
+    /** Finds the encoding in the XML declaration. */
+    private static final Pattern ENCODING = Pattern.compile(
+            "^<\\?xml[^>]*encoding\\s*=\\s*[\"']([^\"']+)[\"']");
+
+    /** Number of bytes searched for the XML declaration. */
+    static final int HEAD_LENGTH = 100;
+
+    /** The raw content. */
+    private final byte[] content;
+
+    /**
+     * @param file location the content belongs to.
+     * @param content the raw content.
+     */
+    InMemoryXmlFile(final File file, final byte[] content) {
+        super(file);
+        this.content = content;
+    }
+
+    /**
+     * @return the raw content.
+     */
+    byte[] getContent() {
+        return content;
+    }
+
+    /**
+     * The content always exists.
+     *
+     * @return true
+     */
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    /**
+     * Decodes the content with the encoding of the XML declaration, UTF-8 by default.
+     *
+     * @return the content.
+     * @throws IOException if the encoding is not supported.
+     */
+    @Override
+    public String asString() throws IOException {
+        final String encoding = sniffEncoding(content, content.length);
+        try {
+            return new String(content, encoding);
+        } catch (UnsupportedEncodingException e) {
+            throw new IOException("Unsupported encoding " + encoding + " in " + getFile(), e);
+        }
+    }
+
+    /**
+     * Finds the encoding in the XML declaration.
+     *
+     * @param head first bytes of the content.
+     * @param length number of valid bytes in head.
+     * @return the declared encoding, UTF-8 by default.
+     * @throws IOException never, the charset is always supported.
+     */
+    static String sniffEncoding(final byte[] head, final int length) throws IOException {
+        final String declaration = new String(head, 0, Math.min(length, HEAD_LENGTH), "ISO-8859-1");
+        final Matcher matcher = ENCODING.matcher(declaration);
+        return matcher.find() ? matcher.group(1) : "UTF-8";
+    }
+
+    /**
+     * @param w where to write the content.
+     * @throws IOException if writing fails.
+     */
+    @Override
+    public void writeRawTo(final Writer w) throws IOException {
+        w.write(asString());
+    }
+
+    /**
+     * @return the unmarshalled content.
+     * @throws IOException if the content could not be decoded.
+     */
+    @Override
+    public Object read() throws IOException {
+        return Jenkins.XSTREAM2.fromXML(asString());
+    }
+
+    /**
+     * @param o object to unmarshal into.
+     * @return the unmarshalled object.
+     * @throws IOException if the content could not be decoded.
+     */
+    @Override
+    public Object unmarshal(final Object o) throws IOException {
+        return Jenkins.XSTREAM2.fromXML(asString(), o);
+    }
+
+    /**
+     * Not supported, the content is read only.
+     *
+     * @param o ignored.
+     * @throws IOException always.
+     */
+    @Override
+    public void write(final Object o) throws IOException {
+        throw new IOException(getFile() + " is read only");
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+/**
+ * Descriptor of a revision read from its {@link RevisionIndexFile}, which
+ * also knows whether the revision holds a configuration, so listings need not
+ * look into the revision directory.
+ */
+final class IndexedHistoryDescr extends HistoryDescr {
+
+    /** Name of the stored configuration file, null if the revision holds none. */
+    private final String configFileName;
+
+    /**
+     * @param historyDescr the descriptor.
+     * @param configFileName name of the stored configuration file, null if the revision holds none.
+     */
+    IndexedHistoryDescr(final HistoryDescr historyDescr, final String configFileName) {
+        super(historyDescr.getUser(), historyDescr.getUserID(), historyDescr.getOperation(),
+                historyDescr.getTimestamp());
+        this.configFileName = configFileName;
+    }
+
+    /**
+     * @return name of the stored configuration file, e.g. {@literal config.xml}, null if the revision holds none.
+     */
+    String getConfigFileName() {
+        return configFileName;
+    }
+
+    /**
+     * @return true if the revision holds a configuration.
+     */
+    boolean hasConfig() {
+        return configFileName != null;
+    }
+}
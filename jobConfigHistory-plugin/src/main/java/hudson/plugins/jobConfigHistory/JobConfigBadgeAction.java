@@ -28,6 +28,7 @@ import java.util.Collections;
 import java.util.Date;
 
 import hudson.Extension;
+import hudson.XmlFile;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.BuildBadgeAction;
@@ -119,20 +120,51 @@ public class JobConfigBadgeAction implements BuildBadgeAction, RunAction2 {
             if (lastBuild != null && lastBuild.getPreviousBuild() != null) {
                 lastBuildDate = lastBuild.getPreviousBuild().getTime();
             }
+            if (lastBuildDate != null) {
+                final String[] dates = findConfigChangeDates(project, lastBuildDate);
+                if (dates != null) {
+                    build.addAction(new JobConfigBadgeAction(dates));
+                }
+            }
+
+            super.onStarted(build, listener);
+        }
+
+        /**
+         * Finds the dates of the last config change and of the last relevant one, see
+         * {@link #findLastRelevantConfigChangeDate(List, Date)}. When the history is stored in the file system
+         * they are looked up in its event log, otherwise all revisions are loaded and sorted.
+         *
+         * @param project to inspect.
+         * @param lastBuildDate The date of the lastBuild (as Date).
+         * @return the dates or null if the configuration did not change since the last build.
+         */
+        private String[] findConfigChangeDates(final AbstractProject<?, ?> project, final Date lastBuildDate) {
+            final HistoryDao historyDao = getHistoryDao();
+            if (historyDao instanceof FileHistoryDao && ((FileHistoryDao) historyDao).isEventLogReady()) {
+                final FileHistoryDao fileHistoryDao = (FileHistoryDao) historyDao;
+                final XmlFile configFile = project.getConfigFile();
+                final HistoryDescr lastChange = fileHistoryDao.getLatestRevision(configFile, Long.MAX_VALUE);
+                if (lastChange == null || lastChange.parsedMillis() <= lastBuildDate.getTime()) {
+                    return null;
+                }
+                HistoryDescr lastRelevantChange = fileHistoryDao.getLatestRevision(configFile, lastBuildDate.getTime());
+                if (lastRelevantChange == null) {
+                    lastRelevantChange = fileHistoryDao.getLatestRevision(configFile, lastChange.parsedMillis());
+                }
+                return lastRelevantChange == null
+                        ? null : new String[] {lastChange.getTimestamp(), lastRelevantChange.getTimestamp()};
+            }
             final List<HistoryDescr> historyDescriptions = getRevisions(project);
             if (historyDescriptions.size() > 1) {
                 Collections.sort(historyDescriptions, ParsedDateComparator.DESCENDING);
-                final HistoryDescr lastChange = Collections.min(historyDescriptions, ParsedDateComparator.DESCENDING);
-                final Date lastConfigChange = lastChange.parsedDate();
-
-                if (lastBuildDate != null && lastConfigChange.after(lastBuildDate)) {
-                    final String[] dates = {lastChange.getTimestamp(),
+                final HistoryDescr lastChange = historyDescriptions.get(0);
+                if (lastChange.parsedMillis() > lastBuildDate.getTime()) {
+                    return new String[] {lastChange.getTimestamp(),
                         findLastRelevantConfigChangeDate(historyDescriptions, lastBuildDate), };
-                    build.addAction(new JobConfigBadgeAction(dates));
                 }
             }
-
-            super.onStarted(build, listener);
+            return null;
         }
 
         /**
@@ -141,12 +173,20 @@ public class JobConfigBadgeAction implements BuildBadgeAction, RunAction2 {
          * @return list of revisions
          */
         List<HistoryDescr> getRevisions(final AbstractProject<?, ?> project) {
-            final HistoryDao historyDao = PluginUtils.getHistoryDao();
+            final HistoryDao historyDao = getHistoryDao();
             final ArrayList<HistoryDescr> historyDescriptions = new ArrayList<HistoryDescr>(
                     historyDao.getRevisions(project.getConfigFile()).values());
             return historyDescriptions;
         }
 
+        /**
+         * For tests.
+         * @return historyDao
+         */
+        HistoryDao getHistoryDao() {
+            return PluginUtils.getHistoryDao();
+        }
+
         /**
          * Finds the date of the last config change that happened before the last build. This is needed for the link in the build
          * history that shows the difference between the current configuration and the version that was in place when the last
@@ -158,8 +198,7 @@ public class JobConfigBadgeAction implements BuildBadgeAction, RunAction2 {
          */
         private String findLastRelevantConfigChangeDate(List<HistoryDescr> historyDescriptions, Date lastBuildDate) {
             for (HistoryDescr oldConfigChange : historyDescriptions.subList(1, historyDescriptions.size())) {
-                final Date changeDate = oldConfigChange.parsedDate();
-                if (changeDate != null && changeDate.before(lastBuildDate)) {
+                if (oldConfigChange.parsedMillis() < lastBuildDate.getTime()) {
                     return oldConfigChange.getTimestamp();
                 }
             }
@@ -32,6 +32,10 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import hudson.Plugin;
 import hudson.XmlFile;
@@ -46,6 +50,7 @@ import hudson.util.FormValidation;
 import jenkins.model.Jenkins;
 import net.sf.json.JSONObject;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 
@@ -66,6 +71,9 @@ public class JobConfigHistory extends Plugin {
 
     /** Maximum number of history entries per site to show. */
     private String maxEntriesPerPage;
+
+    /** Number of threads scanning item histories for the overview, blank or 0 scans on the request thread. */
+    private String collectorThreads;
     
     /** Maximum number of days to keep entries. */
     private String maxDaysToKeepEntries;
@@ -124,6 +132,30 @@ public class JobConfigHistory extends Plugin {
      */
     private String showBuildBadges = "always";
 
+    /**
+     * How revisions are stored. Possible settings: plain copies, deduplicated
+     * by content in a blob store or reverse deltas to the next newer revision.
+     */
+    private String storageMode = "plain";
+
+    /** Flag to indicate whether new revisions should be stored GZIP compressed. */
+    private boolean compressRevisions;
+
+    /** Flag to indicate whether outside changes to the history root should be picked up. */
+    private boolean watchHistoryRoot;
+
+    /** Replicates saved job configurations to the SCM repository in the background. */
+    private transient SvnReplicationQueue replicationQueue;
+
+    /** History strategy shared by all operations, rebuilt when the settings change. */
+    private transient volatile JobConfigHistoryStrategy historyStrategy;
+
+    /** Compresses already stored revisions in the background. */
+    private transient HistoryCompressor historyCompressor;
+
+    /** Scans item histories for the overview, see {@link #getCollectorPool()}. */
+    private transient ExecutorService collectorPool;
+
     /** our logger. */
     private static final Logger LOG = Logger.getLogger(JobConfigHistory.class.getName());
 
@@ -133,6 +165,72 @@ public class JobConfigHistory extends Plugin {
         loadRegexpPatterns();
     }
 
+    @Override
+    public void stop() throws Exception {
+        synchronized (this) {
+            if (replicationQueue != null) {
+                replicationQueue.stop();
+                replicationQueue = null;
+                HistoryChangeTracker.INSTANCE.setEnabled(false);
+            }
+            shutdownCollectorPool();
+        }
+    }
+
+    /**
+     * Returns the pool scanning item histories for the overview in parallel, see {@link ConfigInfoCollector},
+     * starting it on first access.
+     *
+     * @return the pool or null if the overview is collected on the request thread.
+     */
+    synchronized ExecutorService getCollectorPool() {
+        if (collectorPool == null) {
+            final int threads = NumberUtils.toInt(collectorThreads, 0);
+            if (threads > 0) {
+                collectorPool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                    /** Number of the next thread. */
+                    private final AtomicInteger number = new AtomicInteger(1);
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        final Thread thread = new Thread(r, "JobConfigHistory collector " + number.getAndIncrement());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+        }
+        return collectorPool;
+    }
+
+    /**
+     * Stops the collector pool, the next overview starts it with the current settings.
+     */
+    private synchronized void shutdownCollectorPool() {
+        if (collectorPool != null) {
+            collectorPool.shutdown();
+            collectorPool = null;
+        }
+    }
+
+    /**
+     * Returns the queue of items waiting for replication to the SCM repository,
+     * starting it on first access.
+     *
+     * @return the replication queue.
+     */
+    synchronized SvnReplicationQueue getReplicationQueue() {
+        if (replicationQueue == null) {
+            HistoryChangeTracker.INSTANCE.setEnabled(true);
+            replicationQueue = new SvnReplicationQueue(
+                    JobConfigHistoryConsts.REPLICATION_QUEUE_CAPACITY,
+                    JobConfigHistoryConsts.REPLICATION_FLUSH_INTERVAL,
+                    new SvnHistoryReplicator(this));
+            replicationQueue.start();
+        }
+        return replicationQueue;
+    }
+
     /**
      * Configure data associated with the global configuration settings
      * @param req 
@@ -146,15 +244,40 @@ public class JobConfigHistory extends Plugin {
         setMaxHistoryEntries(formData.getString("maxHistoryEntries").trim());
         setMaxDaysToKeepEntries(formData.getString("maxDaysToKeepEntries").trim());
         setMaxEntriesPerPage(formData.getString("maxEntriesPerPage").trim());
+        setCollectorThreads(formData.optString("collectorThreads", "").trim());
         skipDuplicateHistory = formData.getBoolean("skipDuplicateHistory");
         excludePattern = formData.getString("excludePattern");
         saveModuleConfiguration = formData.getBoolean("saveModuleConfiguration");
         showBuildBadges = formData.getString("showBuildBadges");
+        storageMode = formData.optString("storageMode", "plain");
+        compressRevisions = formData.optBoolean("compressRevisions", false);
+        watchHistoryRoot = formData.optBoolean("watchHistoryRoot", false);
         scmRepoUrl = formData.getString("scmRepoUrl");
         scmRepoUser = formData.getString("scmRepoUser");	
         scmRepoPass = formData.getString("scmRepoPass");
         save();
         loadRegexpPatterns();
+        historyStrategy = null;
+    }
+
+    /**
+     * Returns the history strategy shared by all operations, creating it from
+     * the current settings on first access.
+     *
+     * @return the history strategy.
+     */
+    JobConfigHistoryStrategy getHistoryStrategy() {
+        JobConfigHistoryStrategy strategy = historyStrategy;
+        if (strategy == null) {
+            synchronized (this) {
+                strategy = historyStrategy;
+                if (strategy == null) {
+                    strategy = PluginUtils.createSharedHistoryDao(this);
+                    historyStrategy = strategy;
+                }
+            }
+        }
+        return strategy;
     }
 
     /**
@@ -186,6 +309,7 @@ public class JobConfigHistory extends Plugin {
     protected void setMaxHistoryEntries(String maxEntryInput) {
         if (maxEntryInput.isEmpty() || isPositiveInteger(maxEntryInput)) {
             maxHistoryEntries = maxEntryInput;
+            historyStrategy = null;
         }
     }
     
@@ -295,6 +419,25 @@ public class JobConfigHistory extends Plugin {
         }
     }
 
+    /**
+     * @return The number of threads scanning item histories for the overview.
+     */
+    public String getCollectorThreads() {
+        return collectorThreads;
+    }
+
+    /**
+     * Set the number of threads scanning item histories for the overview.
+     * @param threadsInput
+     *        The number of threads, blank or 0 to scan on the request thread
+     */
+    protected void setCollectorThreads(String threadsInput) {
+        if (threadsInput.isEmpty() || isPositiveInteger(threadsInput)) {
+            collectorThreads = threadsInput;
+            shutdownCollectorPool();
+        }
+    }
+
     /**
      * @return The maximum number of days to keep history entries.
      */
@@ -387,6 +530,77 @@ public class JobConfigHistory extends Plugin {
         showBuildBadges = showBadges;
     }
 
+    /**
+     * @return How revisions are stored, plain, deduplicated or reverseDelta.
+     */
+    public String getStorageMode() {
+        return storageMode == null ? "plain" : storageMode;
+    }
+
+    /**
+     * Used for testing only.
+     * @param storageMode plain, deduplicated or reverseDelta.
+     */
+    void setStorageMode(String storageMode) {
+        this.storageMode = storageMode;
+        historyStrategy = null;
+    }
+
+    /**
+     * @return true if new revisions should be stored GZIP compressed.
+     */
+    public boolean getCompressRevisions() {
+        return compressRevisions;
+    }
+
+    /**
+     * Used for testing only.
+     * @param compressRevisions whether new revisions should be stored GZIP compressed.
+     */
+    void setCompressRevisions(boolean compressRevisions) {
+        this.compressRevisions = compressRevisions;
+        historyStrategy = null;
+    }
+
+    /**
+     * @return true if outside changes to the history root should be picked up, see {@link HistoryRootWatcher}.
+     */
+    public boolean getWatchHistoryRoot() {
+        return watchHistoryRoot;
+    }
+
+    /**
+     * Used for testing only.
+     * @param watchHistoryRoot whether outside changes to the history root should be picked up.
+     */
+    void setWatchHistoryRoot(boolean watchHistoryRoot) {
+        this.watchHistoryRoot = watchHistoryRoot;
+    }
+
+    /**
+     * @return the converter compressing already stored revisions.
+     */
+    synchronized HistoryCompressor getHistoryCompressor() {
+        if (historyCompressor == null) {
+            historyCompressor = new HistoryCompressor();
+        }
+        return historyCompressor;
+    }
+
+    /**
+     * @return true if new revisions should be stored in the blob store.
+     */
+    boolean isDeduplicateRevisions() {
+        return "deduplicated".equals(getStorageMode());
+    }
+
+    /**
+     * @return true if older revisions should be stored as reverse deltas.
+     */
+    boolean isReverseDeltaRevisions() {
+        return "reverseDelta".equals(getStorageMode());
+    }
+
     /**
      * Whether build badges should appear for the builds of this project for this user.
      *
@@ -558,6 +772,17 @@ public class JobConfigHistory extends Plugin {
         }
     }
 
+    /**
+     * Validates the user entry for the number of threads scanning item histories for the overview.
+     * Must be blank or a non-negative integer.
+     * @param value
+     *            The form input entered by the user.
+     * @return ok if the entry is blank or a non-negative integer.
+     */
+    public FormValidation doCheckCollectorThreads(@QueryParameter final String value) {
+        return doCheckMaxEntriesPerPage(value);
+    }
+
     /**
      * Validates the user entry for the maximum number of days to keep history items.
      * Must be blank or a non-negative integer.
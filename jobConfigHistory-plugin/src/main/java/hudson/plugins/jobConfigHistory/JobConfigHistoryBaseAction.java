@@ -175,6 +175,58 @@ public abstract class JobConfigHistoryBaseAction implements Action {
         return new GetDiffLines(diffLines).get();
     }
 
+    /**
+     * Returns side-by-side (i.e. human-readable) diff view lines of two files,
+     * without rendering and parsing a unified diff in between.
+     *
+     * @param file1Lines
+     *            the lines of the first file.
+     * @param file2Lines
+     *            the lines of the second file.
+     * @return Nice and clean diff as list of single Lines.
+     */
+    public final List<Line> getDiffLines(final String[] file1Lines, final String[] file2Lines) {
+        return new GetDiffLines(file1Lines, file2Lines).get();
+    }
+
+    /**
+     * Returns the diff lines of two revisions of an item from {@link DiffCache}.
+     *
+     * @param historyDir
+     *            history directory of the item, null if the history is not
+     *            stored in the file system.
+     * @param timestamp1
+     *            first revision.
+     * @param timestamp2
+     *            second revision.
+     * @return the cached lines or null if they have to be computed.
+     */
+    final List<Line> getCachedDiffLines(final File historyDir, final String timestamp1, final String timestamp2) {
+        return historyDir == null ? null : DiffCache.INSTANCE.get(historyDir, timestamp1, timestamp2);
+    }
+
+    /**
+     * Remembers computed diff lines in {@link DiffCache}, see
+     * {@link #getCachedDiffLines(File, String, String)}.
+     *
+     * @param historyDir
+     *            history directory of the item or null.
+     * @param timestamp1
+     *            first revision.
+     * @param timestamp2
+     *            second revision.
+     * @param lines
+     *            the computed lines.
+     * @param stamp
+     *            {@link DiffCache#stamp()} before the revisions were read.
+     * @return the lines.
+     */
+    final List<Line> cacheDiffLines(final File historyDir, final String timestamp1, final String timestamp2,
+            final List<Line> lines, final long stamp) {
+        return historyDir == null
+                ? lines : DiffCache.INSTANCE.put(historyDir, timestamp1, timestamp2, lines, stamp);
+    }
+
     /**
      * Returns a unified diff between two string arrays.
      *
@@ -216,7 +268,7 @@ public abstract class JobConfigHistoryBaseAction implements Action {
         String timestamp1 = parser.get("timestamp1");
         String timestamp2 = parser.get("timestamp2");
         
-        if (PluginUtils.parsedDate(timestamp1).after(PluginUtils.parsedDate(timestamp2))) {
+        if (PluginUtils.parsedMillis(timestamp1) > PluginUtils.parsedMillis(timestamp2)) {
             timestamp1 = parser.get("timestamp2");
             timestamp2 = parser.get("timestamp1");
         }
@@ -266,4 +318,27 @@ public abstract class JobConfigHistoryBaseAction implements Action {
         return PluginUtils.getHistoryDao();
     }
 
+    /**
+     * Returns the configured page size.
+     *
+     * @return maximum number of entries per page, {@link Integer#MAX_VALUE} if not limited.
+     */
+    int getMaxEntriesPerPage() {
+        final String maxEntriesPerPage = getPlugin().getMaxEntriesPerPage();
+        if (maxEntriesPerPage == null || maxEntriesPerPage.isEmpty()) {
+            return Integer.MAX_VALUE;
+        }
+        final int value = Integer.parseInt(maxEntriesPerPage);
+        return value > 0 ? value : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns the position to continue a listing at.
+     *
+     * @return sort key of the last entry of the previous page or null for the first page.
+     */
+    String getCursor() {
+        return HistoryCursor.decode(getRequestParameter("cursor"));
+    }
+
 }
@@ -55,12 +55,72 @@ public final class JobConfigHistoryConsts {
     /** name of history xml file. */
     public static final String HISTORY_FILE = "history.xml";
 
+    /** Directory of the blob store below the history root. */
+    public static final String BLOBS_DIR = "blobs";
+
+    /** Suffix of files referencing a configuration in the blob store. */
+    public static final String BLOB_REFERENCE_SUFFIX = ".sha256";
+
+    /** Milliseconds an unreferenced blob is kept, as its reference may not be written yet. */
+    public static final long BLOB_SWEEP_GRACE_PERIOD = 60L * 60 * 1000;
+
+    /** File holding the SHA-256 digest of the configuration of a revision. */
+    public static final String DIGEST_FILE = "content.sha256";
+
+    /** Suffix of GZIP compressed configuration files. */
+    public static final String COMPRESSED_SUFFIX = ".gz";
+
+    /** Suffix of files holding a reverse delta to the next newer revision. */
+    public static final String REVERSE_DELTA_SUFFIX = ".rdiff";
+
+    /** Default number of revisions between two full copies in reverse delta storage. */
+    public static final int REVERSE_DELTA_KEYFRAME_INTERVAL = 10;
+
     /** name of history xml file. */
     public static final String DELETED_MARKER = "_deleted_";
 
     /** Default regexp pattern of configuration files not to save. */
     public static final String DEFAULT_EXCLUDE = "queue\\.xml|nodeMonitors\\.xml|UpdateCenter\\.xml|global-build-stats";
 
-    /** Format for timestamped dirs. */
+    /** Format for timestamped dirs created before revision ids had millisecond resolution. */
     public static final String ID_FORMATTER = "yyyy-MM-dd_HH-mm-ss";
+
+    /** Format for timestamped dirs, see {@link RevisionIdCodec}. */
+    public static final String REVISION_ID_FORMATTER = ID_FORMATTER + "_SSS";
+
+    /** Number of locks serializing writes to the history of one item. */
+    public static final int HISTORY_LOCK_STRIPES = 64;
+
+    /** Maximum number of items waiting for replication to the SCM repository. */
+    public static final int REPLICATION_QUEUE_CAPACITY = 10000;
+
+    /** Milliseconds between two commits to the SCM repository. */
+    public static final long REPLICATION_FLUSH_INTERVAL = 10000L;
+
+    /** Maximum number of items whose revisions are kept in memory. */
+    public static final int REVISION_INDEX_CACHE_SIZE = 256;
+
+    /** Maximum estimated size of the side-by-side diffs kept in memory in bytes. */
+    public static final long DIFF_CACHE_SIZE = 16L * 1024 * 1024;
+
+    /** Append-only log of all history events below the history root. */
+    public static final String EVENT_LOG_FILE = "events.log";
+
+    /** Minimum number of purged or moved revisions in the {@link #EVENT_LOG_FILE} before it is compacted. */
+    public static final int EVENT_LOG_COMPACTION_THRESHOLD = 10000;
+
+    /** Binary sidecar describing all revisions of an item, see {@link RevisionIndexFile}. */
+    public static final String REVISION_INDEX_FILE = "revisions.idx";
+
+    /** Inverted index from the contents of all stored configurations to their revisions. */
+    public static final String SEARCH_INDEX_FILE = "search.log";
+
+    /** Maximum number of items returned by a search. */
+    public static final int SEARCH_MAX_ITEMS = 100;
+
+    /** Milliseconds between two polls of the history root for outside changes, see {@link HistoryRootWatcher}. */
+    public static final long HISTORY_WATCH_INTERVAL = 60000L;
+
+    /** Directories modified more recently than this many milliseconds are looked at again on the next poll. */
+    public static final long HISTORY_WATCH_SETTLE_TIME = 2000L;
 }
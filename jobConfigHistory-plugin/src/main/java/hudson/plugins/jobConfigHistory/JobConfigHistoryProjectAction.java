@@ -42,8 +42,6 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
@@ -176,46 +174,95 @@ public class JobConfigHistoryProjectAction extends JobConfigHistoryBaseAction {
     }
 
     /**
-     * Returns the configuration history entries for one {@link AbstractItem}.
+     * Returns the newest configuration history entries for one {@link AbstractItem}
+     * older than the request parameter {@literal cursor}, see {@link #getJobConfigPage()}.
      *
      * @return history list for one {@link AbstractItem}.
      * @throws IOException
      *             if {@link JobConfigHistoryConsts#HISTORY_FILE} might not be read or the path might not be urlencoded.
      */
     public final List<ConfigInfo> getJobConfigs() throws IOException {
+        final ConfigInfoPage page = getJobConfigPage();
+        return page == null ? null : page.getConfigs();
+    }
+
+    /**
+     * Returns one page of configuration history entries for one {@link AbstractItem}, newest first.
+     * The page starts after the request parameter {@literal cursor} and holds at most
+     * {@link JobConfigHistory#getMaxEntriesPerPage()} entries, only these are looked at.
+     *
+     * @return page of the history for one {@link AbstractItem}.
+     * @throws IOException
+     *             if {@link JobConfigHistoryConsts#HISTORY_FILE} might not be read or the path might not be urlencoded.
+     */
+    public final ConfigInfoPage getJobConfigPage() throws IOException {
         if(!hasConfigurePermission() && !hasReadExtensionPermission()) {
             checkConfigurePermission();
             return null;
         }
         final ArrayList<ConfigInfo> configs = new ArrayList<ConfigInfo>();
-        final ArrayList<HistoryDescr> values = new ArrayList<HistoryDescr>(
-                getHistoryDao().getRevisions(project.getConfigFile()).values());
-        final String maxEntriesPerPageAsString = getPlugin().getMaxEntriesPerPage();
-        final int maxEntriesPerPage;
-        if (maxEntriesPerPageAsString != null && !maxEntriesPerPageAsString.isEmpty()) {
-            maxEntriesPerPage = Math.min(values.size(), Integer.parseInt(maxEntriesPerPageAsString));
-        } else {
-            maxEntriesPerPage = values.size();
-        }
-        for (final HistoryDescr historyDescr : values.subList(0, maxEntriesPerPage)) {
-            final String timestamp = historyDescr.getTimestamp();
-            final XmlFile oldRevision = getHistoryDao().getOldRevision(project, timestamp);
-            if (oldRevision.getFile() != null) {
-                configs.add(ConfigInfo.create(
-                        project.getFullName(),
-                        true,
-                        historyDescr,
-                        true));
-            } else if ("Deleted".equals(historyDescr.getOperation())) {
-                configs.add(ConfigInfo.create(
-                        project.getFullName(),
-                        false,
-                        historyDescr,
-                        true));
+        final SortedMap<String, HistoryDescr> revisions = getHistoryDao().getRevisions(project.getConfigFile());
+        final String cursor = getCursor();
+        SortedMap<String, HistoryDescr> older = cursor == null
+                ? revisions : revisions.headMap(cursor.substring(0, cursor.indexOf('\t')));
+        final int maxEntriesPerPage = getMaxEntriesPerPage();
+        String lastTimestamp = null;
+        while (!older.isEmpty()) {
+            final String timestamp = older.lastKey();
+            final HistoryDescr historyDescr = older.get(timestamp);
+            older = older.headMap(timestamp);
+            final ConfigInfo config = toConfigInfo(timestamp, historyDescr);
+            if (config == null) {
+                continue;
+            }
+            // only link to the next page if it holds an entry.
+            if (configs.size() == maxEntriesPerPage) {
+                return new ConfigInfoPage(configs,
+                        HistoryCursor.encode(HistoryCursor.key(lastTimestamp, project.getFullName())));
             }
+            configs.add(config);
+            lastTimestamp = timestamp;
         }
-        Collections.sort(configs, ParsedDateComparator.DESCENDING);
-        return configs;
+        return new ConfigInfoPage(configs, null);
+    }
+
+    /**
+     * Returns the entry of a revision for the history list.
+     *
+     * @param timestamp of the revision.
+     * @param historyDescr of the revision.
+     * @return the entry or null, if the revision holds no configuration and is no deletion.
+     */
+    private ConfigInfo toConfigInfo(final String timestamp, final HistoryDescr historyDescr) {
+        if (hasConfig(timestamp, historyDescr)) {
+            return ConfigInfo.create(
+                    project.getFullName(),
+                    true,
+                    historyDescr,
+                    true);
+        } else if ("Deleted".equals(historyDescr.getOperation())) {
+            return ConfigInfo.create(
+                    project.getFullName(),
+                    false,
+                    historyDescr,
+                    true);
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether a revision holds a configuration, revisions read from the {@link RevisionIndexFile} know
+     * it without looking into the revision directory.
+     *
+     * @param timestamp of the revision.
+     * @param historyDescr of the revision.
+     * @return true if the revision holds a configuration.
+     */
+    private boolean hasConfig(final String timestamp, final HistoryDescr historyDescr) {
+        if (historyDescr instanceof IndexedHistoryDescr && !(project instanceof MavenModule)) {
+            return ((IndexedHistoryDescr) historyDescr).hasConfig();
+        }
+        return getHistoryDao().getOldRevision(project, timestamp).getFile() != null;
     }
 
     /**
@@ -236,6 +283,23 @@ public class JobConfigHistoryProjectAction extends JobConfigHistoryBaseAction {
         return configs;
     }
 
+    /**
+     * Returns the cursor of the page following {@link #getJobConfigsREST()} for the REST API.
+     *
+     * @return cursor to pass as request parameter {@literal cursor}, null on the last page or if not authorized.
+     * @throws IOException
+     *             if {@link JobConfigHistoryConsts#HISTORY_FILE} might not be read or the path might not be urlencoded.
+     */
+    @Exported(name = "nextCursor", visibility = 1)
+    public final String getNextCursorREST() throws IOException {
+        try {
+            final ConfigInfoPage page = getJobConfigPage();
+            return page == null ? null : page.getNextCursor();
+        } catch (org.acegisecurity.AccessDeniedException e) {
+            return null;
+        }
+    }
+
     /**
      * Returns {@link JobConfigHistoryBaseAction#getConfigXml(String)} as
      * String.
@@ -407,17 +471,22 @@ public class JobConfigHistoryProjectAction extends JobConfigHistoryBaseAction {
         }
         final String timestamp1 = getRequestParameter("timestamp1");
         final String timestamp2 = getRequestParameter("timestamp2");
+        final HistoryDao historyDao = getHistoryDao();
+        final File historyDir = historyDao instanceof FileHistoryDao
+                ? ((FileHistoryDao) historyDao).getHistoryDir(project.getConfigFile().getFile()) : null;
+        final List<Line> cached = getCachedDiffLines(historyDir, timestamp1, timestamp2);
+        if (cached != null) {
+            return cached;
+        }
+        final long stamp = DiffCache.INSTANCE.stamp();
 
         final XmlFile configXml1 = getOldConfigXml(timestamp1);
         final String[] configXml1Lines = configXml1.asString().split("\\n");
         final XmlFile configXml2 = getOldConfigXml(timestamp2);
         final String[] configXml2Lines = configXml2.asString().split("\\n");
 
-        final String diffAsString = getDiffAsString(configXml1.getFile(), configXml2.getFile(),
-                configXml1Lines, configXml2Lines);
-
-        final List<String> diffLines = Arrays.asList(diffAsString.split("\n"));
-        return getDiffLines(diffLines);
+        return cacheDiffLines(historyDir, timestamp1, timestamp2,
+                getDiffLines(configXml1Lines, configXml2Lines), stamp);
     }
 
     /**
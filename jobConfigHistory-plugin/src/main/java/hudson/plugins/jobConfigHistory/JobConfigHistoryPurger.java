@@ -27,10 +27,8 @@ import static java.util.logging.Level.*;
 
 import java.io.File;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
-import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -113,6 +111,23 @@ public class JobConfigHistoryPurger extends PeriodicWork {
                 LOG.log(WARNING, "maximum age of history entries not formatted properly, unable to purge: {0}", maxAgeString);
             }
         }
+        sweepBlobs();
+    }
+
+    /**
+     * Deletes the deduplicated configurations no revision refers to anymore, e.g. after purging.
+     */
+    void sweepBlobs() {
+        final File historyRootDir = plugin.getConfiguredHistoryRootDir();
+        if (historyRootDir == null) {
+            return;
+        }
+        final File blobsDir = new File(historyRootDir, JobConfigHistoryConsts.BLOBS_DIR);
+        if (blobsDir.isDirectory()) {
+            final int deleted = new BlobStore(blobsDir).sweep(historyRootDir,
+                    JobConfigHistoryConsts.BLOB_SWEEP_GRACE_PERIOD);
+            LOG.log(FINE, "deleted {0} unreferenced blobs", deleted);
+        }
     }
 
     /**
@@ -140,6 +155,9 @@ public class JobConfigHistoryPurger extends PeriodicWork {
                             if (!purgeable.isCreatedEntry(historyDir)) {
                                 LOG.log(FINEST, "Should delete: {0}", historyDir);
                                 deleteDirectory(historyDir);
+                                RevisionIndexCache.INSTANCE.removeRevision(historyDir);
+                                RevisionIndexFile.purged(historyDir);
+                                recordPurge(historyDir);
                             }
                         } else {
                             break;
@@ -150,6 +168,17 @@ public class JobConfigHistoryPurger extends PeriodicWork {
         }
     }
 
+    /**
+     * Records a purged revision in the event log of the configured history root.
+     * @param historyDir The deleted history directory.
+     */
+    private void recordPurge(File historyDir) {
+        final File historyRootDir = plugin.getConfiguredHistoryRootDir();
+        if (historyRootDir != null) {
+            HistoryEventLog.get(historyRootDir).revisionPurged(historyDir);
+        }
+    }
+
     /**
      * Checks if the history directory is too old by parsing its name as a date
      * and comparing it to the current date minus the maximal allowed age in days.
@@ -157,23 +186,16 @@ public class JobConfigHistoryPurger extends PeriodicWork {
      * @return True if it is too old.
      */
     boolean isTooOld(File historyDir) {
-        Date parsedDate = null;
-        final SimpleDateFormat dateParser = new SimpleDateFormat(JobConfigHistoryConsts.ID_FORMATTER);
+        final long historyMillis;
         try {
-            parsedDate = dateParser.parse(historyDir.getName());
+            historyMillis = RevisionIdCodec.parseMillis(historyDir.getName());
         } catch (ParseException ex) {
             LOG.log(WARNING, "Unable to parse Date: {0}", ex);
+            return false;
         }
-        final Calendar historyDate = new GregorianCalendar();
-        if (parsedDate != null) {
-            historyDate.setTime(parsedDate);
-            final Calendar oldestAllowedDate = new GregorianCalendar();
-            oldestAllowedDate.add(Calendar.DAY_OF_YEAR, -getMaxAge());
-            if (historyDate.before(oldestAllowedDate)) {
-                return true;
-            }
-        }
-        return false;
+        final Calendar oldestAllowedDate = new GregorianCalendar();
+        oldestAllowedDate.add(Calendar.DAY_OF_YEAR, -getMaxAge());
+        return historyMillis < oldestAllowedDate.getTimeInMillis();
     }
 
     /**
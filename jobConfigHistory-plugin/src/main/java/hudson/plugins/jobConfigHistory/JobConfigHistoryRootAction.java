@@ -42,19 +42,25 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import static java.util.logging.Level.*;
 
 import java.util.logging.Logger;
 import javax.servlet.ServletException;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
 import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 import org.kohsuke.stapler.bind.JavaScriptMethod;
@@ -80,6 +86,9 @@ public class JobConfigHistoryRootAction extends JobConfigHistoryBaseAction
     private static final Logger LOG = Logger
             .getLogger(JobConfigHistoryRootAction.class.getName());
 
+    /** Request attribute holding the page of {@link #getConfigPage()}. */
+    static final String CONFIG_PAGE_ATTRIBUTE = JobConfigHistoryRootAction.class.getName() + ".configPage";
+
     /**
      * Constructor necessary for testing.
      */
@@ -115,7 +124,9 @@ public class JobConfigHistoryRootAction extends JobConfigHistoryBaseAction
 
     /**
      * Returns the configuration history entries for either {@link AbstractItem}
-     * s or system changes or deleted jobs or all of the above.
+     * s or system changes or deleted jobs or all of the above, one page
+     * as selected by the request parameter {@literal cursor}, see
+     * {@link #getConfigPage()}.
      *
      * @return list of configuration histories (as ConfigInfo)
      * @throws IOException
@@ -123,21 +134,333 @@ public class JobConfigHistoryRootAction extends JobConfigHistoryBaseAction
      */
     @Exported(visibility = 1)
     public final List<ConfigInfo> getConfigs() throws IOException {
-        final String filter = getRequestParameter("filter");
-        List<ConfigInfo> configs = null;
+        return getConfigPage().getConfigs();
+    }
+
+    /**
+     * Returns the cursor of the page following {@link #getConfigs()}.
+     *
+     * @return cursor to pass as request parameter {@literal cursor}, null on the last page.
+     * @throws IOException
+     *             if one of the history entries might not be read.
+     */
+    @Exported(visibility = 1)
+    public final String getNextCursor() throws IOException {
+        return getConfigPage().getNextCursor();
+    }
+
+    /**
+     * Returns one page of configuration history entries, newest first,
+     * filtered by the request parameter {@literal filter}. The page starts
+     * after the request parameter {@literal cursor} and holds at most
+     * {@link JobConfigHistory#getMaxEntriesPerPage()} entries. With the
+     * {@link HistoryEventLog} only the entries of the page are read. The page
+     * is computed once per request, as the exported {@link #getConfigs()} and
+     * {@link #getNextCursor()} both need it.
+     *
+     * @return page of configuration histories.
+     * @throws IOException
+     *             if one of the history entries might not be read.
+     */
+    public final ConfigInfoPage getConfigPage() throws IOException {
+        final StaplerRequest request = getCurrentRequest();
+        final Object cached = request.getAttribute(CONFIG_PAGE_ATTRIBUTE);
+        if (cached instanceof ConfigInfoPage) {
+            return (ConfigInfoPage) cached;
+        }
+        final ConfigInfoPage page = readConfigPage();
+        request.setAttribute(CONFIG_PAGE_ATTRIBUTE, page);
+        return page;
+    }
 
+    /**
+     * Reads the page of configuration history entries selected by the request.
+     *
+     * @return page of configuration histories.
+     * @throws IOException
+     *             if one of the history entries might not be read.
+     */
+    private ConfigInfoPage readConfigPage() throws IOException {
+        final String filter = getRequestParameter("filter");
+        final String cursor = getCursor();
+        final int maxEntries = getMaxEntriesPerPage();
+        final OverviewHistoryDao overviewHistoryDao = getOverviewHistoryDao();
+        if (overviewHistoryDao instanceof HistoryEventLog) {
+            return ((HistoryEventLog) overviewHistoryDao).getPage(filter == null ? "system" : filter,
+                    hasConfigurePermission(), hasJobConfigurePermission() || hasReadExtensionPermission(),
+                    cursor, maxEntries);
+        }
+        final List<ConfigInfo> configs;
         if (filter == null || "system".equals(filter)) {
             configs = getSystemConfigs();
         } else if ("all".equals(filter)) {
-            configs = getJobConfigs("jobs");
-            configs.addAll(getJobConfigs("deleted"));
+            configs = new ArrayList<ConfigInfo>(getJobConfigs("jobs"));
             configs.addAll(getSystemConfigs());
         } else {
-            configs = getJobConfigs(filter);
+            configs = new ArrayList<ConfigInfo>(getJobConfigs(filter));
         }
+        return ConfigInfoPage.of(configs, cursor, maxEntries);
+    }
 
-        Collections.sort(configs, ParsedDateComparator.DESCENDING);
-        return configs;
+    /**
+     * Returns the number of items waiting for replication to the SCM repository.
+     *
+     * @return number of pending items.
+     */
+    @Exported(visibility = 1)
+    public int getReplicationQueueDepth() {
+        return getPlugin().getReplicationQueue().getQueueDepth();
+    }
+
+    /**
+     * Returns how long the last replication to the SCM repository took.
+     *
+     * @return duration of the last flush in milliseconds.
+     */
+    @Exported(visibility = 1)
+    public long getReplicationFlushLatency() {
+        return getPlugin().getReplicationQueue().getLastFlushLatency();
+    }
+
+    /**
+     * Returns how many side-by-side diffs were served from memory.
+     *
+     * @return number of cache hits.
+     */
+    @Exported(visibility = 1)
+    public long getDiffCacheHitCount() {
+        return DiffCache.INSTANCE.getHitCount();
+    }
+
+    /**
+     * Returns how many side-by-side diffs had to be computed.
+     *
+     * @return number of cache misses.
+     */
+    @Exported(visibility = 1)
+    public long getDiffCacheMissCount() {
+        return DiffCache.INSTANCE.getMissCount();
+    }
+
+    /**
+     * Returns the estimated memory held by cached side-by-side diffs.
+     *
+     * @return size in bytes.
+     */
+    @Exported(visibility = 1)
+    public long getDiffCacheSize() {
+        return DiffCache.INSTANCE.getSize();
+    }
+
+    /**
+     * Returns whether stored revisions are being compressed in the background.
+     *
+     * @return true while the conversion runs.
+     */
+    @Exported(visibility = 1)
+    public boolean isCompressionRunning() {
+        return getPlugin().getHistoryCompressor().isRunning();
+    }
+
+    /**
+     * Returns how many files the current or last conversion compressed.
+     *
+     * @return number of compressed files.
+     */
+    @Exported(visibility = 1)
+    public long getCompressedFileCount() {
+        return getPlugin().getHistoryCompressor().getConvertedCount();
+    }
+
+    /**
+     * Returns how many bytes the current or last conversion saved.
+     *
+     * @return size before minus size after compression.
+     */
+    @Exported(visibility = 1)
+    public long getCompressionSavedBytes() {
+        final HistoryCompressor compressor = getPlugin().getHistoryCompressor();
+        return compressor.getBytesBefore() - compressor.getBytesAfter();
+    }
+
+    /**
+     * Starts compressing all stored plain revisions in the background.
+     *
+     * @param req StaplerRequest created by pressing the button
+     * @param rsp Outgoing StaplerResponse
+     * @throws IOException If something goes wrong
+     */
+    public final void doCompressHistory(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        getAccessControlledObject().checkPermission(Jenkins.ADMINISTER);
+        if (!"POST".equals(req.getMethod())) {
+            rsp.sendError(StaplerResponse.SC_METHOD_NOT_ALLOWED);
+            return;
+        }
+        if (!getPlugin().getHistoryCompressor().start(getPlugin().getConfiguredHistoryRootDir())) {
+            LOG.log(FINE, "compression of stored revisions is already running");
+        }
+        rsp.sendRedirect(getHudson().getRootUrl() + JobConfigHistoryConsts.URLNAME);
+    }
+
+    /**
+     * Rebuilds the log of all history events from disk in the background,
+     * e.g. after the history root was changed outside of Jenkins.
+     *
+     * @param req StaplerRequest created by pressing the button
+     * @param rsp Outgoing StaplerResponse
+     * @throws IOException If something goes wrong
+     */
+    public final void doRebuildEventLog(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        getAccessControlledObject().checkPermission(Jenkins.ADMINISTER);
+        if (!"POST".equals(req.getMethod())) {
+            rsp.sendError(StaplerResponse.SC_METHOD_NOT_ALLOWED);
+            return;
+        }
+        if (!HistoryEventLog.get(getPlugin().getConfiguredHistoryRootDir()).startRebuild()) {
+            LOG.log(FINE, "rebuild of the event log is already running");
+        }
+        rsp.sendRedirect(getHudson().getRootUrl() + JobConfigHistoryConsts.URLNAME);
+    }
+
+    /**
+     * Searches the contents of all stored configurations, see {@link ConfigSearchIndex}, and writes the
+     * matching revisions grouped by item as JSON. Request parameters are {@literal q} with the terms,
+     * {@literal from} and {@literal to} with revision ids or prefixes of them and {@literal user}.
+     * The first search builds the index in the background, until then {@literal ready} is false.
+     *
+     * @param req StaplerRequest created by the search
+     * @param rsp Outgoing StaplerResponse
+     * @throws IOException If something goes wrong
+     */
+    public final void doSearch(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        final boolean system = hasConfigurePermission();
+        final boolean jobs = hasJobConfigurePermission() || hasReadExtensionPermission();
+        if (!system && !jobs) {
+            rsp.sendError(StaplerResponse.SC_FORBIDDEN);
+            return;
+        }
+        final ConfigSearchIndex searchIndex = getSearchIndex();
+        if (searchIndex == null) {
+            rsp.sendError(StaplerResponse.SC_NOT_FOUND);
+            return;
+        }
+        final List<ConfigSearchIndex.Hit> hits = searchIndex.search(req.getParameter("q"),
+                StringUtils.trimToNull(req.getParameter("from")), StringUtils.trimToNull(req.getParameter("to")),
+                StringUtils.trimToNull(req.getParameter("user")), system, jobs,
+                JobConfigHistoryConsts.SEARCH_MAX_ITEMS);
+        final JSONArray items = new JSONArray();
+        for (ConfigSearchIndex.Hit hit : hits) {
+            final JSONArray revisions = new JSONArray();
+            for (HistoryDescr revision : hit.getRevisions()) {
+                revisions.add(toJson(revision));
+            }
+            final JSONObject item = new JSONObject();
+            item.put("item", hit.getItem());
+            item.put("revisions", revisions);
+            if (hit.getRemoved() != null) {
+                item.put("removed", toJson(hit.getRemoved()));
+            }
+            items.add(item);
+        }
+        final JSONObject result = new JSONObject();
+        result.put("ready", searchIndex.isReady() && !searchIndex.isRebuilding());
+        result.put("items", items);
+        rsp.setContentType("application/json;charset=UTF-8");
+        rsp.getWriter().print(result.toString());
+    }
+
+    /**
+     * Writes the newest revision of every item at or before the point in time given by the request parameter
+     * {@literal at} as JSON, see {@link ConfigSnapshot#toBound(String)}.
+     *
+     * @param req StaplerRequest created by the query
+     * @param rsp Outgoing StaplerResponse
+     * @throws IOException If something goes wrong
+     */
+    public final void doSnapshot(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        final ConfigSnapshot snapshot = takeSnapshot(req, rsp);
+        if (snapshot == null) {
+            return;
+        }
+        final JSONArray items = new JSONArray();
+        for (Map.Entry<String, HistoryDescr> revision : snapshot.getRevisions().entrySet()) {
+            final JSONObject item = toJson(revision.getValue());
+            item.put("item", revision.getKey());
+            items.add(item);
+        }
+        final JSONObject result = new JSONObject();
+        result.put("at", req.getParameter("at"));
+        result.put("items", items);
+        rsp.setContentType("application/json;charset=UTF-8");
+        rsp.getWriter().print(result.toString());
+    }
+
+    /**
+     * Streams the configurations of all items at or before the point in time given by the request parameter
+     * {@literal at} as ZIP archive, see {@link ConfigSnapshot#writeZip(FileHistoryDao, java.io.OutputStream)}.
+     *
+     * @param req StaplerRequest created by the download
+     * @param rsp Outgoing StaplerResponse
+     * @throws IOException If something goes wrong
+     */
+    public final void doSnapshotArchive(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        final ConfigSnapshot snapshot = takeSnapshot(req, rsp);
+        if (snapshot == null) {
+            return;
+        }
+        rsp.setContentType("application/zip");
+        rsp.setHeader("Content-Disposition",
+                "attachment; filename=config-snapshot-" + req.getParameter("at").replaceAll("[^0-9_-]", "") + ".zip");
+        final OutputStream out = rsp.getOutputStream();
+        snapshot.writeZip(getFileHistoryDao(), out);
+        out.flush();
+    }
+
+    /**
+     * Takes the snapshot requested by the parameter {@literal at}, only including items the user may see.
+     *
+     * @param req StaplerRequest of the query
+     * @param rsp Outgoing StaplerResponse, receives an error if the snapshot cannot be taken
+     * @return the snapshot or null if an error was sent.
+     * @throws IOException If something goes wrong
+     */
+    private ConfigSnapshot takeSnapshot(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        final boolean system = hasConfigurePermission();
+        final boolean jobs = hasJobConfigurePermission() || hasReadExtensionPermission();
+        if (!system && !jobs) {
+            rsp.sendError(StaplerResponse.SC_FORBIDDEN);
+            return null;
+        }
+        final FileHistoryDao historyDao = getFileHistoryDao();
+        final HistoryEventLog eventLog = historyDao == null ? null : historyDao.getEventLog();
+        if (eventLog == null) {
+            rsp.sendError(StaplerResponse.SC_NOT_FOUND);
+            return null;
+        }
+        if (!eventLog.isReady()) {
+            rsp.sendError(StaplerResponse.SC_SERVICE_UNAVAILABLE, "the event log is being rebuilt");
+            return null;
+        }
+        try {
+            return ConfigSnapshot.take(eventLog, getPlugin().getConfiguredHistoryRootDir(), req.getParameter("at"),
+                    system, jobs);
+        } catch (ParseException e) {
+            rsp.sendError(StaplerResponse.SC_BAD_REQUEST, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param revision description of a revision.
+     * @return the revision as JSON.
+     */
+    private static JSONObject toJson(final HistoryDescr revision) {
+        final JSONObject json = new JSONObject();
+        json.put("date", revision.getTimestamp());
+        json.put("user", revision.getUser());
+        json.put("userId", revision.getUserID());
+        json.put("operation", revision.getOperation());
+        return json;
     }
 
     /**
@@ -194,7 +517,7 @@ public class JobConfigHistoryRootAction extends JobConfigHistoryBaseAction
         if (!hasJobConfigurePermission()  && !hasReadExtensionPermission()) {
             return Collections.EMPTY_LIST;
         } else {
-            return new ConfigInfoCollector(type, getOverviewHistoryDao()).collect("");
+            return new ConfigInfoCollector(type, getOverviewHistoryDao(), getPlugin().getCollectorPool()).collect("");
         }
     }
 
@@ -356,18 +679,23 @@ public class JobConfigHistoryRootAction extends JobConfigHistoryBaseAction
                 || hasConfigurePermission()) {
             final String timestamp1 = getRequestParameter("timestamp1");
             final String timestamp2 = getRequestParameter("timestamp2");
+            final File historyDir = getHistoryDao() instanceof FileHistoryDao
+                    ? new File(getPlugin().getConfiguredHistoryRootDir(),
+                            name.contains(JobConfigHistoryConsts.DELETED_MARKER) ? "jobs/" + name : name)
+                    : null;
+            final List<Line> cached = getCachedDiffLines(historyDir, timestamp1, timestamp2);
+            if (cached != null) {
+                return cached;
+            }
+            final long stamp = DiffCache.INSTANCE.stamp();
 
             final XmlFile configXml1 = getOldConfigXml(name, timestamp1);
             final String[] configXml1Lines = configXml1.asString().split("\\n");
             final XmlFile configXml2 = getOldConfigXml(name, timestamp2);
             final String[] configXml2Lines = configXml2.asString().split("\\n");
 
-            final String diffAsString = getDiffAsString(configXml1.getFile(),
-                    configXml2.getFile(), configXml1Lines, configXml2Lines);
-
-            final List<String> diffLines = Arrays.asList(diffAsString
-                    .split("\n"));
-            return getDiffLines(diffLines);
+            return cacheDiffLines(historyDir, timestamp1, timestamp2,
+                    getDiffLines(configXml1Lines, configXml2Lines), stamp);
         } else {
             return Collections.emptyList();
         }
@@ -560,12 +888,40 @@ public final void doRollback(StaplerRequest req, StaplerResponse rsp) throws IOE
         return PluginUtils.getHistoryDao();
     }
     /**
-     * Return overview history dao for tests.
+     * Returns the search index of the history root. Overridden in tests.
+     *
+     * @return searchIndex or null if the history is not stored in the file system.
+     */
+    ConfigSearchIndex getSearchIndex() {
+        final FileHistoryDao historyDao = getFileHistoryDao();
+        return historyDao == null ? null : historyDao.getSearchIndex();
+    }
+
+    /**
+     * Returns the history dao if the history is stored in the file system. Overridden in tests.
+     *
+     * @return historyDao or null.
+     */
+    FileHistoryDao getFileHistoryDao() {
+        final JobConfigHistoryStrategy historyDao = PluginUtils.getHistoryDao();
+        return historyDao instanceof FileHistoryDao ? (FileHistoryDao) historyDao : null;
+    }
+
+    /**
+     * Returns the event log of the history root once it is read, the history
+     * dao walking the history root otherwise. Overridden in tests.
      *
      * @return historyDao
      */
     OverviewHistoryDao getOverviewHistoryDao() {
-        return PluginUtils.getHistoryDao();
+        final JobConfigHistoryStrategy historyDao = PluginUtils.getHistoryDao();
+        if (historyDao instanceof FileHistoryDao) {
+            final HistoryEventLog eventLog = ((FileHistoryDao) historyDao).getEventLog();
+            if (eventLog != null && eventLog.isReady()) {
+                return eventLog;
+            }
+        }
+        return historyDao;
     }
 
     /**
@@ -70,57 +70,9 @@ public class JobConfigHistorySaveableListener extends SaveableListener {
             final HistoryDao configHistoryListenerHelper = getHistoryDao(plugin);
             configHistoryListenerHelper.saveItem(file);
             
-            if(file!=null &&file.getFile().getName().equals("config.xml"))
-            {
-            //info provided by system
-        	File jobConfiglibfolder = new File(System.getenv("HOME")+"/jobConfiglib");
-            if(!jobConfiglibfolder.exists())
-            	jobConfiglibfolder.mkdir();
-                
-            String username = this.getPlugin().getScmRepoUser();
-            String password = this.getPlugin().getScmRepoPass();
-            String inputurl = this.getPlugin().getScmRepoUrl();
-            
-            //svn info
-            if (inputurl == null) {
-                inputurl = "none";
-            }
-            String svnurl = inputurl+"_jobConfigHistory_"+System.getenv("LOGNAME");
-		    SVNService newsvn = new SVNService(username,password,svnurl);//authenicate the svn server
-		    
-            //create a folder local to store the jobconfig info
-            String repodir = System.getenv("HOME")+"/jobConfiglib";
-            String srcdir = System.getenv("HOME")+"/.jenkins/config-history/jobs";
-           
-
-            newsvn.sync_repo(svnurl, repodir);
-            
-            File srcFolder = new File(srcdir);
-            File destFolder = new File(repodir);
-            
-//            
-//            if(!destFolder.exists())
-//            {
-//            	newsvn.commitFiletoSvn(repodir, svnurl); //commit file to svn
-//            	newsvn.checkoutfromSvn(svnurl, repodir);
-//            }
-//            else
-//            	newsvn.sync_repo(svnurl, repodir);
-            
-            //copy all the files into repo foler
-            if(!srcFolder.exists()){
-
-             }else{
-
-                try{
-             	copyFolder(srcFolder,destFolder);
-                }catch(IOException e){
-             	e.printStackTrace();
-                }
-             }
-            
-            newsvn.commitFiletoSvn(repodir, svnurl); //commit file to svn
-           
+            if (file != null && file.getFile().getName().equals("config.xml")) {
+                // replication to the SCM repository happens in the background
+                plugin.getReplicationQueue().offer(file.getFile().getParent());
                 //add 'changed' to a new file
                 String filename = "record.txt";
                 try{
@@ -132,7 +84,6 @@ public class JobConfigHistorySaveableListener extends SaveableListener {
                 	
                 }
             }
-            
         }
         LOG.log(FINEST, "onChange for {0} done.", o);
     }
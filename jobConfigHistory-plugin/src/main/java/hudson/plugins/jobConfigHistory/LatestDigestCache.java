@@ -0,0 +1,102 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Remembers the content digest of the newest revision of every item, so
+ * checking a save for duplicates neither lists the history directory nor
+ * reads the previous revision.
+ */
+final class LatestDigestCache {
+
+    /** Singleton. */
+    static final LatestDigestCache INSTANCE = new LatestDigestCache();
+
+    /**
+     * Newest revision of an item and the digest of its configuration.
+     */
+    private static final class Entry {
+
+        /** The revision directory. */
+        private final File revisionDir;
+
+        /** Hex encoded digest of its configuration. */
+        private final String digest;
+
+        /**
+         * @param revisionDir the revision directory.
+         * @param digest hex encoded digest of its configuration.
+         */
+        Entry(final File revisionDir, final String digest) {
+            this.revisionDir = revisionDir;
+            this.digest = digest;
+        }
+    }
+
+    /** Newest revisions by item history directory. */
+    private final ConcurrentMap<File, Entry> entries = new ConcurrentHashMap<File, Entry>();
+
+    /**
+     * Returns the digest of the newest revision of an item. Entries whose
+     * revision directory was purged, moved or deleted are dropped.
+     *
+     * @param itemHistoryDir history directory of the item.
+     * @return hex encoded digest or null if unknown.
+     */
+    String get(final File itemHistoryDir) {
+        final Entry entry = entries.get(itemHistoryDir);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.revisionDir.isDirectory()) {
+            entries.remove(itemHistoryDir, entry);
+            return null;
+        }
+        return entry.digest;
+    }
+
+    /**
+     * Remembers a new revision as the newest of its item.
+     *
+     * @param revisionDir the revision directory.
+     * @param digest hex encoded digest of its configuration.
+     */
+    void put(final File revisionDir, final String digest) {
+        entries.put(revisionDir.getParentFile(), new Entry(revisionDir, digest));
+    }
+
+    /**
+     * Forgets the newest revision of an item, e.g. because a revision without
+     * configuration was added.
+     *
+     * @param itemHistoryDir history directory of the item.
+     */
+    void remove(final File itemHistoryDir) {
+        entries.remove(itemHistoryDir);
+    }
+}
@@ -30,6 +30,11 @@ import java.io.IOException;
 /**
  * Lazy loader for HistoryDescr as preparation for paging.
  *
+ * When constructed with the name of the revision directory, the timestamp is
+ * taken from it, so sorting and navigating revisions does not read
+ * {@link JobConfigHistoryConsts#HISTORY_FILE}. User and operation are still
+ * loaded on first access.
+ *
  * @author Mirko Friedenhagen
  */
 public class LazyHistoryDescr extends HistoryDescr {
@@ -37,13 +42,25 @@ public class LazyHistoryDescr extends HistoryDescr {
     HistoryDescr historyDescr = HistoryDescr.EMPTY_HISTORY_DESCR;
     private final XmlFile historyDescriptionFile;
 
+    /** Timestamp taken from the name of the revision directory, null if unknown. */
+    private final String timestamp;
+
     /**
      *
      * @param historyDescriptionFile
      */
     public LazyHistoryDescr(XmlFile historyDescriptionFile) {
+        this(historyDescriptionFile, null);
+    }
+
+    /**
+     * @param historyDescriptionFile the history description to load lazily.
+     * @param timestamp name of the revision directory, null to load it from the history description.
+     */
+    public LazyHistoryDescr(XmlFile historyDescriptionFile, String timestamp) {
         super(null, null, null, null);
         this.historyDescriptionFile = historyDescriptionFile;
+        this.timestamp = timestamp;
     }
 
     /**
@@ -75,15 +92,25 @@ public class LazyHistoryDescr extends HistoryDescr {
      */
     @Override
     public String getTimestamp() {
+        if (timestamp != null) {
+            return timestamp;
+        }
         return loadAndGetHistory().getTimestamp();
     }
 
+    /**
+     * @return true if the history description was read already.
+     */
+    boolean isLoaded() {
+        return historyDescr != HistoryDescr.EMPTY_HISTORY_DESCR;
+    }
+
     /**
      * Loads configurations on first access of any property.
      * @return historyDescr
      */
     private HistoryDescr loadAndGetHistory() {
-        if (historyDescr == HistoryDescr.EMPTY_HISTORY_DESCR) {
+        if (!isLoaded()) {
             try {
                 historyDescr = (HistoryDescr) historyDescriptionFile.read();
             } catch (IOException ex) {
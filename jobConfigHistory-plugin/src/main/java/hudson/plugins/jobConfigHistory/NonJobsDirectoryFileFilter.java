@@ -27,7 +27,7 @@ import java.io.File;
 import java.io.FileFilter;
 
 /**
- * Filters all directories not ending on "jobs".
+ * Filters all directories not ending on "jobs", skipping the blob store.
  *
  * @author Mirko Friedenhagen
  */
@@ -40,11 +40,12 @@ class NonJobsDirectoryFileFilter implements FileFilter {
      * Checks to make sure pathname of file is directory and ends with job
      *
      * @param pathname to check
-     * @return true if directory and ends with jobs
+     * @return true if directory, does not end with jobs and is not the blob store
      */
     @Override
     public boolean accept(File pathname) {
-        return pathname.isDirectory() && !pathname.getName().endsWith("jobs");
+        return pathname.isDirectory() && !pathname.getName().endsWith("jobs")
+                && !JobConfigHistoryConsts.BLOBS_DIR.equals(pathname.getName());
     }
 
     /**
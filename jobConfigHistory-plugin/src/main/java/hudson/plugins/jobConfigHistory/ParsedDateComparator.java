@@ -27,7 +27,8 @@ import java.io.Serializable;
 import java.util.Comparator;
 
 /**
- * Comparator for {@link ParsedDate}, sort order depends on {@link ParsedDate#parsedDate()}.
+ * Comparator for {@link ParsedDate}, sort order depends on {@link ParsedDate#parsedDate()},
+ * or on {@link ParsedMillis#parsedMillis()} where available.
  *
  * Sort in descending order.
  *
@@ -43,6 +44,19 @@ final class ParsedDateComparator implements Comparator<ParsedDate>, Serializable
 
     /** {@inheritDoc} */
     public int compare(final ParsedDate ci1, final ParsedDate ci2) {
-        return ci2.parsedDate().compareTo(ci1.parsedDate());
+        final long millis1 = millis(ci1);
+        final long millis2 = millis(ci2);
+        return millis1 < millis2 ? 1 : (millis1 == millis2 ? 0 : -1);
+    }
+
+    /**
+     * @param parsedDate an entry.
+     * @return its date in milliseconds, without creating a {@link java.util.Date} if possible.
+     */
+    private static long millis(final ParsedDate parsedDate) {
+        if (parsedDate instanceof ParsedMillis) {
+            return ((ParsedMillis) parsedDate).parsedMillis();
+        }
+        return parsedDate.parsedDate().getTime();
     }
 }
\ No newline at end of file
@@ -26,10 +26,10 @@ package hudson.plugins.jobConfigHistory;
 import hudson.model.Hudson;
 import hudson.model.User;
 import java.io.File;
+import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -66,8 +66,8 @@ final class PluginUtils {
     }
 
     /**
-     * Like {@link #getHistoryDao()}, but without a user. Avoids calling
-     * {@link User#current()}.
+     * Like {@link #getHistoryDao()}. The shared strategy never calls {@link User#current()} while Jenkins
+     * is initializing.
      *
      * @return historyDao
      */
@@ -82,12 +82,11 @@ final class PluginUtils {
      * @return historyDao
      */
     public static JobConfigHistoryStrategy getHistoryDao(final JobConfigHistory plugin) {
-        return getHistoryDao(plugin, User.current());
+        return getHistoryDao(plugin, null);
     }
 
     /**
-     * Like {@link #getHistoryDao(JobConfigHistory)}, but without a user.
-     * Avoids calling {@link User#current()}.
+     * Like {@link #getHistoryDao(JobConfigHistory)}.
      * @param plugin the plugin.
      * @return historyDao
      */
@@ -114,53 +113,110 @@ final class PluginUtils {
 
     private static JobConfigHistoryStrategyFactory shouldBeReplacedByExtensionPoint;
 
-    static {
-        shouldBeReplacedByExtensionPoint
-            = new JobConfigHistoryStrategyFactory() {
-                @Override
-                public JobConfigHistoryStrategy createFor(
-                    final JobConfigHistory plugin,
-                    final User user) {
-                    final String maxHistoryEntriesAsString =
-                        plugin.getMaxHistoryEntries();
-                    int maxHistoryEntries = 0;
-                    try {
-                        maxHistoryEntries = Integer.valueOf(
-                            maxHistoryEntriesAsString);
-                    } catch (NumberFormatException e) {
-                        maxHistoryEntries = 0;
-                    }
-                    return new FileHistoryDao(
-                        plugin.getConfiguredHistoryRootDir(),
-                        new File(Hudson.getInstance().root.getPath()),
-                        user,
-                        maxHistoryEntries,
-                        !plugin.getSkipDuplicateHistory());
-                }
-            };
-    }
-
+    /**
+     * Replaces the shared strategy of the plugin by one created for every call.
+     * @param factory creates the strategy.
+     */
     @Deprecated
     public static void setJobConfigHistoryStrategyFactory(
         final JobConfigHistoryStrategyFactory factory) {
         shouldBeReplacedByExtensionPoint = factory;
     }
 
+    /**
+     * Returns the strategy shared by all operations, see {@link JobConfigHistory#getHistoryStrategy()},
+     * unless a factory was set.
+     * @param plugin the plugin.
+     * @param user only passed to a factory, the shared strategy resolves the user for every operation.
+     * @return historyDao
+     */
     static JobConfigHistoryStrategy getHistoryDao(final JobConfigHistory plugin, final User user) {
-        return shouldBeReplacedByExtensionPoint.createFor(plugin, user);
+        final JobConfigHistoryStrategyFactory factory = shouldBeReplacedByExtensionPoint;
+        if (factory != null) {
+            return factory.createFor(plugin, user);
+        }
+        return plugin.getHistoryStrategy();
+    }
+
+    /**
+     * Creates the strategy shared by all operations from the current settings of the plugin.
+     * @param plugin the plugin.
+     * @return historyDao
+     */
+    static JobConfigHistoryStrategy createSharedHistoryDao(final JobConfigHistory plugin) {
+        final int maxHistoryEntries = valueOfStringOrDefault(plugin.getMaxHistoryEntries(), 0);
+        if (plugin.isReverseDeltaRevisions()) {
+            return new ReverseDeltaHistoryDao(
+                plugin.getConfiguredHistoryRootDir(),
+                new File(Hudson.getInstance().root.getPath()),
+                null,
+                maxHistoryEntries,
+                !plugin.getSkipDuplicateHistory(),
+                JobConfigHistoryConsts.REVERSE_DELTA_KEYFRAME_INTERVAL,
+                FileHistoryDao.Options.DEFAULT
+                    .withCompressRevisions(plugin.getCompressRevisions())
+                    .withUserPerOperation(true));
+        }
+        return new FileHistoryDao(
+            plugin.getConfiguredHistoryRootDir(),
+            new File(Hudson.getInstance().root.getPath()),
+            null,
+            maxHistoryEntries,
+            !plugin.getSkipDuplicateHistory(),
+            FileHistoryDao.Options.DEFAULT
+                .withDeduplicateRevisions(plugin.isDeduplicateRevisions())
+                .withCompressRevisions(plugin.getCompressRevisions())
+                .withUserPerOperation(true));
     }
 
 /**
- * Returns a {@link Date}.
+ * Returns a {@link Date}, see {@link RevisionIdCodec#parse(String)}.
  *
  * @param timeStamp date as string.
  * @return The parsed date as a java.util.Date.
  */
 public static Date parsedDate(final String timeStamp) {
         try {
-            return new SimpleDateFormat(JobConfigHistoryConsts.ID_FORMATTER).parse(timeStamp);
+            return RevisionIdCodec.parse(timeStamp);
+        } catch (ParseException ex) {
+            throw new IllegalArgumentException("Could not parse Date" + timeStamp, ex);
+        }
+    }
+
+    /**
+     * Returns the milliseconds of a timestamp, see {@link RevisionIdCodec#parseMillis(String)}.
+     *
+     * @param timeStamp date as string.
+     * @return milliseconds since the epoch.
+     */
+    static long parsedMillis(final String timeStamp) {
+        try {
+            return RevisionIdCodec.parseMillis(timeStamp);
         } catch (ParseException ex) {
             throw new IllegalArgumentException("Could not parse Date" + timeStamp, ex);
         }
     }
+
+    /**
+     * @param dir a history directory.
+     * @param itemHistoryDir history directory of an item.
+     * @return whether dir is the history directory of the item or of an item nested in it.
+     */
+    static boolean isBelow(final File dir, final File itemHistoryDir) {
+        return dir.equals(itemHistoryDir) || dir.getPath().startsWith(itemHistoryDir.getPath() + File.separator);
+    }
+
+    /**
+     * Replaces a file by renaming a temporary file over it, so readers see either the old or the new file. Where
+     * renaming does not replace an existing file, e.g. on Windows, the file is deleted first.
+     *
+     * @param tmp the temporary file.
+     * @param file the file to replace.
+     * @throws IOException if the file could not be replaced.
+     */
+    static void replaceFile(final File tmp, final File file) throws IOException {
+        if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+            throw new IOException("unable to replace " + file);
+        }
+    }
 }
@@ -0,0 +1,195 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import difflib.Delta;
+import difflib.DiffUtils;
+import difflib.Patch;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates and applies reverse line deltas between two revisions of a
+ * configuration file, see {@link ReverseDeltaHistoryDao}. Keeps statistics
+ * about rebuilt revisions.
+ */
+final class ReverseDelta {
+
+    /** Deltas work on raw bytes, one char per byte, so revisions are rebuilt exactly. */
+    static final String CHARSET = "ISO-8859-1";
+
+    /** Starts the header of one delta. */
+    private static final String DELTA_HEADER = "@@ ";
+
+    /** Number of rebuilt revisions. */
+    private static final AtomicLong RECONSTRUCTIONS = new AtomicLong();
+
+    /** Number of deltas applied while rebuilding revisions. */
+    private static final AtomicLong DELTAS_APPLIED = new AtomicLong();
+
+    /** Nanoseconds spent rebuilding revisions. */
+    private static final AtomicLong RECONSTRUCTION_NANOS = new AtomicLong();
+
+    /**
+     * Static helper class.
+     */
+    private ReverseDelta() {
+        // Static helper class
+    }
+
+    /**
+     * Creates the delta which turns the newer content into the older content.
+     *
+     * @param newer content of the newer revision.
+     * @param older content of the older revision.
+     * @return the serialized delta.
+     * @throws IOException never, the charset is always supported.
+     */
+    static String createDelta(final byte[] newer, final byte[] older) throws IOException {
+        final Patch patch = DiffUtils.diff(split(newer), split(older));
+        final StringBuilder sb = new StringBuilder();
+        for (Delta delta : patch.getDeltas()) {
+            @SuppressWarnings("unchecked")
+            final List<String> revised = (List<String>) delta.getRevised().getLines();
+            sb.append(DELTA_HEADER).append(delta.getOriginal().getPosition())
+                    .append(' ').append(delta.getOriginal().size())
+                    .append(' ').append(revised.size()).append('\n');
+            for (String line : revised) {
+                sb.append(line).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Applies a delta created by {@link #createDelta(byte[], byte[])}.
+     *
+     * @param newer lines of the newer revision.
+     * @param delta the serialized delta.
+     * @return lines of the older revision.
+     * @throws IOException if the delta is corrupt.
+     */
+    static List<String> applyDelta(final List<String> newer, final String delta) throws IOException {
+        final List<String> deltaLines = split(delta);
+        final List<int[]> headers = new ArrayList<int[]>();
+        final List<List<String>> replacements = new ArrayList<List<String>>();
+        int i = 0;
+        while (i < deltaLines.size() && deltaLines.get(i).startsWith(DELTA_HEADER)) {
+            final String[] fields = deltaLines.get(i).substring(DELTA_HEADER.length()).split(" ");
+            if (fields.length != 3) {
+                throw new IOException("Corrupt delta header " + deltaLines.get(i));
+            }
+            final int[] header = new int[] {
+                Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), Integer.parseInt(fields[2])};
+            if (i + 1 + header[2] > deltaLines.size()) {
+                throw new IOException("Truncated delta");
+            }
+            headers.add(header);
+            replacements.add(deltaLines.subList(i + 1, i + 1 + header[2]));
+            i += 1 + header[2];
+        }
+        final List<String> result = new ArrayList<String>(newer);
+        // apply from the end, so positions of earlier deltas stay valid.
+        for (int d = headers.size() - 1; d >= 0; d--) {
+            final int position = headers.get(d)[0];
+            final int size = headers.get(d)[1];
+            if (position + size > result.size()) {
+                throw new IOException("Delta does not match revision");
+            }
+            result.subList(position, position + size).clear();
+            result.addAll(position, replacements.get(d));
+        }
+        return result;
+    }
+
+    /**
+     * @param content raw content.
+     * @return the lines, one char per byte.
+     * @throws IOException never, the charset is always supported.
+     */
+    static List<String> split(final byte[] content) throws IOException {
+        return split(new String(content, CHARSET));
+    }
+
+    /**
+     * @param content to split.
+     * @return the lines, the last one is empty if the content ends with a newline.
+     */
+    private static List<String> split(final String content) {
+        return new ArrayList<String>(Arrays.asList(content.split("\n", -1)));
+    }
+
+    /**
+     * @param lines to join.
+     * @return the lines separated by newlines.
+     */
+    static String join(final List<String> lines) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines.size(); i++) {
+            if (i > 0) {
+                sb.append('\n');
+            }
+            sb.append(lines.get(i));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Records one rebuilt revision.
+     *
+     * @param deltas number of applied deltas.
+     * @param nanos time needed.
+     */
+    static void recordReconstruction(final int deltas, final long nanos) {
+        RECONSTRUCTIONS.incrementAndGet();
+        DELTAS_APPLIED.addAndGet(deltas);
+        RECONSTRUCTION_NANOS.addAndGet(nanos);
+    }
+
+    /**
+     * @return number of revisions rebuilt from deltas since startup.
+     */
+    static long getReconstructionCount() {
+        return RECONSTRUCTIONS.get();
+    }
+
+    /**
+     * @return average number of deltas applied to rebuild one revision.
+     */
+    static double getAverageChainLength() {
+        final long count = RECONSTRUCTIONS.get();
+        return count == 0 ? 0 : (double) DELTAS_APPLIED.get() / count;
+    }
+
+    /**
+     * @return average milliseconds needed to rebuild one revision.
+     */
+    static double getAverageReconstructionMillis() {
+        final long count = RECONSTRUCTIONS.get();
+        return count == 0 ? 0 : RECONSTRUCTION_NANOS.get() / 1000000.0 / count;
+    }
+}
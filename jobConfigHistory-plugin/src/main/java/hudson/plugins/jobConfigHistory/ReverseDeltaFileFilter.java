@@ -0,0 +1,48 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import java.io.File;
+import java.io.FileFilter;
+
+/**
+ * A filter to return only those files of a history directory which hold a reverse delta to the next newer
+ * revision, the names of which end with {@link JobConfigHistoryConsts#REVERSE_DELTA_SUFFIX}.
+ */
+class ReverseDeltaFileFilter implements FileFilter {
+
+    /** Only one instance needed. */
+    static final ReverseDeltaFileFilter INSTANCE = new ReverseDeltaFileFilter();
+
+    /**
+     * Checks whether the file is a reverse delta.
+     *
+     * @param file to inspect
+     * @return true when file is a reverse delta
+     */
+    @Override
+    public boolean accept(File file) {
+        return file.isFile() && file.getName().endsWith(".xml" + JobConfigHistoryConsts.REVERSE_DELTA_SUFFIX);
+    }
+}
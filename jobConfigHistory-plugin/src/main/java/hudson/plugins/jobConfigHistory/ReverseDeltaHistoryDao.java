@@ -0,0 +1,200 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import hudson.model.User;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Stores the newest revision of every item in full and older revisions as
+ * reverse line deltas to the next newer revision. Every
+ * {@code keyframeInterval} revisions a full copy is kept, so rebuilding a
+ * revision applies at most {@code keyframeInterval - 1} deltas.
+ *
+ * Revisions with operation "Created" are always kept in full, as purging
+ * retains them while removing the revisions in between. Reading revisions
+ * stored as delta is done by {@link FileHistoryDao} in every storage mode.
+ */
+public class ReverseDeltaHistoryDao extends FileHistoryDao {
+
+    /** Our logger. */
+    private static final Logger LOG = Logger.getLogger(ReverseDeltaHistoryDao.class.getName());
+
+    /** Number of revisions between two full copies. */
+    private final int keyframeInterval;
+
+    /**
+     * @param historyRootDir where to store history
+     * @param jenkinsHome JENKKINS_HOME
+     * @param currentUser of operation
+     * @param maxHistoryEntries max number of history entries
+     * @param saveDuplicates should we save duplicate entries?
+     * @param keyframeInterval number of revisions between two full copies, at least 1.
+     */
+    ReverseDeltaHistoryDao(final File historyRootDir, final File jenkinsHome, final User currentUser,
+            final int maxHistoryEntries, final boolean saveDuplicates, final int keyframeInterval) {
+        this(historyRootDir, jenkinsHome, currentUser, maxHistoryEntries, saveDuplicates, keyframeInterval,
+                Options.DEFAULT);
+    }
+
+    /**
+     * @param historyRootDir where to store history
+     * @param jenkinsHome JENKKINS_HOME
+     * @param currentUser of operation, ignored if {@link FileHistoryDao.Options#withUserPerOperation(boolean)} is set
+     * @param maxHistoryEntries max number of history entries
+     * @param saveDuplicates should we save duplicate entries?
+     * @param keyframeInterval number of revisions between two full copies, at least 1.
+     * @param options how full copies are stored and who saves them, revisions are never deduplicated.
+     */
+    ReverseDeltaHistoryDao(final File historyRootDir, final File jenkinsHome, final User currentUser,
+            final int maxHistoryEntries, final boolean saveDuplicates, final int keyframeInterval,
+            final Options options) {
+        super(historyRootDir, jenkinsHome, currentUser, maxHistoryEntries, saveDuplicates,
+                options.withDeduplicateRevisions(false));
+        this.keyframeInterval = Math.max(1, keyframeInterval);
+    }
+
+    /**
+     * Stores the new revision in full and replaces the previous full revision by a delta.
+     *
+     * @param fileName name of the configuration file.
+     * @param content of the configuration file.
+     * @param timestampedDir the directory where to save the content.
+     * @throws IOException if writing fails.
+     */
+    @Override
+    void storeConfigContent(final String fileName, final byte[] content, final File timestampedDir) throws IOException {
+        super.storeConfigContent(fileName, content, timestampedDir);
+        final File[] olderDirs = getOlderRevisionDirs(timestampedDir);
+        final File previousDir = findPrevious(olderDirs, fileName);
+        if (previousDir == null || isKeyframe(previousDir, olderDirs, fileName)) {
+            return;
+        }
+        final File previousFile = getFullCopy(previousDir, fileName);
+        final byte[] previous = readStoredContent(previousFile);
+        final File deltaFile = new File(previousDir, fileName + JobConfigHistoryConsts.REVERSE_DELTA_SUFFIX);
+        FileUtils.writeStringToFile(deltaFile, ReverseDelta.createDelta(content, previous), ReverseDelta.CHARSET);
+        if (!previousFile.delete()) {
+            LOG.log(Level.WARNING, "unable to replace {0} by a delta", previousFile);
+        }
+    }
+
+    /**
+     * Returns the revision directories of the same item older than the given one, newest first.
+     *
+     * @param timestampedDir a revision directory.
+     * @return older revision directories.
+     */
+    private File[] getOlderRevisionDirs(final File timestampedDir) {
+        final File[] dirs = timestampedDir.getParentFile().listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.getName().compareTo(timestampedDir.getName()) < 0 && HistoryFileFilter.accepts(file);
+            }
+        });
+        if (dirs == null) {
+            return new File[0];
+        }
+        Arrays.sort(dirs, Collections.reverseOrder());
+        return dirs;
+    }
+
+    /**
+     * Finds the newest older revision holding a configuration.
+     *
+     * @param olderDirs older revision directories, newest first.
+     * @param fileName name of the configuration file.
+     * @return the directory if it holds a full copy, otherwise null.
+     */
+    private File findPrevious(final File[] olderDirs, final String fileName) {
+        for (File dir : olderDirs) {
+            if (getFullCopy(dir, fileName) != null) {
+                return dir;
+            }
+            if (hasDelta(dir, fileName) || getStoredConfigFile(dir) != null) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether a revision has to stay a full copy, because the
+     * maximum chain of deltas is reached or it is the creation of the item.
+     *
+     * @param previousDir the revision to check.
+     * @param olderDirs older revision directories, newest first, starting with previousDir.
+     * @param fileName name of the configuration file.
+     * @return true if the revision has to stay a full copy.
+     */
+    private boolean isKeyframe(final File previousDir, final File[] olderDirs, final String fileName) {
+        if (isCreatedEntry(previousDir)) {
+            return true;
+        }
+        int deltas = 0;
+        boolean older = false;
+        for (File dir : olderDirs) {
+            if (dir.equals(previousDir)) {
+                older = true;
+            } else if (older) {
+                if (hasDelta(dir, fileName)) {
+                    deltas++;
+                } else if (getStoredConfigFile(dir) != null) {
+                    break;
+                }
+            }
+        }
+        return deltas + 1 >= keyframeInterval;
+    }
+
+    /**
+     * @param dir revision directory.
+     * @param fileName name of the configuration file.
+     * @return the plain or compressed full copy, null if the directory holds none.
+     */
+    private static File getFullCopy(final File dir, final String fileName) {
+        final File plain = new File(dir, fileName);
+        if (plain.exists()) {
+            return plain;
+        }
+        final File compressed = new File(dir, fileName + JobConfigHistoryConsts.COMPRESSED_SUFFIX);
+        return compressed.exists() ? compressed : null;
+    }
+
+    /**
+     * @param dir revision directory.
+     * @param fileName name of the configuration file.
+     * @return true if the directory holds a delta.
+     */
+    static boolean hasDelta(final File dir, final String fileName) {
+        return new File(dir, fileName + JobConfigHistoryConsts.REVERSE_DELTA_SUFFIX).exists();
+    }
+}
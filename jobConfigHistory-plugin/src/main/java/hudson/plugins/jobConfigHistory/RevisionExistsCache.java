@@ -0,0 +1,140 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers whether the configuration of a revision exists, so build badges
+ * rendered for every build of a job do not look at the history directory.
+ * Adding, purging or moving revisions through {@link RevisionIndexCache}
+ * forgets the affected entries.
+ */
+final class RevisionExistsCache {
+
+    /** Singleton. */
+    static final RevisionExistsCache INSTANCE = new RevisionExistsCache(
+            JobConfigHistoryConsts.REVISION_INDEX_CACHE_SIZE);
+
+    /** Existence by revision id by item history directory, least recently used first. Guarded by this. */
+    private final Map<File, Map<String, Boolean>> items;
+
+    /** Counts invalidations, so stale checks are not cached. Guarded by this. */
+    private long modifications;
+
+    /**
+     * @param capacity maximum number of cached items.
+     */
+    RevisionExistsCache(final int capacity) {
+        items = new LinkedHashMap<File, Map<String, Boolean>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<File, Map<String, Boolean>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @param itemHistoryDir history directory of the item.
+     * @param timestamp revision id.
+     * @return whether the configuration of the revision exists or null if unknown.
+     */
+    synchronized Boolean get(final File itemHistoryDir, final String timestamp) {
+        final Map<String, Boolean> revisions = items.get(itemHistoryDir);
+        return revisions == null ? null : revisions.get(timestamp);
+    }
+
+    /**
+     * Returns a stamp to pass to {@link #put(File, String, boolean, long)},
+     * taken before checking the revision.
+     *
+     * @return the current stamp.
+     */
+    synchronized long stamp() {
+        return modifications;
+    }
+
+    /**
+     * Remembers the result of a check unless entries were forgotten since it started.
+     *
+     * @param itemHistoryDir history directory of the item.
+     * @param timestamp revision id.
+     * @param exists whether the configuration of the revision exists.
+     * @param stamp result of {@link #stamp()} before checking.
+     */
+    synchronized void put(final File itemHistoryDir, final String timestamp, final boolean exists,
+            final long stamp) {
+        if (stamp != modifications) {
+            return;
+        }
+        Map<String, Boolean> revisions = items.get(itemHistoryDir);
+        if (revisions == null) {
+            revisions = new HashMap<String, Boolean>();
+            items.put(itemHistoryDir, revisions);
+        }
+        revisions.put(timestamp, exists);
+    }
+
+    /**
+     * Forgets a revision, because it was added or purged.
+     *
+     * @param revisionDir the revision directory.
+     */
+    synchronized void removeRevision(final File revisionDir) {
+        modifications++;
+        final Map<String, Boolean> revisions = items.get(revisionDir.getParentFile());
+        if (revisions != null) {
+            revisions.remove(revisionDir.getName());
+        }
+    }
+
+    /**
+     * Forgets all revisions of an item and of the items nested in it, e.g.
+     * because its history was moved.
+     *
+     * @param itemHistoryDir history directory of the item.
+     */
+    synchronized void remove(final File itemHistoryDir) {
+        modifications++;
+        final Iterator<File> iterator = items.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (PluginUtils.isBelow(iterator.next(), itemHistoryDir)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return number of cached items.
+     */
+    synchronized int size() {
+        return items.size();
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import java.io.File;
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Formats and parses revision ids, the names of timestamped history
+ * directories, and issues new ones.
+ *
+ * Ids have millisecond resolution, see
+ * {@link JobConfigHistoryConsts#REVISION_ID_FORMATTER}. Ids issued for the
+ * same item are strictly increasing, so two saves within one millisecond get
+ * consecutive ids instead of waiting for the clock. Ids with second resolution,
+ * see {@link JobConfigHistoryConsts#ID_FORMATTER}, are still parsed. Both sort
+ * chronologically by name.
+ */
+final class RevisionIdCodec {
+
+    /** Formatter of current ids, {@link SimpleDateFormat} is <b>not</b> threadsafe. */
+    private static final ThreadLocal<SimpleDateFormat> FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat(JobConfigHistoryConsts.REVISION_ID_FORMATTER);
+        }
+    };
+
+    /** Parser of ids with second resolution. */
+    private static final ThreadLocal<SimpleDateFormat> LEGACY_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat(JobConfigHistoryConsts.ID_FORMATTER);
+        }
+    };
+
+    /** Calendar computing the milliseconds of well-formed ids without a {@link SimpleDateFormat}. */
+    private static final ThreadLocal<Calendar> CALENDAR = new ThreadLocal<Calendar>() {
+        @Override
+        protected Calendar initialValue() {
+            return new GregorianCalendar();
+        }
+    };
+
+    /** Length of ids with second resolution. */
+    private static final int LEGACY_LENGTH = JobConfigHistoryConsts.ID_FORMATTER.length();
+
+    /** Length of current ids. */
+    private static final int LENGTH = JobConfigHistoryConsts.REVISION_ID_FORMATTER.length();
+
+    /** Milliseconds of the last id issued by item history directory. */
+    private static final ConcurrentMap<File, Long> LAST_ISSUED = new ConcurrentHashMap<File, Long>();
+
+    /**
+     * Do not instantiate.
+     */
+    private RevisionIdCodec() {
+        // Static helper class
+    }
+
+    /**
+     * @param millis time of the revision.
+     * @return the revision id.
+     */
+    static String format(final long millis) {
+        return FORMAT.get().format(new Date(millis));
+    }
+
+    /**
+     * Parses current ids as well as ids with second resolution.
+     *
+     * @param id the revision id.
+     * @return time of the revision.
+     * @throws ParseException if id is no revision id.
+     */
+    static Date parse(final String id) throws ParseException {
+        final ParsePosition position = new ParsePosition(0);
+        final Date date = FORMAT.get().parse(id, position);
+        if (date != null && position.getIndex() == id.length()) {
+            return date;
+        }
+        return LEGACY_FORMAT.get().parse(id);
+    }
+
+    /**
+     * Like {@link #parse(String)}, well-formed ids are converted field by field instead of being parsed by a
+     * {@link SimpleDateFormat}.
+     *
+     * @param id the revision id.
+     * @return time of the revision in milliseconds since the epoch.
+     * @throws ParseException if id is no revision id.
+     */
+    static long parseMillis(final String id) throws ParseException {
+        final int length = id.length();
+        final boolean current = length == LENGTH && id.charAt(LEGACY_LENGTH) == '_';
+        if (!current && length != LEGACY_LENGTH
+                || id.charAt(4) != '-' || id.charAt(7) != '-' || id.charAt(10) != '_'
+                || id.charAt(13) != '-' || id.charAt(16) != '-') {
+            return parse(id).getTime();
+        }
+        final int year = digits(id, 0, 4);
+        final int month = digits(id, 5, 7);
+        final int day = digits(id, 8, 10);
+        final int hour = digits(id, 11, 13);
+        final int minute = digits(id, 14, 16);
+        final int second = digits(id, 17, 19);
+        final int millis = current ? digits(id, 20, 23) : 0;
+        if ((year | month | day | hour | minute | second | millis) < 0) {
+            return parse(id).getTime();
+        }
+        final Calendar calendar = CALENDAR.get();
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, minute, second);
+        calendar.set(Calendar.MILLISECOND, millis);
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * @param id the revision id.
+     * @param begin index of the first digit.
+     * @param end index after the last digit.
+     * @return the decimal value or -1 if a character is no digit.
+     */
+    private static int digits(final String id, final int begin, final int end) {
+        int value = 0;
+        for (int i = begin; i < end; i++) {
+            final char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + c - '0';
+        }
+        return value;
+    }
+
+    /**
+     * Reserves the time of a new revision of an item, later than every time
+     * reserved for it before.
+     *
+     * @param itemHistoryDir history directory of the item.
+     * @param millis the earliest acceptable time, usually now.
+     * @return the reserved time.
+     */
+    static long reserve(final File itemHistoryDir, final long millis) {
+        while (true) {
+            final Long last = LAST_ISSUED.get(itemHistoryDir);
+            if (last == null) {
+                if (LAST_ISSUED.putIfAbsent(itemHistoryDir, millis) == null) {
+                    return millis;
+                }
+            } else {
+                final long next = Math.max(millis, last + 1);
+                if (LAST_ISSUED.replace(itemHistoryDir, last, next)) {
+                    return next;
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets the times reserved for an item and the items nested in it, as
+     * its history directory is moved away.
+     *
+     * @param itemHistoryDir former history directory of the item.
+     */
+    static void forget(final File itemHistoryDir) {
+        final Iterator<File> iterator = LAST_ISSUED.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (PluginUtils.isBelow(iterator.next(), itemHistoryDir)) {
+                iterator.remove();
+            }
+        }
+    }
+}
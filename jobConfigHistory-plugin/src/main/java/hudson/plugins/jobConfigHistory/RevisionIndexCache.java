@@ -0,0 +1,168 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Keeps the revisions of the most recently viewed items in memory, so
+ * rendering a history page does not list the history directory for every
+ * lookup. Writes through {@link FileHistoryDao} update cached items in place,
+ * everything else forgets them. All changes are passed on to
+ * {@link RevisionExistsCache}, purges and moves also to {@link DiffCache}.
+ *
+ * Cached maps are never modified but replaced, so callers may iterate them
+ * without locking.
+ */
+final class RevisionIndexCache {
+
+    /** Singleton. */
+    static final RevisionIndexCache INSTANCE = new RevisionIndexCache(
+            JobConfigHistoryConsts.REVISION_INDEX_CACHE_SIZE);
+
+    /** Revisions by item history directory, least recently used first. Guarded by this. */
+    private final Map<File, SortedMap<String, HistoryDescr>> indexes;
+
+    /** Counts modifications, so stale listings are not cached. Guarded by this. */
+    private long modifications;
+
+    /**
+     * @param capacity maximum number of cached items.
+     */
+    RevisionIndexCache(final int capacity) {
+        indexes = new LinkedHashMap<File, SortedMap<String, HistoryDescr>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<File, SortedMap<String, HistoryDescr>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached revisions of an item.
+     *
+     * @param itemHistoryDir history directory of the item.
+     * @return unmodifiable revisions by timestamp or null if not cached.
+     */
+    synchronized SortedMap<String, HistoryDescr> get(final File itemHistoryDir) {
+        return indexes.get(itemHistoryDir);
+    }
+
+    /**
+     * Returns a stamp to pass to {@link #put(File, SortedMap, long)}, taken
+     * before listing the history directory.
+     *
+     * @return the current stamp.
+     */
+    synchronized long stamp() {
+        return modifications;
+    }
+
+    /**
+     * Caches the revisions of an item unless the cache was modified since
+     * the listing started.
+     *
+     * @param itemHistoryDir history directory of the item.
+     * @param revisions revisions by timestamp as listed.
+     * @param stamp result of {@link #stamp()} before listing.
+     * @return the unmodifiable revisions.
+     */
+    synchronized SortedMap<String, HistoryDescr> put(final File itemHistoryDir,
+            final SortedMap<String, HistoryDescr> revisions, final long stamp) {
+        final SortedMap<String, HistoryDescr> index = Collections.unmodifiableSortedMap(revisions);
+        if (stamp == modifications) {
+            indexes.put(itemHistoryDir, index);
+        }
+        return index;
+    }
+
+    /**
+     * Adds a new revision to its item, if the item is cached.
+     *
+     * @param revisionDir the revision directory.
+     * @param historyDescr its description.
+     */
+    synchronized void add(final File revisionDir, final HistoryDescr historyDescr) {
+        modifications++;
+        RevisionExistsCache.INSTANCE.removeRevision(revisionDir);
+        final File itemHistoryDir = revisionDir.getParentFile();
+        final SortedMap<String, HistoryDescr> index = indexes.get(itemHistoryDir);
+        if (index != null) {
+            final TreeMap<String, HistoryDescr> copy = new TreeMap<String, HistoryDescr>(index);
+            copy.put(revisionDir.getName(), historyDescr);
+            indexes.put(itemHistoryDir, Collections.unmodifiableSortedMap(copy));
+        }
+    }
+
+    /**
+     * Removes a purged revision from its item, if the item is cached.
+     *
+     * @param revisionDir the revision directory.
+     */
+    synchronized void removeRevision(final File revisionDir) {
+        modifications++;
+        RevisionExistsCache.INSTANCE.removeRevision(revisionDir);
+        DiffCache.INSTANCE.remove(revisionDir.getParentFile());
+        final File itemHistoryDir = revisionDir.getParentFile();
+        final SortedMap<String, HistoryDescr> index = indexes.get(itemHistoryDir);
+        if (index != null && index.containsKey(revisionDir.getName())) {
+            final TreeMap<String, HistoryDescr> copy = new TreeMap<String, HistoryDescr>(index);
+            copy.remove(revisionDir.getName());
+            indexes.put(itemHistoryDir, Collections.unmodifiableSortedMap(copy));
+        }
+    }
+
+    /**
+     * Forgets an item and the items nested in it, e.g. because the history of
+     * a folder was moved.
+     *
+     * @param itemHistoryDir history directory of the item.
+     */
+    synchronized void remove(final File itemHistoryDir) {
+        modifications++;
+        RevisionExistsCache.INSTANCE.remove(itemHistoryDir);
+        DiffCache.INSTANCE.remove(itemHistoryDir);
+        final Iterator<File> iterator = indexes.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (PluginUtils.isBelow(iterator.next(), itemHistoryDir)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return number of cached items.
+     */
+    synchronized int size() {
+        return indexes.size();
+    }
+}
@@ -0,0 +1,498 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import com.thoughtworks.xstream.mapper.CannotResolveClassException;
+import hudson.XmlFile;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Binary sidecar {@link JobConfigHistoryConsts#REVISION_INDEX_FILE} in the
+ * history directory of an item, holding timestamp, user, operation, name of
+ * the stored configuration file and content digest of all its revisions. Listings read it sequentially instead
+ * of unmarshalling one {@link JobConfigHistoryConsts#HISTORY_FILE} per
+ * revision.
+ *
+ * The file starts with {@link #MAGIC} and {@link #VERSION}, followed by
+ * records which are only ever appended. Every entry of the history directory
+ * is described by a record, entries which are no revision by a
+ * {@link #OTHER} record, so the sidecar is stale whenever the names of the
+ * described entries differ from the directory. A stale, unknown or corrupt
+ * sidecar is rebuilt from the XML files. Writers only append to an existing
+ * sidecar, they never create one.
+ */
+final class RevisionIndexFile {
+
+    /** Our logger. */
+    private static final Logger LOG = Logger.getLogger(RevisionIndexFile.class.getName());
+
+    /** First four bytes of the sidecar. */
+    static final int MAGIC = 0x4a434849;
+
+    /** Version of the format, a sidecar of another version is rebuilt. */
+    static final byte VERSION = 1;
+
+    /** Record of a revision with user and operation. */
+    private static final byte ADDED = 'A';
+
+    /** Record of the digest of the configuration stored in a revision. */
+    private static final byte DIGEST = 'D';
+
+    /** Record of the name of the configuration file stored in a revision. */
+    private static final byte CONFIG = 'C';
+
+    /** Record of a purged revision. */
+    private static final byte PURGED = 'P';
+
+    /** Record of an entry of the history directory which is no revision. */
+    private static final byte OTHER = 'X';
+
+    /** Name of the temporary file written while rebuilding. */
+    private static final String TMP_FILE = JobConfigHistoryConsts.REVISION_INDEX_FILE + ".tmp";
+
+    /**
+     * What the sidecar knows about one entry of the history directory.
+     */
+    static final class Entry {
+
+        /** Descriptor of the revision, null if the entry is no revision. */
+        private final HistoryDescr historyDescr;
+
+        /** Hex encoded digest of the stored configuration, null if unknown. */
+        private String digest;
+
+        /** Name of the stored configuration file, null if the revision holds none. */
+        private String configFileName;
+
+        /**
+         * @param historyDescr descriptor of the revision, null if the entry is no revision.
+         */
+        Entry(final HistoryDescr historyDescr) {
+            this.historyDescr = historyDescr;
+        }
+
+        /**
+         * @return descriptor of the revision, null if the entry is no revision.
+         */
+        HistoryDescr getHistoryDescr() {
+            return historyDescr;
+        }
+
+        /**
+         * @return hex encoded digest of the stored configuration, null if unknown.
+         */
+        String getDigest() {
+            return digest;
+        }
+
+        /**
+         * @return name of the stored configuration file, null if the revision holds none.
+         */
+        String getConfigFileName() {
+            return configFileName;
+        }
+    }
+
+    /**
+     * Do not instantiate.
+     */
+    private RevisionIndexFile() {
+        // Static helper class
+    }
+
+    /**
+     * Reads the sidecar of an item.
+     *
+     * @param itemHistoryDir history directory of the item.
+     * @return entries by name, null if the sidecar is missing, stale or corrupt.
+     */
+    static SortedMap<String, Entry> read(final File itemHistoryDir) {
+        final File indexFile = new File(itemHistoryDir, JobConfigHistoryConsts.REVISION_INDEX_FILE);
+        final String[] names = itemHistoryDir.list();
+        if (names == null || !indexFile.exists()) {
+            return null;
+        }
+        final SortedMap<String, Entry> entries;
+        try {
+            entries = readEntries(indexFile);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "unable to read " + indexFile, e);
+            return null;
+        }
+        if (entries == null || !entries.keySet().equals(getEntryNames(names))) {
+            LOG.log(Level.FINE, "{0} is stale", indexFile);
+            return null;
+        }
+        return entries;
+    }
+
+    /**
+     * Rebuilds the sidecar of an item from the XML files. Callers have to serialize this with writes to the
+     * history of the item.
+     *
+     * @param itemHistoryDir history directory of the item.
+     * @return entries by name, empty if the directory does not exist.
+     * @throws IOException if the sidecar could not be written.
+     */
+    static SortedMap<String, Entry> rebuild(final File itemHistoryDir) throws IOException {
+        final SortedMap<String, Entry> entries = new TreeMap<String, Entry>();
+        final File[] files = itemHistoryDir.listFiles();
+        if (files == null) {
+            return entries;
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        for (File file : files) {
+            final String name = file.getName();
+            if (isIndexFile(name)) {
+                continue;
+            }
+            final HistoryDescr descr = readHistoryDescr(file);
+            final Entry entry = new Entry(descr);
+            if (descr == null) {
+                writeRecord(out, OTHER, name);
+            } else {
+                writeRecord(out, ADDED, name, descr.getUserID(), descr.getUser(), descr.getOperation());
+                entry.configFileName = findConfigFileName(file);
+                if (entry.configFileName != null) {
+                    writeRecord(out, CONFIG, name, entry.configFileName);
+                }
+                entry.digest = readDigest(file);
+                if (entry.digest != null) {
+                    writeRecord(out, DIGEST, name, entry.digest);
+                }
+            }
+            entries.put(name, entry);
+        }
+        out.flush();
+        final File tmp = new File(itemHistoryDir, TMP_FILE);
+        final File indexFile = new File(itemHistoryDir, JobConfigHistoryConsts.REVISION_INDEX_FILE);
+        FileUtils.writeByteArrayToFile(tmp, bytes.toByteArray());
+        PluginUtils.replaceFile(tmp, indexFile);
+        LOG.log(Level.FINE, "rebuilt {0} with {1} entries", new Object[] {indexFile, entries.size()});
+        return entries;
+    }
+
+    /**
+     * Appends a new revision to the sidecar of its item.
+     *
+     * @param revisionDir the revision directory.
+     * @param descr its descriptor.
+     */
+    static void added(final File revisionDir, final HistoryDescr descr) {
+        append(revisionDir, ADDED, revisionDir.getName(), descr.getUserID(), descr.getUser(), descr.getOperation());
+    }
+
+    /**
+     * Appends the digest of the configuration stored in a revision to the sidecar of its item.
+     *
+     * @param revisionDir the revision directory.
+     * @param digest hex encoded digest.
+     */
+    static void digestStored(final File revisionDir, final String digest) {
+        append(revisionDir, DIGEST, revisionDir.getName(), digest);
+    }
+
+    /**
+     * Appends the name of the configuration file stored in a revision to the sidecar of its item.
+     *
+     * @param revisionDir the revision directory.
+     * @param configFileName name of the configuration file, e.g. {@literal config.xml}.
+     */
+    static void configStored(final File revisionDir, final String configFileName) {
+        append(revisionDir, CONFIG, revisionDir.getName(), configFileName);
+    }
+
+    /**
+     * Appends a purged revision to the sidecar of its item.
+     *
+     * @param revisionDir the deleted revision directory.
+     */
+    static void purged(final File revisionDir) {
+        append(revisionDir, PURGED, revisionDir.getName());
+    }
+
+    /**
+     * Converts entries into the revisions of an item.
+     *
+     * @param entries read from the sidecar.
+     * @return descriptors of the revisions by timestamp, see {@link IndexedHistoryDescr}.
+     */
+    static TreeMap<String, HistoryDescr> toRevisions(final SortedMap<String, Entry> entries) {
+        final TreeMap<String, HistoryDescr> revisions = new TreeMap<String, HistoryDescr>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            final Entry value = entry.getValue();
+            if (value.historyDescr != null) {
+                revisions.put(entry.getKey(), new IndexedHistoryDescr(value.historyDescr, value.configFileName));
+            }
+        }
+        return revisions;
+    }
+
+    /**
+     * @param entries read from the sidecar.
+     * @return timestamp of the newest revision, null if there is none.
+     */
+    static String newestRevision(final SortedMap<String, Entry> entries) {
+        String newest = null;
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().historyDescr != null) {
+                newest = entry.getKey();
+            }
+        }
+        return newest;
+    }
+
+    /**
+     * Appends one record to an existing sidecar in a single write.
+     *
+     * @param revisionDir the revision directory, its parent holds the sidecar.
+     * @param kind of the record.
+     * @param fields of the record, may be null.
+     */
+    private static void append(final File revisionDir, final byte kind, final String... fields) {
+        final File indexFile = new File(revisionDir.getParentFile(), JobConfigHistoryConsts.REVISION_INDEX_FILE);
+        if (!indexFile.exists()) {
+            return;
+        }
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream record = new DataOutputStream(bytes);
+            writeRecord(record, kind, fields);
+            record.flush();
+            final FileOutputStream out = new FileOutputStream(indexFile, true);
+            try {
+                out.write(bytes.toByteArray());
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "unable to append to " + indexFile + ", dropping it", e);
+            if (!indexFile.delete()) {
+                LOG.log(Level.WARNING, "unable to delete {0}", indexFile);
+            }
+        }
+    }
+
+    /**
+     * @param out where to write.
+     * @param kind of the record.
+     * @param fields of the record, may be null.
+     * @throws IOException if writing fails.
+     */
+    private static void writeRecord(final DataOutputStream out, final byte kind, final String... fields)
+            throws IOException {
+        out.writeByte(kind);
+        for (String field : fields) {
+            out.writeBoolean(field != null);
+            if (field != null) {
+                out.writeUTF(field);
+            }
+        }
+    }
+
+    /**
+     * @param in where to read.
+     * @return the field, may be null.
+     * @throws IOException if reading fails.
+     */
+    private static String readField(final DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Replays all records of the sidecar. A record truncated by a crash while appending ends the sidecar.
+     *
+     * @param indexFile the sidecar.
+     * @return entries by name, null if the sidecar has an unknown format.
+     * @throws IOException if reading fails.
+     */
+    private static SortedMap<String, Entry> readEntries(final File indexFile) throws IOException {
+        final SortedMap<String, Entry> entries = new TreeMap<String, Entry>();
+        final DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        try {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                return null;
+            }
+            while (true) {
+                final int kind = in.read();
+                if (kind == -1) {
+                    return entries;
+                }
+                final String name = readField(in);
+                switch (kind) {
+                    case ADDED:
+                        final String userId = readField(in);
+                        final String user = readField(in);
+                        final String operation = readField(in);
+                        entries.put(name, new Entry(new HistoryDescr(user, userId, operation, name)));
+                        break;
+                    case DIGEST:
+                        final String digest = readField(in);
+                        if (entries.containsKey(name)) {
+                            entries.get(name).digest = digest;
+                        }
+                        break;
+                    case CONFIG:
+                        final String configFileName = readField(in);
+                        if (entries.containsKey(name)) {
+                            entries.get(name).configFileName = configFileName;
+                        }
+                        break;
+                    case PURGED:
+                        entries.remove(name);
+                        break;
+                    case OTHER:
+                        entries.put(name, new Entry(null));
+                        break;
+                    default:
+                        return null;
+                }
+            }
+        } catch (EOFException e) {
+            LOG.log(Level.FINE, "{0} ends with a truncated record", indexFile);
+            return entries;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @param dir an entry of the history directory.
+     * @return its descriptor or null if it is no readable revision.
+     */
+    private static HistoryDescr readHistoryDescr(final File dir) {
+        if (!HistoryFileFilter.accepts(dir)) {
+            return null;
+        }
+        final XmlFile historyXml = new XmlFile(new File(dir, JobConfigHistoryConsts.HISTORY_FILE));
+        try {
+            return (HistoryDescr) historyXml.read();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "unable to read " + historyXml.getFile(), e);
+            return null;
+        } catch (CannotResolveClassException e) {
+            LOG.log(Level.WARNING, historyXml.getFile() + " is not a history description", e);
+            return null;
+        }
+    }
+
+    /**
+     * Finds the configuration file of a revision in any stored form, see {@link FileHistoryDao#getStoredConfig(File)}.
+     *
+     * @param revisionDir the revision directory.
+     * @return name of the configuration file or null if the revision holds none.
+     */
+    static String findConfigFileName(final File revisionDir) {
+        final String[] names = revisionDir.list();
+        if (names == null) {
+            return null;
+        }
+        for (String name : names) {
+            final String configFileName = stripStorageSuffix(name);
+            if (configFileName.endsWith(".xml") && !JobConfigHistoryConsts.HISTORY_FILE.equals(configFileName)) {
+                return configFileName;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param name of a stored file.
+     * @return the name without the suffix of a compressed copy, a blob reference or a reverse delta.
+     */
+    private static String stripStorageSuffix(final String name) {
+        for (String suffix : new String[] {JobConfigHistoryConsts.COMPRESSED_SUFFIX,
+            JobConfigHistoryConsts.BLOB_REFERENCE_SUFFIX, JobConfigHistoryConsts.REVERSE_DELTA_SUFFIX, }) {
+            if (name.endsWith(suffix)) {
+                return name.substring(0, name.length() - suffix.length());
+            }
+        }
+        return name;
+    }
+
+    /**
+     * @param revisionDir the revision directory.
+     * @return the saved digest or null if none was saved.
+     */
+    private static String readDigest(final File revisionDir) {
+        final File digestFile = new File(revisionDir, JobConfigHistoryConsts.DIGEST_FILE);
+        if (!digestFile.exists()) {
+            return null;
+        }
+        try {
+            return FileUtils.readFileToString(digestFile, "US-ASCII").trim();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "unable to read " + digestFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * @param names entries of the history directory.
+     * @return names of the entries the sidecar has to describe.
+     */
+    private static Set<String> getEntryNames(final String[] names) {
+        final Set<String> entryNames = new HashSet<String>();
+        for (String name : names) {
+            if (!isIndexFile(name)) {
+                entryNames.add(name);
+            }
+        }
+        return entryNames;
+    }
+
+    /**
+     * @param name of an entry of the history directory.
+     * @return true if it is the sidecar or its temporary file.
+     */
+    private static boolean isIndexFile(final String name) {
+        return JobConfigHistoryConsts.REVISION_INDEX_FILE.equals(name) || TMP_FILE.equals(name);
+    }
+}
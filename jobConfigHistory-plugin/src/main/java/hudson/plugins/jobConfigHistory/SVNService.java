@@ -3,6 +3,9 @@ package hudson.plugins.jobConfigHistory;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 import org.tmatesoft.svn.core.wc.SVNClientManager;
 import org.tmatesoft.svn.core.SVNCancelException;
@@ -160,6 +163,48 @@ public class SVNService{
           
         return true;  
     }  
+    /**
+     * add and commit only the given paths of the working copy, instead of
+     * checking every file of the working copy.
+     * @param filepath root of the working copy
+     * @param paths new or changed files and directories below the working copy
+     * @param svnurl to sync to
+     * @return true if successful
+     */
+    public boolean commitPathsToSvn(String filepath, Collection<File> paths, String svnurl) {
+        if (paths.isEmpty()) {
+            return true;
+        }
+        SVNClientManager clientManager = xxxx(svnurl);
+        File wc_project = new File(filepath);
+        Set<File> targets = new LinkedHashSet<File>();
+        for (File path : paths) {
+            targets.add(topmostUnversioned(wc_project, path));
+        }
+        for (File target : targets) {
+            SVNUtil.addEntry(clientManager, target);
+        }
+        String messageString = PluginUtils.getPlugin().getCommitString();
+        return SVNUtil.commit(clientManager, targets.toArray(new File[targets.size()]), false, messageString) != null;
+    }
+
+    /**
+     * climbs up from path until the parent is under version control, so
+     * adding and committing the result includes all new parent directories.
+     * @param wc root of the working copy
+     * @param path below the working copy
+     * @return path itself or its topmost unversioned parent
+     */
+    private File topmostUnversioned(File wc, File path) {
+        File current = path;
+        File parent = current.getParentFile();
+        while (parent != null && !parent.equals(wc) && !SVNWCUtil.isVersionedDirectory(parent)) {
+            current = parent;
+            parent = current.getParentFile();
+        }
+        return current;
+    }
+
     /**  
      * called when first run, create the job_config_history folder in repo if it doesnt exist, and do svn import;
      *if it exist, update local file by calling svn up
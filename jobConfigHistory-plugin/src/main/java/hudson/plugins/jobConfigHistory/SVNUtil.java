@@ -181,6 +181,29 @@ public class SVNUtil {
         return null;  
     }  
       
+    /**
+     * Commit the changes below several working copy paths with one commit
+     * @param clientManager
+     * @param wcPaths
+     *          working copy paths which changes are to be committed
+     * @param keepLocks
+     *          whether to unlock or not files in the repository
+     * @param commitMessage
+     *          commit log message
+     * @return info about the new revision, null if the commit failed
+     */
+    public static SVNCommitInfo commit(SVNClientManager clientManager,
+            File[] wcPaths, boolean keepLocks, String commitMessage) {
+        try {
+            return clientManager.getCommitClient().doCommit(
+                    wcPaths, keepLocks, commitMessage, null,
+                    null, false, false, SVNDepth.INFINITY);
+        } catch (SVNException e) {
+            logger.error(e.getErrorMessage(), e);
+        }
+        return null;
+    }
+
     /** 
      * Updates a working copy (brings changes from the repository into the working copy). 
      * @param clientManager 
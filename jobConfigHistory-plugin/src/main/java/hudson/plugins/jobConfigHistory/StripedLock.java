@@ -0,0 +1,111 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed number of locks, a key is mapped to one of them by its hash. Keys
+ * sharing a lock are serialized, unrelated keys mostly proceed in parallel
+ * without allocating one lock per key.
+ */
+final class StripedLock {
+
+    /** The stripes. */
+    private final Lock[] locks;
+
+    /**
+     * @param stripes number of locks, rounded up to a power of two.
+     */
+    StripedLock(final int stripes) {
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        locks = new Lock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * @param key to lock.
+     * @return the lock guarding key.
+     */
+    Lock get(final Object key) {
+        return locks[indexOf(key)];
+    }
+
+    /**
+     * Returns the locks guarding two keys in a fixed order, so threads locking
+     * the same pair of keys in different order do not deadlock.
+     *
+     * @param first key to lock.
+     * @param second key to lock.
+     * @return one lock if both keys share it, otherwise two.
+     */
+    Lock[] get(final Object first, final Object second) {
+        final int i = indexOf(first);
+        final int j = indexOf(second);
+        if (i == j) {
+            return new Lock[] {locks[i]};
+        }
+        return new Lock[] {locks[Math.min(i, j)], locks[Math.max(i, j)]};
+    }
+
+    /**
+     * Acquires all locks in the given order.
+     *
+     * @param toLock locks returned by {@link #get(Object, Object)}.
+     */
+    static void lockAll(final Lock[] toLock) {
+        for (Lock lock : toLock) {
+            lock.lock();
+        }
+    }
+
+    /**
+     * Releases all locks in reverse order.
+     *
+     * @param toUnlock locks acquired by {@link #lockAll(Lock[])}.
+     */
+    static void unlockAll(final Lock[] toUnlock) {
+        for (int i = toUnlock.length - 1; i >= 0; i--) {
+            toUnlock[i].unlock();
+        }
+    }
+
+    /**
+     * @param key to lock.
+     * @return index of the stripe.
+     */
+    private int indexOf(final Object key) {
+        int h = key.hashCode();
+        // spread the bits like HashMap, as File hashes differ in few bits only.
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return h & (locks.length - 1);
+    }
+}
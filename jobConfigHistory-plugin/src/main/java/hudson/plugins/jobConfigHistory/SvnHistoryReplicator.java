@@ -0,0 +1,232 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Replicates the job history to the configured SVN repository, used by
+ * {@link SvnReplicationQueue}. Revisions deduplicated into the
+ * {@link BlobStore} are replicated with the configuration they refer to.
+ */
+class SvnHistoryReplicator implements SvnReplicationQueue.Replicator {
+
+    /** Our logger. */
+    private static final Logger LOG = Logger.getLogger(SvnHistoryReplicator.class.getName());
+
+    /** Our plugin, settings may change between two flushes. */
+    private final JobConfigHistory plugin;
+
+    /** Knows the history directories written since the last flush. */
+    private final HistoryChangeTracker tracker;
+
+    /**
+     * Whether the complete history was replicated once, changes from before
+     * the tracker was enabled are unknown otherwise.
+     */
+    private boolean initialized;
+
+    /**
+     * @param plugin the plugin holding the repository settings.
+     */
+    SvnHistoryReplicator(final JobConfigHistory plugin) {
+        this(plugin, HistoryChangeTracker.INSTANCE);
+    }
+
+    /**
+     * For tests.
+     *
+     * @param plugin the plugin holding the repository settings.
+     * @param tracker knows the changed history directories.
+     */
+    SvnHistoryReplicator(final JobConfigHistory plugin, final HistoryChangeTracker tracker) {
+        this.plugin = plugin;
+        this.tracker = tracker;
+    }
+
+    /**
+     * Copies the history directories written since the last replication into
+     * the working copy and commits them. Falls back to the complete job
+     * history on the first call or if changes were not recorded.
+     *
+     * @param items keys of the changed items.
+     * @param complete true if the complete job history has to be copied.
+     * @throws IOException if copying or committing the history fails, the
+     *         changes are recorded again.
+     */
+    @Override
+    public void replicate(final Set<String> items, final boolean complete) throws IOException {
+        final Set<File> changed = tracker.drain();
+        try {
+            final File workingCopy = getWorkingCopy();
+            if (!workingCopy.exists()) {
+                workingCopy.mkdir();
+            }
+            final String svnurl = getSvnUrl();
+            final SVNService svn = createService(svnurl);
+            svn.sync_repo(svnurl, workingCopy.getPath());
+
+            final File srcFolder = getJobHistoryDir();
+            if (complete || changed == null || !initialized) {
+                if (srcFolder.exists()) {
+                    copyResolved(srcFolder, workingCopy, getBlobStore());
+                }
+                svn.commitFiletoSvn(workingCopy.getPath(), svnurl);
+                initialized = true;
+                LOG.log(Level.FINE, "committed complete history to {0}", svnurl);
+            } else {
+                final List<File> copies = copyChanges(changed, srcFolder, workingCopy);
+                if (!svn.commitPathsToSvn(workingCopy.getPath(), copies, svnurl)) {
+                    throw new IOException("Could not commit " + copies.size() + " paths to " + svnurl);
+                }
+                LOG.log(Level.FINE, "committed {0} paths of {1} items to {2}",
+                        new Object[] {copies.size(), items.size(), svnurl});
+            }
+        } catch (IOException e) {
+            tracker.restore(changed);
+            throw e;
+        } catch (RuntimeException e) {
+            tracker.restore(changed);
+            throw e;
+        }
+    }
+
+    /**
+     * Copies the changed directories below the job history into the working
+     * copy, creating missing parents.
+     *
+     * @param changed history directories written since the last replication.
+     * @param srcFolder the job history.
+     * @param workingCopy the local working copy.
+     * @return the copies in the working copy.
+     * @throws IOException if copying fails.
+     */
+    List<File> copyChanges(final Set<File> changed, final File srcFolder, final File workingCopy)
+            throws IOException {
+        final String srcPrefix = srcFolder.getAbsolutePath() + File.separator;
+        final BlobStore blobStore = getBlobStore();
+        final List<File> copies = new ArrayList<File>(changed.size());
+        for (File dir : changed) {
+            final String path = dir.getAbsolutePath();
+            if (!path.startsWith(srcPrefix) || !dir.exists()) {
+                continue;
+            }
+            final File copy = new File(workingCopy, path.substring(srcPrefix.length()));
+            final File parent = copy.getParentFile();
+            if (!(parent.mkdirs() || parent.isDirectory())) {
+                throw new IOException("Could not create " + parent);
+            }
+            copyResolved(dir, copy, blobStore);
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    /**
+     * Copies a file or directory like {@link JobConfigHistorySaveableListener#copyFolder(File, File)}, but
+     * replaces references into the blob store by the configuration they refer to, as the repository holds no
+     * blobs. Existing files are not overwritten.
+     *
+     * @param src file or directory to copy.
+     * @param dest the copy.
+     * @param blobStore resolves references.
+     * @throws IOException if copying fails.
+     */
+    void copyResolved(final File src, final File dest, final BlobStore blobStore) throws IOException {
+        final String name = src.getName();
+        if (src.isDirectory()) {
+            if (!(dest.mkdirs() || dest.isDirectory())) {
+                throw new IOException("Could not create " + dest);
+            }
+            final String[] names = src.list();
+            if (names != null) {
+                for (String child : names) {
+                    copyResolved(new File(src, child), new File(dest, child), blobStore);
+                }
+            }
+        } else if (BlobReferenceFileFilter.INSTANCE.accept(src)) {
+            final File resolved = new File(dest.getParentFile(),
+                    name.substring(0, name.length() - JobConfigHistoryConsts.BLOB_REFERENCE_SUFFIX.length()));
+            if (resolved.exists()) {
+                return;
+            }
+            final String digest = FileUtils.readFileToString(src, "US-ASCII").trim();
+            final File blob = digest.length() < 2 ? null : blobStore.get(digest);
+            if (blob == null || !blob.exists()) {
+                LOG.log(Level.WARNING, "skipping {0}, it refers to no blob", src);
+                return;
+            }
+            FileUtils.writeByteArrayToFile(resolved, FileHistoryDao.readStoredContent(blob));
+        } else if (!dest.exists()) {
+            FileUtils.copyFile(src, dest);
+        }
+    }
+
+    /**
+     * @return url of the repository for this Jenkins user.
+     */
+    String getSvnUrl() {
+        String inputurl = plugin.getScmRepoUrl();
+        if (inputurl == null) {
+            inputurl = "none";
+        }
+        return inputurl + "_jobConfigHistory_" + System.getenv("LOGNAME");
+    }
+
+    /**
+     * @param svnurl url of the repository.
+     * @return service authenticated against the repository.
+     */
+    SVNService createService(final String svnurl) {
+        return new SVNService(plugin.getScmRepoUser(), plugin.getScmRepoPass(), svnurl);
+    }
+
+    /**
+     * @return the local working copy.
+     */
+    File getWorkingCopy() {
+        return new File(System.getenv("HOME") + "/jobConfiglib");
+    }
+
+    /**
+     * @return the blob store of the configured history root.
+     */
+    BlobStore getBlobStore() {
+        return new BlobStore(new File(plugin.getConfiguredHistoryRootDir(), JobConfigHistoryConsts.BLOBS_DIR));
+    }
+
+    /**
+     * @return the job history which gets replicated.
+     */
+    File getJobHistoryDir() {
+        return new File(plugin.getConfiguredHistoryRootDir(), JobConfigHistoryConsts.JOBS_HISTORY_DIR);
+    }
+}
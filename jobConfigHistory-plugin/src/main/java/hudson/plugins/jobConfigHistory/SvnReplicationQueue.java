@@ -0,0 +1,266 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded queue of items whose history has to be replicated to the SCM
+ * repository. A background thread flushes the queue periodically, so saving
+ * a configuration only costs the local history write.
+ *
+ * Repeated saves of an item which is still pending are coalesced into one
+ * entry and every flush replicates all pending items in a single commit.
+ */
+final class SvnReplicationQueue {
+
+    /** Our logger. */
+    private static final Logger LOG = Logger.getLogger(SvnReplicationQueue.class.getName());
+
+    /**
+     * Replicates one batch of items.
+     */
+    interface Replicator {
+
+        /**
+         * Replicates the given items with one commit.
+         *
+         * @param items keys of the items changed since the last flush.
+         * @param complete true if items were dropped because the queue was full,
+         *        so the complete history has to be replicated.
+         * @throws Exception if the replication fails, the items are queued again.
+         */
+        void replicate(Set<String> items, boolean complete) throws Exception;
+    }
+
+    /** Pending items in the order of their first save. Guarded by itself. */
+    private final Set<String> pending = new LinkedHashSet<String>();
+
+    /** Maximum number of pending items. */
+    private final int capacity;
+
+    /** Milliseconds between two flushes. */
+    private final long flushIntervalMillis;
+
+    /** Does the work. */
+    private final Replicator replicator;
+
+    /** Serializes flushes of the background thread and explicit calls. */
+    private final Object flushLock = new Object();
+
+    /** Set when an item had to be dropped, guarded by {@link #pending}. */
+    private boolean overflowed;
+
+    /** The background thread, null when not started. */
+    private ScheduledExecutorService executor;
+
+    /** Number of saves merged into an already pending item. */
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /** Number of items dropped because the queue was full. */
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /** Number of finished flushes. */
+    private final AtomicLong flushCount = new AtomicLong();
+
+    /** Duration of the last flush in milliseconds. */
+    private volatile long lastFlushLatency;
+
+    /** Longest flush in milliseconds. */
+    private volatile long maxFlushLatency;
+
+    /**
+     * @param capacity maximum number of pending items.
+     * @param flushIntervalMillis milliseconds between two flushes.
+     * @param replicator does the work.
+     */
+    SvnReplicationQueue(final int capacity, final long flushIntervalMillis, final Replicator replicator) {
+        this.capacity = capacity;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.replicator = replicator;
+    }
+
+    /**
+     * Schedules an item for replication.
+     *
+     * @param item key of the changed item.
+     * @return false if the queue is full and the item was dropped. The next
+     *         flush will then replicate the complete history.
+     */
+    boolean offer(final String item) {
+        synchronized (pending) {
+            if (pending.contains(item)) {
+                coalescedCount.incrementAndGet();
+                return true;
+            }
+            if (pending.size() >= capacity) {
+                overflowed = true;
+                droppedCount.incrementAndGet();
+                LOG.log(Level.FINE, "replication queue is full, dropping {0}", item);
+                return false;
+            }
+            pending.add(item);
+            return true;
+        }
+    }
+
+    /**
+     * Starts the background thread.
+     */
+    synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, "JobConfigHistory SCM replication");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the background thread and replicates what is still pending.
+     */
+    synchronized void stop() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        flush();
+    }
+
+    /**
+     * Replicates all pending items with one commit. On failure the items are
+     * queued again.
+     */
+    void flush() {
+        synchronized (flushLock) {
+            final Set<String> batch;
+            final boolean complete;
+            synchronized (pending) {
+                if (pending.isEmpty() && !overflowed) {
+                    return;
+                }
+                batch = new LinkedHashSet<String>(pending);
+                complete = overflowed;
+                pending.clear();
+                overflowed = false;
+            }
+            final long start = System.currentTimeMillis();
+            try {
+                replicator.replicate(Collections.unmodifiableSet(batch), complete);
+                flushCount.incrementAndGet();
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "replication of " + batch.size() + " items failed, will retry", e);
+                requeue(batch, complete);
+            } finally {
+                final long latency = System.currentTimeMillis() - start;
+                lastFlushLatency = latency;
+                maxFlushLatency = Math.max(maxFlushLatency, latency);
+                LOG.log(Level.FINE, "replicated {0} items in {1} ms", new Object[] {batch.size(), latency});
+            }
+        }
+    }
+
+    /**
+     * Queues the items of a failed flush again.
+     *
+     * @param batch the items.
+     * @param complete whether the failed flush should have replicated everything.
+     */
+    private void requeue(final Set<String> batch, final boolean complete) {
+        synchronized (pending) {
+            overflowed |= complete;
+            for (String item : batch) {
+                if (pending.size() >= capacity) {
+                    overflowed = true;
+                    break;
+                }
+                pending.add(item);
+            }
+        }
+    }
+
+    /**
+     * @return number of items waiting for the next flush.
+     */
+    int getQueueDepth() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * @return duration of the last flush in milliseconds.
+     */
+    long getLastFlushLatency() {
+        return lastFlushLatency;
+    }
+
+    /**
+     * @return duration of the longest flush in milliseconds.
+     */
+    long getMaxFlushLatency() {
+        return maxFlushLatency;
+    }
+
+    /**
+     * @return number of finished flushes.
+     */
+    long getFlushCount() {
+        return flushCount.get();
+    }
+
+    /**
+     * @return number of saves which were merged into a pending item.
+     */
+    long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * @return number of items dropped because the queue was full.
+     */
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
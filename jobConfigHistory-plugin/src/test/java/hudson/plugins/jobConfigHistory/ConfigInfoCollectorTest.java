@@ -27,6 +27,8 @@ package hudson.plugins.jobConfigHistory;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import static org.junit.Assert.*;
@@ -102,6 +104,52 @@ public class ConfigInfoCollectorTest {
         assertThatFolderXHasYItemsOfTypeZ(folderName, 2, "created");
     }
 
+    /**
+     * Test of collect method, of class ConfigInfoCollector.
+     */
+    @Test
+    public void testCollectNestedFolders() throws Exception {
+        FileUtils.copyDirectory(
+                unpackResourceZip.getResource("config-history/jobs/Test1"),
+                unpackResourceZip.getResource("config-history/jobs/outer/jobs/Test1"));
+        FileUtils.copyDirectory(
+                unpackResourceZip.getResource("config-history/jobs/Test1"),
+                unpackResourceZip.getResource("config-history/jobs/outer/jobs/inner/jobs/Test1"));
+        final List<ConfigInfo> result = createSut("created").collect("");
+        assertEquals(StringUtils.join(result, "\n"), 3, result.size());
+        assertEquals("Test1", result.get(0).getJob());
+        assertEquals("outer/jobs/Test1", result.get(1).getJob());
+        assertEquals("outer/jobs/inner/jobs/Test1", result.get(2).getJob());
+        assertThatFolderXHasYItemsOfTypeZ("outer", 2, "created");
+        assertThatFolderXHasYItemsOfTypeZ("outer/jobs/inner", 1, "created");
+    }
+
+    /**
+     * Test of collect method, of class ConfigInfoCollector.
+     */
+    @Test
+    public void testCollectParallel() throws Exception {
+        for (int i = 2; i < 10; i++) {
+            FileUtils.copyDirectory(
+                    unpackResourceZip.getResource("config-history/jobs/Test1"),
+                    unpackResourceZip.getResource("config-history/jobs/Test" + i));
+        }
+        final List<ConfigInfo> expected = createSut("other").collect("");
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final OverviewHistoryDao historyDao = new FileHistoryDao(
+                    unpackResourceZip.getResource("config-history"), unpackResourceZip.getRoot(), null, 0, true);
+            final List<ConfigInfo> result = new ConfigInfoCollector("other", historyDao, executor).collect("");
+            assertEquals(expected.size(), result.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getJob(), result.get(i).getJob());
+                assertEquals(expected.get(i).getDate(), result.get(i).getDate());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     void assertThatRootFolderHasYItemsOfTypeZ(int noOfHistoryItems, final String type) throws IOException {
         assertThatFolderXHasYItemsOfTypeZ("", noOfHistoryItems, type);
     }
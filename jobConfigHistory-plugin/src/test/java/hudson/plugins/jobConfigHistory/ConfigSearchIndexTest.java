@@ -0,0 +1,225 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import hudson.XmlFile;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import org.apache.commons.io.FileUtils;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ConfigSearchIndexTest {
+
+    @Rule
+    public final UnpackResourceZip unpackResourceZip = UnpackResourceZip.create();
+
+    private File historyRoot;
+
+    private FileHistoryDao dao;
+
+    private ConfigSearchIndex sut;
+
+    @Before
+    public void setUp() {
+        historyRoot = unpackResourceZip.getResource("config-history");
+        dao = new FileHistoryDao(historyRoot, unpackResourceZip.getRoot(), null, 0, true);
+        dao.getEventLog().rebuild();
+        sut = dao.getSearchIndex();
+        sut.rebuild();
+    }
+
+    /**
+     * Test of extractTerms method, of class ConfigSearchIndex.
+     */
+    @Test
+    public void testExtractTerms() {
+        final Set<String> terms = ConfigSearchIndex.extractTerms("<project><assignedNode>Linux</assignedNode>"
+                + "<scm class=\"hudson.plugins.git.GitSCM\" plugin=\"git@2.2.0\">"
+                + "<credentialsId>4711</credentialsId></scm></project>");
+        assertTrue(terms.containsAll(Arrays.asList(
+                "/project", "/project/scm", "/project/assignedNode=Linux", "assignedNode=Linux", "linux",
+                "/project/scm/@plugin=git@2.2.0", "@plugin=git@2.2.0", "git", "2.2.0",
+                "/project/scm/credentialsId=4711", "credentialsId=4711", "4711", "hudson.plugins.git.gitscm")));
+    }
+
+    /**
+     * Test of extractTerms method, of class ConfigSearchIndex.
+     */
+    @Test
+    public void testExtractTermsMalformed() {
+        final Set<String> terms = ConfigSearchIndex.extractTerms("not <xml at all".getBytes());
+        assertEquals(Arrays.asList("not", "xml", "at", "all"), new ArrayList<String>(terms));
+    }
+
+    /**
+     * Test of normalizeQuery method, of class ConfigSearchIndex.
+     */
+    @Test
+    public void testNormalizeQuery() {
+        assertEquals(Arrays.asList("monica", "maxLogSize=25", "/project/description"),
+                ConfigSearchIndex.normalizeQuery(" Monica!  maxLogSize=25 /project/description "));
+    }
+
+    /**
+     * Test of search method, of class ConfigSearchIndex.
+     */
+    @Test
+    public void testSearch() {
+        final List<ConfigSearchIndex.Hit> hits = sut.search("maxLogSize=25", null, null, null, true, true, 100);
+        assertEquals(1, hits.size());
+        assertEquals("jobs/Test1", hits.get(0).getItem());
+        assertEquals(Arrays.asList("2012-11-21_11-35-12"), toDates(hits.get(0).getRevisions()));
+        assertEquals("2012-11-21_11-40-28", hits.get(0).getRemoved().getTimestamp());
+    }
+
+    /**
+     * Test of search method, of class ConfigSearchIndex, all terms have to match.
+     */
+    @Test
+    public void testSearchAllTerms() {
+        final List<ConfigSearchIndex.Hit> hits = sut.search(
+                "monica /project/buildWrappers/hudson.plugins.logfilesizechecker.LogfilesizecheckerWrapper/maxLogSize=0",
+                null, null, null, true, true, 100);
+        assertEquals(1, hits.size());
+        assertEquals(Arrays.asList("2012-11-21_11-40-28", "2012-11-21_11-41-14"),
+                toDates(hits.get(0).getRevisions()));
+        assertEquals("2012-11-21_11-42-05", hits.get(0).getRemoved().getTimestamp());
+        assertTrue(sut.search("monica nothere", null, null, null, true, true, 100).isEmpty());
+        assertTrue(sut.search("monica", null, null, null, true, false, 100).isEmpty());
+    }
+
+    /**
+     * Test of search method, of class ConfigSearchIndex, with date and user filters.
+     */
+    @Test
+    public void testSearchFilters() {
+        assertEquals(Arrays.asList("2012-11-21_11-40-28", "2012-11-21_11-41-14"), toDates(sut.search(
+                "monica", "2012-11-21_11-40", "2012-11-21_11-41", null, true, true, 100).get(0).getRevisions()));
+        assertEquals(5, sut.search("monica", null, null, "anonymous", true, true, 100).get(0).getRevisions().size());
+        assertTrue(sut.search("monica", null, null, "nobody", true, true, 100).isEmpty());
+    }
+
+    /**
+     * Test of revisionStored method, of class ConfigSearchIndex, survives reading the index again.
+     */
+    @Test
+    public void testRevisionStored() {
+        dao.saveItem(new XmlFile(unpackResourceZip.getResource("jobs/Test1/config.xml")));
+        final ConfigSearchIndex.Hit hit = sut.search("maxLogSize=8", null, null, null, true, true, 100).get(0);
+        assertEquals(2, hit.getRevisions().size());
+        assertNull(hit.getRemoved());
+        final ConfigSearchIndex reread = new ConfigSearchIndex(historyRoot, dao);
+        assertEquals(2, reread.search("maxLogSize=8", null, null, null, true, true, 100).get(0).getRevisions().size());
+    }
+
+    /**
+     * Test of rebuild method, of class ConfigSearchIndex, revisions are logged with the terms changed since the
+     * previous revision.
+     */
+    @Test
+    public void testRebuildLogsChangedTerms() throws IOException {
+        final List<String> lines = new ArrayList<String>();
+        for (Object line : FileUtils.readLines(new File(historyRoot, JobConfigHistoryConsts.SEARCH_INDEX_FILE),
+                "UTF-8")) {
+            if (((String) line).startsWith("D\tjobs/Test1\t")) {
+                lines.add((String) line);
+            }
+        }
+        assertEquals(5, lines.size());
+        assertTrue(lines.get(0).contains("\t+/project\t"));
+        for (String line : lines.subList(1, lines.size())) {
+            assertFalse(line.contains("\t+/project\t"));
+            assertTrue(line.length() < lines.get(0).length());
+        }
+    }
+
+    /**
+     * Test of search method, of class ConfigSearchIndex, revisions logged with all their terms are read.
+     */
+    @Test
+    public void testSearchRevisionsWithAllTerms() throws IOException {
+        FileUtils.writeStringToFile(new File(historyRoot, JobConfigHistoryConsts.SEARCH_INDEX_FILE),
+                "R\tjobs/Test1\t2012-11-21_11-35-12\t/project\tmaxLogSize=25\n"
+                + "R\tjobs/Test1\t2012-11-21_11-40-28\t/project\tmaxLogSize=0\n", "UTF-8");
+        final ConfigSearchIndex reread = new ConfigSearchIndex(historyRoot, dao);
+        final ConfigSearchIndex.Hit hit = reread.search("maxLogSize=25", null, null, null, true, true, 100).get(0);
+        assertEquals(Arrays.asList("2012-11-21_11-35-12"), toDates(hit.getRevisions()));
+        assertEquals("2012-11-21_11-40-28", hit.getRemoved().getTimestamp());
+        assertEquals(2, reread.search("/project", null, null, null, true, true, 100).get(0).getRevisions().size());
+    }
+
+    /**
+     * Test of moved method, of class ConfigSearchIndex, the jobs in a renamed folder move along.
+     */
+    @Test
+    public void testMovedFolder() throws IOException {
+        FileUtils.copyDirectory(new File(historyRoot, "jobs/Test1"), new File(historyRoot, "jobs/outer/jobs/Test1"));
+        FileUtils.copyDirectory(new File(historyRoot, "jobs/Test1"),
+                new File(historyRoot, "jobs/outer/jobs/inner/jobs/Test1"));
+        dao.getEventLog().rebuild();
+        sut.rebuild();
+        sut.moved(new File(historyRoot, "jobs/outer"), new File(historyRoot, "jobs/renamed"));
+        final List<String> expected = Arrays.asList(
+                "jobs/Test1", "jobs/renamed/jobs/Test1", "jobs/renamed/jobs/inner/jobs/Test1");
+        for (ConfigSearchIndex index : new ConfigSearchIndex[] {sut, new ConfigSearchIndex(historyRoot, dao)}) {
+            final List<String> items = new ArrayList<String>();
+            for (ConfigSearchIndex.Hit hit : index.search("maxLogSize=25", null, null, null, true, true, 100)) {
+                items.add(hit.getItem());
+            }
+            Collections.sort(items);
+            assertEquals(expected, items);
+        }
+    }
+
+    /**
+     * Test of resync method, of class ConfigSearchIndex, revisions restored behind the back of the plugin are
+     * found.
+     */
+    @Test
+    public void testResync() throws IOException {
+        final File restored = new File(historyRoot, "jobs/Restored");
+        FileUtils.copyDirectory(new File(historyRoot, "jobs/Test1"), restored);
+        assertTrue(dao.resyncItem(restored));
+        final List<ConfigSearchIndex.Hit> hits = sut.search("maxLogSize=25", null, null, null, true, true, 100);
+        assertEquals(2, hits.size());
+        assertEquals("jobs/Restored", hits.get(0).getItem());
+        assertEquals(0, sut.resync(restored));
+    }
+
+    private static List<String> toDates(final List<HistoryDescr> revisions) {
+        final List<String> dates = new ArrayList<String>();
+        for (HistoryDescr revision : revisions) {
+            dates.add(revision.getTimestamp());
+        }
+        return dates;
+    }
+}
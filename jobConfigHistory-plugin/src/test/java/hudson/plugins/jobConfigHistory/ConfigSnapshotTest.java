@@ -0,0 +1,131 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.apache.commons.io.IOUtils;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ConfigSnapshotTest {
+
+    @Rule
+    public final UnpackResourceZip unpackResourceZip = UnpackResourceZip.create();
+
+    private File historyRoot;
+
+    private FileHistoryDao dao;
+
+    @Before
+    public void setUp() {
+        historyRoot = unpackResourceZip.getResource("config-history");
+        dao = new FileHistoryDao(historyRoot, unpackResourceZip.getRoot(), null, 0, true);
+        dao.getEventLog().rebuild();
+    }
+
+    /**
+     * Test of toBound method, of class ConfigSnapshot.
+     */
+    @Test
+    public void testToBound() throws ParseException {
+        assertEquals("2012-11-21_11-40-00_999\0", ConfigSnapshot.toBound("2012-11-21_11-40"));
+        assertEquals("2012-11-21_11-40-28_999\0", ConfigSnapshot.toBound("2012-11-21_11-40-28"));
+        assertEquals("2012-11-21_11-40-28_123\0", ConfigSnapshot.toBound("2012-11-21_11-40-28_123"));
+        assertEquals("2012-11-21_00-00-00_999\0", ConfigSnapshot.toBound("2012-11-21"));
+    }
+
+    /**
+     * Test of toBound method, of class ConfigSnapshot.
+     */
+    @Test(expected = ParseException.class)
+    public void testToBoundInvalid() throws ParseException {
+        ConfigSnapshot.toBound("yesterday");
+    }
+
+    /**
+     * Test of take method, of class ConfigSnapshot.
+     */
+    @Test
+    public void testTake() throws ParseException {
+        final SortedMap<String, HistoryDescr> revisions = ConfigSnapshot.take(
+                dao.getEventLog(), historyRoot, "2012-11-21_11-40", true, true).getRevisions();
+        assertEquals(Arrays.asList("jobs/Test1"), new ArrayList<String>(revisions.keySet()));
+        assertEquals("2012-11-21_11-35-12", revisions.get("jobs/Test1").getTimestamp());
+        assertEquals("2012-11-21_11-40-28", ConfigSnapshot.take(dao.getEventLog(), historyRoot,
+                "2012-11-21_11-40-28", true, true).getRevisions().get("jobs/Test1").getTimestamp());
+    }
+
+    /**
+     * Test of take method, of class ConfigSnapshot.
+     */
+    @Test
+    public void testTakeDeleted() throws ParseException {
+        final String deleted = "jobs/Foo_deleted_20130830_223932_071";
+        final SortedMap<String, HistoryDescr> before = ConfigSnapshot.take(
+                dao.getEventLog(), historyRoot, "2013-08-30_22-36", false, true).getRevisions();
+        assertEquals("2013-08-30_22-35-05", before.get(deleted).getTimestamp());
+        final SortedMap<String, HistoryDescr> after = ConfigSnapshot.take(
+                dao.getEventLog(), historyRoot, "2013-08-30_22-40", false, true).getRevisions();
+        assertFalse(after.containsKey(deleted));
+        assertTrue(after.containsKey("jobs/Test1"));
+        assertFalse(after.containsKey("config"));
+        assertEquals("jobs/Foo", ConfigSnapshot.toItemName(deleted));
+    }
+
+    /**
+     * Test of writeZip method, of class ConfigSnapshot.
+     */
+    @Test
+    public void testWriteZip() throws Exception {
+        final ConfigSnapshot sut = ConfigSnapshot.take(dao.getEventLog(), historyRoot, "2013-08-30_22-36", true, true);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(3, sut.writeZip(dao, out));
+        final ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()));
+        final List<String> names = new ArrayList<String>();
+        try {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                names.add(entry.getName());
+                final String content = IOUtils.toString(in, "UTF-8");
+                if (entry.getName().equals("jobs/Test1/config.xml")) {
+                    assertTrue(content.contains("<maxLogSize>8</maxLogSize>"));
+                }
+            }
+        } finally {
+            in.close();
+        }
+        assertEquals(Arrays.asList("config/config.xml", "jobs/Foo/config.xml", "jobs/Test1/config.xml"), names);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import hudson.plugins.jobConfigHistory.SideBySideView.Line;
+import java.io.File;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class DiffCacheTest {
+
+    private final File itemHistoryDir = new File("config-history/jobs/Test1");
+
+    private final List<Line> lines = new GetDiffLines(new String[] {"<project>", "a", "</project>"},
+            new String[] {"<project>", "b", "</project>"}).get();
+
+    /**
+     * Test of get and put methods, of class DiffCache.
+     */
+    @Test
+    public void testGetAndPut() {
+        final DiffCache sut = new DiffCache(1024 * 1024);
+        assertNull(sut.get(itemHistoryDir, "2012-11-21_11-35-12", "2012-11-21_11-40-28"));
+        final List<Line> cached = sut.put(itemHistoryDir, "2012-11-21_11-35-12", "2012-11-21_11-40-28", lines,
+                sut.stamp());
+        assertSame(cached, sut.get(itemHistoryDir, "2012-11-21_11-35-12", "2012-11-21_11-40-28"));
+        assertNull(sut.get(itemHistoryDir, "2012-11-21_11-40-28", "2012-11-21_11-35-12"));
+        assertEquals(1, sut.getHitCount());
+        assertEquals(2, sut.getMissCount());
+        assertEquals(DiffCache.estimateSize(lines), sut.getSize());
+    }
+
+    /**
+     * Test of put method, of class DiffCache, diffs older than a purge are not cached.
+     */
+    @Test
+    public void testPutStale() {
+        final DiffCache sut = new DiffCache(1024 * 1024);
+        final long stamp = sut.stamp();
+        sut.remove(itemHistoryDir);
+        assertEquals(lines, sut.put(itemHistoryDir, "2012-11-21_11-35-12", "2012-11-21_11-40-28", lines, stamp));
+        assertEquals(0, sut.getEntryCount());
+    }
+
+    /**
+     * Test of put method, of class DiffCache, the least recently used diffs are evicted.
+     */
+    @Test
+    public void testEviction() {
+        final long size = DiffCache.estimateSize(lines);
+        final DiffCache sut = new DiffCache(2 * size);
+        sut.put(itemHistoryDir, "1", "2", lines, sut.stamp());
+        sut.put(itemHistoryDir, "2", "3", lines, sut.stamp());
+        sut.get(itemHistoryDir, "1", "2");
+        sut.put(itemHistoryDir, "3", "4", lines, sut.stamp());
+        assertEquals(2, sut.getEntryCount());
+        assertEquals(2 * size, sut.getSize());
+        assertEquals(1, sut.getEvictionCount());
+        assertNotNull(sut.get(itemHistoryDir, "1", "2"));
+        assertNull(sut.get(itemHistoryDir, "2", "3"));
+    }
+
+    /**
+     * Test of remove method, of class DiffCache.
+     */
+    @Test
+    public void testRemove() {
+        final DiffCache sut = new DiffCache(1024 * 1024);
+        final File other = new File("config-history/jobs/Test2");
+        sut.put(itemHistoryDir, "1", "2", lines, sut.stamp());
+        sut.put(other, "1", "2", lines, sut.stamp());
+        sut.remove(itemHistoryDir);
+        assertNull(sut.get(itemHistoryDir, "1", "2"));
+        assertNotNull(sut.get(other, "1", "2"));
+        assertEquals(DiffCache.estimateSize(lines), sut.getSize());
+        assertEquals(1, sut.getEntryCount());
+    }
+}
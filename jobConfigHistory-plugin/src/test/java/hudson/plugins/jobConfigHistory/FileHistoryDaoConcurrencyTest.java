@@ -0,0 +1,146 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import hudson.XmlFile;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Saves many jobs from many threads at once.
+ */
+public class FileHistoryDaoConcurrencyTest {
+
+    private static final Logger LOG = Logger.getLogger(FileHistoryDaoConcurrencyTest.class.getName());
+
+    private static final int JOBS = 32;
+
+    private static final int THREADS = 16;
+
+    private static final int SAVES_PER_THREAD = 250;
+
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File jenkinsHome;
+
+    private File historyRoot;
+
+    private final List<XmlFile> configs = new ArrayList<XmlFile>();
+
+    @Before
+    public void setUp() throws Exception {
+        jenkinsHome = tempFolder.getRoot();
+        historyRoot = new File(jenkinsHome, JobConfigHistoryConsts.DEFAULT_HISTORY_DIR);
+        for (int i = 0; i < JOBS; i++) {
+            final File configFile = new File(jenkinsHome, "jobs/Job" + i + "/config.xml");
+            FileUtils.writeStringToFile(configFile, "<?xml version='1.0' encoding='UTF-8'?>\n<project>" + i + "</project>");
+            configs.add(new XmlFile(configFile));
+        }
+    }
+
+    /**
+     * Every save gets its own complete revision.
+     */
+    @Test
+    public void testConcurrentSaves() throws Exception {
+        final FileHistoryDao sut = new FileHistoryDao(historyRoot, jenkinsHome, null, 0, true);
+        final AtomicIntegerArray saved = new AtomicIntegerArray(JOBS);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        final long start = System.currentTimeMillis();
+        for (int t = 0; t < THREADS; t++) {
+            final Random random = new Random(t);
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = 0; i < SAVES_PER_THREAD; i++) {
+                        final int job = random.nextInt(JOBS);
+                        sut.saveItem(configs.get(job));
+                        saved.incrementAndGet(job);
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        final long millis = Math.max(1, System.currentTimeMillis() - start);
+        final int total = THREADS * SAVES_PER_THREAD;
+        LOG.info(total + " saves in " + millis + " ms, " + (total * 1000L / millis) + " saves/s");
+
+        for (int job = 0; job < JOBS; job++) {
+            final XmlFile config = configs.get(job);
+            final List<String> revisions = new ArrayList<String>(sut.getRevisions(config).keySet());
+            assertEquals("revisions of Job" + job, saved.get(job), revisions.size());
+            for (String revision : revisions) {
+                assertEquals(config.asString(), sut.getOldRevision(config, revision).asString());
+            }
+        }
+    }
+
+    /**
+     * Concurrent saves of unchanged jobs only store one revision per job.
+     */
+    @Test
+    public void testConcurrentDuplicates() throws Exception {
+        final FileHistoryDao sut = new FileHistoryDao(historyRoot, jenkinsHome, null, 0, false);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (XmlFile config : configs) {
+                        sut.saveItem(config);
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        for (XmlFile config : configs) {
+            assertEquals(1, sut.getRevisions(config).size());
+        }
+    }
+}
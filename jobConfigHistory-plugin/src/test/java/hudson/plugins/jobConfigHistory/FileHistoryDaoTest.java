@@ -42,6 +42,8 @@ import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicReference;
@@ -145,7 +147,19 @@ public class FileHistoryDaoTest {
         final String formattedDate = result.format(new Date(0));
         // workaround for timezone issues, as cloudbees is in the far east :-) and returns 1969 :-).
         assertThat(formattedDate, startsWith("19"));
-        assertThat(formattedDate, endsWith("00-00"));
+        assertThat(formattedDate, endsWith("00-00_000"));
+    }
+
+    /**
+     * Test of getCurrentUser method, of class FileHistoryDao.
+     */
+    @Test
+    public void testGetCurrentUser() {
+        assertEquals(mockedUser, sutWithUserAndNoDuplicateHistory.getCurrentUser());
+        final FileHistoryDao sut = new FileHistoryDao(historyRoot, jenkinsHome, mockedUser, 0, true,
+                FileHistoryDao.Options.DEFAULT.withUserPerOperation(true));
+        // Jenkins is not running, so no user may be looked up.
+        assertNull(sut.getCurrentUser());
     }
 
     /**
@@ -217,6 +231,28 @@ public class FileHistoryDaoTest {
         assertNotEquals(first.getAbsolutePath(), second.getAbsolutePath());
     }
 
+    /**
+     * Test of createNewHistoryDir method, of class FileHistoryDao, ids are distinct and increasing without waiting.
+     */
+    @Test
+    public void testCreateNewHistoryDirBulk() throws IOException {
+        final AtomicReference<Calendar> timestampHolder = new AtomicReference<Calendar>();
+        final Set<String> ids = new HashSet<String>();
+        long previous = -1;
+        for (int i = 0; i < 100; i++) {
+            final long before = System.currentTimeMillis();
+            final File dir = FileHistoryDao.createNewHistoryDir(test1History, timestampHolder);
+            final long after = System.currentTimeMillis();
+            final long millis = PluginUtils.parsedMillis(dir.getName());
+            assertTrue(ids.add(dir.getName()));
+            assertTrue(millis > previous);
+            // a clash moves the id one millisecond past the previous one instead of waiting for the clock.
+            assertTrue(millis == previous + 1 || millis >= before && millis <= after);
+            assertEquals(dir.getName(), FileHistoryDao.getIdFormatter().format(timestampHolder.get().getTime()));
+            previous = millis;
+        }
+    }
+
     /**
      * Test of getRootDir method, of class FileHistoryDao.
      */
@@ -272,6 +308,67 @@ public class FileHistoryDaoTest {
         assertEquals(6, getHistoryLength());
     }
 
+    /**
+     * Test of saveItem method, of class FileHistoryDao, the digest of a changed configuration is stored.
+     */
+    @Test
+    public void testSaveItem_XmlFileStoresDigest() throws IOException {
+        final File configFile = test1Config.getFile();
+        FileUtils.writeStringToFile(configFile, test1Config.asString().replace("</project>", "<!-- changed --></project>"));
+        sutWithUserAndNoDuplicateHistory.saveItem(test1Config);
+        assertEquals(6, getHistoryLength());
+        final File newestDir = new File(test1History, sutWithUserAndNoDuplicateHistory.getRevisions(test1Config).lastKey());
+        final String digest = BlobStore.digest(FileUtils.readFileToByteArray(configFile));
+        assertEquals(digest, FileUtils.readFileToString(new File(newestDir, JobConfigHistoryConsts.DIGEST_FILE)));
+        assertEquals(digest, sutWithUserAndNoDuplicateHistory.getLatestDigest(test1History));
+        assertTrue(sutWithUserAndNoDuplicateHistory.hasDuplicateHistory(test1Config));
+        sutWithUserAndNoDuplicateHistory.saveItem(test1Config);
+        assertEquals(6, getHistoryLength());
+    }
+
+    /**
+     * Test of saveItem method with deduplicated storage, of class FileHistoryDao.
+     */
+    @Test
+    public void testSaveItem_XmlFileDeduplicated() throws IOException {
+        final FileHistoryDao sut = new FileHistoryDao(historyRoot, jenkinsHome, null, 0, true,
+                FileHistoryDao.Options.DEFAULT.withDeduplicateRevisions(true));
+        sut.saveItem(test1Config);
+        sut.saveItem(test1Config);
+        assertEquals(7, getHistoryLength());
+        final File blobsDir = new File(historyRoot, JobConfigHistoryConsts.BLOBS_DIR);
+        assertEquals(1, blobsDir.list().length);
+        final String newest = sut.getRevisions(test1Config).lastKey();
+        final File newestDir = new File(test1History, newest);
+        assertFalse(new File(newestDir, "config.xml").exists());
+        assertTrue(new File(newestDir, "config.xml" + JobConfigHistoryConsts.BLOB_REFERENCE_SUFFIX).exists());
+        assertTrue(sut.hasOldRevision(test1Config, newest));
+        assertEquals(test1Config.asString(), sut.getOldRevision(test1Config, newest).asString());
+        // plain revisions are still readable.
+        assertTrue(sut.hasOldRevision(test1Config, "2012-11-21_11-42-05"));
+        // the blob store is no system configuration.
+        assertEquals(1, sut.getSystemConfigs().length);
+    }
+
+    /**
+     * Test of saveItem method, of class FileHistoryDao, with compressed revisions.
+     */
+    @Test
+    public void testSaveItem_XmlFileCompressed() throws IOException {
+        final FileHistoryDao sut = new FileHistoryDao(historyRoot, jenkinsHome, null, 0, true,
+                FileHistoryDao.Options.DEFAULT.withCompressRevisions(true));
+        sut.saveItem(test1Config);
+        assertEquals(6, getHistoryLength());
+        final String newest = sut.getRevisions(test1Config).lastKey();
+        final File newestDir = new File(test1History, newest);
+        assertFalse(new File(newestDir, "config.xml").exists());
+        assertTrue(new File(newestDir, "config.xml" + JobConfigHistoryConsts.COMPRESSED_SUFFIX).exists());
+        assertTrue(new File(newestDir, JobConfigHistoryConsts.HISTORY_FILE).exists());
+        assertTrue(sut.hasOldRevision(test1Config, newest));
+        assertEquals(test1Config.asString(), sut.getOldRevision(test1Config, newest).asString());
+        assertTrue(sut.hasDuplicateHistory(test1Config));
+    }
+
     private int getHistoryLength() {
         return test1History.list().length;
     }
@@ -378,6 +475,19 @@ public class FileHistoryDaoTest {
         assertFalse(sutWithUserAndNoDuplicateHistory.hasOldRevision(test1Config, "1914-11-21_11-42-05"));
     }
 
+    /**
+     * Test of hasOldRevision method, of class FileHistoryDao, answers are remembered until the revision is purged.
+     */
+    @Test
+    public void testHasOldRevision_Cached() throws IOException {
+        final File revisionDir = new File(test1History, "2012-11-21_11-42-05");
+        assertTrue(sutWithUserAndNoDuplicateHistory.hasOldRevision(test1Config, revisionDir.getName()));
+        FileUtils.deleteDirectory(revisionDir);
+        assertTrue(sutWithUserAndNoDuplicateHistory.hasOldRevision(test1Config, revisionDir.getName()));
+        RevisionIndexCache.INSTANCE.removeRevision(revisionDir);
+        assertFalse(sutWithUserAndNoDuplicateHistory.hasOldRevision(test1Config, revisionDir.getName()));
+    }
+
     /**
      * Test of getHistoryDir method, of class FileHistoryDao.
      */
@@ -441,6 +551,61 @@ public class FileHistoryDaoTest {
         testPurgeOldEntries(maxEntries, expectedLength);
     }
 
+    /**
+     * Test of getRevisions method, of class FileHistoryDao, cached revisions follow saves and purges.
+     */
+    @Test
+    public void testGetRevisionsCached() throws IOException {
+        final SortedMap<String, HistoryDescr> first = sutWithUserAndNoDuplicateHistory.getRevisions(test1Config);
+        assertSame(first, sutWithUserAndNoDuplicateHistory.getRevisions(test1Config));
+        sutWithoutUserAndDuplicateHistory.saveItem(test1Config);
+        final SortedMap<String, HistoryDescr> afterSave = sutWithUserAndNoDuplicateHistory.getRevisions(test1Config);
+        assertEquals(6, afterSave.size());
+        assertEquals("Changed", afterSave.get(afterSave.lastKey()).getOperation());
+        sutWithUserAndNoDuplicateHistory.purgeOldEntries(test1History, 2);
+        assertEquals(2, sutWithUserAndNoDuplicateHistory.getRevisions(test1Config).size());
+    }
+
+    /**
+     * Test of getRevisions method, of class FileHistoryDao, reads the revision index instead of history.xml.
+     */
+    @Test
+    public void testGetRevisionsFromRevisionIndex() throws IOException {
+        final SortedMap<String, HistoryDescr> first = sutWithUserAndNoDuplicateHistory.getRevisions(test1Config);
+        assertTrue(new File(test1History, JobConfigHistoryConsts.REVISION_INDEX_FILE).exists());
+        for (String timestamp : first.keySet()) {
+            new XmlFile(new File(test1History, timestamp + "/" + JobConfigHistoryConsts.HISTORY_FILE))
+                    .write(new HistoryDescr("Other", "other", "Broken", timestamp));
+        }
+        RevisionIndexCache.INSTANCE.remove(test1History);
+        final SortedMap<String, HistoryDescr> second = sutWithUserAndNoDuplicateHistory.getRevisions(test1Config);
+        assertEquals(first.keySet(), second.keySet());
+        assertEquals("Created", second.get(second.firstKey()).getOperation());
+        sutWithoutUserAndDuplicateHistory.saveItem(test1Config);
+        RevisionIndexCache.INSTANCE.remove(test1History);
+        final SortedMap<String, HistoryDescr> afterSave = sutWithUserAndNoDuplicateHistory.getRevisions(test1Config);
+        assertEquals(6, afterSave.size());
+        assertEquals("Changed", afterSave.get(afterSave.lastKey()).getOperation());
+        assertEquals("Created", afterSave.get(afterSave.firstKey()).getOperation());
+    }
+
+    /**
+     * Test of hasOldRevision method, of class FileHistoryDao, answered from the revision index.
+     */
+    @Test
+    public void testHasOldRevisionFromRevisionIndex() {
+        final SortedMap<String, HistoryDescr> revisions = sutWithUserAndNoDuplicateHistory.getRevisions(test1Config);
+        for (HistoryDescr revision : revisions.values()) {
+            assertTrue(((IndexedHistoryDescr) revision).hasConfig());
+        }
+        sutWithoutUserAndDuplicateHistory.saveItem(test1Config);
+        final SortedMap<String, HistoryDescr> afterSave = sutWithUserAndNoDuplicateHistory.getRevisions(test1Config);
+        final HistoryDescr newest = afterSave.get(afterSave.lastKey());
+        assertTrue(((IndexedHistoryDescr) newest).hasConfig());
+        assertTrue(sutWithUserAndNoDuplicateHistory.hasOldRevision(test1Config, afterSave.lastKey()));
+        assertFalse(sutWithUserAndNoDuplicateHistory.hasOldRevision(test1Config, "2000-01-01_00-00-00"));
+    }
+
     private void testPurgeOldEntries(int maxEntries, final int expectedLength) {
         sutWithUserAndNoDuplicateHistory.purgeOldEntries(test1History, maxEntries);
         final int newLength = getHistoryLength();
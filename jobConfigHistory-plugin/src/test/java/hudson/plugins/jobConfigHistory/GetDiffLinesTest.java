@@ -23,7 +23,10 @@
  */
 package hudson.plugins.jobConfigHistory;
 
+import difflib.DiffUtils;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
@@ -56,6 +59,59 @@ public class GetDiffLinesTest {
         assertEquals("diff_revised", right.getCssClass());
     }
 
+    /**
+     * Test of get method, of class GetDiffLines, diffing two files directly
+     * gives the same lines as parsing their unified diff.
+     */
+    @Test
+    public void testGetFromFiles() {
+        final List<String> original = createMavenJobConfig(1000);
+        final List<String> revised = new ArrayList<String>(original);
+        revised.set(2, "  <description>changed</description>");
+        revised.set(400, "      <targets>clean deploy</targets>");
+        revised.set(404, "      <pom>changed/pom.xml</pom>");
+        revised.subList(1502, 1504).clear();
+        revised.addAll(2000, Arrays.asList("    <hudson.tasks.Shell>", "      <command>make</command>",
+                "    </hudson.tasks.Shell>"));
+        revised.remove(revised.size() - 2);
+        final String[] file1Lines = original.toArray(new String[original.size()]);
+        final String[] file2Lines = revised.toArray(new String[revised.size()]);
+        final List<String> unifiedDiff = DiffUtils.generateUnifiedDiff(
+                "file1", "file2", original, DiffUtils.diff(original, revised), GetDiffLines.CONTEXT_SIZE);
+        final List<String> expected = render(new GetDiffLines(unifiedDiff).get());
+        assertEquals(expected, render(new GetDiffLines(file1Lines, file2Lines).get()));
+        assertEquals(render(new GetDiffLines(new ArrayList<String>()).get()),
+                render(new GetDiffLines(file1Lines, file1Lines).get()));
+    }
+
+    private List<String> createMavenJobConfig(final int builders) {
+        final List<String> lines = new ArrayList<String>();
+        lines.add("<?xml version='1.0' encoding='UTF-8'?>");
+        lines.add("<project>");
+        lines.add("  <description>Monica!</description>");
+        lines.add("  <builders>");
+        for (int i = 0; i < builders; i++) {
+            lines.add("    <hudson.tasks.Maven>");
+            lines.add("      <targets>clean install -Dbuilder=" + i + "</targets>");
+            lines.add("      <pom>module" + i + "/pom.xml</pom>");
+        }
+        lines.add("  </builders>");
+        lines.add("</project>");
+        return lines;
+    }
+
+    private List<String> render(final List<SideBySideView.Line> lines) {
+        final List<String> rendered = new ArrayList<String>();
+        for (SideBySideView.Line line : lines) {
+            rendered.add(line.isSkipping() + " " + line.getTag()
+                    + " " + line.getLeft().getLineNumber() + " " + line.getLeft().getText()
+                    + " " + line.getLeft().getCssClass()
+                    + " " + line.getRight().getLineNumber() + " " + line.getRight().getText()
+                    + " " + line.getRight().getCssClass());
+        }
+        return rendered;
+    }
+
     GetDiffLines createGetDiffLines() throws IOException {
         final String resourceName = "diff.txt";
         final List<String> lines = TUtils.readResourceLines(resourceName);
@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class HistoryChangeTrackerTest {
+
+    private final HistoryChangeTracker sut = new HistoryChangeTracker(2);
+
+    private final File dir1 = new File("jobs/Test1/2012-11-21_11-29-12");
+
+    private final File dir2 = new File("jobs/Test1/2012-11-21_11-35-12");
+
+    private final File dir3 = new File("jobs/Test2/2012-11-21_11-40-28");
+
+    /**
+     * Nothing is recorded while replication is not running.
+     */
+    @Test
+    public void testRecordWhenDisabled() {
+        sut.record(dir1);
+        assertTrue(sut.drain().isEmpty());
+    }
+
+    /**
+     * Drain returns the recorded directories once.
+     */
+    @Test
+    public void testDrain() {
+        sut.setEnabled(true);
+        sut.record(dir1);
+        sut.record(dir1);
+        sut.record(dir2);
+        assertEquals(new LinkedHashSet<File>(Arrays.asList(dir1, dir2)), sut.drain());
+        assertTrue(sut.drain().isEmpty());
+    }
+
+    /**
+     * Too many changes request a complete replication.
+     */
+    @Test
+    public void testOverflow() {
+        sut.setEnabled(true);
+        sut.record(dir1);
+        sut.record(dir2);
+        sut.record(dir3);
+        assertNull(sut.drain());
+        assertTrue(sut.drain().isEmpty());
+    }
+
+    /**
+     * Restored changes are returned by the next drain.
+     */
+    @Test
+    public void testRestore() {
+        sut.setEnabled(true);
+        sut.record(dir1);
+        final Set<File> drained = sut.drain();
+        sut.record(dir2);
+        sut.restore(drained);
+        assertEquals(new LinkedHashSet<File>(Arrays.asList(dir2, dir1)), sut.drain());
+        sut.restore(null);
+        assertNull(sut.drain());
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import hudson.XmlFile;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.locks.Lock;
+import org.apache.commons.io.FileUtils;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class HistoryCompressorTest {
+
+    @Rule
+    public final UnpackResourceZip unpackResourceZip = UnpackResourceZip.create();
+
+    private final HistoryCompressor sut = new HistoryCompressor();
+
+    /**
+     * Plain revisions and blobs are replaced by compressed ones, which read the same.
+     */
+    @Test
+    public void testCompressAll() throws IOException {
+        final File historyRoot = unpackResourceZip.getResource("config-history");
+        final File jenkinsHome = unpackResourceZip.getRoot();
+        final XmlFile test1Config = new XmlFile(unpackResourceZip.getResource("jobs/Test1/config.xml"));
+        final FileHistoryDao dao = new FileHistoryDao(historyRoot, jenkinsHome, null, 0, true,
+                FileHistoryDao.Options.DEFAULT.withDeduplicateRevisions(true));
+        dao.saveItem(test1Config);
+        final String revision = "2012-11-21_11-42-05";
+        final String before = dao.getOldRevision(test1Config, revision).asString();
+
+        sut.compressAll(historyRoot);
+
+        final File revisionDir = new File(historyRoot, "jobs/Test1/" + revision);
+        assertFalse(new File(revisionDir, "config.xml").exists());
+        assertTrue(new File(revisionDir, "config.xml" + JobConfigHistoryConsts.COMPRESSED_SUFFIX).exists());
+        assertTrue(new File(revisionDir, JobConfigHistoryConsts.HISTORY_FILE).exists());
+        assertEquals(before, dao.getOldRevision(test1Config, revision).asString());
+        final String newest = dao.getRevisions(test1Config).lastKey();
+        assertEquals(test1Config.asString(), dao.getOldRevision(test1Config, newest).asString());
+        assertTrue(sut.getConvertedCount() > 0);
+        assertEquals(sut.getScannedCount(), sut.getConvertedCount());
+        assertTrue(sut.getBytesAfter() < sut.getBytesBefore());
+        assertFalse(sut.isRunning());
+    }
+
+    /**
+     * A revision is not converted while the history of its item is locked.
+     */
+    @Test
+    public void testCompressRevisionLocked() throws Exception {
+        final File test1History = unpackResourceZip.getResource("config-history/jobs/Test1");
+        final File revision = new File(test1History, "2012-11-21_11-42-05/config.xml");
+        final Lock lock = FileHistoryDao.getHistoryLock(test1History);
+        final Thread compressor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sut.compressRevision(revision);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        lock.lock();
+        try {
+            compressor.start();
+            compressor.join(500);
+            assertTrue(compressor.isAlive());
+            assertTrue(revision.exists());
+        } finally {
+            lock.unlock();
+        }
+        compressor.join();
+        assertFalse(revision.exists());
+        assertEquals(1, sut.getConvertedCount());
+    }
+
+    /**
+     * A revision resolved before it was compressed is read from the compressed copy.
+     */
+    @Test
+    public void testReadCompressedMeanwhile() throws IOException {
+        final File historyRoot = unpackResourceZip.getResource("config-history");
+        final FileHistoryDao dao = new FileHistoryDao(historyRoot, unpackResourceZip.getRoot(), null, 0, true);
+        final File revisionDir = new File(historyRoot, "jobs/Test1/2012-11-21_11-42-05");
+        final File revision = new File(revisionDir, "config.xml");
+        final String before = FileUtils.readFileToString(revision, "UTF-8");
+        final XmlFile stored = dao.getStoredConfig(revisionDir);
+        sut.compressRevision(revision);
+        assertFalse(revision.exists());
+        assertEquals(before, stored.asString());
+        assertEquals(before, new String(FileHistoryDao.readStoredContent(revision), "UTF-8"));
+    }
+
+    /**
+     * Only plain configurations and blobs are compressed.
+     */
+    @Test
+    public void testIsCompressible() {
+        assertTrue(HistoryCompressor.isCompressible(new File("config.xml"), false));
+        assertFalse(HistoryCompressor.isCompressible(new File(JobConfigHistoryConsts.HISTORY_FILE), false));
+        assertFalse(HistoryCompressor.isCompressible(new File("config.xml.gz"), false));
+        assertFalse(HistoryCompressor.isCompressible(new File("config.xml.sha256"), false));
+        assertTrue(HistoryCompressor.isCompressible(new File("0123abcd"), true));
+        assertFalse(HistoryCompressor.isCompressible(new File("0123abcd.gz"), true));
+    }
+}
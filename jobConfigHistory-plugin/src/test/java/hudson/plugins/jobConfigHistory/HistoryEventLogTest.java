@@ -0,0 +1,261 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import hudson.XmlFile;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import org.apache.commons.io.FileUtils;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class HistoryEventLogTest {
+
+    @Rule
+    public final UnpackResourceZip unpackResourceZip = UnpackResourceZip.create();
+
+    private File historyRoot;
+
+    private XmlFile test1Config;
+
+    private FileHistoryDao dao;
+
+    private HistoryEventLog sut;
+
+    @Before
+    public void setUp() {
+        historyRoot = unpackResourceZip.getResource("config-history");
+        test1Config = new XmlFile(unpackResourceZip.getResource("jobs/Test1/config.xml"));
+        dao = new FileHistoryDao(historyRoot, unpackResourceZip.getRoot(), null, 0, true);
+        sut = dao.getEventLog();
+        sut.rebuild();
+    }
+
+    /**
+     * Test of getLatestBefore method, of class HistoryEventLog.
+     */
+    @Test
+    public void testGetLatestBefore() {
+        final long millis = PluginUtils.parsedMillis("2012-11-21_11-40-28");
+        assertTrue(dao.isEventLogReady());
+        assertEquals("2012-11-21_11-42-05", dao.getLatestRevision(test1Config, Long.MAX_VALUE).getTimestamp());
+        assertEquals("2012-11-21_11-35-12", dao.getLatestRevision(test1Config, millis).getTimestamp());
+        assertEquals("2012-11-21_11-40-28", dao.getLatestRevision(test1Config, millis + 1).getTimestamp());
+        assertNull(dao.getLatestRevision(test1Config, PluginUtils.parsedMillis("2012-11-21_11-29-12")));
+    }
+
+    /**
+     * Test of rebuild method, of class HistoryEventLog.
+     */
+    @Test
+    public void testRebuild() {
+        assertTrue(sut.isReady());
+        assertEquals(dao.getJobHistory("Test1").keySet(), sut.getJobHistory("Test1").keySet());
+        assertEquals(dao.getSystemHistory("config").keySet(), sut.getSystemHistory("config").keySet());
+        assertEquals(dao.getDeletedJobs("").length, sut.getDeletedJobs("").length);
+        assertEquals(dao.getJobs("")[0], sut.getJobs("")[0]);
+        assertEquals("config", sut.getSystemConfigs()[0].getName());
+        final HistoryDescr created = sut.getJobHistory("Test1").values().iterator().next();
+        assertEquals("Created", created.getOperation());
+        assertTrue(new File(historyRoot, JobConfigHistoryConsts.EVENT_LOG_FILE).exists());
+    }
+
+    /**
+     * Test of revisionAdded method, of class HistoryEventLog, events survive reading the log again.
+     */
+    @Test
+    public void testRevisionAdded() {
+        final int before = sut.getJobHistory("Test1").size();
+        final long sequence = sut.getSequence();
+        dao.saveItem(test1Config);
+        assertEquals(sequence + 1, sut.getSequence());
+        assertEquals(before + 1, sut.getJobHistory("Test1").size());
+        final HistoryEventLog reloaded = new HistoryEventLog(historyRoot);
+        assertTrue(reloaded.isReady());
+        assertEquals(sut.getJobHistory("Test1").keySet(), reloaded.getJobHistory("Test1").keySet());
+        assertEquals(sut.getSequence(), reloaded.getSequence());
+    }
+
+    /**
+     * Test of moved and revisionPurged methods, of class HistoryEventLog.
+     */
+    @Test
+    public void testMovedAndPurged() {
+        final File test1History = new File(historyRoot, "jobs/Test1");
+        final SortedMap<String, HistoryDescr> revisions = sut.getJobHistory("Test1");
+        sut.revisionPurged(new File(test1History, revisions.lastKey()));
+        sut.moved(test1History, new File(historyRoot, "jobs/Renamed"));
+        final HistoryEventLog reloaded = new HistoryEventLog(historyRoot);
+        assertTrue(reloaded.getJobHistory("Test1").isEmpty());
+        assertEquals(revisions.headMap(revisions.lastKey()).keySet(), reloaded.getJobHistory("Renamed").keySet());
+    }
+
+    /**
+     * Test of compact method, of class HistoryEventLog, only existing revisions are kept.
+     */
+    @Test
+    public void testCompact() throws IOException {
+        final File logFile = new File(historyRoot, JobConfigHistoryConsts.EVENT_LOG_FILE);
+        final int lines = FileUtils.readLines(logFile, "UTF-8").size();
+        final File test1History = new File(historyRoot, "jobs/Test1");
+        final SortedMap<String, HistoryDescr> revisions = sut.getJobHistory("Test1");
+        sut.revisionPurged(new File(test1History, revisions.firstKey()));
+        sut.revisionPurged(new File(test1History, revisions.lastKey()));
+        sut.moved(test1History, new File(historyRoot, "jobs/Renamed"));
+        final long sequence = sut.getSequence();
+        sut.compact();
+        assertEquals(lines - 2, FileUtils.readLines(logFile, "UTF-8").size());
+        assertEquals(sequence, sut.getSequence());
+        final HistoryEventLog reloaded = new HistoryEventLog(historyRoot);
+        assertTrue(reloaded.isReady());
+        assertEquals(sequence, reloaded.getSequence());
+        assertTrue(reloaded.getJobHistory("Test1").isEmpty());
+        assertEquals(sut.getJobHistory("Renamed").keySet(), reloaded.getJobHistory("Renamed").keySet());
+        assertEquals(revisions.size() - 2, reloaded.getJobHistory("Renamed").size());
+    }
+
+    /**
+     * Test of moved method, of class HistoryEventLog, the jobs in a renamed folder move along.
+     */
+    @Test
+    public void testMovedFolder() throws IOException {
+        FileUtils.copyDirectory(new File(historyRoot, "jobs/Test1"), new File(historyRoot, "jobs/outer/jobs/Test1"));
+        FileUtils.copyDirectory(new File(historyRoot, "jobs/Test1"),
+                new File(historyRoot, "jobs/outer/jobs/inner/jobs/Test1"));
+        FileUtils.copyDirectory(new File(historyRoot, "jobs/Test1"), new File(historyRoot, "jobs/outer2/jobs/Test1"));
+        sut.rebuild();
+        final Set<String> revisions = sut.getJobHistory("Test1").keySet();
+        sut.moved(new File(historyRoot, "jobs/outer"), new File(historyRoot, "jobs/renamed"));
+        for (HistoryEventLog log : new HistoryEventLog[] {sut, new HistoryEventLog(historyRoot)}) {
+            assertTrue(log.getJobHistory("outer/jobs/Test1").isEmpty());
+            assertTrue(log.getJobHistory("outer/jobs/inner/jobs/Test1").isEmpty());
+            assertEquals(revisions, log.getJobHistory("renamed/jobs/Test1").keySet());
+            assertEquals(revisions, log.getJobHistory("renamed/jobs/inner/jobs/Test1").keySet());
+            assertEquals(revisions, log.getJobHistory("outer2/jobs/Test1").keySet());
+        }
+    }
+
+    /**
+     * Test of isReady method, of class HistoryEventLog, an incomplete last line is skipped.
+     */
+    @Test
+    public void testIncompleteLastLine() throws IOException {
+        final File logFile = new File(historyRoot, JobConfigHistoryConsts.EVENT_LOG_FILE);
+        FileUtils.writeStringToFile(logFile, FileUtils.readFileToString(logFile) + "99\tR\tjobs/Broken");
+        final HistoryEventLog reloaded = new HistoryEventLog(historyRoot);
+        assertTrue(reloaded.isReady());
+        reloaded.revisionPurged(new File(historyRoot, "jobs/Test1/" + sut.getJobHistory("Test1").firstKey()));
+        assertEquals(sut.getJobHistory("Test1").size() - 1,
+                new HistoryEventLog(historyRoot).getJobHistory("Test1").size());
+    }
+
+    /**
+     * Test of getPage method, of class HistoryEventLog, pages hold what the directory walk finds.
+     */
+    @Test
+    public void testGetPage() throws IOException {
+        for (String type : new String[] {"system", "jobs", "deleted", "created"}) {
+            final List<ConfigInfo> expected = "system".equals(type)
+                    ? new ArrayList<ConfigInfo>() : new ConfigInfoCollector(type, dao).collect("");
+            if ("system".equals(type)) {
+                for (File config : dao.getSystemConfigs()) {
+                    expected.addAll(HistoryDescrToConfigInfo.convert(config.getName(), true,
+                            dao.getSystemHistory(config.getName()).values(), false));
+                }
+            }
+            final List<ConfigInfo> paged = new ArrayList<ConfigInfo>();
+            String cursor = null;
+            do {
+                final ConfigInfoPage page = sut.getPage(type, true, true, HistoryCursor.decode(cursor), 2);
+                assertTrue(page.getConfigs().size() <= 2);
+                paged.addAll(page.getConfigs());
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+            Collections.sort(expected, ConfigInfoPage.DESCENDING);
+            assertEquals(type, toKeys(expected), toKeys(paged));
+        }
+        assertTrue(sut.getPage("jobs", true, false, null, 2).getConfigs().isEmpty());
+    }
+
+    /**
+     * Test of getPage method, of class HistoryEventLog, jobs in folders are listed by their full name.
+     */
+    @Test
+    public void testGetPageNestedFolders() throws IOException {
+        FileUtils.copyDirectory(new File(historyRoot, "jobs/Test1"), new File(historyRoot, "jobs/outer/jobs/Test1"));
+        FileUtils.copyDirectory(new File(historyRoot, "jobs/Test1"),
+                new File(historyRoot, "jobs/outer/jobs/inner/jobs/Test1"));
+        sut.rebuild();
+        for (String type : new String[] {"jobs", "created"}) {
+            final List<ConfigInfo> expected = new ConfigInfoCollector(type, dao).collect("");
+            Collections.sort(expected, ConfigInfoPage.DESCENDING);
+            assertEquals(type, toKeys(expected), toKeys(sut.getPage(type, true, true, null, 100).getConfigs()));
+        }
+        final List<String> created = new ArrayList<String>();
+        for (ConfigInfo config : sut.getPage("created", true, true, null, 100).getConfigs()) {
+            created.add(config.getJob());
+        }
+        Collections.sort(created);
+        assertEquals(Arrays.asList("Test1", "outer/jobs/Test1", "outer/jobs/inner/jobs/Test1"), created);
+    }
+
+    /**
+     * Test of isJobName method, of class HistoryEventLog.
+     */
+    @Test
+    public void testIsJobName() {
+        assertTrue(HistoryEventLog.isJobName("Test1"));
+        assertTrue(HistoryEventLog.isJobName("outer/jobs/inner/jobs/Test1"));
+        assertFalse(HistoryEventLog.isJobName("outer/jobs"));
+        assertFalse(HistoryEventLog.isJobName("maven/modules/module"));
+        assertFalse(HistoryEventLog.isJobName("outer//Test1"));
+    }
+
+    private List<String> toKeys(List<ConfigInfo> configs) {
+        final List<String> keys = new ArrayList<String>();
+        for (ConfigInfo config : configs) {
+            keys.add(HistoryCursor.key(config) + " " + config.getOperation() + " " + config.getIsJob());
+        }
+        return keys;
+    }
+
+    /**
+     * Test of escape and unescape methods, of class HistoryEventLog.
+     */
+    @Test
+    public void testEscape() {
+        final String value = "a\tb\\c\nd\re";
+        assertEquals("a\\tb\\\\c\\nd\\re", HistoryEventLog.escape(value));
+        assertEquals(value, HistoryEventLog.unescape(HistoryEventLog.escape(value)));
+        assertEquals("", HistoryEventLog.escape(null));
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import java.io.File;
+import java.util.SortedMap;
+import org.apache.commons.io.FileUtils;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class HistoryRootWatcherTest {
+
+    @Rule
+    public final UnpackResourceZip unpackResourceZip = UnpackResourceZip.create();
+
+    private File historyRoot;
+
+    private FileHistoryDao dao;
+
+    private HistoryEventLog eventLog;
+
+    private final HistoryRootWatcher sut = new HistoryRootWatcher(null);
+
+    @Before
+    public void setUp() {
+        historyRoot = unpackResourceZip.getResource("config-history");
+        dao = new FileHistoryDao(historyRoot, unpackResourceZip.getRoot(), null, 0, true);
+        eventLog = dao.getEventLog();
+        eventLog.rebuild();
+        assertEquals(5, dao.getJobHistory("Test1").size());
+        makeOld(historyRoot);
+        assertEquals(0, sut.poll(dao, historyRoot));
+    }
+
+    /**
+     * Test of poll method, of class HistoryRootWatcher.
+     */
+    @Test
+    public void testPollUnchanged() {
+        assertEquals(0, sut.poll(dao, historyRoot));
+    }
+
+    /**
+     * Test of poll method, of class HistoryRootWatcher, revisions replaced behind the back of the plugin.
+     */
+    @Test
+    public void testPollChangedItem() throws Exception {
+        final File test1 = new File(historyRoot, "jobs/Test1");
+        FileUtils.copyDirectory(new File(test1, "2012-11-21_11-42-05"), new File(test1, "2012-11-21_11-50-00"));
+        FileUtils.deleteDirectory(new File(test1, "2012-11-21_11-29-12"));
+        assertEquals(1, sut.poll(dao, historyRoot));
+        assertReplaced(eventLog.getJobHistory("Test1"));
+        assertReplaced(dao.getJobHistory("Test1"));
+    }
+
+    private static void assertReplaced(final SortedMap<String, HistoryDescr> revisions) {
+        assertEquals(5, revisions.size());
+        assertTrue(revisions.containsKey("2012-11-21_11-50-00"));
+        assertFalse(revisions.containsKey("2012-11-21_11-29-12"));
+    }
+
+    /**
+     * Test of poll method, of class HistoryRootWatcher, an item restored and deleted again.
+     */
+    @Test
+    public void testPollAddedAndVanishedItem() throws Exception {
+        final File test3 = new File(historyRoot, "jobs/Test3");
+        FileUtils.copyDirectory(new File(historyRoot, "jobs/Test1"), test3);
+        assertEquals(1, sut.poll(dao, historyRoot));
+        assertEquals(5, eventLog.getJobHistory("Test3").size());
+        FileUtils.deleteDirectory(test3);
+        assertEquals(1, sut.poll(dao, historyRoot));
+        assertTrue(eventLog.getJobHistory("Test3").isEmpty());
+    }
+
+    /**
+     * Sets the modification time of all directories into the past, like after a restart.
+     *
+     * @param dir the top directory.
+     */
+    private static void makeOld(final File dir) {
+        for (File child : dir.listFiles()) {
+            if (child.isDirectory()) {
+                makeOld(child);
+            }
+        }
+        assertTrue(dir.setLastModified(System.currentTimeMillis() - 600000L));
+    }
+}
@@ -208,6 +208,11 @@ public class JobConfigBadgeActionTest {
                         new HistoryDescr("user", "userId", "changed", "2013-10-30_23-00-07"));
             }
 
+            @Override
+            HistoryDao getHistoryDao() {
+                return mockedHistoryDao;
+            }
+
         };
     }
 
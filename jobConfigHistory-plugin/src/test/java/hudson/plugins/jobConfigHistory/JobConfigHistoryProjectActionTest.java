@@ -164,6 +164,44 @@ public class JobConfigHistoryProjectActionTest {
         testJobXHasYHistoryEntries("jobs/Test1", 0);
     }
 
+    /**
+     * Test of getJobConfigPage method, of class JobConfigHistoryProjectAction.
+     */
+    @Test
+    public void testGetJobConfigPage() throws Exception {
+        when(mockedPlugin.getMaxEntriesPerPage()).thenReturn("2");
+        when(mockedProject.hasPermission(AbstractProject.CONFIGURE)).thenReturn(true);
+        when(mockedProject.getRootDir()).thenReturn(testConfigs.getResource("jobs/Test1"));
+        final JobConfigHistoryProjectAction sut = createAction();
+        final ConfigInfoPage first = sut.getJobConfigPage();
+        assertEquals(2, first.getConfigs().size());
+        assertEquals("2012-11-21_11-42-05", first.getConfigs().get(0).getDate());
+        assertNotNull(first.getNextCursor());
+        when(mockedRequest.getParameter("cursor")).thenReturn(first.getNextCursor());
+        final ConfigInfoPage second = sut.getJobConfigPage();
+        assertEquals(2, second.getConfigs().size());
+        when(mockedRequest.getParameter("cursor")).thenReturn(second.getNextCursor());
+        final ConfigInfoPage last = sut.getJobConfigPage();
+        assertEquals(1, last.getConfigs().size());
+        assertEquals("2012-11-21_11-29-12", last.getConfigs().get(0).getDate());
+        assertNull(last.getNextCursor());
+    }
+
+    /**
+     * Test of getJobConfigPage method, of class JobConfigHistoryProjectAction, no cursor points to a page
+     * without entries.
+     */
+    @Test
+    public void testGetJobConfigPageNoEmptyNextPage() throws Exception {
+        assertTrue(testConfigs.getResource("config-history/jobs/Test1/2012-11-21_11-29-12/config.xml").delete());
+        when(mockedPlugin.getMaxEntriesPerPage()).thenReturn("4");
+        when(mockedProject.hasPermission(AbstractProject.CONFIGURE)).thenReturn(true);
+        when(mockedProject.getRootDir()).thenReturn(testConfigs.getResource("jobs/Test1"));
+        final ConfigInfoPage page = createAction().getJobConfigPage();
+        assertEquals(4, page.getConfigs().size());
+        assertNull(page.getNextCursor());
+    }
+
     private List<ConfigInfo> testJobXHasYHistoryEntries(final String jobDir, final int noOfHistoryEntries) throws IOException {
         when(mockedProject.hasPermission(AbstractProject.CONFIGURE)).thenReturn(true);
         when(mockedProject.getRootDir()).thenReturn(testConfigs.getResource(jobDir));
@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
 import static org.junit.Assert.*;
 import org.junit.Rule;
 import org.junit.Test;
@@ -186,6 +187,30 @@ public class JobConfigHistoryPurgerTest {
         assertFalse(dir.exists());
     }
 
+    /**
+     * Test of sweepBlobs method, of class JobConfigHistoryPurger.
+     */
+    @Test
+    public void testSweepBlobs() throws IOException {
+        final File historyRoot = tempFolder.getRoot();
+        when(mockedPlugin.getConfiguredHistoryRootDir()).thenReturn(historyRoot);
+        final BlobStore blobStore = new BlobStore(new File(historyRoot, JobConfigHistoryConsts.BLOBS_DIR));
+        final String referenced = blobStore.put("referenced".getBytes("UTF-8"));
+        final String unreferenced = blobStore.put("unreferenced".getBytes("UTF-8"));
+        final File revisionDir = tempFolder.newFolder("jobs", "Test1", "2012-11-21_11-42-05");
+        FileUtils.writeStringToFile(new File(revisionDir, "config.xml" + JobConfigHistoryConsts.BLOB_REFERENCE_SUFFIX),
+                referenced, "US-ASCII");
+        final long twoHoursAgo = System.currentTimeMillis() - TimeUnit.MILLISECONDS.convert(2, TimeUnit.HOURS);
+        assertTrue(blobStore.get(referenced).setLastModified(twoHoursAgo));
+        assertTrue(blobStore.get(unreferenced).setLastModified(twoHoursAgo));
+        final String fresh = blobStore.put("fresh".getBytes("UTF-8"));
+        JobConfigHistoryPurger sut = new JobConfigHistoryPurger(mockedPlugin, mockedDao, mockedOverviewDao);
+        sut.sweepBlobs();
+        assertTrue(blobStore.get(referenced).exists());
+        assertFalse(blobStore.get(unreferenced).exists());
+        assertTrue(blobStore.get(fresh).exists());
+    }
+
     private boolean testIsOlderThanOneDay(final Date date) {
         JobConfigHistoryPurger sut = new JobConfigHistoryPurger(mockedPlugin, mockedDao, mockedOverviewDao);
         sut.setMaxAge(1);
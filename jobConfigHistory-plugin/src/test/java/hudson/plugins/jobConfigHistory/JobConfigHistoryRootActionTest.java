@@ -141,6 +141,29 @@ public class JobConfigHistoryRootActionTest {
         assertEquals(0, createSut().getConfigs().size());
     }
 
+    /**
+     * Test of getConfigPage method, of class JobConfigHistoryRootAction, the page is stored in the request.
+     */
+    @Test
+    public void testGetConfigPageStored() throws Exception {
+        final ConfigInfoPage page = createSut().getConfigPage();
+        verify(mockedStaplerRequest).setAttribute(JobConfigHistoryRootAction.CONFIG_PAGE_ATTRIBUTE, page);
+    }
+
+    /**
+     * Test of getConfigs and getNextCursor methods, of class JobConfigHistoryRootAction, the page of the
+     * request is reused.
+     */
+    @Test
+    public void testGetConfigPageOncePerRequest() throws Exception {
+        final ConfigInfoPage page = ConfigInfoPage.of(new ArrayList<ConfigInfo>(), null, 10);
+        given(mockedStaplerRequest.getAttribute(JobConfigHistoryRootAction.CONFIG_PAGE_ATTRIBUTE)).willReturn(page);
+        final JobConfigHistoryRootAction sut = createSut();
+        assertSame(page.getConfigs(), sut.getConfigs());
+        assertNull(sut.getNextCursor());
+        verify(mockedStaplerRequest, never()).getParameter("filter");
+    }
+
     /**
      * Test of getSystemConfigs method, of class JobConfigHistoryRootAction.
      */
@@ -277,6 +277,30 @@ public class JobConfigHistoryTest {
         assertEquals(expResult, result);
     }
 
+    /**
+     * Test of getStorageMode method, of class JobConfigHistory.
+     */
+    @Test
+    public void testGetStorageMode() throws IOException, ServletException, Descriptor.FormException {
+        JobConfigHistory sut = createSut();
+        assertEquals("plain", sut.getStorageMode());
+        assertFalse(sut.isDeduplicateRevisions());
+        sut.configure(null, createFormData());
+        assertEquals("deduplicated", sut.getStorageMode());
+        assertTrue(sut.isDeduplicateRevisions());
+    }
+
+    /**
+     * Test of getCompressRevisions method, of class JobConfigHistory.
+     */
+    @Test
+    public void testGetCompressRevisions() throws IOException, ServletException, Descriptor.FormException {
+        JobConfigHistory sut = createSut();
+        assertFalse(sut.getCompressRevisions());
+        sut.configure(null, createFormData());
+        assertTrue(sut.getCompressRevisions());
+    }
+
     /**
      * Test of showBuildBadges method, of class JobConfigHistory.
      */
@@ -452,6 +476,8 @@ public class JobConfigHistoryTest {
                 "\"excludePattern\": \"5\"," +
                 "\"saveModuleConfiguration\": true," +
                 "\"showBuildBadges\": \"5\"," +
+                "\"storageMode\": \"deduplicated\"," +
+                "\"compressRevisions\": true," +
                 "\"scmRepoUrl\": \"domain.com\"," +
                 "\"scmRepoUser\": \"user@domain\"," +
                 "\"scmRepoPass\": \"password\"" +
@@ -0,0 +1,69 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import java.io.File;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LatestDigestCacheTest {
+
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final LatestDigestCache sut = new LatestDigestCache();
+
+    /**
+     * The newest revision replaces the older one.
+     */
+    @Test
+    public void testPutAndGet() throws Exception {
+        final File itemHistoryDir = tempFolder.newFolder("Test1");
+        assertNull(sut.get(itemHistoryDir));
+        final File older = new File(itemHistoryDir, "2012-11-21_11-29-12");
+        final File newer = new File(itemHistoryDir, "2012-11-21_11-35-12");
+        assertTrue(older.mkdir());
+        assertTrue(newer.mkdir());
+        sut.put(older, "aa");
+        sut.put(newer, "bb");
+        assertEquals("bb", sut.get(itemHistoryDir));
+        sut.remove(itemHistoryDir);
+        assertNull(sut.get(itemHistoryDir));
+    }
+
+    /**
+     * Entries of revisions which vanished are dropped.
+     */
+    @Test
+    public void testRevisionDeleted() throws Exception {
+        final File itemHistoryDir = tempFolder.newFolder("Test1");
+        final File revision = new File(itemHistoryDir, "2012-11-21_11-29-12");
+        assertTrue(revision.mkdir());
+        sut.put(revision, "aa");
+        assertTrue(revision.delete());
+        assertNull(sut.get(itemHistoryDir));
+    }
+}
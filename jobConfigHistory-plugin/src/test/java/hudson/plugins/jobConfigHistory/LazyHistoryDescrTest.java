@@ -48,6 +48,7 @@ package hudson.plugins.jobConfigHistory;
 
 import hudson.XmlFile;
 import java.io.File;
+import static org.junit.Assert.*;
 import org.junit.Test;
 
 /**
@@ -73,4 +74,17 @@ public class LazyHistoryDescrTest {
         LazyHistoryDescr sut = new LazyHistoryDescr(new XmlFile(new File("pom.xml")));
         sut.getUser();
     }
+
+    /**
+     * Timestamp from the directory name does not read the history description.
+     */
+    @Test
+    public void testGetTimestampFromDirectoryName() {
+        LazyHistoryDescr sut = new LazyHistoryDescr(new XmlFile(new File("target/I_DO_NOT_EXIST.xml")),
+                "2012-11-21_11-29-12");
+        assertEquals("2012-11-21_11-29-12", sut.getTimestamp());
+        assertEquals(PluginUtils.parsedDate("2012-11-21_11-29-12"), sut.parsedDate());
+        assertEquals(sut.parsedDate().getTime(), sut.parsedMillis());
+        assertFalse(sut.isLoaded());
+    }
 }
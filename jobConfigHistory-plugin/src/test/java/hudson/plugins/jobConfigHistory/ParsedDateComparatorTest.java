@@ -1,9 +1,13 @@
 package hudson.plugins.jobConfigHistory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Random;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 /**
  *
@@ -44,4 +48,46 @@ public class ParsedDateComparatorTest {
         assertEquals(historyDescrNewer, list.get(0));
         assertEquals(historyDescrNewer, Collections.min(list, ParsedDateComparator.DESCENDING));
     }
+
+    /**
+     * Test of compare method, of class ParsedDateComparator, implementations of ParsedDate only are compared
+     * by their date.
+     */
+    @Test
+    public void testComparePlainParsedDate() {
+        final ParsedDate plain = new ParsedDate() {
+            @Override
+            public Date parsedDate() {
+                return historyDescrNewer.parsedDate();
+            }
+        };
+        assertEquals(0, ParsedDateComparator.DESCENDING.compare(plain, historyDescrNewer));
+        assertEquals(-1, ParsedDateComparator.DESCENDING.compare(plain, historyDescr));
+        assertEquals(1, ParsedDateComparator.DESCENDING.compare(historyDescr, plain));
+    }
+
+    /**
+     * Test of compare method, of class ParsedDateComparator, sorting parses every date only once.
+     */
+    @Test
+    public void testSortParsesOnce() {
+        final int[] parses = new int[1];
+        final List<ConfigInfo> configs = new ArrayList<ConfigInfo>();
+        for (int i = 0; i < 100000; i++) {
+            final String date = RevisionIdCodec.format(1353493752000L + i * 1000L);
+            configs.add(new ConfigInfo("job" + i, true, date, "user", "Changed", "userId", true) {
+                @Override
+                public String getDate() {
+                    parses[0]++;
+                    return super.getDate();
+                }
+            });
+        }
+        Collections.shuffle(configs, new Random(42));
+        Collections.sort(configs, ParsedDateComparator.DESCENDING);
+        assertEquals(100000, parses[0]);
+        for (int i = 1; i < configs.size(); i++) {
+            assertTrue(configs.get(i - 1).parsedMillis() > configs.get(i).parsedMillis());
+        }
+    }
 }
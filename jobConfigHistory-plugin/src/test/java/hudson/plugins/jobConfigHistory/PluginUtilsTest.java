@@ -45,6 +45,17 @@ public class PluginUtilsTest {
         assertEquals(expResult, result);
     }
     
+    /**
+     * Test of parsedDate method, of class PluginUtils, with milliseconds.
+     */
+    @Test
+    public void testParsedDateMillis() {
+        String timeStamp = "2012-11-21_11-29-12_345";
+        Date expResult = new Date(new Date(112, 10, 21, 11, 29, 12).getTime() + 345);
+        Date result = PluginUtils.parsedDate(timeStamp);
+        assertEquals(expResult, result);
+    }
+
     /**
      * Test of parsedDate method, of class PluginUtils.
      */
@@ -0,0 +1,129 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ReverseDeltaHistoryDaoTest {
+
+    @Rule
+    public final UnpackResourceZip unpackResourceZip = UnpackResourceZip.create();
+
+    private File historyRoot;
+
+    private File itemHistory;
+
+    private ReverseDeltaHistoryDao sut;
+
+    @Before
+    public void setFieldsFromUnpackResource() {
+        historyRoot = unpackResourceZip.getResource("config-history");
+        itemHistory = new File(historyRoot, "jobs/Delta");
+        sut = new ReverseDeltaHistoryDao(historyRoot, unpackResourceZip.getRoot(), null, 0, true, 3);
+    }
+
+    /**
+     * Only every third revision and the creation are kept in full, every
+     * revision can be rebuilt in storage mode plain as well.
+     */
+    @Test
+    public void testStoreAndRebuild() throws IOException {
+        final String[] contents = new String[6];
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = createContent(i);
+            store(i, contents[i]);
+        }
+        assertFull(0);
+        assertDelta(1);
+        assertDelta(2);
+        assertFull(3);
+        assertDelta(4);
+        assertFull(5);
+        final FileHistoryDao plain = new FileHistoryDao(historyRoot, unpackResourceZip.getRoot(), null, 0, true);
+        for (int i = 0; i < contents.length; i++) {
+            assertEquals(contents[i], sut.getOldRevision("jobs/Delta", getId(i)).asString());
+            assertEquals(contents[i], plain.getOldRevision("jobs/Delta", getId(i)).asString());
+        }
+        assertTrue(ReverseDelta.getReconstructionCount() > 0);
+    }
+
+    /**
+     * Deltas keep line endings and missing trailing newlines.
+     */
+    @Test
+    public void testCreateAndApplyDelta() throws IOException {
+        assertRoundTrip("a\nb\nc", "a\nc\n");
+        assertRoundTrip("", "x");
+        assertRoundTrip("x\r\ny\r\n", "");
+        assertRoundTrip("@@ 1 2 3\n", "@@ 0 0 0\n@@ 1 1 1\n");
+    }
+
+    private void assertRoundTrip(String newer, String older) throws IOException {
+        final String delta = ReverseDelta.createDelta(newer.getBytes("UTF-8"), older.getBytes("UTF-8"));
+        final String rebuilt = ReverseDelta.join(ReverseDelta.applyDelta(
+                ReverseDelta.split(newer.getBytes("UTF-8")), delta));
+        assertEquals(older, rebuilt);
+    }
+
+    private String createContent(int i) {
+        final StringBuilder sb = new StringBuilder("<?xml version='1.0' encoding='UTF-8'?>\n<project>\n");
+        for (int line = 0; line < 20; line++) {
+            sb.append("  <line").append(line).append(">");
+            sb.append(line == i ? "changed ä" : "unchanged");
+            sb.append("</line").append(line).append(">\n");
+        }
+        return sb.append("</project>\n").toString();
+    }
+
+    private void store(int i, String content) throws IOException {
+        final File dir = new File(itemHistory, getId(i));
+        assertTrue(dir.mkdirs());
+        final Calendar timestamp = new GregorianCalendar(2014, 0, i + 1, 10, 0, 0);
+        sut.createHistoryXmlFile(timestamp, dir, i == 0 ? "Created" : "Changed");
+        sut.storeConfigContent("config.xml", content.getBytes("UTF-8"), dir);
+    }
+
+    private String getId(int i) {
+        return String.format("2014-01-%02d_10-00-00", i + 1);
+    }
+
+    private void assertFull(int i) {
+        final File dir = new File(itemHistory, getId(i));
+        assertTrue(new File(dir, "config.xml").exists());
+        assertFalse(ReverseDeltaHistoryDao.hasDelta(dir, "config.xml"));
+    }
+
+    private void assertDelta(int i) {
+        final File dir = new File(itemHistory, getId(i));
+        assertFalse(new File(dir, "config.xml").exists());
+        assertTrue(ReverseDeltaHistoryDao.hasDelta(dir, "config.xml"));
+    }
+}
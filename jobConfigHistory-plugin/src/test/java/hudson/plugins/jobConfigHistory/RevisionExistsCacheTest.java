@@ -0,0 +1,76 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import java.io.File;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class RevisionExistsCacheTest {
+
+    private final File itemHistoryDir = new File("config-history/jobs/Test1");
+
+    private final File revisionDir = new File(itemHistoryDir, "2015-01-01_00-00-00_000");
+
+    /**
+     * Test of put and get methods, of class RevisionExistsCache.
+     */
+    @Test
+    public void testPut() {
+        final RevisionExistsCache sut = new RevisionExistsCache(2);
+        assertNull(sut.get(itemHistoryDir, revisionDir.getName()));
+        sut.put(itemHistoryDir, revisionDir.getName(), true, sut.stamp());
+        sut.put(itemHistoryDir, "1914-11-21_11-42-05", false, sut.stamp());
+        assertEquals(Boolean.TRUE, sut.get(itemHistoryDir, revisionDir.getName()));
+        assertEquals(Boolean.FALSE, sut.get(itemHistoryDir, "1914-11-21_11-42-05"));
+    }
+
+    /**
+     * Test of put method, of class RevisionExistsCache, checks older than a removal are not cached.
+     */
+    @Test
+    public void testPutStale() {
+        final RevisionExistsCache sut = new RevisionExistsCache(2);
+        final long stamp = sut.stamp();
+        sut.removeRevision(revisionDir);
+        sut.put(itemHistoryDir, revisionDir.getName(), true, stamp);
+        assertNull(sut.get(itemHistoryDir, revisionDir.getName()));
+    }
+
+    /**
+     * Test of removeRevision and remove methods, of class RevisionExistsCache.
+     */
+    @Test
+    public void testRemove() {
+        final RevisionExistsCache sut = new RevisionExistsCache(2);
+        sut.put(itemHistoryDir, revisionDir.getName(), true, sut.stamp());
+        sut.put(itemHistoryDir, "2015-01-02_00-00-00_000", true, sut.stamp());
+        sut.removeRevision(revisionDir);
+        assertNull(sut.get(itemHistoryDir, revisionDir.getName()));
+        assertEquals(Boolean.TRUE, sut.get(itemHistoryDir, "2015-01-02_00-00-00_000"));
+        sut.remove(itemHistoryDir);
+        assertNull(sut.get(itemHistoryDir, "2015-01-02_00-00-00_000"));
+        assertEquals(0, sut.size());
+    }
+}
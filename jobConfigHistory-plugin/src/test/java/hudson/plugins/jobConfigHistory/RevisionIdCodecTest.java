@@ -0,0 +1,113 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import java.io.File;
+import java.text.ParseException;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class RevisionIdCodecTest {
+
+    /**
+     * Formatted ids are parsed again.
+     */
+    @Test
+    public void testFormatAndParse() throws ParseException {
+        final long millis = System.currentTimeMillis();
+        final String id = RevisionIdCodec.format(millis);
+        assertEquals(JobConfigHistoryConsts.REVISION_ID_FORMATTER.length(), id.length());
+        assertEquals(millis, RevisionIdCodec.parse(id).getTime());
+    }
+
+    /**
+     * Ids with second resolution sort before ids of the same second.
+     */
+    @Test
+    public void testParseLegacy() throws ParseException {
+        final String legacy = "2012-11-21_11-29-12";
+        final String current = "2012-11-21_11-29-12_001";
+        assertEquals(RevisionIdCodec.parse(legacy).getTime() + 1, RevisionIdCodec.parse(current).getTime());
+        assertTrue(legacy.compareTo(current) < 0);
+    }
+
+    /**
+     * Field by field conversion yields the same time as parsing.
+     */
+    @Test
+    public void testParseMillis() throws ParseException {
+        for (String id : new String[] {"2012-11-21_11-29-12", "2012-11-21_11-29-12_001", "2012-03-25_02-30-00",
+            "2012-11-21_11-29-12_01", "2012-11-21_11-29-1x"}) {
+            assertEquals(id, RevisionIdCodec.parse(id).getTime(), RevisionIdCodec.parseMillis(id));
+        }
+        final long millis = System.currentTimeMillis();
+        assertEquals(millis, RevisionIdCodec.parseMillis(RevisionIdCodec.format(millis)));
+    }
+
+    /**
+     * Invalid ids are rejected.
+     */
+    @Test(expected = ParseException.class)
+    public void testParseMillisInvalid() throws ParseException {
+        RevisionIdCodec.parseMillis("abc");
+    }
+
+    /**
+     * Invalid ids are rejected.
+     */
+    @Test(expected = ParseException.class)
+    public void testParseInvalid() throws ParseException {
+        RevisionIdCodec.parse("abc");
+    }
+
+    /**
+     * Reserved times of an item are strictly increasing, even if the clock goes back.
+     */
+    @Test
+    public void testReserve() {
+        final File item = new File("jobs/RevisionIdCodecTest");
+        final long first = RevisionIdCodec.reserve(item, 1000L);
+        assertEquals(first + 1, RevisionIdCodec.reserve(item, first));
+        assertEquals(first + 2, RevisionIdCodec.reserve(item, 0L));
+        assertEquals(first + 100, RevisionIdCodec.reserve(item, first + 100));
+        assertEquals(5L, RevisionIdCodec.reserve(new File("jobs/RevisionIdCodecTest2"), 5L));
+    }
+
+    /**
+     * Test of forget method, of class RevisionIdCodec, the items nested in a moved folder are forgotten too.
+     */
+    @Test
+    public void testForget() {
+        final File folder = new File("jobs/RevisionIdCodecFolder");
+        final File nested = new File(folder, "jobs/Test1");
+        final File sibling = new File("jobs/RevisionIdCodecFolder2");
+        RevisionIdCodec.reserve(folder, 1000L);
+        RevisionIdCodec.reserve(nested, 1000L);
+        RevisionIdCodec.reserve(sibling, 1000L);
+        RevisionIdCodec.forget(folder);
+        assertEquals(1000L, RevisionIdCodec.reserve(folder, 1000L));
+        assertEquals(1000L, RevisionIdCodec.reserve(nested, 1000L));
+        assertEquals(1001L, RevisionIdCodec.reserve(sibling, 1000L));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import java.io.File;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class RevisionIndexCacheTest {
+
+    private final File itemHistoryDir = new File("config-history/jobs/Test1");
+
+    private final HistoryDescr descr = new HistoryDescr("user", "userId", "Changed", "2015-01-01_00-00-00_000");
+
+    /**
+     * Test of put and add methods, of class RevisionIndexCache.
+     */
+    @Test
+    public void testPutAndAdd() {
+        final RevisionIndexCache sut = new RevisionIndexCache(2);
+        assertNull(sut.get(itemHistoryDir));
+        sut.put(itemHistoryDir, new TreeMap<String, HistoryDescr>(), sut.stamp());
+        sut.add(new File(itemHistoryDir, "2015-01-01_00-00-00_000"), descr);
+        final SortedMap<String, HistoryDescr> result = sut.get(itemHistoryDir);
+        assertEquals(1, result.size());
+        assertSame(descr, result.get("2015-01-01_00-00-00_000"));
+    }
+
+    /**
+     * Test of put method, of class RevisionIndexCache, listings older than a modification are not cached.
+     */
+    @Test
+    public void testPutStale() {
+        final RevisionIndexCache sut = new RevisionIndexCache(2);
+        final long stamp = sut.stamp();
+        sut.add(new File(itemHistoryDir, "2015-01-01_00-00-00_000"), descr);
+        assertNotNull(sut.put(itemHistoryDir, new TreeMap<String, HistoryDescr>(), stamp));
+        assertNull(sut.get(itemHistoryDir));
+    }
+
+    /**
+     * Test of removeRevision and remove methods, of class RevisionIndexCache.
+     */
+    @Test
+    public void testRemove() {
+        final RevisionIndexCache sut = new RevisionIndexCache(2);
+        final File revisionDir = new File(itemHistoryDir, "2015-01-01_00-00-00_000");
+        final TreeMap<String, HistoryDescr> revisions = new TreeMap<String, HistoryDescr>();
+        revisions.put(revisionDir.getName(), descr);
+        sut.put(itemHistoryDir, revisions, sut.stamp());
+        sut.removeRevision(revisionDir);
+        assertTrue(sut.get(itemHistoryDir).isEmpty());
+        sut.remove(itemHistoryDir);
+        assertNull(sut.get(itemHistoryDir));
+    }
+
+    /**
+     * Test of remove method, of class RevisionIndexCache, the items nested in a folder are removed too.
+     */
+    @Test
+    public void testRemoveFolder() {
+        final RevisionIndexCache sut = new RevisionIndexCache(3);
+        final File folder = new File("config-history/jobs/outer");
+        final File nested = new File(folder, "jobs/Test1");
+        final File sibling = new File("config-history/jobs/outer2");
+        sut.put(folder, new TreeMap<String, HistoryDescr>(), sut.stamp());
+        sut.put(nested, new TreeMap<String, HistoryDescr>(), sut.stamp());
+        sut.put(sibling, new TreeMap<String, HistoryDescr>(), sut.stamp());
+        sut.remove(folder);
+        assertNull(sut.get(folder));
+        assertNull(sut.get(nested));
+        assertNotNull(sut.get(sibling));
+    }
+
+    /**
+     * Test of get method, of class RevisionIndexCache, the least recently used item is evicted.
+     */
+    @Test
+    public void testEviction() {
+        final RevisionIndexCache sut = new RevisionIndexCache(2);
+        final File other = new File("config-history/jobs/Test2");
+        final File third = new File("config-history/jobs/Test3");
+        sut.put(itemHistoryDir, new TreeMap<String, HistoryDescr>(), sut.stamp());
+        sut.put(other, new TreeMap<String, HistoryDescr>(), sut.stamp());
+        sut.get(itemHistoryDir);
+        sut.put(third, new TreeMap<String, HistoryDescr>(), sut.stamp());
+        assertEquals(2, sut.size());
+        assertNotNull(sut.get(itemHistoryDir));
+        assertNull(sut.get(other));
+    }
+}
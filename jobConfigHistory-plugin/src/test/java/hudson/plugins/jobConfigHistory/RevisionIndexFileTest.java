@@ -0,0 +1,171 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import hudson.XmlFile;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.SortedMap;
+import org.apache.commons.io.FileUtils;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RevisionIndexFileTest {
+
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File itemHistoryDir;
+
+    private File indexFile;
+
+    @Before
+    public void setUp() throws IOException {
+        itemHistoryDir = tempFolder.newFolder("Test1");
+        indexFile = new File(itemHistoryDir, JobConfigHistoryConsts.REVISION_INDEX_FILE);
+        createRevision("2015-01-01_00-00-00_000", "Created");
+        createRevision("2015-01-02_00-00-00_000", "Changed");
+        FileUtils.writeStringToFile(new File(itemHistoryDir, "2015-01-02_00-00-00_000/"
+                + JobConfigHistoryConsts.DIGEST_FILE), "abc", "US-ASCII");
+        FileUtils.writeStringToFile(new File(itemHistoryDir, "2015-01-02_00-00-00_000/config.xml"
+                + JobConfigHistoryConsts.COMPRESSED_SUFFIX), "", "US-ASCII");
+        assertTrue(new File(itemHistoryDir, "jobs").mkdir());
+    }
+
+    /**
+     * Test of rebuild and read methods, of class RevisionIndexFile.
+     */
+    @Test
+    public void testRebuildAndRead() throws IOException {
+        assertNull(RevisionIndexFile.read(itemHistoryDir));
+        final SortedMap<String, RevisionIndexFile.Entry> rebuilt = RevisionIndexFile.rebuild(itemHistoryDir);
+        assertEquals(3, rebuilt.size());
+        final SortedMap<String, RevisionIndexFile.Entry> read = RevisionIndexFile.read(itemHistoryDir);
+        assertEquals(rebuilt.keySet(), read.keySet());
+        assertNull(read.get("jobs").getHistoryDescr());
+        final SortedMap<String, HistoryDescr> revisions = RevisionIndexFile.toRevisions(read);
+        assertEquals(2, revisions.size());
+        final HistoryDescr created = revisions.get("2015-01-01_00-00-00_000");
+        assertEquals("Created", created.getOperation());
+        assertEquals("user", created.getUserID());
+        assertEquals("User", created.getUser());
+        assertEquals("2015-01-01_00-00-00_000", created.getTimestamp());
+        assertEquals("2015-01-02_00-00-00_000", RevisionIndexFile.newestRevision(read));
+        assertEquals("abc", read.get("2015-01-02_00-00-00_000").getDigest());
+        assertEquals("config.xml", read.get("2015-01-02_00-00-00_000").getConfigFileName());
+        assertFalse(((IndexedHistoryDescr) created).hasConfig());
+        assertTrue(((IndexedHistoryDescr) revisions.get("2015-01-02_00-00-00_000")).hasConfig());
+    }
+
+    /**
+     * Test of added, configStored, digestStored and purged methods, of class RevisionIndexFile.
+     */
+    @Test
+    public void testAppend() throws IOException {
+        final File revisionDir = createRevision("2015-01-03_00-00-00_000", "Changed");
+        RevisionIndexFile.added(revisionDir, new HistoryDescr("User", "user", "Changed", revisionDir.getName()));
+        assertFalse("writers never create the sidecar", indexFile.exists());
+        RevisionIndexFile.rebuild(itemHistoryDir);
+        final File newRevisionDir = createRevision("2015-01-04_00-00-00_000", "Changed");
+        assertNull("a revision missing in the sidecar makes it stale", RevisionIndexFile.read(itemHistoryDir));
+        RevisionIndexFile.added(newRevisionDir, new HistoryDescr("User", "user", "Changed", newRevisionDir.getName()));
+        RevisionIndexFile.configStored(newRevisionDir, "config.xml");
+        RevisionIndexFile.digestStored(newRevisionDir, "def");
+        SortedMap<String, RevisionIndexFile.Entry> read = RevisionIndexFile.read(itemHistoryDir);
+        assertEquals(5, read.size());
+        assertEquals("def", read.get(RevisionIndexFile.newestRevision(read)).getDigest());
+        assertEquals("config.xml", read.get(RevisionIndexFile.newestRevision(read)).getConfigFileName());
+        FileUtils.deleteDirectory(newRevisionDir);
+        RevisionIndexFile.purged(newRevisionDir);
+        read = RevisionIndexFile.read(itemHistoryDir);
+        assertEquals(4, read.size());
+        assertEquals("2015-01-03_00-00-00_000", RevisionIndexFile.newestRevision(read));
+    }
+
+    /**
+     * Test of read method, of class RevisionIndexFile, a revision replaced by another one makes the sidecar stale.
+     */
+    @Test
+    public void testReadStaleSameCount() throws IOException {
+        RevisionIndexFile.rebuild(itemHistoryDir);
+        FileUtils.deleteDirectory(new File(itemHistoryDir, "2015-01-01_00-00-00_000"));
+        createRevision("2015-01-03_00-00-00_000", "Changed");
+        assertNull(RevisionIndexFile.read(itemHistoryDir));
+    }
+
+    /**
+     * Test of rebuild method, of class RevisionIndexFile, an existing sidecar is replaced.
+     */
+    @Test
+    public void testRebuildReplaces() throws IOException {
+        RevisionIndexFile.rebuild(itemHistoryDir);
+        createRevision("2015-01-03_00-00-00_000", "Changed");
+        RevisionIndexFile.rebuild(itemHistoryDir);
+        assertEquals(4, RevisionIndexFile.read(itemHistoryDir).size());
+        assertFalse(new File(itemHistoryDir, JobConfigHistoryConsts.REVISION_INDEX_FILE + ".tmp").exists());
+    }
+
+    /**
+     * Test of read method, of class RevisionIndexFile, a truncated last record is ignored.
+     */
+    @Test
+    public void testReadTruncated() throws IOException {
+        RevisionIndexFile.rebuild(itemHistoryDir);
+        final FileOutputStream out = new FileOutputStream(indexFile, true);
+        try {
+            out.write(new byte[] {'P', 1, 0});
+        } finally {
+            out.close();
+        }
+        assertEquals(3, RevisionIndexFile.read(itemHistoryDir).size());
+    }
+
+    /**
+     * Test of read method, of class RevisionIndexFile, other versions are not read.
+     */
+    @Test
+    public void testReadOtherVersion() throws IOException {
+        final DataOutputStream out = new DataOutputStream(new FileOutputStream(indexFile));
+        try {
+            out.writeInt(RevisionIndexFile.MAGIC);
+            out.writeByte(RevisionIndexFile.VERSION + 1);
+        } finally {
+            out.close();
+        }
+        assertNull(RevisionIndexFile.read(itemHistoryDir));
+    }
+
+    private File createRevision(String timestamp, String operation) throws IOException {
+        final File revisionDir = new File(itemHistoryDir, timestamp);
+        assertTrue(revisionDir.mkdir());
+        new XmlFile(new File(revisionDir, JobConfigHistoryConsts.HISTORY_FILE))
+                .write(new HistoryDescr("User", "user", operation, timestamp));
+        return revisionDir;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.jobConfigHistory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SvnHistoryReplicatorTest {
+
+    @Rule
+    public final UnpackResourceZip unpackResourceZip = UnpackResourceZip.create();
+
+    private final SvnHistoryReplicator sut = new SvnHistoryReplicator(
+            mock(JobConfigHistory.class), new HistoryChangeTracker(10));
+
+    /**
+     * Only the changed directories are copied, missing parents are created
+     * and directories outside of the job history are ignored.
+     */
+    @Test
+    public void testCopyChanges() throws IOException {
+        final File jobHistory = unpackResourceZip.getResource("config-history/jobs");
+        final File workingCopy = unpackResourceZip.getResource("workingCopy");
+        final List<File> copies = sut.copyChanges(new LinkedHashSet<File>(Arrays.asList(
+                new File(jobHistory, "Test1/2012-11-21_11-42-05"),
+                new File(jobHistory, "Foo_deleted_20130830_223932_071"),
+                unpackResourceZip.getResource("config-history/config/2013-01-18_18-24-33"))),
+                jobHistory, workingCopy);
+        assertEquals(2, copies.size());
+        assertTrue(new File(workingCopy, "Test1/2012-11-21_11-42-05/config.xml").exists());
+        assertFalse(new File(workingCopy, "Test1/2012-11-21_11-29-12").exists());
+        assertTrue(new File(workingCopy, "Foo_deleted_20130830_223932_071/2013-08-30_22-39-32/history.xml").exists());
+        assertFalse(new File(workingCopy, "config").exists());
+    }
+
+    /**
+     * Deduplicated revisions are copied with the configuration they refer to.
+     */
+    @Test
+    public void testCopyChangesResolvesBlobReferences() throws IOException {
+        final File configHistory = unpackResourceZip.getResource("config-history");
+        final JobConfigHistory plugin = mock(JobConfigHistory.class);
+        when(plugin.getConfiguredHistoryRootDir()).thenReturn(configHistory);
+        final File jobHistory = new File(configHistory, "jobs");
+        final File revisionDir = new File(jobHistory, "Test1/2012-11-21_11-42-05");
+        final File config = new File(revisionDir, "config.xml");
+        final byte[] content = FileUtils.readFileToByteArray(config);
+        final String digest = new BlobStore(new File(configHistory, JobConfigHistoryConsts.BLOBS_DIR)).put(content);
+        FileUtils.writeStringToFile(new File(revisionDir, "config.xml" + JobConfigHistoryConsts.BLOB_REFERENCE_SUFFIX),
+                digest, "US-ASCII");
+        assertTrue(config.delete());
+        final File workingCopy = unpackResourceZip.getResource("workingCopy");
+        new SvnHistoryReplicator(plugin, new HistoryChangeTracker(10)).copyChanges(
+                new LinkedHashSet<File>(Arrays.asList(revisionDir)), jobHistory, workingCopy);
+        final File copy = new File(workingCopy, "Test1/2012-11-21_11-42-05");
+        assertArrayEquals(content, FileUtils.readFileToByteArray(new File(copy, "config.xml")));
+        assertFalse(new File(copy, "config.xml" + JobConfigHistoryConsts.BLOB_REFERENCE_SUFFIX).exists());
+        assertTrue(new File(copy, "history.xml").exists());
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 The jobConfigHistory plugin contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package hudson.plugins.jobConfigHistory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class SvnReplicationQueueTest {
+
+    private final RecordingReplicator replicator = new RecordingReplicator();
+
+    private final SvnReplicationQueue sut = new SvnReplicationQueue(2, 60000L, replicator);
+
+    /**
+     * Repeated saves of the same item end up in one batch entry.
+     */
+    @Test
+    public void testOfferCoalesces() {
+        assertTrue(sut.offer("jobs/Test1"));
+        assertTrue(sut.offer("jobs/Test1"));
+        assertEquals(1, sut.getQueueDepth());
+        assertEquals(1, sut.getCoalescedCount());
+        sut.flush();
+        assertEquals(1, replicator.batches.size());
+        assertEquals(new LinkedHashSet<String>(Arrays.asList("jobs/Test1")), replicator.batches.get(0));
+        assertEquals(0, sut.getQueueDepth());
+        assertEquals(1, sut.getFlushCount());
+    }
+
+    /**
+     * All pending items are replicated with one flush.
+     */
+    @Test
+    public void testFlushBatchesItems() {
+        sut.offer("jobs/Test1");
+        sut.offer("jobs/Test2");
+        sut.flush();
+        sut.flush();
+        assertEquals(1, replicator.batches.size());
+        assertEquals(2, replicator.batches.get(0).size());
+        assertFalse(replicator.completes.get(0));
+    }
+
+    /**
+     * A full queue drops the item and requests a complete replication.
+     */
+    @Test
+    public void testOfferWhenFull() {
+        sut.offer("jobs/Test1");
+        sut.offer("jobs/Test2");
+        assertFalse(sut.offer("jobs/Test3"));
+        assertEquals(1, sut.getDroppedCount());
+        sut.flush();
+        assertTrue(replicator.completes.get(0));
+    }
+
+    /**
+     * Failed batches are queued again.
+     */
+    @Test
+    public void testFlushFailureRequeues() {
+        replicator.fail = true;
+        sut.offer("jobs/Test1");
+        sut.flush();
+        assertEquals(1, sut.getQueueDepth());
+        assertEquals(0, sut.getFlushCount());
+        replicator.fail = false;
+        sut.flush();
+        assertEquals(0, sut.getQueueDepth());
+        assertEquals(1, sut.getFlushCount());
+    }
+
+    private static class RecordingReplicator implements SvnReplicationQueue.Replicator {
+
+        final List<Set<String>> batches = new ArrayList<Set<String>>();
+
+        final List<Boolean> completes = new ArrayList<Boolean>();
+
+        boolean fail;
+
+        @Override
+        public void replicate(Set<String> items, boolean complete) throws Exception {
+            if (fail) {
+                throw new Exception("oops");
+            }
+            batches.add(new LinkedHashSet<String>(items));
+            completes.add(complete);
+        }
+    }
+}